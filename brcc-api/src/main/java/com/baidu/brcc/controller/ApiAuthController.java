@@ -18,6 +18,9 @@
  */
 package com.baidu.brcc.controller;
 
+import static com.baidu.brcc.common.ErrorStatusMsg.ENVIRONMENT_NAME_NOT_EMPTY_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.ENVIRONMENT_NAME_NOT_EMPTY_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.ENVIRONMENT_NOT_EXISTS_STATUS;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_API_PASSWORD_ERROR_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_API_PASSWORD_ERROR_STATUS;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_API_PASSWORD_NOT_EXISTS_MSG;
@@ -30,9 +33,16 @@ import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_NAME_NOT_EXISTS_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_NAME_NOT_EXISTS_STATUS;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_NOT_EXISTS_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_NOT_EXISTS_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NAME_NOT_EXISTS_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NAME_NOT_EXISTS_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_STATUS;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.trim;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -45,9 +55,17 @@ import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.em.ApiTokenExpireNever;
 import com.baidu.brcc.domain.vo.ApiAuthReqVo;
 import com.baidu.brcc.domain.vo.ApiAuthVo;
+import com.baidu.brcc.domain.vo.ApiBootstrapReqVo;
+import com.baidu.brcc.domain.vo.ApiBootstrapVo;
+import com.baidu.brcc.domain.vo.ApiEnvironmentVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.EnvironmentService;
 import com.baidu.brcc.service.ProjectService;
 import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
 import com.baidu.brcc.utils.bcrypt.Md5Util;
 
 /**
@@ -66,6 +84,15 @@ public class ApiAuthController {
     @Autowired
     private ProjectService projectService;
 
+    @Autowired
+    private EnvironmentService environmentService;
+
+    @Autowired
+    private VersionService versionService;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
     /**
      * 获取open api 访问的token
      *
@@ -76,8 +103,57 @@ public class ApiAuthController {
      */
     @PostMapping("auth")
     public R<ApiAuthVo> apiAuth(@RequestBody ApiAuthReqVo reqVo) {
-        String projectName = reqVo.getProjectName();
-        String apiPassword = reqVo.getApiPassword();
+        return auth(reqVo.getProjectName(), reqVo.getApiPassword());
+    }
+
+    /**
+     * 客户端启动加载，一次请求完成登录认证并获取环境、版本及版本下的全部配置项，
+     * 代替依次调用 auth、environment/{environmentName}、version/{versionName}、item 四个接口
+     *
+     * @param reqVo reqVo.projectName 工程名称
+     *              reqVo.apiPassword 工程api密码
+     *              reqVo.environmentName 环境名称
+     *              reqVo.versionName 版本名称
+     *
+     * @return
+     */
+    @PostMapping("bootstrap")
+    public R<ApiBootstrapVo> bootstrap(@RequestBody ApiBootstrapReqVo reqVo) {
+        String environmentName = reqVo.getEnvironmentName();
+        String versionName = reqVo.getVersionName();
+        if (isBlank(environmentName)) {
+            return R.error(ENVIRONMENT_NAME_NOT_EMPTY_STATUS, ENVIRONMENT_NAME_NOT_EMPTY_MSG);
+        }
+        if (isBlank(versionName)) {
+            return R.error(VERSION_NAME_NOT_EXISTS_STATUS, VERSION_NAME_NOT_EXISTS_MSG);
+        }
+        R<ApiAuthVo> auth = auth(reqVo.getProjectName(), reqVo.getApiPassword());
+        if (auth.getStatus() != 0) {
+            return R.error(auth.getStatus(), auth.getMsg());
+        }
+        ApiAuthVo authVo = auth.getData();
+        Long projectId = authVo.getProjectId();
+        ApiEnvironmentVo environmentVo = environmentService.getByProjectIdAndNameInCache(projectId, environmentName);
+        if (environmentVo == null) {
+            return R.error(ENVIRONMENT_NOT_EXISTS_STATUS,
+                    "您请求的环境 " + environmentName + " 环境在工程 " + authVo.getProjectName() + " 下不存在");
+        }
+        ApiVersionVo versionVo = versionService.getByEnvironmentAndNameInCache(projectId,
+                environmentVo.getEnvironmentId(), versionName);
+        if (versionVo == null) {
+            return R.error(VERSION_NOT_EXISTS_STATUS, VERSION_NOT_EXISTS_MSG);
+        }
+        List<ApiItemVo> items = configItemService.getAllByVersionIdInCache(projectId, versionVo.getVersionId());
+
+        ApiBootstrapVo bootstrapVo = new ApiBootstrapVo();
+        bootstrapVo.setAuth(authVo);
+        bootstrapVo.setEnvironmentId(environmentVo.getEnvironmentId());
+        bootstrapVo.setVersion(versionVo);
+        bootstrapVo.setItems(items == null ? new ArrayList<>(0) : items);
+        return R.ok(bootstrapVo);
+    }
+
+    private R<ApiAuthVo> auth(String projectName, String apiPassword) {
         if (isBlank(projectName)) {
             return R.error(PROJECT_NAME_NOT_EXISTS_STATUS, PROJECT_NAME_NOT_EXISTS_MSG);
         }
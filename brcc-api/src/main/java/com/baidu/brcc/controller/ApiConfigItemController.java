@@ -28,12 +28,25 @@ import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_API_TOKEN_NOT_EXISTS_
 import static com.baidu.brcc.common.ErrorStatusMsg.PROJECT_API_TOKEN_NOT_EXISTS_STATUS;
 import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_ID_NOT_EXISTS_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_ID_NOT_EXISTS_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_STATUS;
+import static com.baidu.brcc.config.BinaryHttpMessageConverter.acceptBinary;
+import static com.baidu.brcc.config.BinaryHttpMessageConverter.etag;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -41,14 +54,22 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.vo.ApiBatchItemReqVo;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiItemSnapshotVo;
 import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
 import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.ItemSnapshotService;
 import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.utils.ItemDigestUtils;
 
 /**
  * open api 配置项相关接口
@@ -66,6 +87,12 @@ public class ApiConfigItemController {
     @Autowired
     private RccCache rccCache;
 
+    @Autowired
+    private VersionService versionService;
+
+    @Autowired
+    private ItemSnapshotService itemSnapshotService;
+
     /**
      * 根据配置名称获取指定配置项
      * @param token api token
@@ -104,10 +131,11 @@ public class ApiConfigItemController {
      * 获取所有配置项
      * @param token api token
      * @param versionId 版本ID
-     * @return
+     * @param webRequest 携带If-None-Match时，配置项内容未变化返回304
+     * @return 以json返回时直接写出版本的配置项快照，返回null
      */
     @GetMapping("item")
-    public R<List<ApiItemVo>> getAllItem(String token, Long versionId) {
+    public R<List<ApiItemVo>> getAllItem(String token, Long versionId, WebRequest webRequest) throws IOException {
         if (isBlank(token)) {
             return R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG);
         }
@@ -118,10 +146,25 @@ public class ApiConfigItemController {
         if (apiToken == null) {
             return R.error(PROJECT_API_TOKEN_NOT_EXISTS_STATUS, PROJECT_API_TOKEN_NOT_EXISTS_MSG);
         }
+        // 配置项修改后未推送变更时checkSum不变，以返回的配置项的内容戳作为ETag
+        ApiVersionVo versionVo = versionService.getByEnvironmentByIdInCache(versionId);
+        if (versionVo != null && apiToken.getProjectId().equals(versionVo.getProjectId())) {
+            ApiItemSnapshotVo snapshot = getSnapshot(apiToken.getProjectId(), versionVo, webRequest);
+            if (snapshot != null) {
+                if (checkNotModified(webRequest, snapshot.getStamp())) {
+                    return null;
+                }
+                writeSnapshot(snapshot, webRequest);
+                return null;
+            }
+        }
         List<ApiItemVo> itemsVos = configItemService.getAllByVersionIdInCache(apiToken.getProjectId(), versionId);
 
         if (CollectionUtils.isEmpty(itemsVos)) {
-            return R.ok(new ArrayList<>(0));
+            itemsVos = new ArrayList<>(0);
+        }
+        if (checkNotModified(webRequest, ItemDigestUtils.stamp(itemsVos))) {
+            return null;
         }
         return R.ok(itemsVos);
     }
@@ -155,4 +198,74 @@ public class ApiConfigItemController {
         return R.ok(result);
     }
 
+    /**
+     * 获取自指定内容戳以来变更的配置项
+     * @param token api token
+     * @param versionId 版本ID
+     * @param sinceStamp 客户端当前配置项的内容戳，为空或对应的摘要不存在时返回全量
+     * @return
+     */
+    @GetMapping("itemDelta")
+    public R<ApiItemDeltaVo> getItemDelta(String token, Long versionId, String sinceStamp) {
+        if (isBlank(token)) {
+            return R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG);
+        }
+        if (versionId == null || versionId <= 0) {
+            return R.error(VERSION_ID_NOT_EXISTS_STATUS, VERSION_ID_NOT_EXISTS_MSG);
+        }
+        ApiToken apiToken = apiTokenCacheService.getApiToken(token);
+        if (apiToken == null) {
+            return R.error(PROJECT_API_TOKEN_NOT_EXISTS_STATUS, PROJECT_API_TOKEN_NOT_EXISTS_MSG);
+        }
+        ApiVersionVo versionVo = versionService.getByEnvironmentByIdInCache(versionId);
+        if (versionVo == null || !apiToken.getProjectId().equals(versionVo.getProjectId())) {
+            return R.error(VERSION_NOT_EXISTS_STATUS, VERSION_NOT_EXISTS_MSG);
+        }
+        return R.ok(configItemService.getDeltaByVersionInCache(versionVo, sinceStamp));
+    }
+
+    // 未协商二进制格式时直接写出快照，读取一次redis即可返回，无需逐项解码及序列化
+    private ApiItemSnapshotVo getSnapshot(Long projectId, ApiVersionVo versionVo, WebRequest webRequest) {
+        if (!(webRequest instanceof NativeWebRequest) || acceptBinary(webRequest.getHeader(HttpHeaders.ACCEPT))
+                || ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class) == null) {
+            return null;
+        }
+        return itemSnapshotService.getSnapshot(projectId, versionVo);
+    }
+
+    private void writeSnapshot(ApiItemSnapshotVo snapshot, WebRequest webRequest) throws IOException {
+        HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (!snapshot.isGzip()) {
+            response.setContentLength(snapshot.getBody().length);
+            response.getOutputStream().write(snapshot.getBody());
+            return;
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            // 已设置Content-Encoding的响应不会被server.compression再次压缩
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(snapshot.getBody().length);
+            response.getOutputStream().write(snapshot.getBody());
+        } else {
+            byte[] body;
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot.getBody()))) {
+                body = StreamUtils.copyToByteArray(in);
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+
+    // json及二进制两种格式的ETag不同，并声明Vary: Accept，避免缓存按一种格式的ETag返回另一种格式
+    private boolean checkNotModified(WebRequest webRequest, String stamp) {
+        if (webRequest instanceof NativeWebRequest) {
+            HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        }
+        return webRequest.checkNotModified(etag(stamp, webRequest.getHeader(HttpHeaders.ACCEPT)));
+    }
 }
@@ -28,24 +28,47 @@ import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NAME_NOT_EXISTS_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NAME_NOT_EXISTS_STATUS;
 import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_MSG;
 import static com.baidu.brcc.common.ErrorStatusMsg.VERSION_NOT_EXISTS_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.WATCH_VERSION_EMPTY_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.WATCH_VERSION_EMPTY_STATUS;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.baidu.brcc.config.BinaryHttpMessageConverter;
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.domain.vo.ApiWatchReqVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
 import com.baidu.brcc.service.RccCache;
 import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionStreamService;
+import com.baidu.brcc.service.VersionWatchService;
 
 @RestController
 @RequestMapping("api")
@@ -60,10 +83,17 @@ public class ApiVersionController {
     @Autowired
     private RccCache rccCache;
 
+    @Autowired
+    private VersionWatchService versionWatchService;
+
+    @Autowired
+    private VersionStreamService versionStreamService;
+
     /**
      * @param token
      * @param environmentId
      * @param name
+     * @param webRequest 携带If-None-Match时，版本未变化返回304
      *
      * @return
      */
@@ -71,7 +101,8 @@ public class ApiVersionController {
     public R<ApiVersionVo> getVersion(
             String token,
             Long environmentId,
-            @PathVariable("versionName") String name
+            @PathVariable("versionName") String name,
+            WebRequest webRequest
     ) {
         if (isBlank(token)) {
             return R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG);
@@ -92,6 +123,9 @@ public class ApiVersionController {
         if (versionVo == null) {
             return R.error(VERSION_NOT_EXISTS_STATUS, VERSION_NOT_EXISTS_MSG);
         }
+        if (webRequest.checkNotModified(etag(Collections.singletonList(versionVo)))) {
+            return null;
+        }
         return R.ok(versionVo);
     }
 
@@ -100,11 +134,12 @@ public class ApiVersionController {
      *
      * @param token         api token
      * @param environmentId 环境ID
+     * @param webRequest    携带If-None-Match时，所有版本均未变化返回304
      *
      * @return
      */
     @GetMapping("version")
-    public R<List<ApiVersionVo>> getAllVersion(String token, Long environmentId) {
+    public R<List<ApiVersionVo>> getAllVersion(String token, Long environmentId, WebRequest webRequest) {
         if (isBlank(token)) {
             return R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG);
         }
@@ -120,7 +155,93 @@ public class ApiVersionController {
         if (CollectionUtils.isEmpty(versionVos)) {
             return R.ok(new ArrayList<>(0));
         }
+        // 版本列表支持二进制格式，ETag按返回的格式区分并声明Vary: Accept
+        if (webRequest instanceof NativeWebRequest) {
+            HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        }
+        if (webRequest.checkNotModified(
+                BinaryHttpMessageConverter.etag(etag(versionVos), webRequest.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
         return R.ok(versionVos);
     }
 
+    /**
+     * 监听版本变更（长轮询），任一版本的checkSum发生变化或超时后返回
+     *
+     * @param token  api token
+     * @param reqVo  监听的版本及客户端当前的checkSum
+     *
+     * @return 发生变更的版本，超时返回空列表
+     */
+    @PostMapping("watch")
+    public DeferredResult<R<List<ApiVersionVo>>> watch(String token, @RequestBody ApiWatchReqVo reqVo) {
+        if (isBlank(token)) {
+            return immediate(R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG));
+        }
+        if (reqVo == null || CollectionUtils.isEmpty(reqVo.getVersions())) {
+            return immediate(R.error(WATCH_VERSION_EMPTY_STATUS, WATCH_VERSION_EMPTY_MSG));
+        }
+        ApiToken apiToken = apiTokenCacheService.getApiToken(token);
+        if (apiToken == null) {
+            return immediate(R.error(PROJECT_API_TOKEN_NOT_EXISTS_STATUS, PROJECT_API_TOKEN_NOT_EXISTS_MSG));
+        }
+        return versionWatchService.watch(apiToken.getProjectId(), reqVo.getVersions(), reqVo.getTimeout());
+    }
+
+    /**
+     * 以SSE推送版本变更，version事件的数据为变更后的版本（及增量），参数错误、token无效时以4xx拒绝，连接数超限时以503拒绝，响应体为一个error事件
+     *
+     * @param token       api token
+     * @param versionIds  监听的版本ID，逗号分隔
+     * @param delta       是否在事件中携带配置项增量
+     * @param lastEventId 重连时客户端最近收到的事件ID
+     *
+     * @return 推送连接
+     */
+    @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            String token,
+            @RequestParam(required = false) List<Long> versionIds,
+            boolean delta,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        if (isBlank(token)) {
+            return versionStreamService.error(HttpStatus.BAD_REQUEST,
+                    R.error(PROJECT_API_TOKEN_NOT_EMPTY_STATUS, PROJECT_API_TOKEN_NOT_EMPTY_MSG));
+        }
+        if (CollectionUtils.isEmpty(versionIds)) {
+            return versionStreamService.error(HttpStatus.BAD_REQUEST,
+                    R.error(WATCH_VERSION_EMPTY_STATUS, WATCH_VERSION_EMPTY_MSG));
+        }
+        ApiToken apiToken = apiTokenCacheService.getApiToken(token);
+        if (apiToken == null) {
+            // token失效时客户端重新登录
+            return versionStreamService.error(HttpStatus.UNAUTHORIZED,
+                    R.error(PROJECT_API_TOKEN_NOT_EXISTS_STATUS, PROJECT_API_TOKEN_NOT_EXISTS_MSG));
+        }
+        return versionStreamService.stream(apiToken.getProjectId(), versionIds, lastEventId, delta);
+    }
+
+    // 由返回的全部字段计算ETag，版本改名等不改变checkSum的修改同样生效
+    private String etag(List<ApiVersionVo> versionVos) {
+        StringBuilder tag = new StringBuilder();
+        for (ApiVersionVo versionVo : versionVos) {
+            tag.append(versionVo.getProjectId()).append(':')
+                    .append(versionVo.getEnvironmentId()).append(':')
+                    .append(versionVo.getVersionId()).append(':')
+                    .append(versionVo.getVersionName()).append(':')
+                    .append(versionVo.getCheckSum()).append(',');
+        }
+        return DigestUtils.md5DigestAsHex(tag.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DeferredResult<R<List<ApiVersionVo>>> immediate(R<List<ApiVersionVo>> r) {
+        DeferredResult<R<List<ApiVersionVo>>> result = new DeferredResult<>();
+        result.setResult(r);
+        return result;
+    }
 }
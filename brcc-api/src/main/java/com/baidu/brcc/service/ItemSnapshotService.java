@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service;
+
+import com.baidu.brcc.domain.vo.ApiItemSnapshotVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+
+public interface ItemSnapshotService {
+
+    /**
+     * 获取版本全部配置项的json响应快照，缓存中的快照与版本当前checkSum不一致时重新生成
+     * @param projectId 工程ID
+     * @param versionVo 版本
+     * @return 未开启或生成失败时返回null
+     */
+    ApiItemSnapshotVo getSnapshot(Long projectId, ApiVersionVo versionVo);
+
+}
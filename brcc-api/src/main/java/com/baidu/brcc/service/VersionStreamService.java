@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.baidu.brcc.domain.base.R;
+
+public interface VersionStreamService {
+
+    /**
+     * 以SSE推送版本变更，事件ID为各版本最近一次推送的checkSum，客户端携带Last-Event-ID重连时只推送此后的变更
+     *
+     * @param projectId   工程ID
+     * @param versionIds  监听的版本ID
+     * @param lastEventId 客户端最近收到的事件ID，首次连接为空，此时推送各版本当前的checkSum
+     * @param delta       是否在事件中携带配置项增量
+     *
+     * @return 推送连接
+     */
+    ResponseEntity<SseEmitter> stream(Long projectId, List<Long> versionIds, String lastEventId, boolean delta);
+
+    /**
+     * 以非2xx状态码拒绝连接，响应体为一个error事件
+     *
+     * @param status 状态码，客户端据此在连接建立前识别失败
+     * @param r      错误信息
+     *
+     * @return 推送连接
+     */
+    ResponseEntity<SseEmitter> error(HttpStatus status, R<?> r);
+
+    /**
+     * 本节点的推送连接数
+     */
+    int streamingCount();
+}
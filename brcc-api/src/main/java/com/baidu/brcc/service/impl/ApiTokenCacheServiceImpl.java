@@ -18,6 +18,8 @@
  */
 package com.baidu.brcc.service.impl;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -35,13 +37,25 @@ public class ApiTokenCacheServiceImpl implements ApiTokenCacheService {
     @Autowired
     private ApiTokenService apiTokenService;
 
+    @PostConstruct
+    public void init() {
+        // 缓存软过期后异步回源刷新
+        rccCache.registerRefresher(RccCache.Family.API_TOKEN, apiTokenService::selectByToken);
+    }
+
     @Override
     public ApiToken getApiToken(String token) {
         ApiToken apiToken = rccCache.getApiToken(token);
         if (apiToken == null) {
+            // 已确认不存在的token不再查询数据库
+            if (rccCache.isApiTokenMissing(token)) {
+                return null;
+            }
             apiToken = apiTokenService.selectByToken(token);
             if (apiToken != null) {
                 rccCache.loadApiToken(apiToken);
+            } else {
+                rccCache.loadApiTokenMissing(token);
             }
         }
         return apiToken;
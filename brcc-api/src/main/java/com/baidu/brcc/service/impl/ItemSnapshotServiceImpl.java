@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemSnapshotVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.CacheLoadService;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.ItemSnapshotService;
+import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.utils.ItemDigestUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 快照在redis中的格式（大端序）：
+ * <pre>
+ * byte   格式版本，当前为2
+ * byte   压缩方式：0 不压缩，1 gzip
+ * short  checkSum长度 + UTF-8字节
+ * short  内容戳长度 + UTF-8字节
+ * ...    响应体
+ * </pre>
+ * 最热的快照同时保存在本地内存中，按响应体字节数限制总大小，
+ * 随本地缓存失效广播一起失效，读取时仍校验checkSum。
+ */
+@Slf4j
+@Service
+public class ItemSnapshotServiceImpl implements ItemSnapshotService {
+
+    static final byte FORMAT_VERSION = 2;
+
+    static final byte ENCODING_NONE = 0;
+    static final byte ENCODING_GZIP = 1;
+
+    // 是否以快照返回全部配置项
+    @Value("${rcc.api.item.snapshot.enable: true}")
+    private boolean snapshotEnable;
+
+    // 响应体超过该字节数时预先gzip压缩，与server.compression.min-response-size保持一致，0表示不压缩
+    @Value("${rcc.api.item.snapshot.gzip-threshold: 2048}")
+    private int gzipThreshold;
+
+    // 是否在本地内存中保存快照，依赖本地缓存失效广播，默认与rcc.cache.local.enable一致
+    @Value("${rcc.api.item.snapshot.local.enable:${rcc.cache.local.enable:true}}")
+    private boolean localEnable;
+
+    // 本地快照响应体总字节数上限
+    @Value("${rcc.api.item.snapshot.local.max-bytes: 67108864}")
+    private long localMaxBytes;
+
+    // 本地快照过期时间，单位秒，兜底失效广播丢失的情况
+    @Value("${rcc.api.item.snapshot.local.expire: 300}")
+    private long localExpire;
+
+    // versionId -> 快照
+    private Cache<Long, ApiItemSnapshotVo> local;
+
+    // 每次失效递增，加载期间发生失效时不回填本地
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    private RccCache rccCache;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
+    @Autowired
+    private CacheLoadService cacheLoadService;
+
+    // 与json响应使用同一个ObjectMapper，保证快照与正常返回一致
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void init() {
+        if (!localEnable) {
+            return;
+        }
+        local = CacheBuilder.newBuilder()
+                .maximumWeight(localMaxBytes)
+                .weigher((Long versionId, ApiItemSnapshotVo snapshot) -> snapshot.getBody().length)
+                .expireAfterWrite(localExpire, TimeUnit.SECONDS)
+                .build();
+        rccCache.addItemSnapshotListener(versionId -> {
+            generation.incrementAndGet();
+            if (versionId == null) {
+                local.invalidateAll();
+            } else {
+                local.invalidate(versionId);
+            }
+        });
+    }
+
+    @Override
+    public ApiItemSnapshotVo getSnapshot(Long projectId, ApiVersionVo versionVo) {
+        if (!snapshotEnable || versionVo == null || versionVo.getVersionId() == null
+                || isBlank(versionVo.getCheckSum())) {
+            return null;
+        }
+        Long versionId = versionVo.getVersionId();
+        String checkSum = versionVo.getCheckSum();
+        if (local == null) {
+            return loadSnapshot(projectId, versionId, checkSum);
+        }
+        ApiItemSnapshotVo snapshot = local.getIfPresent(versionId);
+        if (snapshot != null && checkSum.equals(snapshot.getCheckSum())) {
+            return snapshot;
+        }
+        long gen = generation.get();
+        snapshot = loadSnapshot(projectId, versionId, checkSum);
+        if (snapshot != null && gen == generation.get()) {
+            local.put(versionId, snapshot);
+        }
+        return snapshot;
+    }
+
+    private ApiItemSnapshotVo loadSnapshot(Long projectId, Long versionId, String checkSum) {
+        return cacheLoadService.load(
+                "itemsnapshot." + versionId,
+                () -> cachedSnapshot(versionId, checkSum),
+                () -> buildSnapshot(projectId, versionId, checkSum)
+        );
+    }
+
+    private ApiItemSnapshotVo cachedSnapshot(Long versionId, String checkSum) {
+        ApiItemSnapshotVo snapshot = decode(rccCache.getItemSnapshot(versionId));
+        if (snapshot == null || !checkSum.equals(snapshot.getCheckSum())) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private ApiItemSnapshotVo buildSnapshot(Long projectId, Long versionId, String checkSum) {
+        List<ApiItemVo> items = configItemService.getAllByVersionIdInCache(projectId, versionId);
+        if (items == null) {
+            items = new ArrayList<>(0);
+        }
+        ApiItemSnapshotVo snapshot = new ApiItemSnapshotVo();
+        snapshot.setCheckSum(checkSum);
+        snapshot.setStamp(ItemDigestUtils.stamp(items));
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(R.ok(items));
+            if (gzipThreshold > 0 && body.length >= gzipThreshold) {
+                body = gzip(body);
+                snapshot.setGzip(true);
+            }
+            snapshot.setBody(body);
+        } catch (IOException ex) {
+            log.error("build item snapshot for version[{}] fail.", versionId, ex);
+            return null;
+        }
+        rccCache.loadItemSnapshot(versionId, encode(snapshot));
+        return snapshot;
+    }
+
+    static byte[] encode(ApiItemSnapshotVo snapshot) {
+        byte[] checkSum = snapshot.getCheckSum().getBytes(StandardCharsets.UTF_8);
+        byte[] stamp = snapshot.getStamp().getBytes(StandardCharsets.UTF_8);
+        byte[] body = snapshot.getBody();
+        ByteBuffer buffer = ByteBuffer.allocate(6 + checkSum.length + stamp.length + body.length);
+        buffer.put(FORMAT_VERSION);
+        buffer.put(snapshot.isGzip() ? ENCODING_GZIP : ENCODING_NONE);
+        buffer.putShort((short) checkSum.length);
+        buffer.put(checkSum);
+        buffer.putShort((short) stamp.length);
+        buffer.put(stamp);
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    static ApiItemSnapshotVo decode(byte[] bytes) {
+        // 旧格式的快照没有内容戳，视为不存在重新生成
+        if (bytes == null || bytes.length < 6 || bytes[0] != FORMAT_VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        boolean gzip = buffer.get() == ENCODING_GZIP;
+        String checkSum = readString(buffer);
+        String stamp = checkSum == null || buffer.remaining() < 2 ? null : readString(buffer);
+        if (stamp == null) {
+            return null;
+        }
+        ApiItemSnapshotVo snapshot = new ApiItemSnapshotVo();
+        snapshot.setCheckSum(checkSum);
+        snapshot.setStamp(stamp);
+        snapshot.setGzip(gzip);
+        int offset = buffer.position();
+        byte[] body = new byte[bytes.length - offset];
+        System.arraycopy(bytes, offset, body, 0, body.length);
+        snapshot.setBody(body);
+        return snapshot;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
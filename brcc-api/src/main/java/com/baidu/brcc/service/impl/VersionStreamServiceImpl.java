@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static com.baidu.brcc.common.ErrorStatusMsg.STREAM_LIMIT_EXCEEDED_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.STREAM_LIMIT_EXCEEDED_STATUS;
+import static com.baidu.brcc.common.ErrorStatusMsg.WATCH_VERSION_EMPTY_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.WATCH_VERSION_EMPTY_STATUS;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiStreamEventVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionStreamService;
+import com.baidu.brcc.service.VersionWatchService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 事件ID格式为 versionId:checkSum[:stamp],...，记录连接上各版本最近一次推送的checkSum，
+ * 服务端无需保存历史事件，重连时与版本当前的checkSum比对即可补发遗漏的变更。
+ * stamp为最近一次推送增量后客户端配置项的内容戳，作为下次增量的起点，未知时推送全量。
+ */
+@Slf4j
+@Service
+public class VersionStreamServiceImpl implements VersionStreamService {
+
+    static final String EVENT_VERSION = "version";
+    static final String EVENT_ERROR = "error";
+
+    // 连接最长保持时间，单位毫秒，到期后由客户端携带Last-Event-ID重连
+    @Value("${rcc.stream.timeout: 600000}")
+    private long timeout;
+
+    // 心跳间隔，单位毫秒，防止空闲连接被代理或负载均衡断开
+    @Value("${rcc.stream.heartbeat: 15000}")
+    private long heartbeat;
+
+    // 建议客户端断开后的重连等待时间，单位毫秒
+    @Value("${rcc.stream.retry: 3000}")
+    private long retry;
+
+    // 本节点最大推送连接数
+    @Value("${rcc.stream.max-connections: 10000}")
+    private int maxConnections;
+
+    // 发送事件的线程数，变更通知线程只负责入队，不等待客户端写出
+    @Value("${rcc.stream.send-threads: 4}")
+    private int sendThreads;
+
+    // 单个连接最多积压的事件数，超过后关闭连接，由客户端携带Last-Event-ID重连补发
+    @Value("${rcc.stream.max-pending: 16}")
+    private int maxPending;
+
+    @Autowired
+    private VersionService versionService;
+
+    @Autowired
+    private VersionWatchService versionWatchService;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
+    // 版本ID -> 监听该版本的连接
+    private final ConcurrentMap<Long, Set<Stream>> streams = new ConcurrentHashMap<>();
+
+    // 本节点全部连接
+    private final Set<Stream> connected = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolTaskScheduler heartbeatScheduler;
+
+    private ThreadPoolTaskExecutor sendExecutor;
+
+    @PostConstruct
+    public void init() {
+        // 本节点及其他节点的版本变更均经由VersionWatchService.onChange回调
+        versionWatchService.addChangeListener(this::onChange);
+        sendExecutor = new ThreadPoolTaskExecutor();
+        sendExecutor.setThreadNamePrefix("version-stream-send-");
+        sendExecutor.setCorePoolSize(sendThreads);
+        sendExecutor.setMaxPoolSize(sendThreads);
+        // 每个连接同时最多占用一个任务
+        sendExecutor.setQueueCapacity(Math.max(maxConnections, 1));
+        sendExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        sendExecutor.initialize();
+        if (heartbeat > 0) {
+            heartbeatScheduler = new ThreadPoolTaskScheduler();
+            heartbeatScheduler.setThreadNamePrefix("version-stream-heartbeat-");
+            heartbeatScheduler.setPoolSize(1);
+            heartbeatScheduler.initialize();
+            heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdown();
+        }
+        if (sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
+        for (Stream stream : connected) {
+            stream.emitter.complete();
+        }
+    }
+
+    @Override
+    public ResponseEntity<SseEmitter> stream(Long projectId, List<Long> versionIds, String lastEventId,
+            boolean delta) {
+        Map<Long, String> lastCheckSums = new HashMap<>();
+        Map<Long, String> lastStamps = new HashMap<>();
+        parseEventId(lastEventId, lastCheckSums, lastStamps);
+        Map<Long, String> checkSums = new HashMap<>();
+        Map<Long, String> stamps = new HashMap<>();
+        if (!CollectionUtils.isEmpty(versionIds)) {
+            for (Long versionId : versionIds) {
+                if (versionId != null && versionId > 0) {
+                    checkSums.put(versionId, lastCheckSums.get(versionId));
+                    if (lastStamps.containsKey(versionId)) {
+                        stamps.put(versionId, lastStamps.get(versionId));
+                    }
+                }
+            }
+        }
+        if (checkSums.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, R.error(WATCH_VERSION_EMPTY_STATUS, WATCH_VERSION_EMPTY_MSG));
+        }
+        if (connected.size() >= maxConnections) {
+            // 以503拒绝，客户端退避重连或回退到长轮询
+            return error(HttpStatus.SERVICE_UNAVAILABLE,
+                    R.error(STREAM_LIMIT_EXCEEDED_STATUS, STREAM_LIMIT_EXCEEDED_MSG));
+        }
+
+        SseEmitter emitter = newEmitter(timeout);
+        Stream stream = new Stream(projectId, checkSums, stamps, delta, emitter);
+        // 先注册再比对，避免比对与注册之间的变更丢失
+        register(stream);
+        emitter.onCompletion(() -> unregister(stream));
+        emitter.onError(ex -> unregister(stream));
+        // 立即写出响应头，客户端据此确认连接已建立
+        send(stream, SseEmitter.event().reconnectTime(retry));
+
+        for (Long versionId : checkSums.keySet()) {
+            ApiVersionVo current = versionService.getByEnvironmentByIdInCache(versionId);
+            push(stream, current, new HashMap<>());
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @Override
+    public ResponseEntity<SseEmitter> error(HttpStatus status, R<?> r) {
+        SseEmitter emitter = newEmitter(timeout);
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_ERROR).data(r, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException ex) {
+            emitter.completeWithError(ex);
+        }
+        return ResponseEntity.status(status).body(emitter);
+    }
+
+    @Override
+    public int streamingCount() {
+        return connected.size();
+    }
+
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    void onChange(ApiVersionVo versionVo) {
+        Set<Stream> set = streams.get(versionVo.getVersionId());
+        if (set == null) {
+            return;
+        }
+        // 同一起始内容戳的增量只计算一次
+        Map<String, ApiItemDeltaVo> deltas = new HashMap<>();
+        for (Stream stream : set) {
+            push(stream, versionVo, deltas);
+        }
+    }
+
+    void heartbeat() {
+        for (Stream stream : connected) {
+            // 有待发送的事件时无需心跳
+            if (stream.isIdle()) {
+                send(stream, SseEmitter.event().comment(""));
+            }
+        }
+    }
+
+    private void push(Stream stream, ApiVersionVo current, Map<String, ApiItemDeltaVo> deltas) {
+        synchronized (stream) {
+            if (!stream.isChanged(current)) {
+                return;
+            }
+            Long versionId = current.getVersionId();
+            String since = stream.checkSums.put(versionId, current.getCheckSum());
+            ApiStreamEventVo event = new ApiStreamEventVo();
+            event.setVersion(current);
+            // 首次连接的客户端已持有当前配置项，不推送增量
+            ApiItemDeltaVo delta = null;
+            if (stream.delta && !isBlank(since)) {
+                String sinceStamp = stream.stamps.get(versionId);
+                delta = deltas.computeIfAbsent(sinceStamp == null ? "" : sinceStamp,
+                        k -> configItemService.getDeltaByVersionInCache(current, sinceStamp));
+                event.setDelta(delta);
+            }
+            if (delta != null && !isBlank(delta.getStamp())) {
+                stream.stamps.put(versionId, delta.getStamp());
+            } else {
+                // 客户端自行获取配置项，内容未知
+                stream.stamps.remove(versionId);
+            }
+            send(stream, SseEmitter.event()
+                    .id(formatEventId(stream.checkSums, stream.stamps))
+                    .name(EVENT_VERSION)
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    // 事件按连接排队，由发送线程依次写出，同一连接的事件保持顺序
+    private void send(Stream stream, SseEventBuilder event) {
+        boolean backedUp = false;
+        boolean schedule = false;
+        synchronized (stream.pending) {
+            if (stream.pending.size() >= maxPending) {
+                backedUp = true;
+            } else {
+                stream.pending.add(event);
+                schedule = !stream.sending;
+                stream.sending = true;
+            }
+        }
+        if (backedUp) {
+            // 客户端读取过慢，关闭连接，重连时按事件ID补发最新的版本
+            log.warn("version stream backed up, pending {} events, close it", maxPending);
+            close(stream);
+            return;
+        }
+        if (!schedule) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> drain(stream));
+        } catch (RejectedExecutionException ex) {
+            log.warn("version stream send queue is full, close stream");
+            close(stream);
+        }
+    }
+
+    private void drain(Stream stream) {
+        while (true) {
+            SseEventBuilder event;
+            synchronized (stream.pending) {
+                event = stream.pending.poll();
+                if (event == null) {
+                    stream.sending = false;
+                    return;
+                }
+            }
+            try {
+                stream.emitter.send(event);
+            } catch (IOException | IllegalStateException ex) {
+                // 客户端已断开，容器会结束该异步请求
+                if (log.isDebugEnabled()) {
+                    log.debug("send version stream event fail, {}", ex.getMessage());
+                }
+                unregister(stream);
+                synchronized (stream.pending) {
+                    stream.pending.clear();
+                    stream.sending = false;
+                }
+                return;
+            }
+        }
+    }
+
+    private void close(Stream stream) {
+        unregister(stream);
+        synchronized (stream.pending) {
+            stream.pending.clear();
+        }
+        stream.emitter.complete();
+    }
+
+    private void register(Stream stream) {
+        for (Long versionId : stream.checkSums.keySet()) {
+            streams.compute(versionId, (k, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(stream);
+                return set;
+            });
+        }
+        connected.add(stream);
+    }
+
+    private void unregister(Stream stream) {
+        if (!connected.remove(stream)) {
+            return;
+        }
+        for (Long versionId : stream.checkSums.keySet()) {
+            streams.computeIfPresent(versionId, (k, set) -> {
+                set.remove(stream);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    static void parseEventId(String eventId, Map<Long, String> checkSums, Map<Long, String> stamps) {
+        if (isBlank(eventId)) {
+            return;
+        }
+        for (String part : eventId.split(",")) {
+            String[] fields = part.split(":", 3);
+            if (fields.length < 2 || isBlank(fields[0]) || isBlank(fields[1])) {
+                continue;
+            }
+            Long versionId;
+            try {
+                versionId = Long.valueOf(fields[0].trim());
+            } catch (NumberFormatException ex) {
+                // 忽略无法识别的部分，该版本按首次连接处理
+                continue;
+            }
+            checkSums.put(versionId, fields[1].trim());
+            if (fields.length == 3 && !isBlank(fields[2])) {
+                stamps.put(versionId, fields[2].trim());
+            }
+        }
+    }
+
+    static String formatEventId(Map<Long, String> checkSums, Map<Long, String> stamps) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, String> entry : new TreeMap<>(checkSums).entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey()).append(':').append(entry.getValue());
+            String stamp = stamps.get(entry.getKey());
+            if (stamp != null) {
+                sb.append(':').append(stamp);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Stream {
+        private final Long projectId;
+        private final Map<Long, String> checkSums;
+        // 客户端各版本配置项的内容戳，未知时为空
+        private final Map<Long, String> stamps;
+        private final boolean delta;
+        private final SseEmitter emitter;
+        // 待发送的事件，sending表示已有发送任务在处理，均由pending加锁保护
+        private final Queue<SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean sending;
+
+        Stream(Long projectId, Map<Long, String> checkSums, Map<Long, String> stamps, boolean delta,
+               SseEmitter emitter) {
+            this.projectId = projectId;
+            this.checkSums = checkSums;
+            this.stamps = stamps;
+            this.delta = delta;
+            this.emitter = emitter;
+        }
+
+        boolean isIdle() {
+            synchronized (pending) {
+                return !sending;
+            }
+        }
+
+        // 只推送本工程下的版本，已删除的版本不推送
+        boolean isChanged(ApiVersionVo current) {
+            if (current == null || !Objects.equals(projectId, current.getProjectId())
+                    || !checkSums.containsKey(current.getVersionId())) {
+                return false;
+            }
+            return !Objects.equals(checkSums.get(current.getVersionId()), current.getCheckSum());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * /api/item 响应压缩基准：对比不同版本规模下响应体序列化及gzip压缩的耗时与传输字节数
+ * 运行方式：执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemCompressionBenchmark {
+
+    // 版本下配置项个数
+    @Param({"100", "1000", "5000"})
+    private int itemCount;
+
+    // 大值（json、证书等）所占比例，百分比
+    @Param({"10", "50"})
+    private int largePercent;
+
+    // 与服务端spring.jackson配置保持一致
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private R<List<ApiItemVo>> response;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(itemCount * 31L + largePercent);
+        List<ApiItemVo> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ApiItemVo item = new ApiItemVo();
+            item.setKey("app.module" + (i % 20) + ".config.key" + i);
+            if (random.nextInt(100) < largePercent) {
+                item.setValue(largeValue(random));
+            } else {
+                item.setValue("value-" + random.nextInt(100000));
+            }
+            items.add(item);
+        }
+        response = R.ok(items);
+
+        byte[] plain = plain();
+        byte[] gzip = gzip();
+        System.out.printf("%nitemCount=%d largePercent=%d plain=%d bytes gzip=%d bytes ratio=%.1f%%%n",
+                itemCount, largePercent, plain.length, gzip.length, gzip.length * 100.0 / plain.length);
+    }
+
+    @Benchmark
+    public byte[] plain() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] gzip() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            objectMapper.writeValue(gzip, response);
+        }
+        return bos.toByteArray();
+    }
+
+    // 模拟json配置块，约1KB
+    private String largeValue(Random random) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 24; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"field").append(i).append("\":\"")
+                    .append(Long.toHexString(random.nextLong()))
+                    .append("\"");
+        }
+        return sb.append('}').toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ItemCompressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
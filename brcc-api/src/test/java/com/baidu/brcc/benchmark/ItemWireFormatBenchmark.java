@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.baidu.brcc.config.BinaryHttpMessageConverter;
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * /api/item 响应编码基准：对比json与二进制格式的服务端编码耗时及响应大小
+ * 运行方式：执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemWireFormatBenchmark {
+
+    // 版本下配置项个数
+    @Param({"100", "1000", "5000"})
+    private int itemCount;
+
+    // 与服务端spring.jackson配置保持一致
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final BinaryHttpMessageConverter converter = new BinaryHttpMessageConverter();
+
+    private final Type type = ResolvableType.forClassWithGenerics(R.class,
+            ResolvableType.forClassWithGenerics(List.class, ApiItemVo.class)).getType();
+
+    private R<List<ApiItemVo>> response;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(itemCount);
+        List<ApiItemVo> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ApiItemVo item = new ApiItemVo();
+            item.setKey("app.module" + (i % 20) + ".config.key" + i);
+            item.setValue(random.nextInt(10) == 0 ? largeValue(random) : "value-" + random.nextInt(100000));
+            items.add(item);
+        }
+        response = R.ok(items);
+        System.out.printf("%nitemCount=%d json=%d bytes binary=%d bytes%n",
+                itemCount, json().length, binary().length);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] binary() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(response, type, BinaryHttpMessageConverter.APPLICATION_BRCC_BINARY, message);
+        return message.getBodyAsBytes();
+    }
+
+    // 模拟json配置块，约1KB
+    private String largeValue(Random random) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 24; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"field").append(i).append("\":\"")
+                    .append(Long.toHexString(random.nextLong()))
+                    .append("\"");
+        }
+        return sb.append('}').toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ItemWireFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -20,8 +20,11 @@ package com.baidu.brcc.controller;
 
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,9 +37,17 @@ import com.baidu.brcc.domain.Project;
 import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.vo.ApiAuthReqVo;
 import com.baidu.brcc.domain.vo.ApiAuthVo;
+import com.baidu.brcc.domain.vo.ApiBootstrapReqVo;
+import com.baidu.brcc.domain.vo.ApiBootstrapVo;
+import com.baidu.brcc.domain.vo.ApiEnvironmentVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.EnvironmentService;
 import com.baidu.brcc.service.ProjectService;
 import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
 
 public class ApiAuthControllerTest {
     @Mock
@@ -45,6 +56,12 @@ public class ApiAuthControllerTest {
     RccCache rccCache;
     @Mock
     ProjectService projectService;
+    @Mock
+    EnvironmentService environmentService;
+    @Mock
+    VersionService versionService;
+    @Mock
+    ConfigItemService configItemService;
     @InjectMocks
     ApiAuthController apiAuthController;
 
@@ -70,4 +87,71 @@ public class ApiAuthControllerTest {
         R<ApiAuthVo> result = apiAuthController.apiAuth(apiAuthReqVo);
         Assert.assertEquals(0, result.getStatus());
     }
+
+    @Test
+    public void testBootstrap() throws Exception {
+        mockProject();
+        ApiEnvironmentVo environmentVo = new ApiEnvironmentVo();
+        environmentVo.setEnvironmentId(2L);
+        when(environmentService.getByProjectIdAndNameInCache(1L, "test")).thenReturn(environmentVo);
+        ApiVersionVo versionVo = new ApiVersionVo();
+        versionVo.setVersionId(3L);
+        versionVo.setCheckSum("checkSum");
+        when(versionService.getByEnvironmentAndNameInCache(1L, 2L, "1.0.0")).thenReturn(versionVo);
+        ApiItemVo itemVo = new ApiItemVo();
+        itemVo.setKey("key");
+        itemVo.setValue("value");
+        when(configItemService.getAllByVersionIdInCache(1L, 3L)).thenReturn(Arrays.asList(itemVo));
+
+        R<ApiBootstrapVo> result = apiAuthController.bootstrap(bootstrapReq("test", "1.0.0"));
+        Assert.assertEquals(0, result.getStatus());
+        Assert.assertEquals("token", result.getData().getAuth().getToken());
+        Assert.assertEquals(Long.valueOf(2L), result.getData().getEnvironmentId());
+        Assert.assertEquals("checkSum", result.getData().getVersion().getCheckSum());
+        Assert.assertEquals(Arrays.asList(itemVo), result.getData().getItems());
+    }
+
+    @Test
+    public void testBootstrapVersionNotExists() throws Exception {
+        mockProject();
+        ApiEnvironmentVo environmentVo = new ApiEnvironmentVo();
+        environmentVo.setEnvironmentId(2L);
+        when(environmentService.getByProjectIdAndNameInCache(1L, "test")).thenReturn(environmentVo);
+
+        R<ApiBootstrapVo> result = apiAuthController.bootstrap(bootstrapReq("test", "2.0.0"));
+        Assert.assertNotEquals(0, result.getStatus());
+        Assert.assertNull(result.getData());
+    }
+
+    @Test
+    public void testBootstrapWrongPassword() throws Exception {
+        mockProject();
+        ApiBootstrapReqVo reqVo = bootstrapReq("test", "1.0.0");
+        reqVo.setApiPassword("wrong");
+
+        R<ApiBootstrapVo> result = apiAuthController.bootstrap(reqVo);
+        Assert.assertNotEquals(0, result.getStatus());
+        Assert.assertNull(result.getData());
+    }
+
+    private void mockProject() {
+        ApiToken apiToken = new ApiToken();
+        apiToken.setProjectId(1L);
+        when(apiTokenCacheService.getApiToken(eq("token"))).thenReturn(apiToken);
+        Project project = new Project();
+        project.setId(1L);
+        project.setName("project");
+        project.setApiToken("token");
+        project.setApiPassword("5f4dcc3b5aa765d61d8327deb882cf99");
+        when(rccCache.getProject(anyString())).thenReturn(project);
+    }
+
+    private ApiBootstrapReqVo bootstrapReq(String environmentName, String versionName) {
+        ApiBootstrapReqVo reqVo = new ApiBootstrapReqVo();
+        reqVo.setProjectName("project");
+        reqVo.setApiPassword("password");
+        reqVo.setEnvironmentName(environmentName);
+        reqVo.setVersionName(versionName);
+        return reqVo;
+    }
 }
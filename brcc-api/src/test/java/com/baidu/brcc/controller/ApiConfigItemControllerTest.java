@@ -21,10 +21,20 @@ package com.baidu.brcc.controller;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -32,15 +42,34 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import com.baidu.brcc.config.BinaryHttpMessageConverter;
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.Project;
 import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.vo.ApiBatchItemReqVo;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiItemSnapshotVo;
 import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
 import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.ItemSnapshotService;
 import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.impl.ConfigItemServiceImpl;
+import com.baidu.brcc.utils.ItemDigestUtils;
 
 public class ApiConfigItemControllerTest {
     @Mock
@@ -49,6 +78,10 @@ public class ApiConfigItemControllerTest {
     ConfigItemService configItemService;
     @Mock
     RccCache rccCache;
+    @Mock
+    VersionService versionService;
+    @Mock
+    ItemSnapshotService itemSnapshotService;
     @InjectMocks
     ApiConfigItemController apiConfigItemController;
 
@@ -79,10 +112,146 @@ public class ApiConfigItemControllerTest {
         when(configItemService.getAllByVersionIdInCache(any(), any()))
                 .thenReturn(Arrays.<ApiItemVo>asList(new ApiItemVo()));
 
-        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", Long.valueOf(1));
+        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", Long.valueOf(1),
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()));
         Assert.assertEquals(0, result.getStatus());
     }
 
+    @Test
+    public void testGetAllItemNotModified() throws Exception {
+        ApiToken apiToken = new ApiToken();
+        apiToken.setProjectId(1L);
+        when(apiTokenCacheService.getApiToken(anyString())).thenReturn(apiToken);
+        ApiVersionVo versionVo = new ApiVersionVo();
+        versionVo.setProjectId(1L);
+        versionVo.setVersionId(1L);
+        versionVo.setCheckSum("checksum");
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo);
+        when(itemSnapshotService.getSnapshot(eq(1L), any())).thenReturn(snapshot(false, "{\"status\":0}"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader("If-None-Match", "\"stamp-json\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(request, response));
+        Assert.assertNull(result);
+        Assert.assertEquals(304, response.getStatus());
+        verify(configItemService, never()).getAllByVersionIdInCache(any(), any());
+    }
+
+    @Test
+    public void testGetAllItemModifiedWithoutPush() throws Exception {
+        ApiToken apiToken = new ApiToken();
+        apiToken.setProjectId(1L);
+        when(apiTokenCacheService.getApiToken(anyString())).thenReturn(apiToken);
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo("checksum"));
+        List<ApiItemVo> items = Arrays.asList(item("a", "1"));
+        when(configItemService.getAllByVersionIdInCache(any(), any())).thenReturn(items);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader("If-None-Match", "\"" + ItemDigestUtils.stamp(items) + "-json\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Assert.assertNull(apiConfigItemController.getAllItem("token", 1L, new ServletWebRequest(request, response)));
+        Assert.assertEquals(304, response.getStatus());
+
+        // 配置项修改后checkSum不变，ETag随内容变化
+        when(configItemService.getAllByVersionIdInCache(any(), any())).thenReturn(Arrays.asList(item("a", "2")));
+        response = new MockHttpServletResponse();
+        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(request, response));
+        Assert.assertEquals("2", result.getData().get(0).getValue());
+        Assert.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void testGetAllItemSnapshot() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo("checksum"));
+        when(itemSnapshotService.getSnapshot(eq(1L), any())).thenReturn(snapshot(false, "{\"status\":0}"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/api/item"), response));
+
+        Assert.assertNull(result);
+        Assert.assertEquals(MediaType.APPLICATION_JSON_VALUE, response.getContentType());
+        Assert.assertEquals("{\"status\":0}", response.getContentAsString());
+        Assert.assertEquals("\"stamp-json\"", response.getHeader("ETag"));
+        Assert.assertTrue(response.getHeaders("Vary").contains("Accept"));
+        verify(configItemService, never()).getAllByVersionIdInCache(any(), any());
+    }
+
+    @Test
+    public void testGetAllItemSnapshotGzip() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo("checksum"));
+        ApiItemSnapshotVo snapshot = snapshot(true, "{\"status\":0}");
+        when(itemSnapshotService.getSnapshot(eq(1L), any())).thenReturn(snapshot);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        apiConfigItemController.getAllItem("token", 1L, new ServletWebRequest(request, response));
+
+        Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        Assert.assertArrayEquals(snapshot.getBody(), response.getContentAsByteArray());
+
+        // 客户端不支持gzip时解压后返回
+        response = new MockHttpServletResponse();
+        apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/api/item"), response));
+
+        Assert.assertNull(response.getHeader("Content-Encoding"));
+        Assert.assertEquals("{\"status\":0}", response.getContentAsString());
+    }
+
+    @Test
+    public void testGetAllItemSnapshotSkipped() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo("checksum"));
+        when(configItemService.getAllByVersionIdInCache(any(), any()))
+                .thenReturn(Arrays.<ApiItemVo>asList(new ApiItemVo()));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader("Accept", "application/x-brcc-binary, application/json;q=0.5");
+
+        // 协商二进制格式时不使用json快照
+        R<List<ApiItemVo>> result = apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+        Assert.assertEquals(1, result.getData().size());
+        verify(itemSnapshotService, never()).getSnapshot(any(), any());
+
+        // 快照不可用时按配置项返回
+        result = apiConfigItemController.getAllItem("token", 1L,
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()));
+        Assert.assertEquals(1, result.getData().size());
+    }
+
+    @Test
+    public void testGetAllItemBinary() throws Exception {
+        ApiItemVo item = new ApiItemVo();
+        item.setKey("key");
+        item.setValue("value");
+        when(configItemService.getAllByVersionIdInCache(any(), any())).thenReturn(Arrays.asList(item));
+        when(configItemService.getByVersionIdAndName(anyLong(), anyLong(), anyString())).thenReturn(item);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(apiConfigItemController)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(), new BinaryHttpMessageConverter())
+                .build();
+        String accept = "application/x-brcc-binary, application/json;q=0.5";
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/item")
+                .param("token", "token").param("versionId", "1").header("Accept", accept)).andReturn();
+        Assert.assertEquals(BinaryHttpMessageConverter.APPLICATION_BRCC_BINARY.toString(),
+                result.getResponse().getContentType());
+
+        // 不支持二进制的接口回退为json
+        result = mockMvc.perform(MockMvcRequestBuilders.get("/api/item/key")
+                .param("token", "token").param("versionId", "1").header("Accept", accept)).andReturn();
+        Assert.assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(
+                MediaType.valueOf(result.getResponse().getContentType())));
+
+        result = mockMvc.perform(MockMvcRequestBuilders.get("/api/item")
+                .param("token", "token").param("versionId", "1")).andReturn();
+        Assert.assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(
+                MediaType.valueOf(result.getResponse().getContentType())));
+    }
+
     @Test
     public void testGetBatchItem() throws Exception {
         when(apiTokenCacheService.getApiToken(anyString())).thenReturn(new ApiToken());
@@ -96,4 +265,120 @@ public class ApiConfigItemControllerTest {
         R<List<ApiItemVo>> result = apiConfigItemController.getBatchItem("token", apiBatchItemReqVo);
         Assert.assertEquals(0, result.getStatus());
     }
+
+    @Test
+    public void testGetItemDelta() throws Exception {
+        ConfigItemServiceImpl itemService = new ConfigItemServiceImpl();
+        ReflectionTestUtils.setField(itemService, "rccCache", rccCache);
+        ReflectionTestUtils.setField(apiConfigItemController, "configItemService", itemService);
+        ApiToken apiToken = new ApiToken();
+        apiToken.setProjectId(1L);
+        when(apiTokenCacheService.getApiToken(anyString())).thenReturn(apiToken);
+        ApiVersionVo versionVo = new ApiVersionVo();
+        versionVo.setProjectId(1L);
+        versionVo.setVersionId(1L);
+        versionVo.setCheckSum("new");
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo);
+        List<ApiItemVo> items = Arrays.asList(item("a", "1"), item("b", "2"), item("c", "3"));
+        String stamp = ItemDigestUtils.stamp(items);
+        when(rccCache.getItems(1L)).thenReturn(items);
+        Map<String, String> since = new HashMap<>();
+        since.put("a", DigestUtils.md5DigestAsHex("1".getBytes()));
+        since.put("b", DigestUtils.md5DigestAsHex("0".getBytes()));
+        since.put("d", DigestUtils.md5DigestAsHex("4".getBytes()));
+        when(rccCache.getItemDigest(1L, "old")).thenReturn(since);
+        when(rccCache.getItemDigest(1L, stamp)).thenReturn(null);
+        when(rccCache.getItemDigest(1L, "unknown")).thenReturn(null);
+
+        R<ApiItemDeltaVo> result = apiConfigItemController.getItemDelta("token", 1L, "old");
+        Assert.assertEquals(0, result.getStatus());
+        ApiItemDeltaVo delta = result.getData();
+        Assert.assertFalse(delta.isFull());
+        Assert.assertEquals("new", delta.getCheckSum());
+        Assert.assertEquals(stamp, delta.getStamp());
+        Assert.assertEquals("old", delta.getSinceStamp());
+        Assert.assertEquals(2, delta.getItems().size());
+        Assert.assertEquals("b", delta.getItems().get(0).getKey());
+        Assert.assertEquals("c", delta.getItems().get(1).getKey());
+        Assert.assertEquals(Arrays.asList("d"), delta.getDeleted());
+        verify(rccCache).loadItemDigest(eq(1L), eq(stamp), any());
+
+        // 摘要不存在时返回全量
+        result = apiConfigItemController.getItemDelta("token", 1L, "unknown");
+        Assert.assertTrue(result.getData().isFull());
+        Assert.assertEquals(3, result.getData().getItems().size());
+
+        // 未携带内容戳时无法确认客户端持有的内容，返回全量
+        result = apiConfigItemController.getItemDelta("token", 1L, null);
+        Assert.assertTrue(result.getData().isFull());
+
+        // 其他工程的版本
+        apiToken.setProjectId(2L);
+        result = apiConfigItemController.getItemDelta("token", 1L, "old");
+        Assert.assertNotEquals(0, result.getStatus());
+    }
+
+    @Test
+    public void testGetItemDeltaAfterEditWithoutPush() throws Exception {
+        ConfigItemServiceImpl itemService = new ConfigItemServiceImpl();
+        ReflectionTestUtils.setField(itemService, "rccCache", rccCache);
+        ReflectionTestUtils.setField(apiConfigItemController, "configItemService", itemService);
+        ApiToken apiToken = new ApiToken();
+        apiToken.setProjectId(1L);
+        when(apiTokenCacheService.getApiToken(anyString())).thenReturn(apiToken);
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(versionVo("c1"));
+        Map<String, Map<String, String>> digests = new HashMap<>();
+        when(rccCache.getItemDigest(eq(1L), anyString()))
+                .thenAnswer(invocation -> digests.get(invocation.getArgument(1)));
+        doAnswer(invocation -> digests.put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(rccCache).loadItemDigest(eq(1L), anyString(), any());
+
+        // 推送后客户端拿到a=1
+        when(rccCache.getItems(1L)).thenReturn(Arrays.asList(item("a", "1")));
+        String pushed = apiConfigItemController.getItemDelta("token", 1L, null).getData().getStamp();
+        // 未推送直接修改，客户端全量拉取到a=2、b=1
+        when(rccCache.getItems(1L)).thenReturn(Arrays.asList(item("a", "2"), item("b", "1")));
+        ApiItemDeltaVo edited = apiConfigItemController.getItemDelta("token", 1L, pushed).getData();
+        Assert.assertNotEquals(pushed, edited.getStamp());
+        // 改回推送时的内容，checkSum不变
+        when(rccCache.getItems(1L)).thenReturn(Arrays.asList(item("a", "1")));
+
+        ApiItemDeltaVo delta = apiConfigItemController.getItemDelta("token", 1L, edited.getStamp()).getData();
+        Assert.assertFalse(delta.isFull());
+        Assert.assertEquals(pushed, delta.getStamp());
+        Assert.assertEquals("1", delta.getItems().get(0).getValue());
+        Assert.assertEquals(Arrays.asList("b"), delta.getDeleted());
+    }
+
+    private ApiItemVo item(String key, String value) {
+        ApiItemVo itemVo = new ApiItemVo();
+        itemVo.setKey(key);
+        itemVo.setValue(value);
+        return itemVo;
+    }
+
+    private ApiVersionVo versionVo(String checkSum) {
+        ApiVersionVo versionVo = new ApiVersionVo();
+        versionVo.setProjectId(1L);
+        versionVo.setVersionId(1L);
+        versionVo.setCheckSum(checkSum);
+        return versionVo;
+    }
+
+    private ApiItemSnapshotVo snapshot(boolean gzip, String body) throws IOException {
+        ApiItemSnapshotVo snapshot = new ApiItemSnapshotVo();
+        snapshot.setCheckSum("checksum");
+        snapshot.setStamp("stamp");
+        snapshot.setGzip(gzip);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (gzip) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(bytes);
+            }
+            bytes = out.toByteArray();
+        }
+        snapshot.setBody(bytes);
+        return snapshot;
+    }
 }
@@ -27,14 +27,25 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.Project;
 import com.baidu.brcc.domain.base.R;
 import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.domain.vo.ApiWatchReqVo;
 import com.baidu.brcc.service.ApiTokenCacheService;
 import com.baidu.brcc.service.RccCache;
 import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionStreamService;
+import com.baidu.brcc.service.impl.VersionWatchServiceImpl;
 
 import static org.mockito.Mockito.*;
 
@@ -45,9 +56,13 @@ public class ApiVersionControllerTest {
     VersionService versionService;
     @Mock
     RccCache rccCache;
+    @Mock
+    VersionStreamService versionStreamService;
     @InjectMocks
     ApiVersionController apiVersionController;
 
+    VersionWatchServiceImpl versionWatchService;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -58,6 +73,12 @@ public class ApiVersionControllerTest {
         project.setId(1L);
         project.setApiPassword("5f4dcc3b5aa765d61d8327deb882cf99");
         when(rccCache.getProject(anyString())).thenReturn(project);
+
+        versionWatchService = new VersionWatchServiceImpl();
+        ReflectionTestUtils.setField(versionWatchService, "versionService", versionService);
+        ReflectionTestUtils.setField(versionWatchService, "rccCache", rccCache);
+        ReflectionTestUtils.setField(versionWatchService, "maxTimeout", 60000L);
+        ReflectionTestUtils.setField(apiVersionController, "versionWatchService", versionWatchService);
     }
 
     @Test
@@ -66,7 +87,8 @@ public class ApiVersionControllerTest {
         when(versionService.getByEnvironmentAndNameInCache(any(), any(), anyString()))
                 .thenReturn(new ApiVersionVo());
 
-        R<ApiVersionVo> result = apiVersionController.getVersion("token", Long.valueOf(1), "name");
+        R<ApiVersionVo> result = apiVersionController.getVersion("token", Long.valueOf(1), "name",
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()));
         Assert.assertEquals(0, result.getStatus());
     }
 
@@ -76,7 +98,147 @@ public class ApiVersionControllerTest {
         when(versionService.getAllByEnvironmentIdInCache(anyLong(), anyLong()))
                 .thenReturn(Arrays.<ApiVersionVo>asList(new ApiVersionVo()));
 
-        R<List<ApiVersionVo>> result = apiVersionController.getAllVersion("token", Long.valueOf(1));
+        R<List<ApiVersionVo>> result = apiVersionController.getAllVersion("token", Long.valueOf(1),
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()));
         Assert.assertEquals(0, result.getStatus());
     }
+
+    @Test
+    public void testGetAllVersionETagPerRepresentation() throws Exception {
+        when(versionService.getAllByEnvironmentIdInCache(anyLong(), anyLong()))
+                .thenReturn(Arrays.asList(version(1L, "checksum")));
+        MockHttpServletResponse json = new MockHttpServletResponse();
+        apiVersionController.getAllVersion("token", 1L,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/api/version"), json));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/version");
+        request.addHeader("Accept", "application/x-brcc-binary");
+        MockHttpServletResponse binary = new MockHttpServletResponse();
+        apiVersionController.getAllVersion("token", 1L, new ServletWebRequest(request, binary));
+
+        Assert.assertTrue(json.getHeaders("Vary").contains("Accept"));
+        Assert.assertTrue(binary.getHeaders("Vary").contains("Accept"));
+        Assert.assertNotEquals(json.getHeader("ETag"), binary.getHeader("ETag"));
+
+        // json的ETag不能命中二进制格式
+        request.addHeader("If-None-Match", json.getHeader("ETag"));
+        binary = new MockHttpServletResponse();
+        R<List<ApiVersionVo>> result = apiVersionController.getAllVersion("token", 1L,
+                new ServletWebRequest(request, binary));
+        Assert.assertEquals(0, result.getStatus());
+        Assert.assertEquals(200, binary.getStatus());
+    }
+
+    @Test
+    public void testGetVersionNotModified() throws Exception {
+        when(versionService.getByEnvironmentAndNameInCache(any(), any(), anyString()))
+                .thenReturn(version(1L, "checksum"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/version/name");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        R<ApiVersionVo> result = apiVersionController.getVersion("token", 1L, "name",
+                new ServletWebRequest(request, response));
+        Assert.assertEquals(0, result.getStatus());
+        String etag = response.getHeader("ETag");
+        Assert.assertNotNull(etag);
+
+        request = new MockHttpServletRequest("GET", "/api/version/name");
+        request.addHeader("If-None-Match", etag);
+        response = new MockHttpServletResponse();
+        result = apiVersionController.getVersion("token", 1L, "name", new ServletWebRequest(request, response));
+        Assert.assertNull(result);
+        Assert.assertEquals(304, response.getStatus());
+
+        // 改名不改变checkSum
+        ApiVersionVo renamed = version(1L, "checksum");
+        renamed.setVersionName("renamed");
+        when(versionService.getByEnvironmentAndNameInCache(any(), any(), anyString())).thenReturn(renamed);
+        response = new MockHttpServletResponse();
+        result = apiVersionController.getVersion("token", 1L, "name", new ServletWebRequest(request, response));
+        Assert.assertEquals("renamed", result.getData().getVersionName());
+    }
+
+    @Test
+    public void testWatchReturnsChangedImmediately() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "new"));
+
+        DeferredResult<R<List<ApiVersionVo>>> result = apiVersionController.watch("token", watchReq(1L, "old"));
+
+        Assert.assertTrue(result.hasResult());
+        R<List<ApiVersionVo>> r = (R<List<ApiVersionVo>>) result.getResult();
+        Assert.assertEquals("new", r.getData().get(0).getCheckSum());
+    }
+
+    @Test
+    public void testWatchWaitsUntilChange() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "old"));
+
+        DeferredResult<R<List<ApiVersionVo>>> result = apiVersionController.watch("token", watchReq(1L, "old"));
+        Assert.assertFalse(result.hasResult());
+        Assert.assertEquals(1, versionWatchService.watchingCount());
+
+        // 其他版本或checkSum未变化不唤醒
+        versionWatchService.onChange(version(2L, "new"));
+        versionWatchService.onChange(version(1L, "old"));
+        Assert.assertFalse(result.hasResult());
+
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "new"));
+        versionWatchService.notifyChange(1L);
+        Assert.assertTrue(result.hasResult());
+        verify(rccCache).publishVersionChange(any());
+    }
+
+    @Test
+    public void testWatchIgnoresOtherProject() throws Exception {
+        ApiVersionVo other = version(1L, "new");
+        other.setProjectId(2L);
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(other);
+
+        DeferredResult<R<List<ApiVersionVo>>> result = apiVersionController.watch("token", watchReq(1L, "old"));
+        versionWatchService.onChange(other);
+
+        Assert.assertFalse(result.hasResult());
+    }
+
+    @Test
+    public void testWatchParamError() throws Exception {
+        DeferredResult<R<List<ApiVersionVo>>> result = apiVersionController.watch("", watchReq(1L, "old"));
+        Assert.assertNotEquals(0, ((R) result.getResult()).getStatus());
+        result = apiVersionController.watch("token", new ApiWatchReqVo());
+        Assert.assertNotEquals(0, ((R) result.getResult()).getStatus());
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        ResponseEntity<SseEmitter> emitter = ResponseEntity.ok(new SseEmitter());
+        when(versionStreamService.stream(1L, Arrays.asList(1L, 2L), "1:a", true)).thenReturn(emitter);
+
+        Assert.assertSame(emitter, apiVersionController.stream("token", Arrays.asList(1L, 2L), true, "1:a"));
+    }
+
+    @Test
+    public void testStreamParamError() throws Exception {
+        apiVersionController.stream("", Arrays.asList(1L), false, null);
+        apiVersionController.stream("token", null, false, null);
+        when(apiTokenCacheService.getApiToken("none")).thenReturn(null);
+        apiVersionController.stream("none", Arrays.asList(1L), false, null);
+
+        verify(versionStreamService, times(2)).error(eq(HttpStatus.BAD_REQUEST), any());
+        verify(versionStreamService, times(1)).error(eq(HttpStatus.UNAUTHORIZED), any());
+        verify(versionStreamService, never()).stream(any(), any(), any(), anyBoolean());
+    }
+
+    private ApiWatchReqVo watchReq(Long versionId, String checkSum) {
+        ApiWatchReqVo reqVo = new ApiWatchReqVo();
+        reqVo.setVersions(Arrays.asList(version(versionId, checkSum)));
+        reqVo.setTimeout(1000L);
+        return reqVo;
+    }
+
+    private ApiVersionVo version(Long versionId, String checkSum) {
+        ApiVersionVo vo = new ApiVersionVo();
+        vo.setProjectId(1L);
+        vo.setVersionId(versionId);
+        vo.setCheckSum(checkSum);
+        return vo;
+    }
 }
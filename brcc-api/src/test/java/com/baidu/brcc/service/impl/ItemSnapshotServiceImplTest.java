@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import com.baidu.brcc.domain.vo.ApiItemSnapshotVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.CacheLoadService;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.utils.ItemDigestUtils;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ItemSnapshotServiceImplTest {
+    @Mock
+    RccCache rccCache;
+    @Mock
+    ConfigItemService configItemService;
+    @Mock
+    CacheLoadService cacheLoadService;
+    @InjectMocks
+    ItemSnapshotServiceImpl itemSnapshotService;
+
+    ApiVersionVo versionVo = null;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(itemSnapshotService, "snapshotEnable", true);
+        ReflectionTestUtils.setField(itemSnapshotService, "gzipThreshold", 2048);
+        ReflectionTestUtils.setField(itemSnapshotService, "objectMapper",
+                new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL));
+        when(cacheLoadService.load(anyString(), any(), any())).thenAnswer(invocation -> {
+            Supplier<?> cached = invocation.getArgument(1);
+            Object value = cached.get();
+            return value != null ? value : ((Supplier<?>) invocation.getArgument(2)).get();
+        });
+
+        versionVo = new ApiVersionVo();
+        versionVo.setProjectId(1L);
+        versionVo.setVersionId(1L);
+        versionVo.setCheckSum("checksum");
+    }
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        ApiItemSnapshotVo snapshot = new ApiItemSnapshotVo();
+        snapshot.setCheckSum("checksum");
+        snapshot.setStamp("stamp");
+        snapshot.setGzip(true);
+        snapshot.setBody("body".getBytes());
+
+        ApiItemSnapshotVo result = ItemSnapshotServiceImpl.decode(ItemSnapshotServiceImpl.encode(snapshot));
+
+        Assert.assertEquals("checksum", result.getCheckSum());
+        Assert.assertEquals("stamp", result.getStamp());
+        Assert.assertTrue(result.isGzip());
+        Assert.assertArrayEquals("body".getBytes(), result.getBody());
+        Assert.assertNull(ItemSnapshotServiceImpl.decode(null));
+        Assert.assertNull(ItemSnapshotServiceImpl.decode(new byte[] {3, 0, 0, 0, 0, 0}));
+        // 没有内容戳的旧格式
+        Assert.assertNull(ItemSnapshotServiceImpl.decode(new byte[] {1, 0, 0, 1, 'c', 'b', 'o', 'd', 'y'}));
+    }
+
+    @Test
+    public void testBuildSnapshot() throws Exception {
+        ApiItemVo item = new ApiItemVo();
+        item.setKey("key");
+        item.setValue("value");
+        List<ApiItemVo> items = new ArrayList<>();
+        items.add(item);
+        when(configItemService.getAllByVersionIdInCache(1L, 1L)).thenReturn(items);
+
+        ApiItemSnapshotVo snapshot = itemSnapshotService.getSnapshot(1L, versionVo);
+
+        Assert.assertFalse(snapshot.isGzip());
+        Assert.assertEquals("{\"status\":0,\"msg\":\"success\",\"data\":[{\"key\":\"key\",\"value\":\"value\"}]}",
+                new String(snapshot.getBody()));
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(rccCache).loadItemSnapshot(eq(1L), captor.capture());
+        Assert.assertEquals("checksum", ItemSnapshotServiceImpl.decode(captor.getValue()).getCheckSum());
+        Assert.assertEquals(ItemDigestUtils.stamp(items), snapshot.getStamp());
+    }
+
+    @Test
+    public void testBuildGzipSnapshot() throws Exception {
+        ReflectionTestUtils.setField(itemSnapshotService, "gzipThreshold", 16);
+        when(configItemService.getAllByVersionIdInCache(1L, 1L)).thenReturn(null);
+
+        ApiItemSnapshotVo snapshot = itemSnapshotService.getSnapshot(1L, versionVo);
+
+        Assert.assertTrue(snapshot.isGzip());
+        byte[] body = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(snapshot.getBody())));
+        Assert.assertEquals("{\"status\":0,\"msg\":\"success\",\"data\":[]}", new String(body));
+    }
+
+    @Test
+    public void testCachedSnapshot() throws Exception {
+        ApiItemSnapshotVo cached = new ApiItemSnapshotVo();
+        cached.setCheckSum("checksum");
+        cached.setStamp("stamp");
+        cached.setBody("cached".getBytes());
+        when(rccCache.getItemSnapshot(1L)).thenReturn(ItemSnapshotServiceImpl.encode(cached));
+
+        Assert.assertArrayEquals("cached".getBytes(), itemSnapshotService.getSnapshot(1L, versionVo).getBody());
+        verify(configItemService, never()).getAllByVersionIdInCache(any(), any());
+
+        // checkSum变化后重新生成
+        versionVo.setCheckSum("new");
+        ApiItemSnapshotVo snapshot = itemSnapshotService.getSnapshot(1L, versionVo);
+        Assert.assertEquals("new", snapshot.getCheckSum());
+        verify(configItemService).getAllByVersionIdInCache(1L, 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLocalSnapshot() throws Exception {
+        ReflectionTestUtils.setField(itemSnapshotService, "localEnable", true);
+        ReflectionTestUtils.setField(itemSnapshotService, "localMaxBytes", 1024L);
+        ReflectionTestUtils.setField(itemSnapshotService, "localExpire", 300L);
+        itemSnapshotService.init();
+        ArgumentCaptor<Consumer<Long>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(rccCache).addItemSnapshotListener(captor.capture());
+
+        ApiItemSnapshotVo first = itemSnapshotService.getSnapshot(1L, versionVo);
+        Assert.assertSame(first, itemSnapshotService.getSnapshot(1L, versionVo));
+        verify(cacheLoadService, times(1)).load(anyString(), any(), any());
+
+        // 失效后重新从redis加载
+        captor.getValue().accept(1L);
+        Assert.assertNotSame(first, itemSnapshotService.getSnapshot(1L, versionVo));
+        verify(cacheLoadService, times(2)).load(anyString(), any(), any());
+
+        // checkSum不一致时不使用本地快照
+        versionVo.setCheckSum("new");
+        Assert.assertEquals("new", itemSnapshotService.getSnapshot(1L, versionVo).getCheckSum());
+        verify(cacheLoadService, times(3)).load(anyString(), any(), any());
+
+        captor.getValue().accept(null);
+        itemSnapshotService.getSnapshot(1L, versionVo);
+        verify(cacheLoadService, times(4)).load(anyString(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLocalSnapshotNotFilledWhenInvalidatedDuringLoad() throws Exception {
+        ReflectionTestUtils.setField(itemSnapshotService, "localEnable", true);
+        ReflectionTestUtils.setField(itemSnapshotService, "localMaxBytes", 1024L);
+        ReflectionTestUtils.setField(itemSnapshotService, "localExpire", 300L);
+        itemSnapshotService.init();
+        ArgumentCaptor<Consumer<Long>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(rccCache).addItemSnapshotListener(captor.capture());
+        when(configItemService.getAllByVersionIdInCache(1L, 1L)).thenAnswer(invocation -> {
+            // 模拟加载期间配置项变更
+            captor.getValue().accept(1L);
+            return null;
+        });
+
+        itemSnapshotService.getSnapshot(1L, versionVo);
+        itemSnapshotService.getSnapshot(1L, versionVo);
+
+        verify(cacheLoadService, times(2)).load(anyString(), any(), any());
+    }
+
+    @Test
+    public void testSnapshotDisabled() throws Exception {
+        ReflectionTestUtils.setField(itemSnapshotService, "snapshotEnable", false);
+        Assert.assertNull(itemSnapshotService.getSnapshot(1L, versionVo));
+
+        ReflectionTestUtils.setField(itemSnapshotService, "snapshotEnable", true);
+        versionVo.setCheckSum(null);
+        Assert.assertNull(itemSnapshotService.getSnapshot(1L, versionVo));
+    }
+}
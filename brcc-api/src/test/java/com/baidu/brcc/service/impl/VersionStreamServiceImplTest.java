@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiStreamEventVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionWatchService;
+
+public class VersionStreamServiceImplTest {
+    @Mock
+    VersionService versionService;
+    @Mock
+    VersionWatchService versionWatchService;
+    @Mock
+    ConfigItemService configItemService;
+
+    VersionStreamServiceImpl versionStreamService;
+
+    List<RecordingEmitter> emitters = new ArrayList<>();
+
+    Consumer<ApiVersionVo> changeListener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        versionStreamService = new VersionStreamServiceImpl() {
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        ReflectionTestUtils.setField(versionStreamService, "versionService", versionService);
+        ReflectionTestUtils.setField(versionStreamService, "versionWatchService", versionWatchService);
+        ReflectionTestUtils.setField(versionStreamService, "configItemService", configItemService);
+        ReflectionTestUtils.setField(versionStreamService, "timeout", 600000L);
+        ReflectionTestUtils.setField(versionStreamService, "heartbeat", 0L);
+        ReflectionTestUtils.setField(versionStreamService, "retry", 3000L);
+        ReflectionTestUtils.setField(versionStreamService, "maxConnections", 10);
+        ReflectionTestUtils.setField(versionStreamService, "sendThreads", 1);
+        ReflectionTestUtils.setField(versionStreamService, "maxPending", 2);
+        versionStreamService.init();
+        ((ThreadPoolTaskExecutor) ReflectionTestUtils.getField(versionStreamService, "sendExecutor")).shutdown();
+        // 在调用线程上发送，便于断言
+        ReflectionTestUtils.setField(versionStreamService, "sendExecutor", new QueuedExecutor(true));
+        ArgumentCaptor<Consumer<ApiVersionVo>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(versionWatchService).addChangeListener(captor.capture());
+        changeListener = captor.getValue();
+    }
+
+    @Test
+    public void testFirstConnectSendsCurrentVersions() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        when(versionService.getByEnvironmentByIdInCache(2L)).thenReturn(version(2L, "b"));
+
+        Assert.assertEquals(HttpStatus.OK,
+                versionStreamService.stream(1L, Arrays.asList(1L, 2L), null, false).getStatusCode());
+
+        RecordingEmitter emitter = emitters.get(0);
+        Assert.assertEquals(3, emitter.events.size());
+        Assert.assertTrue(emitter.text(0).startsWith("retry:3000"));
+        Assert.assertTrue(emitter.text(2).contains("id:1:a,2:b\nevent:version\n"));
+        Assert.assertEquals(1, versionStreamService.streamingCount());
+    }
+
+    @Test
+    public void testResumeFromLastEventId() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        when(versionService.getByEnvironmentByIdInCache(2L)).thenReturn(version(2L, "c"));
+
+        versionStreamService.stream(1L, Arrays.asList(1L, 2L), "1:a,2:b,x:y", false);
+
+        RecordingEmitter emitter = emitters.get(0);
+        Assert.assertEquals(2, emitter.events.size());
+        Assert.assertTrue(emitter.text(1).contains("id:1:a,2:c\n"));
+        Assert.assertEquals("c", emitter.event(1).getVersion().getCheckSum());
+    }
+
+    @Test
+    public void testPushChange() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a", false);
+        RecordingEmitter emitter = emitters.get(0);
+        Assert.assertEquals(1, emitter.events.size());
+
+        changeListener.accept(version(1L, "a"));
+        changeListener.accept(version(2L, "b"));
+        ApiVersionVo other = version(1L, "b");
+        other.setProjectId(2L);
+        changeListener.accept(other);
+        Assert.assertEquals(1, emitter.events.size());
+
+        changeListener.accept(version(1L, "b"));
+        Assert.assertEquals(2, emitter.events.size());
+        Assert.assertTrue(emitter.text(1).contains("id:1:b\n"));
+        Assert.assertNull(emitter.event(1).getDelta());
+    }
+
+    @Test
+    public void testPushDeltaComputedOnce() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        ApiItemDeltaVo delta = new ApiItemDeltaVo();
+        delta.setCheckSum("b");
+        delta.setStamp("s2");
+        when(configItemService.getDeltaByVersionInCache(any(), eq("s1"))).thenReturn(delta);
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a:s1", true);
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a:s1", true);
+
+        changeListener.accept(version(1L, "b"));
+
+        Assert.assertSame(delta, emitters.get(0).event(1).getDelta());
+        Assert.assertSame(delta, emitters.get(1).event(1).getDelta());
+        Assert.assertTrue(emitters.get(0).text(1).contains("id:1:b:s2\n"));
+        verify(configItemService, times(1)).getDeltaByVersionInCache(any(), anyString());
+    }
+
+    @Test
+    public void testPushFullWhenStampUnknown() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        ApiItemDeltaVo full = new ApiItemDeltaVo();
+        full.setFull(true);
+        full.setStamp("s2");
+        ApiItemDeltaVo delta = new ApiItemDeltaVo();
+        delta.setStamp("s3");
+        when(configItemService.getDeltaByVersionInCache(any(), isNull())).thenReturn(full);
+        when(configItemService.getDeltaByVersionInCache(any(), eq("s2"))).thenReturn(delta);
+        versionStreamService.stream(1L, Arrays.asList(1L), null, true);
+        RecordingEmitter emitter = emitters.get(0);
+        // 首次连接不推送增量
+        Assert.assertNull(emitter.event(1).getDelta());
+
+        changeListener.accept(version(1L, "b"));
+        Assert.assertSame(full, emitter.event(2).getDelta());
+        Assert.assertTrue(emitter.text(2).contains("id:1:b:s2\n"));
+
+        changeListener.accept(version(1L, "c"));
+        Assert.assertSame(delta, emitter.event(3).getDelta());
+        Assert.assertTrue(emitter.text(3).contains("id:1:c:s3\n"));
+    }
+
+    @Test
+    public void testSendFailureUnregisters() throws Exception {
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a", false);
+        emitters.get(0).fail = true;
+
+        versionStreamService.heartbeat();
+
+        Assert.assertEquals(0, versionStreamService.streamingCount());
+    }
+
+    @Test
+    public void testBackedUpStreamClosed() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor(false);
+        ReflectionTestUtils.setField(versionStreamService, "sendExecutor", executor);
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a", false);
+        RecordingEmitter emitter = emitters.get(0);
+
+        // 通知线程只入队，不等待发送
+        changeListener.accept(version(1L, "b"));
+        Assert.assertEquals(0, emitter.events.size());
+        Assert.assertEquals(1, executor.tasks.size());
+        Assert.assertEquals(1, versionStreamService.streamingCount());
+
+        // 积压超过上限后关闭连接
+        changeListener.accept(version(1L, "c"));
+        Assert.assertEquals(0, versionStreamService.streamingCount());
+        Assert.assertTrue(emitter.completed);
+
+        // 已排队的任务不再发送被丢弃的事件
+        executor.tasks.get(0).run();
+        Assert.assertEquals(0, emitter.events.size());
+    }
+
+    @Test
+    public void testDrainInOrder() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor(false);
+        ReflectionTestUtils.setField(versionStreamService, "sendExecutor", executor);
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a", false);
+        changeListener.accept(version(1L, "b"));
+        Assert.assertEquals(1, executor.tasks.size());
+
+        executor.tasks.get(0).run();
+        RecordingEmitter emitter = emitters.get(0);
+        Assert.assertEquals(2, emitter.events.size());
+        Assert.assertTrue(emitter.text(0).startsWith("retry:3000"));
+        Assert.assertTrue(emitter.text(1).contains("id:1:b\n"));
+
+        // 发送完成后新的事件重新调度
+        changeListener.accept(version(1L, "c"));
+        Assert.assertEquals(2, executor.tasks.size());
+    }
+
+    @Test
+    public void testSendRejectedClosesStream() throws Exception {
+        ReflectionTestUtils.setField(versionStreamService, "sendExecutor", new ThreadPoolTaskExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                throw new TaskRejectedException("full");
+            }
+        });
+        when(versionService.getByEnvironmentByIdInCache(1L)).thenReturn(version(1L, "a"));
+
+        versionStreamService.stream(1L, Arrays.asList(1L), "1:a", false);
+
+        Assert.assertEquals(0, versionStreamService.streamingCount());
+        Assert.assertTrue(emitters.get(0).completed);
+    }
+
+    @Test
+    public void testStreamError() throws Exception {
+        // 连接建立前以非2xx状态码拒绝，客户端不会当作已连接
+        Assert.assertEquals(HttpStatus.BAD_REQUEST,
+                versionStreamService.stream(1L, new ArrayList<>(), null, false).getStatusCode());
+        Assert.assertTrue(emitters.get(0).text(0).startsWith("event:error\n"));
+
+        ReflectionTestUtils.setField(versionStreamService, "maxConnections", 0);
+        ResponseEntity<SseEmitter> rejected = versionStreamService.stream(1L, Arrays.asList(1L), null, false);
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        Assert.assertSame(emitters.get(1), rejected.getBody());
+        Assert.assertTrue(emitters.get(1).text(0).startsWith("event:error\n"));
+        Assert.assertNotEquals(0, ((R) emitters.get(1).events.get(0)[1]).getStatus());
+        Assert.assertEquals(0, versionStreamService.streamingCount());
+    }
+
+    @Test
+    public void testEventId() throws Exception {
+        Map<Long, String> checkSums = new HashMap<>();
+        checkSums.put(2L, "b");
+        checkSums.put(1L, "a");
+        checkSums.put(3L, null);
+        Map<Long, String> stamps = new HashMap<>();
+        stamps.put(2L, "s");
+
+        Assert.assertEquals("1:a,2:b:s", VersionStreamServiceImpl.formatEventId(checkSums, stamps));
+
+        checkSums.clear();
+        stamps.clear();
+        VersionStreamServiceImpl.parseEventId("1:a,2:b:s", checkSums, stamps);
+        Assert.assertEquals("b", checkSums.get(2L));
+        Assert.assertEquals("s", stamps.get(2L));
+        Assert.assertNull(stamps.get(1L));
+
+        checkSums.clear();
+        stamps.clear();
+        VersionStreamServiceImpl.parseEventId("1:,:a,x", checkSums, stamps);
+        Assert.assertTrue(checkSums.isEmpty());
+    }
+
+    private ApiVersionVo version(Long versionId, String checkSum) {
+        ApiVersionVo vo = new ApiVersionVo();
+        vo.setProjectId(1L);
+        vo.setVersionId(versionId);
+        vo.setCheckSum(checkSum);
+        return vo;
+    }
+
+    // inline为true时在调用线程上执行，否则只记录任务
+    static class QueuedExecutor extends ThreadPoolTaskExecutor {
+        final boolean inline;
+        List<Runnable> tasks = new ArrayList<>();
+
+        QueuedExecutor(boolean inline) {
+            this.inline = inline;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (inline) {
+                task.run();
+            } else {
+                tasks.add(task);
+            }
+        }
+    }
+
+    static class RecordingEmitter extends SseEmitter {
+        List<Object[]> events = new ArrayList<>();
+        boolean fail;
+        boolean completed;
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (fail) {
+                throw new IOException("broken pipe");
+            }
+            Set<DataWithMediaType> data = builder.build();
+            List<Object> parts = new ArrayList<>();
+            for (DataWithMediaType part : data) {
+                parts.add(part.getData());
+            }
+            events.add(parts.toArray());
+        }
+
+        String text(int idx) {
+            StringBuilder sb = new StringBuilder();
+            for (Object part : events.get(idx)) {
+                if (part instanceof String) {
+                    sb.append(part);
+                }
+            }
+            return sb.toString();
+        }
+
+        ApiStreamEventVo event(int idx) {
+            return (ApiStreamEventVo) events.get(idx)[1];
+        }
+    }
+}
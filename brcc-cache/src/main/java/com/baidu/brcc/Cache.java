@@ -21,6 +21,7 @@ package com.baidu.brcc;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
 
@@ -42,6 +43,50 @@ public interface Cache {
 
     Boolean put(String key, Object value, Long customerExpire) throws DataAccessException;
 
+    /**
+     * 注册本地缓存失效回调，本节点写入或收到其他节点的失效广播时以key回调，清空全部时回调null
+     */
+    void addInvalidationListener(Consumer<String> listener);
+
+    /**
+     * 写入原始字节，不经过编码
+     */
+    Boolean putBytes(String key, byte[] value, Long customerExpire) throws DataAccessException;
+
+    /**
+     * 读取putBytes写入的原始字节
+     */
+    byte[] getBytes(String key) throws DataAccessException;
+
+    /**
+     * 写入带软过期时间的值，软过期时间嵌入在值中，超过后仍可读到旧值直至key过期
+     *
+     * @param softExpire 软过期时间，单位秒
+     * @param hardExpire key的过期时间，单位秒
+     */
+    Boolean putSoft(String key, Object value, long softExpire, long hardExpire) throws DataAccessException;
+
+    /**
+     * 读取putSoft写入的值及其软过期时间
+     */
+    <T> SoftValue<T> getSoft(String key, Class<T> type) throws DataAccessException;
+
+    /**
+     * key不存在时写入，即SET NX PX
+     *
+     * @param expireMillis 过期时间，单位毫秒
+     *
+     * @return 是否写入成功
+     */
+    Boolean putIfAbsent(String key, Object value, long expireMillis) throws DataAccessException;
+
+    /**
+     * 当前值与期望值一致时删除key，比较与删除原子执行
+     *
+     * @return 是否删除
+     */
+    Boolean evictIfEquals(String key, Object value) throws DataAccessException;
+
     Boolean hset(String key, String field, Object value) throws DataAccessException;
 
     Boolean hmset(String key, Map<String, Object> kvs) throws DataAccessException;
@@ -63,4 +108,20 @@ public interface Cache {
     Long hDelByPrefix(String key, String fieldPrefix) throws DataAccessException;
 
     Boolean exists(String key);
+
+    /**
+     * 向指定频道发布消息
+     *
+     * @param channel 频道名称（不加键前缀）
+     * @param message 消息内容
+     */
+    Long publish(String channel, Object message) throws DataAccessException;
+
+    /**
+     * 批量执行写操作，整批只有一次网络往返
+     *
+     * @param batch  批量操作
+     * @param atomic 是否以MULTI/EXEC事务执行，为true时其他客户端不会读到中间状态
+     */
+    Boolean executeBatch(CacheBatch batch, boolean atomic) throws DataAccessException;
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.CollectionUtils;
+
+/**
+ * 批量缓存写操作，按添加顺序在一次网络往返中执行
+ */
+public class CacheBatch {
+
+    public enum OpType {
+        // 删除key
+        EVICT,
+        // 删除hash字段
+        HDEL,
+        // 批量设置hash字段
+        HMSET,
+        // 重命名key，覆盖已存在的目标key
+        RENAME,
+        // 设置key的过期时间
+        EXPIRE
+    }
+
+    /**
+     * 单个操作
+     */
+    public static class Op {
+        private final OpType type;
+        private final String key;
+        private final List<String> fields;
+        private final Map<String, ?> values;
+        private final long expire;
+
+        Op(OpType type, String key, List<String> fields, Map<String, ?> values) {
+            this(type, key, fields, values, 0L);
+        }
+
+        Op(OpType type, String key, List<String> fields, Map<String, ?> values, long expire) {
+            this.type = type;
+            this.key = key;
+            this.fields = fields;
+            this.values = values;
+            this.expire = expire;
+        }
+
+        public OpType getType() {
+            return type;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        public Map<String, ?> getValues() {
+            return values;
+        }
+
+        /**
+         * @return 过期时间，单位秒
+         */
+        public long getExpire() {
+            return expire;
+        }
+    }
+
+    private final List<Op> ops = new ArrayList<>();
+
+    public CacheBatch evict(Collection<String> keys) {
+        if (!CollectionUtils.isEmpty(keys)) {
+            for (String key : keys) {
+                if (key != null) {
+                    ops.add(new Op(OpType.EVICT, key, null, null));
+                }
+            }
+        }
+        return this;
+    }
+
+    public CacheBatch evict(String... keys) {
+        return keys == null ? this : evict(Arrays.asList(keys));
+    }
+
+    public CacheBatch hdel(String key, String... fields) {
+        if (key != null && fields != null && fields.length > 0) {
+            ops.add(new Op(OpType.HDEL, key, Arrays.asList(fields), null));
+        }
+        return this;
+    }
+
+    public CacheBatch hmset(String key, Map<String, ?> kvs) {
+        if (key != null && !CollectionUtils.isEmpty(kvs)) {
+            ops.add(new Op(OpType.HMSET, key, null, kvs));
+        }
+        return this;
+    }
+
+    public CacheBatch rename(String key, String newKey) {
+        if (key != null && newKey != null) {
+            ops.add(new Op(OpType.RENAME, key, Collections.singletonList(newKey), null));
+        }
+        return this;
+    }
+
+    /**
+     * @param expire 过期时间，单位秒
+     */
+    public CacheBatch expire(String key, long expire) {
+        if (key != null && expire > 0) {
+            ops.add(new Op(OpType.EXPIRE, key, null, null, expire));
+        }
+        return this;
+    }
+
+    public List<Op> getOps() {
+        return Collections.unmodifiableList(ops);
+    }
+
+    /**
+     * @return 批量操作涉及的key，去重并保持顺序
+     */
+    public List<String> getKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Op op : ops) {
+            keys.add(op.getKey());
+            if (op.getType() == OpType.RENAME) {
+                keys.addAll(op.getFields());
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+}
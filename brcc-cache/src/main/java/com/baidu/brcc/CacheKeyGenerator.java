@@ -19,6 +19,7 @@
 package com.baidu.brcc;
 
 import java.util.Objects;
+import java.util.UUID;
 
 public class CacheKeyGenerator {
 
@@ -27,11 +28,20 @@ public class CacheKeyGenerator {
     public static final String PROJECT_NAME_KEY_PREFIX = "string.projectname.";
     public static final String API_TOKEN_KEY_PREFIX = "string.apitoken.";
     public static final String VERSION_ID_KEY_PREFIX = "string.versionid.";
+    public static final String ITEM_DIGEST_KEY_PREFIX = "string.itemdigest.versionid.";
+    public static final String LOAD_LEASE_KEY_PREFIX = "string.loadlease.";
+    public static final String ITEM_SNAPSHOT_KEY_PREFIX = "string.itemsnapshot.versionid.";
 
     public static final String ENVIRONMENT_PROJECT_ID_KEY_PREFIX = "hash.environment.projectId.";
     public static final String VERSION_ENVIRONMENT_ID_KEY_PREFIX = "hash.version.environmentId.";
     public static final String ITEM_VERSION_ID_KEY_PREFIX = "hash.item.versionId.";
 
+    public static final String MISS_API_TOKEN_KEY_PREFIX = "string.miss.apitoken.";
+    public static final String MISS_VERSION_ENVIRONMENT_ID_KEY_PREFIX = "hash.miss.version.environmentId.";
+    public static final String MISS_ITEM_VERSION_ID_KEY_PREFIX = "hash.miss.item.versionId.";
+
+    public static final String SWAP_KEY_PREFIX = "swap.";
+
     public static String getUserNameKey(String userName) {
         Objects.requireNonNull(userName);
         return USER_NAME_KEY_PREFIX.concat(userName);
@@ -57,6 +67,22 @@ public class CacheKeyGenerator {
         return VERSION_ID_KEY_PREFIX.concat(versionId.toString());
     }
 
+    public static String getItemDigestKey(Long versionId, String stamp) {
+        Objects.requireNonNull(versionId);
+        Objects.requireNonNull(stamp);
+        return ITEM_DIGEST_KEY_PREFIX.concat(versionId.toString()).concat(".").concat(stamp);
+    }
+
+    public static String getItemSnapshotKey(Long versionId) {
+        Objects.requireNonNull(versionId);
+        return ITEM_SNAPSHOT_KEY_PREFIX.concat(versionId.toString());
+    }
+
+    public static String getLoadLeaseKey(String name) {
+        Objects.requireNonNull(name);
+        return LOAD_LEASE_KEY_PREFIX.concat(name);
+    }
+
     public static String getEnvironmentProjectIdKey(Long projectId) {
         Objects.requireNonNull(projectId);
         return ENVIRONMENT_PROJECT_ID_KEY_PREFIX.concat(projectId.toString());
@@ -72,4 +98,36 @@ public class CacheKeyGenerator {
         return ITEM_VERSION_ID_KEY_PREFIX.concat(versionId.toString());
     }
 
+    /**
+     * 不存在的api token
+     */
+    public static String getMissApiTokenKey(String apiToken) {
+        Objects.requireNonNull(apiToken);
+        return MISS_API_TOKEN_KEY_PREFIX.concat(apiToken);
+    }
+
+    /**
+     * 环境下不存在的版本名称
+     */
+    public static String getMissVersionEnvironmentIdKey(Long environmentId) {
+        Objects.requireNonNull(environmentId);
+        return MISS_VERSION_ENVIRONMENT_ID_KEY_PREFIX.concat(environmentId.toString());
+    }
+
+    /**
+     * 版本下不存在的配置项名称
+     */
+    public static String getMissItemVersionIdKey(Long versionId) {
+        Objects.requireNonNull(versionId);
+        return MISS_ITEM_VERSION_ID_KEY_PREFIX.concat(versionId.toString());
+    }
+
+    /**
+     * 重新加载时使用的临时key，写入完成后RENAME为目标key
+     */
+    public static String getSwapKey(String key) {
+        Objects.requireNonNull(key);
+        return SWAP_KEY_PREFIX.concat(key).concat(".").concat(UUID.randomUUID().toString());
+    }
+
 }
@@ -18,10 +18,18 @@
  */
 package com.baidu.brcc;
 
+import static com.baidu.brcc.CacheKeyGenerator.ITEM_SNAPSHOT_KEY_PREFIX;
 import static com.baidu.brcc.CacheKeyGenerator.getApiTokenKey;
 import static com.baidu.brcc.CacheKeyGenerator.getEnvironmentProjectIdKey;
+import static com.baidu.brcc.CacheKeyGenerator.getItemDigestKey;
+import static com.baidu.brcc.CacheKeyGenerator.getItemSnapshotKey;
 import static com.baidu.brcc.CacheKeyGenerator.getItemVersionIdKey;
+import static com.baidu.brcc.CacheKeyGenerator.getLoadLeaseKey;
+import static com.baidu.brcc.CacheKeyGenerator.getMissApiTokenKey;
+import static com.baidu.brcc.CacheKeyGenerator.getMissItemVersionIdKey;
+import static com.baidu.brcc.CacheKeyGenerator.getMissVersionEnvironmentIdKey;
 import static com.baidu.brcc.CacheKeyGenerator.getProjectNameKey;
+import static com.baidu.brcc.CacheKeyGenerator.getSwapKey;
 import static com.baidu.brcc.CacheKeyGenerator.getUserNameKey;
 import static com.baidu.brcc.CacheKeyGenerator.getUserTokenKey;
 import static com.baidu.brcc.CacheKeyGenerator.getVersionEnvironmentIdKey;
@@ -35,10 +43,21 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -65,9 +84,87 @@ public class RccCacheImpl implements RccCache {
     @Value("${rcc.cache.retry.times: 3}")
     private int retryTimes;
 
+    // 配置项摘要过期时间，默认7天
+    @Value("${rcc.cache.item-digest.expire: 604800}")
+    private long itemDigestExpire;
+
+    // 是否缓存不存在的数据
+    @Value("${rcc.cache.negative.enable:true}")
+    private boolean negativeEnable;
+
+    // 不存在数据的缓存时间，默认60秒
+    @Value("${rcc.cache.negative.expire: 60}")
+    private long negativeExpire;
+
+    // 配置项快照的过期时间，单位秒
+    @Value("${rcc.cache.item-snapshot.expire: 86400}")
+    private long itemSnapshotExpire;
+
+    // 工程缓存的软过期时间，超过后返回旧值并异步刷新，单位秒
+    @Value("${rcc.cache.project.expire:${rcc.cache.default.expire:7200}}")
+    private long projectExpire;
+
+    // api token缓存的软过期时间，单位秒
+    @Value("${rcc.cache.api-token.expire:${rcc.cache.default.expire:7200}}")
+    private long apiTokenExpire;
+
+    // 用户缓存的软过期时间，单位秒
+    @Value("${rcc.cache.user.expire:${rcc.cache.default.expire:7200}}")
+    private long userExpire;
+
+    // versionId->version缓存的软过期时间，单位秒
+    @Value("${rcc.cache.version.expire:${rcc.cache.default.expire:7200}}")
+    private long versionExpire;
+
+    // 软过期后仍可返回旧值的时间，单位秒
+    @Value("${rcc.cache.stale.expire: 3600}")
+    private long staleExpire;
+
+    // 异步刷新线程数
+    @Value("${rcc.cache.refresh.threads: 2}")
+    private int refreshThreads;
+
+    // 刷新租约过期时间，单位毫秒
+    @Value("${rcc.cache.load.lease.expire:10000}")
+    private long leaseExpire;
+
+    // 版本变更广播频道
+    @Value("${rcc.cache.version.channel:${cache.key.prefix:mapp.rcc.}version.change}")
+    private String versionChannel;
+
     @Autowired
     public Cache cache;
 
+    // 各缓存类别的回源加载器
+    private final Map<Family, Function<String, ?>> refreshers = new ConcurrentHashMap<>();
+
+    // 本节点正在刷新的key
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // 回源租约的持有者标识
+    private final String node = UUID.randomUUID().toString();
+
+    private ThreadPoolTaskExecutor refreshExecutor;
+
+    @PostConstruct
+    public void init() {
+        refreshExecutor = new ThreadPoolTaskExecutor();
+        refreshExecutor.setThreadNamePrefix("cache-refresh-");
+        refreshExecutor.setCorePoolSize(refreshThreads);
+        refreshExecutor.setMaxPoolSize(refreshThreads);
+        refreshExecutor.setQueueCapacity(1000);
+        // 队列满时放弃刷新，下次读取时重新触发
+        refreshExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        refreshExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdown();
+        }
+    }
+
     @Override
     public boolean cacheEnable() {
         return cache.cacheEnable();
@@ -131,6 +228,7 @@ public class RccCacheImpl implements RccCache {
             for (String apiToken : apiTokens) {
                 String apiTokenKey = getApiTokenKey(apiToken);
                 deleteKeys.add(apiTokenKey);
+                deleteKeys.add(getMissApiTokenKey(apiToken));
             }
         }
         if (!isEmpty(deleteKeys)) {
@@ -174,7 +272,7 @@ public class RccCacheImpl implements RccCache {
         Long cnt = new RetryActionWithOneParam<List<String>, Long>(
                 "evict",
                 retryTimes,
-                Arrays.asList(versionEnvironmentIdKey)
+                Arrays.asList(versionEnvironmentIdKey, getMissVersionEnvironmentIdKey(environmentId))
         ).action(
                 keys -> cache.evict(keys)
         );
@@ -193,7 +291,7 @@ public class RccCacheImpl implements RccCache {
         Long cnt = new RetryActionWithOneParam<List<String>, Long>(
                 "evict",
                 retryTimes,
-                Arrays.asList(itemVersionIdKey)
+                Arrays.asList(itemVersionIdKey, getMissItemVersionIdKey(versionId), getItemSnapshotKey(versionId))
         ).action(
                 keys -> cache.evict(keys)
         );
@@ -257,21 +355,20 @@ public class RccCacheImpl implements RccCache {
                 deleteKeys.add(versionEnvironmentIdKey);
             }
         }
-        // 删除配置项
+        // 删除配置项及versionId->version的缓存
         if (!isEmpty(versionIds)) {
             for (Long versionId : versionIds) {
-                String itemVersionIdKey = getItemVersionIdKey(versionId);
-                deleteKeys.add(itemVersionIdKey);
+                deleteKeys.add(getItemVersionIdKey(versionId));
+                deleteKeys.add(getItemSnapshotKey(versionId));
+                deleteKeys.add(getVersionIdKey(versionId));
             }
         }
 
+        // 一次del删除全部key
         Long cnt = new RetryActionWithOneParam<List<String>, Long>("evict", retryTimes, deleteKeys).action(
                 (List<String> keys) -> cache.evict(keys)
         );
 
-        // 失效versionId->version的缓存
-        evictVersionById(versionIds);
-
         if (log.isDebugEnabled()) {
             log.debug("deleteProjectCascade keys[{}] total[{}] success[{}]", deleteKeys.size(), cnt);
         }
@@ -289,38 +386,29 @@ public class RccCacheImpl implements RccCache {
 
         // 删除工程下的环境
         String environmentProjectIdKey = getEnvironmentProjectIdKey(projectId);
-        new RetryActionWithTwoParam<String, String, Boolean>(
-                "hdel",
-                retryTimes,
-                environmentProjectIdKey,
-                name
-        ).action((String hkey, String field) -> cache.hdel(hkey, field));
-        if (log.isDebugEnabled()) {
-            log.debug("deleteEnvironmentCascade key[{}]", environmentProjectIdKey);
-        }
+
         // 删除的key
         List<String> deleteKeys = new ArrayList<>();
 
         // 删除版本
         String versionEnvironmentIdKey = getVersionEnvironmentIdKey(environmentId);
         deleteKeys.add(versionEnvironmentIdKey);
-        // 删除配置项
+        // 删除配置项及versionId->version的缓存
         if (!isEmpty(versionIds)) {
             for (Long versionId : versionIds) {
-                String itemVersionIdKey = getItemVersionIdKey(versionId);
-                deleteKeys.add(itemVersionIdKey);
+                deleteKeys.add(getItemVersionIdKey(versionId));
+                deleteKeys.add(getItemSnapshotKey(versionId));
+                deleteKeys.add(getVersionIdKey(versionId));
             }
         }
 
-        Long cnt = new RetryActionWithOneParam<List<String>, Long>("evict", retryTimes, deleteKeys).action(
-                (List<String> keys) -> cache.evict(keys)
-        );
-
-        // 失效versionId->version的缓存
-        evictVersionById(versionIds);
+        Boolean success = executeAtomic(new CacheBatch()
+                .hdel(environmentProjectIdKey, name)
+                .evict(deleteKeys));
 
         if (log.isDebugEnabled()) {
-            log.debug("deleteEnvironmentCascade keys[{}] total[{}] success[{}]", deleteKeys.size(), cnt);
+            log.debug("deleteEnvironmentCascade key[{}] keys[{}] success[{}]", environmentProjectIdKey,
+                    deleteKeys.size(), success);
         }
     }
 
@@ -336,27 +424,15 @@ public class RccCacheImpl implements RccCache {
 
         // 删除环境下的版本
         String versionEnvironmentIdKey = getVersionEnvironmentIdKey(environmentId);
-        new RetryActionWithTwoParam<String, String, Boolean>(
-                "hdel",
-                retryTimes,
-                versionEnvironmentIdKey,
-                name
-        ).action((String hkey, String field) -> cache.hdel(hkey, field));
-        if (log.isDebugEnabled()) {
-            log.debug("deleteVersionCascade key[{}]", versionEnvironmentIdKey);
-        }
-        // 删除的key
-        List<String> deleteKeys = new ArrayList<>();
-
         // 删除配置项
         String itemVersionIdKey = getItemVersionIdKey(versionId);
-        deleteKeys.add(itemVersionIdKey);
 
-        Long cnt = new RetryActionWithOneParam<List<String>, Long>("evict", retryTimes, deleteKeys).action(
-                (List<String> keys) -> cache.evict(keys)
-        );
+        Boolean success = executeAtomic(new CacheBatch()
+                .hdel(versionEnvironmentIdKey, name)
+                .evict(itemVersionIdKey, getItemSnapshotKey(versionId)));
         if (log.isDebugEnabled()) {
-            log.debug("deleteVersionCascade keys[{}] total[{}] success[{}]", deleteKeys.size(), cnt);
+            log.debug("deleteVersionCascade key[{}] item key[{}] success[{}]", versionEnvironmentIdKey,
+                    itemVersionIdKey, success);
         }
     }
 
@@ -375,6 +451,7 @@ public class RccCacheImpl implements RccCache {
                 itemVersionIdKey,
                 itemNames
         ).action((String hkey, List<String> fields) -> cache.hmdel(hkey, fields));
+        evictItemSnapshot(versionId);
         if (log.isDebugEnabled()) {
             log.debug("deleteItems hkey[{}], fields[{}]", itemVersionIdKey, GsonUtils.toJsonString(itemNames));
         }
@@ -400,14 +477,7 @@ public class RccCacheImpl implements RccCache {
             return null;
         }
         String projectNameKey = getProjectNameKey(name);
-
-        RetryActionWithTwoParam<String, Class<Project>, Project> action = new RetryActionWithTwoParam<>(
-                "get",
-                retryTimes,
-                projectNameKey,
-                Project.class
-        );
-        return action.action((String key, Class<Project> type) -> cache.get(key, type));
+        return getSoft(Family.PROJECT, name, projectNameKey, Project.class);
     }
 
     // 查询api token
@@ -417,14 +487,7 @@ public class RccCacheImpl implements RccCache {
             return null;
         }
         String apiTokenKey = getApiTokenKey(token);
-
-        RetryActionWithTwoParam<String, Class<ApiToken>, ApiToken> action = new RetryActionWithTwoParam<>(
-                "get",
-                retryTimes,
-                apiTokenKey,
-                ApiToken.class
-        );
-        return action.action((String key, Class<ApiToken> type) -> cache.get(key, type));
+        return getSoft(Family.API_TOKEN, token, apiTokenKey, ApiToken.class);
     }
 
     // 查询用户
@@ -434,14 +497,7 @@ public class RccCacheImpl implements RccCache {
             return null;
         }
         String userTokenKey = getUserTokenKey(token);
-
-        RetryActionWithTwoParam<String, Class<User>, User> action = new RetryActionWithTwoParam<>(
-                "get",
-                retryTimes,
-                userTokenKey,
-                User.class
-        );
-        return action.action((String key, Class<User> type) -> cache.get(key, type));
+        return getSoft(Family.USER_TOKEN, token, userTokenKey, User.class);
     }
 
     @Override
@@ -450,14 +506,7 @@ public class RccCacheImpl implements RccCache {
             return null;
         }
         String usernameKey = getUserNameKey(name);
-
-        RetryActionWithTwoParam<String, Class<User>, User> action = new RetryActionWithTwoParam<>(
-                "get",
-                retryTimes,
-                usernameKey,
-                User.class
-        );
-        return action.action((String key, Class<User> type) -> cache.get(key, type));
+        return getSoft(Family.USER_NAME, name, usernameKey, User.class);
     }
 
     // 查询环境
@@ -549,12 +598,7 @@ public class RccCacheImpl implements RccCache {
             return null;
         }
         String versionIdKey = getVersionIdKey(versionId);
-        return new RetryActionWithTwoParam<String, Class<ApiVersionVo>, ApiVersionVo>(
-                "get",
-                retryTimes,
-                versionIdKey,
-                ApiVersionVo.class
-        ).action((key, type) -> cache.get(key, type));
+        return getSoft(Family.VERSION_ID, versionId.toString(), versionIdKey, ApiVersionVo.class);
     }
 
     // 读取配置项
@@ -630,16 +674,7 @@ public class RccCacheImpl implements RccCache {
 
         String name = project.getName();
         String projectNameKey = getProjectNameKey(name);
-
-        RetryActionWithTwoParam<String, Object, Boolean> action =
-                new RetryActionWithTwoParam<>(
-                        "put",
-                        retryTimes,
-                        projectNameKey,
-                        project
-                );
-
-        action.action((String key, Object value) -> cache.put(key, value));
+        putSoft(projectNameKey, project, projectExpire);
     }
 
     // 加载用户
@@ -653,24 +688,8 @@ public class RccCacheImpl implements RccCache {
 
         String userNameKey = getUserNameKey(name);
         String userTokenKey = getUserTokenKey(token);
-
-        RetryActionWithTwoParam<String, Object, Boolean> action =
-                new RetryActionWithTwoParam<>(
-                        "put",
-                        retryTimes,
-                        userNameKey,
-                        user
-                );
-        action.action((String key, Object value) -> cache.put(key, value));
-
-        action = new RetryActionWithTwoParam<>(
-                "put",
-                retryTimes,
-                userTokenKey,
-                user
-        );
-        action.action((String key, Object value) -> cache.put(key, value));
-
+        putSoft(userNameKey, user, userExpire);
+        putSoft(userTokenKey, user, userExpire);
     }
 
     // 加载Api token
@@ -681,14 +700,7 @@ public class RccCacheImpl implements RccCache {
         }
         String token = apiToken.getToken();
         String apiTokenKey = getApiTokenKey(token);
-        RetryActionWithTwoParam<String, Object, Boolean> action =
-                new RetryActionWithTwoParam<>(
-                        "put",
-                        retryTimes,
-                        apiTokenKey,
-                        apiToken
-                );
-        action.action((String key, Object value) -> cache.put(key, value));
+        putSoft(apiTokenKey, apiToken, apiTokenExpire);
     }
 
     // 加载环境
@@ -719,29 +731,14 @@ public class RccCacheImpl implements RccCache {
         }
         String environmentProjectIdKey = getEnvironmentProjectIdKey(projectId);
 
-        // 先删除
-        new RetryActionWithOneParam<List<String>, Long>("delete key", retryTimes,
-                Arrays.asList(environmentProjectIdKey)).action(
-                (List<String> keys) -> cache.evict(keys)
-        );
-
-        // put
-        if (isEmpty(environmentVos)) {
-            return;
-        }
         Map<String, ApiEnvironmentVo> map = new HashMap<>();
-        for (ApiEnvironmentVo environmentVo : environmentVos) {
-            map.put(environmentVo.getEnvironmentName(), environmentVo);
+        if (!isEmpty(environmentVos)) {
+            for (ApiEnvironmentVo environmentVo : environmentVos) {
+                map.put(environmentVo.getEnvironmentName(), environmentVo);
+            }
         }
 
-        new RetryActionWithTwoParam<String, Map, Boolean>(
-                "hmset",
-                retryTimes,
-                environmentProjectIdKey,
-                map
-        ).action(
-                (String key, Map kvs) -> cache.hmset(key, kvs)
-        );
+        swapHash(environmentProjectIdKey, map);
     }
 
     // 加载版本
@@ -771,12 +768,7 @@ public class RccCacheImpl implements RccCache {
         }
         Long versionId = apiVersionVo.getVersionId();
         String versionIdKey = getVersionIdKey(versionId);
-        new RetryActionWithTwoParam<String, Object, Boolean>(
-                "put",
-                retryTimes,
-                versionIdKey,
-                apiVersionVo
-        ).action((key, val) -> cache.put(key, val));
+        putSoft(versionIdKey, apiVersionVo, versionExpire);
     }
 
     // 加载版本
@@ -787,29 +779,14 @@ public class RccCacheImpl implements RccCache {
         }
         String versionEnvironmentIdKey = getVersionEnvironmentIdKey(environmentId);
 
-        // 先删除
-        new RetryActionWithOneParam<List<String>, Long>("delete key", retryTimes,
-                Arrays.asList(versionEnvironmentIdKey)).action(
-                (List<String> keys) -> cache.evict(keys)
-        );
-
-        // put
-        if (isEmpty(versionVos)) {
-            return;
-        }
         Map<String, ApiVersionVo> map = new HashMap<>();
-        for (ApiVersionVo versionVo : versionVos) {
-            map.put(versionVo.getVersionName(), versionVo);
+        if (!isEmpty(versionVos)) {
+            for (ApiVersionVo versionVo : versionVos) {
+                map.put(versionVo.getVersionName(), versionVo);
+            }
         }
 
-        new RetryActionWithTwoParam<String, Map, Boolean>(
-                "hmset",
-                retryTimes,
-                versionEnvironmentIdKey,
-                map
-        ).action(
-                (String key, Map kvs) -> cache.hmset(key, kvs)
-        );
+        swapHash(versionEnvironmentIdKey, map);
     }
 
     @Override
@@ -828,6 +805,7 @@ public class RccCacheImpl implements RccCache {
         ).action(
                 (String key, String field, Object value) -> cache.hset(key, field, value)
         );
+        evictItemSnapshot(versionId);
     }
 
     // 加载配置
@@ -838,26 +816,22 @@ public class RccCacheImpl implements RccCache {
         }
         String itemVersionIdKey = getItemVersionIdKey(versionId);
 
+        Map<String, ApiItemVo> map = new HashMap<>();
+        if (!isEmpty(itemVos)) {
+            for (ApiItemVo itemVo : itemVos) {
+                map.put(itemVo.getKey(), itemVo);
+            }
+        }
+
         if (clear) {
-            // 删除
-            new RetryActionWithOneParam<List<String>, Long>(
-                    "evict",
-                    retryTimes,
-                    Arrays.asList(itemVersionIdKey)
-            ).action(
-                    (List<String> keys) -> cache.evict(keys)
-            );
+            swapHash(itemVersionIdKey, map, getItemSnapshotKey(versionId));
+            return;
         }
 
         // put
-        if (isEmpty(itemVos)) {
+        if (map.isEmpty()) {
             return;
         }
-        Map<String, ApiItemVo> map = new HashMap<>();
-        for (ApiItemVo itemVo : itemVos) {
-            map.put(itemVo.getKey(), itemVo);
-        }
-
         new RetryActionWithTwoParam<String, Map, Boolean>(
                 "hmset",
                 retryTimes,
@@ -866,5 +840,360 @@ public class RccCacheImpl implements RccCache {
         ).action(
                 (String key, Map kvs) -> cache.hmset(key, kvs)
         );
+        evictItemSnapshot(versionId);
+    }
+
+    @Override
+    public void publishVersionChange(ApiVersionVo versionVo) {
+        if (!cache.cacheEnable() || versionVo == null) {
+            return;
+        }
+        Long cnt = new RetryActionWithTwoParam<String, ApiVersionVo, Long>(
+                "publish",
+                retryTimes,
+                versionChannel,
+                versionVo
+        ).action(
+                (String channel, ApiVersionVo message) -> cache.publish(channel, message)
+        );
+        if (log.isDebugEnabled()) {
+            log.debug("publishVersionChange version[{}] checkSum[{}] receivers[{}]", versionVo.getVersionId(),
+                    versionVo.getCheckSum(), cnt);
+        }
+    }
+
+    @Override
+    public Map<String, String> getItemDigest(Long versionId, String stamp) {
+        if (!cache.cacheEnable() || versionId == null || versionId <= 0 || isBlank(stamp)) {
+            return null;
+        }
+        String itemDigestKey = getItemDigestKey(versionId, stamp);
+        return new RetryActionWithTwoParam<String, Class<Map>, Map<String, String>>(
+                "get",
+                retryTimes,
+                itemDigestKey,
+                Map.class
+        ).action((key, type) -> cache.get(key, type));
+    }
+
+    @Override
+    public void loadItemDigest(Long versionId, String stamp, Map<String, String> digest) {
+        if (!cache.cacheEnable() || versionId == null || versionId <= 0 || isBlank(stamp) || digest == null) {
+            return;
+        }
+        String itemDigestKey = getItemDigestKey(versionId, stamp);
+        new RetryActionWithThrParam<String, Object, Long, Boolean>(
+                "put",
+                retryTimes,
+                itemDigestKey,
+                digest,
+                itemDigestExpire
+        ).action((key, val, expire) -> cache.put(key, val, expire));
+    }
+
+    @Override
+    public byte[] getItemSnapshot(Long versionId) {
+        if (!cache.cacheEnable() || versionId == null || versionId <= 0) {
+            return null;
+        }
+        String itemSnapshotKey = getItemSnapshotKey(versionId);
+        return new RetryActionWithOneParam<String, byte[]>(
+                "getBytes",
+                retryTimes,
+                itemSnapshotKey
+        ).action(key -> cache.getBytes(key));
+    }
+
+    @Override
+    public void addItemSnapshotListener(Consumer<Long> listener) {
+        cache.addInvalidationListener(key -> {
+            if (key == null) {
+                listener.accept(null);
+            } else if (key.startsWith(ITEM_SNAPSHOT_KEY_PREFIX)) {
+                listener.accept(Long.valueOf(key.substring(ITEM_SNAPSHOT_KEY_PREFIX.length())));
+            }
+        });
+    }
+
+    @Override
+    public void loadItemSnapshot(Long versionId, byte[] snapshot) {
+        if (!cache.cacheEnable() || versionId == null || versionId <= 0 || snapshot == null) {
+            return;
+        }
+        String itemSnapshotKey = getItemSnapshotKey(versionId);
+        new RetryActionWithThrParam<String, byte[], Long, Boolean>(
+                "putBytes",
+                retryTimes,
+                itemSnapshotKey,
+                snapshot,
+                itemSnapshotExpire
+        ).action((key, val, expire) -> cache.putBytes(key, val, expire));
+    }
+
+    @Override
+    public boolean isApiTokenMissing(String token) {
+        if (!cache.cacheEnable() || !negativeEnable || isBlank(token)) {
+            return false;
+        }
+        String missApiTokenKey = getMissApiTokenKey(token);
+        Boolean missing = new RetryActionWithTwoParam<String, Class<Boolean>, Boolean>(
+                "get",
+                retryTimes,
+                missApiTokenKey,
+                Boolean.class
+        ).action((key, type) -> cache.get(key, type));
+        return missing != null && missing;
+    }
+
+    @Override
+    public void loadApiTokenMissing(String token) {
+        if (!cache.cacheEnable() || !negativeEnable || isBlank(token)) {
+            return;
+        }
+        String missApiTokenKey = getMissApiTokenKey(token);
+        new RetryActionWithThrParam<String, Object, Long, Boolean>(
+                "put",
+                retryTimes,
+                missApiTokenKey,
+                Boolean.TRUE,
+                negativeExpire
+        ).action((key, val, expire) -> cache.put(key, val, expire));
+    }
+
+    @Override
+    public boolean isVersionMissing(Long environmentId, String name) {
+        if (environmentId == null || environmentId <= 0) {
+            return false;
+        }
+        return isMissing(getMissVersionEnvironmentIdKey(environmentId), name);
+    }
+
+    @Override
+    public void loadVersionMissing(Long environmentId, String name) {
+        if (environmentId == null || environmentId <= 0 || isBlank(name)) {
+            return;
+        }
+        loadMissing(getMissVersionEnvironmentIdKey(environmentId), Arrays.asList(name));
+    }
+
+    @Override
+    public boolean isItemMissing(Long versionId, String name) {
+        if (versionId == null || versionId <= 0) {
+            return false;
+        }
+        return isMissing(getMissItemVersionIdKey(versionId), name);
+    }
+
+    @Override
+    public void loadItemMissing(Long versionId, List<String> names) {
+        if (versionId == null || versionId <= 0) {
+            return;
+        }
+        loadMissing(getMissItemVersionIdKey(versionId), names);
+    }
+
+    @Override
+    public boolean tryLoadLease(String name, String owner, long expireMillis) {
+        if (!cache.cacheEnable() || isBlank(name) || isBlank(owner)) {
+            return true;
+        }
+        String leaseKey = getLoadLeaseKey(name);
+        Boolean acquired = new RetryActionWithThrParam<String, String, Long, Boolean>(
+                "putIfAbsent",
+                retryTimes,
+                leaseKey,
+                owner,
+                expireMillis
+        ).action((key, val, expire) -> cache.putIfAbsent(key, val, expire));
+        // redis异常时放行，由调用方直接回源
+        return acquired == null || acquired;
+    }
+
+    @Override
+    public void releaseLoadLease(String name, String owner) {
+        if (!cache.cacheEnable() || isBlank(name) || isBlank(owner)) {
+            return;
+        }
+        String leaseKey = getLoadLeaseKey(name);
+        new RetryActionWithTwoParam<String, String, Boolean>(
+                "evictIfEquals",
+                retryTimes,
+                leaseKey,
+                owner
+        ).action((key, val) -> cache.evictIfEquals(key, val));
+    }
+
+    @Override
+    public void registerRefresher(Family family, Function<String, ?> loader) {
+        if (family != null && loader != null) {
+            refreshers.put(family, loader);
+        }
+    }
+
+    public String getVersionChannel() {
+        return versionChannel;
+    }
+
+    // 写入带软过期时间的值，硬过期时间在软过期基础上延长staleExpire，期间读取返回旧值
+    private void putSoft(String key, Object value, long expire) {
+        new RetryActionWithThrParam<String, Object, Long, Boolean>(
+                "putSoft",
+                retryTimes,
+                key,
+                value,
+                expire
+        ).action((k, v, e) -> cache.putSoft(k, v, e, e + staleExpire));
+    }
+
+    // 读取缓存，已软过期时仍返回旧值并触发一次异步刷新
+    private <T> T getSoft(Family family, String id, String key, Class<T> type) {
+        SoftValue<T> softValue = new RetryActionWithTwoParam<String, Class<T>, SoftValue<T>>(
+                "getSoft",
+                retryTimes,
+                key,
+                type
+        ).action((k, t) -> cache.getSoft(k, t));
+        if (softValue == null) {
+            return null;
+        }
+        if (softValue.isStale()) {
+            refreshAsync(family, id, key);
+        }
+        return softValue.getValue();
+    }
+
+    // 本节点内按key去重，集群内通过回源租约去重，保证同一个key只有一次回源
+    private void refreshAsync(Family family, String id, String key) {
+        Function<String, ?> loader = refreshers.get(family);
+        if (loader == null || refreshExecutor == null || !refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                String leaseName = "refresh." + key;
+                try {
+                    if (!tryLoadLease(leaseName, node, leaseExpire)) {
+                        return;
+                    }
+                    try {
+                        Object value = loader.apply(id);
+                        if (value == null) {
+                            evict(key);
+                        } else {
+                            reload(family, value);
+                        }
+                    } finally {
+                        releaseLoadLease(leaseName, node);
+                    }
+                } catch (Exception ex) {
+                    log.warn("refresh cache[{}] failed", key, ex);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (TaskRejectedException ex) {
+            refreshing.remove(key);
+            log.warn("refresh cache[{}] rejected", key);
+        }
+    }
+
+    private void reload(Family family, Object value) {
+        switch (family) {
+            case PROJECT:
+                loadProject((Project) value);
+                break;
+            case API_TOKEN:
+                loadApiToken((ApiToken) value);
+                break;
+            case USER_NAME:
+            case USER_TOKEN:
+                loadUser((User) value);
+                break;
+            case VERSION_ID:
+                loadVersionForId((ApiVersionVo) value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evict(String key) {
+        new RetryActionWithOneParam<List<String>, Long>(
+                "evict",
+                retryTimes,
+                Arrays.asList(key)
+        ).action(
+                keys -> cache.evict(keys)
+        );
+    }
+
+    // 配置项变更后快照失效，下次读取时重新生成
+    private void evictItemSnapshot(Long versionId) {
+        evict(getItemSnapshotKey(versionId));
+    }
+
+    // 不存在的名称记录在hash中，读取整个hash以便由本地缓存吸收后续查询
+    private boolean isMissing(String missKey, String name) {
+        if (!cache.cacheEnable() || !negativeEnable || isBlank(name)) {
+            return false;
+        }
+        Map<String, Boolean> missing = new RetryActionWithTwoParam<String, Class<Boolean>, Map<String, Boolean>>(
+                "hgetall",
+                retryTimes,
+                missKey,
+                Boolean.class
+        ).action((key, type) -> cache.hgetall(key, type));
+        return missing != null && missing.containsKey(name);
+    }
+
+    // 写入不存在的名称并刷新过期时间，随正常数据的失效一起删除
+    private void loadMissing(String missKey, List<String> names) {
+        if (!cache.cacheEnable() || !negativeEnable || isEmpty(names)) {
+            return;
+        }
+        Map<String, Boolean> map = new HashMap<>();
+        for (String name : names) {
+            if (!isBlank(name)) {
+                map.put(name, Boolean.TRUE);
+            }
+        }
+        if (map.isEmpty()) {
+            return;
+        }
+        new RetryActionWithTwoParam<CacheBatch, Boolean, Boolean>(
+                "executeBatch",
+                retryTimes,
+                new CacheBatch().hmset(missKey, map).expire(missKey, negativeExpire),
+                Boolean.FALSE
+        ).action(
+                (CacheBatch b, Boolean atomic) -> cache.executeBatch(b, atomic)
+        );
+    }
+
+    // 在临时key上写入完整的hash后RENAME覆盖目标key，读取方只会看到完整的旧数据或新数据，evictKeys在同一事务中删除
+    private Boolean swapHash(String key, Map<String, ?> kvs, String... evictKeys) {
+        CacheBatch batch = new CacheBatch();
+        if (kvs.isEmpty()) {
+            batch.evict(key);
+        } else {
+            String swapKey = getSwapKey(key);
+            batch.hmset(swapKey, kvs).rename(swapKey, key);
+        }
+        if (evictKeys.length > 0) {
+            batch.evict(evictKeys);
+        }
+        return executeAtomic(batch);
+    }
+
+    // 以MULTI/EXEC事务批量执行，失败时重试
+    private Boolean executeAtomic(CacheBatch batch) {
+        return new RetryActionWithTwoParam<CacheBatch, Boolean, Boolean>(
+                "executeBatch",
+                retryTimes,
+                batch,
+                Boolean.TRUE
+        ).action(
+                (CacheBatch b, Boolean atomic) -> cache.executeBatch(b, atomic)
+        );
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+/**
+ * 带软过期时间的缓存值，超过软过期时间后仍可读到旧值，由调用方异步刷新
+ */
+public class SoftValue<T> {
+
+    private final T value;
+
+    // 软过期时间，毫秒时间戳，0表示写入时未设置
+    private final long softExpireAt;
+
+    public SoftValue(T value, long softExpireAt) {
+        this.value = value;
+        this.softExpireAt = softExpireAt;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getSoftExpireAt() {
+        return softExpireAt;
+    }
+
+    /**
+     * @return 是否已超过软过期时间
+     */
+    public boolean isStale() {
+        return softExpireAt > 0 && System.currentTimeMillis() >= softExpireAt;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.utils.gson.GsonUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 配置项的紧凑二进制编码，其它类型仍以json编码
+ *
+ * 编码格式（大端序）：
+ * <pre>
+ * byte   格式版本：1 未压缩，2 deflate压缩，压缩时其后的数据整体压缩
+ * byte   数据类型：1 ApiItemVo
+ * string key
+ * string value
+ *
+ * string  int长度 + UTF-8字节，null时长度为-1
+ * </pre>
+ */
+@Slf4j
+@Component
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final String NAME = "binary";
+
+    public static final byte VERSION_PLAIN = 1;
+    public static final byte VERSION_DEFLATE = 2;
+
+    public static final byte TYPE_ITEM = 1;
+
+    // 编码后超过该长度时压缩，0表示不压缩
+    @Value("${rcc.cache.codec.compress-threshold: 0}")
+    private int compressThreshold;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes[0] == VERSION_PLAIN || bytes[0] == VERSION_DEFLATE;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (!(value instanceof ApiItemVo)) {
+            return GsonUtils.toJsonBytes(value);
+        }
+        ApiItemVo item = (ApiItemVo) value;
+        byte[] key = toBytes(item.getKey());
+        byte[] val = toBytes(item.getValue());
+        ByteBuffer buffer = ByteBuffer.allocate(2 + length(key) + length(val));
+        buffer.put(VERSION_PLAIN);
+        buffer.put(TYPE_ITEM);
+        putBytes(buffer, key);
+        putBytes(buffer, val);
+        byte[] bytes = buffer.array();
+        if (compressThreshold > 0 && bytes.length > compressThreshold) {
+            return deflate(bytes);
+        }
+        return bytes;
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        ByteBuffer buffer = bytes[0] == VERSION_DEFLATE ? inflate(bytes) : ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        if (buffer == null) {
+            return null;
+        }
+        byte dataType = buffer.get();
+        if (dataType != TYPE_ITEM || !type.isAssignableFrom(ApiItemVo.class)) {
+            log.warn("binary cache type[{}] can not decode as {}", dataType, type.getName());
+            return null;
+        }
+        ApiItemVo item = new ApiItemVo();
+        item.setKey(getString(buffer));
+        item.setValue(getString(buffer));
+        return type.cast(item);
+    }
+
+    private byte[] toBytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int length(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    // 保留版本字节，压缩其后的数据
+    private byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, 1, bytes.length - 1);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            out.write(VERSION_DEFLATE);
+            byte[] buf = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private ByteBuffer inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buf = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    log.warn("binary cache value is truncated");
+                    return null;
+                }
+                out.write(buf, 0, n);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (DataFormatException ex) {
+            log.warn("inflate binary cache value fail.", ex);
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.codec;
+
+/**
+ * redis缓存值的编解码，通过 rcc.cache.codec 选择写入时使用的编码，读取时根据数据自身识别编码
+ */
+public interface CacheCodec {
+
+    /**
+     * @return 编码名称，对应 rcc.cache.codec 的取值
+     */
+    String getName();
+
+    /**
+     * 根据数据的首字节判断是否由本编码写入，滚动升级期间新旧编码的数据可以共存
+     *
+     * @param bytes 非空数据
+     *
+     * @return 能否解码
+     */
+    boolean canDecode(byte[] bytes);
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, Class<T> type);
+}
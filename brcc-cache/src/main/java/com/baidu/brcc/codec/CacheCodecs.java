@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.codec;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按配置选择写入编码，读取时按数据首字节选择解码，升级过程中新旧格式的缓存可同时读取
+ */
+@Slf4j
+@Component
+public class CacheCodecs {
+
+    // 写入缓存使用的编码，全部节点升级后再切换，避免旧节点读不到新格式
+    @Value("${rcc.cache.codec:gson}")
+    private String codecName;
+
+    @Autowired
+    private List<CacheCodec> codecs;
+
+    private CacheCodec encoder;
+
+    @PostConstruct
+    public void init() {
+        // 配置值可能带有空白，如yaml中的 "rcc.cache.codec: binary "
+        String name = codecName == null ? null : codecName.trim();
+        for (CacheCodec codec : codecs) {
+            if (codec.getName().equals(name)) {
+                encoder = codec;
+            }
+        }
+        if (encoder == null) {
+            log.warn("cache codec[{}] not found, use {}", codecName, GsonCacheCodec.NAME);
+            encoder = new GsonCacheCodec();
+        }
+    }
+
+    public byte[] encode(Object value) {
+        return encoder.encode(value);
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        for (CacheCodec codec : codecs) {
+            if (codec.canDecode(bytes)) {
+                return codec.decode(bytes, type);
+            }
+        }
+        log.warn("unknown cache format version[{}]", bytes[0]);
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.codec;
+
+import org.springframework.stereotype.Component;
+
+import com.baidu.brcc.utils.gson.GsonUtils;
+
+/**
+ * json编码，不写入版本字节，与升级前写入的数据格式一致
+ */
+@Component
+public class GsonCacheCodec implements CacheCodec {
+
+    public static final String NAME = "gson";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        // json文本以空白或可见字符开头，不会与二进制编码的版本字节冲突
+        return bytes[0] >= '\t';
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return GsonUtils.toJsonBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return GsonUtils.toObject(bytes, type);
+    }
+}
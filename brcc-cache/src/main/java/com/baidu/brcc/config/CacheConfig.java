@@ -18,14 +18,21 @@
  */
 package com.baidu.brcc.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import com.baidu.brcc.RccCacheImpl;
+import com.baidu.brcc.listener.VersionChangeListener;
+import com.baidu.brcc.near.NearCache;
+
 //开启注解
 @Configuration
 @EnableCaching
@@ -47,4 +54,27 @@ public class CacheConfig extends CachingConfigurerSupport {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * 订阅本地缓存失效及版本变更广播，关闭缓存时不会发布广播，无需订阅
+     * @param connectionFactory
+     * @param nearCache
+     * @param rccCache
+     * @param versionChangeListener
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rcc.cache.enable", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       NearCache nearCache,
+                                                                       RccCacheImpl rccCache,
+                                                                       VersionChangeListener versionChangeListener) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (nearCache.isLocalEnable()) {
+            container.addMessageListener(nearCache, new ChannelTopic(nearCache.getChannel()));
+        }
+        container.addMessageListener(versionChangeListener, new ChannelTopic(rccCache.getVersionChannel()));
+        return container;
+    }
 }
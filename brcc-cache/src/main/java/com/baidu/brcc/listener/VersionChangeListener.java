@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.VersionWatchService;
+import com.baidu.brcc.utils.gson.GsonUtils;
+
+/**
+ * 接收版本变更广播，唤醒本节点上的版本监听
+ */
+@Component
+public class VersionChangeListener implements MessageListener {
+
+    @Autowired
+    private VersionWatchService versionWatchService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        ApiVersionVo versionVo = GsonUtils.toObject(message.getBody(), ApiVersionVo.class);
+        if (versionVo != null) {
+            versionWatchService.onChange(versionVo);
+        }
+    }
+}
@@ -0,0 +1,546 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.near;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import com.baidu.brcc.Cache;
+import com.baidu.brcc.CacheBatch;
+import com.baidu.brcc.SoftValue;
+import com.baidu.brcc.redis.RedisCache;
+import com.baidu.brcc.utils.gson.GsonUtils;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 进程内一级缓存，位于RedisCache之前
+ * 读操作优先命中本地已反序列化的对象，写操作先写redis再失效本地，并通过redis pub/sub广播到其他节点
+ */
+@Slf4j
+@Primary
+@Service
+public class NearCache implements Cache, MessageListener {
+
+    // 版本戳分段数，必须为2的幂
+    private static final int STAMP_STRIPES = 1024;
+
+    // 本地缓存开关
+    @Value("${rcc.cache.local.enable:true}")
+    private boolean localEnable;
+
+    // 本地缓存最大条目数
+    @Value("${rcc.cache.local.max-size: 10000}")
+    private long maxSize;
+
+    // 本地缓存过期时间，默认30秒
+    @Value("${rcc.cache.local.expire: 30}")
+    private long expireTime;
+
+    // 失效广播频道
+    @Value("${rcc.cache.local.channel:${cache.key.prefix:mapp.rcc.}near.invalidate}")
+    private String channel;
+
+    // 待发布的失效消息上限，超过后丢弃，其他节点通过序列号缺口感知并清空本地缓存
+    @Value("${rcc.cache.local.publish-queue: 10000}")
+    private int publishQueue;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    private com.google.common.cache.Cache<String, Entry> local;
+
+    // 按key分段的版本戳，每次失效递增，用于丢弃失效前发起的回填
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    // 当前节点ID，每次启动重新生成
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 当前节点发布的消息序列号，分配与入队在publishLock内完成，由单个发布线程按序发布
+    private long publishSeq;
+
+    private final Object publishLock = new Object();
+
+    // 单线程发布失效消息，写入方无需等待redis pub/sub
+    private ThreadPoolTaskExecutor publisher;
+
+    // 其他节点最近一次收到的序列号
+    private com.google.common.cache.Cache<String, Long> receivedSeqs;
+
+    // 失效回调，供上层维护自己的本地缓存
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        local = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireTime, TimeUnit.SECONDS)
+                .build();
+        receivedSeqs = CacheBuilder.newBuilder()
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+        publisher = new ThreadPoolTaskExecutor();
+        publisher.setThreadNamePrefix("near-cache-publish-");
+        publisher.setCorePoolSize(1);
+        publisher.setMaxPoolSize(1);
+        publisher.setQueueCapacity(Math.max(publishQueue, 1));
+        publisher.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        // 停止时发布完已入队的消息
+        publisher.setWaitForTasksToCompleteOnShutdown(true);
+        publisher.setAwaitTerminationSeconds(5);
+        publisher.initialize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    @Override
+    public boolean cacheEnable() {
+        return redisCache.cacheEnable();
+    }
+
+    @Override
+    public Long evict(List<String> keys) throws DataAccessException {
+        try {
+            return redisCache.evict(keys);
+        } finally {
+            if (!CollectionUtils.isEmpty(keys)) {
+                changed(keys.toArray(new String[0]));
+            }
+        }
+    }
+
+    @Override
+    public Long evict(String... keys) throws DataAccessException {
+        try {
+            return redisCache.evict(keys);
+        } finally {
+            if (keys != null) {
+                changed(keys);
+            }
+        }
+    }
+
+    @Override
+    public <T> List<T> getByList(List<String> keys, Class<T> type) throws DataAccessException {
+        return redisCache.getByList(keys, type);
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> type) throws DataAccessException {
+        T value = lookup(key, type);
+        if (value != null) {
+            return value;
+        }
+        long stamp = stamp(key);
+        value = redisCache.get(key, type);
+        if (value != null) {
+            fill(key, stamp, type, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Long getExpire(String key, TimeUnit timeUnit) throws DataAccessException {
+        return redisCache.getExpire(key, timeUnit);
+    }
+
+    @Override
+    public Boolean put(String key, Object value) throws DataAccessException {
+        try {
+            return redisCache.put(key, value);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public Boolean put(String key, Object value, Long customerExpire) throws DataAccessException {
+        try {
+            return redisCache.put(key, value, customerExpire);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public void addInvalidationListener(Consumer<String> listener) {
+        if (listener != null) {
+            invalidationListeners.add(listener);
+        }
+    }
+
+    @Override
+    public Boolean putBytes(String key, byte[] value, Long customerExpire) throws DataAccessException {
+        try {
+            return redisCache.putBytes(key, value, customerExpire);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public byte[] getBytes(String key) throws DataAccessException {
+        byte[] value = lookup(key, byte[].class);
+        if (value != null) {
+            return value;
+        }
+        long stamp = stamp(key);
+        value = redisCache.getBytes(key);
+        if (value != null) {
+            fill(key, stamp, byte[].class, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Boolean putSoft(String key, Object value, long softExpire, long hardExpire) throws DataAccessException {
+        try {
+            return redisCache.putSoft(key, value, softExpire, hardExpire);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public <T> SoftValue<T> getSoft(String key, Class<T> type) throws DataAccessException {
+        SoftValue<T> value = lookup(key, SoftValue.class);
+        if (value != null && type.isInstance(value.getValue())) {
+            return value;
+        }
+        long stamp = stamp(key);
+        value = redisCache.getSoft(key, type);
+        if (value != null) {
+            fill(key, stamp, SoftValue.class, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Boolean putIfAbsent(String key, Object value, long expireMillis) throws DataAccessException {
+        // 仅用于租约类的短期key，不经过本地缓存
+        return redisCache.putIfAbsent(key, value, expireMillis);
+    }
+
+    @Override
+    public Boolean evictIfEquals(String key, Object value) throws DataAccessException {
+        return redisCache.evictIfEquals(key, value);
+    }
+
+    @Override
+    public Boolean hset(String key, String field, Object value) throws DataAccessException {
+        try {
+            return redisCache.hset(key, field, value);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public Boolean hmset(String key, Map<String, Object> kvs) throws DataAccessException {
+        try {
+            return redisCache.hmset(key, kvs);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public <T> T hget(String key, String field, Class<T> type) throws DataAccessException {
+        Map<String, T> map = lookup(key, type);
+        if (map != null && !isBlank(field)) {
+            return map.get(field);
+        }
+        return redisCache.hget(key, field, type);
+    }
+
+    @Override
+    public <T> Map<String, T> hmget(String key, List<String> fields, Class<T> type) throws DataAccessException {
+        Map<String, T> map = lookup(key, type);
+        if (map != null && !CollectionUtils.isEmpty(fields)) {
+            // 与redis hmget保持一致， 不存在的field返回null
+            Map<String, T> result = new HashMap<>();
+            for (String field : fields) {
+                result.put(field, map.get(field));
+            }
+            return result;
+        }
+        return redisCache.hmget(key, fields, type);
+    }
+
+    @Override
+    public <T> Map<String, T> hgetall(String key, Class<T> type) throws DataAccessException {
+        Map<String, T> map = lookup(key, type);
+        if (map != null) {
+            return map;
+        }
+        long stamp = stamp(key);
+        map = redisCache.hgetall(key, type);
+        // 空hash不缓存，交由上层回源加载
+        if (CollectionUtils.isEmpty(map)) {
+            return map;
+        }
+        map = Collections.unmodifiableMap(map);
+        fill(key, stamp, type, map);
+        return map;
+    }
+
+    @Override
+    public Boolean hdel(String key, String field) throws DataAccessException {
+        try {
+            return redisCache.hdel(key, field);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public Boolean hmdel(String key, List<String> fields) throws DataAccessException {
+        try {
+            return redisCache.hmdel(key, fields);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public Long hDelByPrefix(String key, String fieldPrefix) throws DataAccessException {
+        try {
+            return redisCache.hDelByPrefix(key, fieldPrefix);
+        } finally {
+            changed(key);
+        }
+    }
+
+    @Override
+    public Boolean exists(String key) {
+        if (localEnable && !isBlank(key) && local.getIfPresent(key) != null) {
+            return Boolean.TRUE;
+        }
+        return redisCache.exists(key);
+    }
+
+    @Override
+    public Long publish(String channel, Object message) throws DataAccessException {
+        return redisCache.publish(channel, message);
+    }
+
+    @Override
+    public Boolean executeBatch(CacheBatch batch, boolean atomic) throws DataAccessException {
+        try {
+            return redisCache.executeBatch(batch, atomic);
+        } finally {
+            if (batch != null && !batch.isEmpty()) {
+                changed(batch.getKeys().toArray(new String[0]));
+            }
+        }
+    }
+
+    /**
+     * 失效本地缓存的指定key
+     *
+     * @param key 缓存key（不含前缀）
+     */
+    public void invalidate(String key) {
+        if (key == null) {
+            return;
+        }
+        stamps.incrementAndGet(stripe(key));
+        local.invalidate(key);
+        notifyListeners(key);
+    }
+
+    /**
+     * 清空本地缓存
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        local.invalidateAll();
+        notifyListeners(null);
+    }
+
+    public long size() {
+        return local.size();
+    }
+
+    public boolean isLocalEnable() {
+        return localEnable;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 接收其他节点的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        NearCacheMessage msg = GsonUtils.toObject(message.getBody(), NearCacheMessage.class);
+        if (msg != null) {
+            onInvalidation(msg);
+        }
+    }
+
+    synchronized void onInvalidation(NearCacheMessage msg) {
+        String node = msg.getNode();
+        if (!localEnable || node == null || nodeId.equals(node)) {
+            return;
+        }
+        Long last = receivedSeqs.getIfPresent(node);
+        long seq = msg.getSeq();
+        if (last == null || seq > last) {
+            receivedSeqs.put(node, seq);
+        }
+        // 序列号不连续说明有消息丢失，清空全部本地缓存；不大于已收到序列号的消息只失效自身的key
+        if ((last != null && seq > last + 1) || CollectionUtils.isEmpty(msg.getKeys())) {
+            log.info("near cache flush all, node[{}] last seq[{}] received seq[{}]", node, last, seq);
+            invalidateAll();
+            return;
+        }
+        for (String key : msg.getKeys()) {
+            invalidate(key);
+        }
+    }
+
+    // 失效本地并广播给其他节点
+    private void changed(String... keys) {
+        for (String key : keys) {
+            invalidate(key);
+        }
+        if (!localEnable || keys.length == 0) {
+            return;
+        }
+        NearCacheMessage msg = new NearCacheMessage();
+        msg.setNode(nodeId);
+        msg.setKeys(Arrays.asList(keys));
+        // 序列号分配与入队需串行，否则后分配的序列号可能先发布，被误判为消息丢失；发布本身在发布线程中按入队顺序执行
+        synchronized (publishLock) {
+            // 先递增序列号，丢弃或发布失败时其他节点可通过序列号缺口感知
+            msg.setSeq(++publishSeq);
+            try {
+                publisher.execute(() -> publish(msg));
+            } catch (RejectedExecutionException ex) {
+                log.warn("near cache publish queue is full, drop invalidation keys[{}]", msg.getKeys());
+            }
+        }
+    }
+
+    private void publish(NearCacheMessage msg) {
+        try {
+            redisCache.publish(channel, msg);
+        } catch (Exception ex) {
+            log.warn("publish near cache invalidation keys[{}] fail.", msg.getKeys(), ex);
+        }
+    }
+
+    private void notifyListeners(String key) {
+        for (Consumer<String> listener : invalidationListeners) {
+            try {
+                listener.accept(key);
+            } catch (Exception ex) {
+                log.warn("near cache invalidation listener fail, key[{}]", key, ex);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V lookup(String key, Class<?> type) {
+        if (!localEnable || isBlank(key)) {
+            return null;
+        }
+        Entry entry = local.getIfPresent(key);
+        if (entry == null || entry.type != type) {
+            return null;
+        }
+        return (V) entry.value;
+    }
+
+    private long stamp(String key) {
+        if (isBlank(key)) {
+            return 0L;
+        }
+        return stamps.get(stripe(key));
+    }
+
+    private void fill(String key, long stamp, Class<?> type, Object value) {
+        if (!localEnable || isBlank(key)) {
+            return;
+        }
+        // 读取redis期间发生过失效，放弃回填
+        if (stamps.get(stripe(key)) != stamp) {
+            if (log.isDebugEnabled()) {
+                log.debug("skip fill near cache key[{}], invalidated during load", key);
+            }
+            return;
+        }
+        local.put(key, new Entry(type, value));
+        // 回填与失效并发时，以失效为准
+        if (stamps.get(stripe(key)) != stamp) {
+            local.invalidate(key);
+        }
+    }
+
+    private int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    private static class Entry {
+        private final Class<?> type;
+        private final Object value;
+
+        Entry(Class<?> type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
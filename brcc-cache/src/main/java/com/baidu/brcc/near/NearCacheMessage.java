@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.near;
+
+import java.util.List;
+
+import com.google.gson.annotations.SerializedName;
+
+import lombok.Data;
+
+/**
+ * 本地缓存失效广播消息
+ */
+@Data
+public class NearCacheMessage {
+
+    // 发送节点ID
+    @SerializedName("n")
+    private String node;
+
+    // 发送节点内递增的序列号
+    @SerializedName("s")
+    private long seq;
+
+    // 需要失效的key，为空表示清空全部
+    @SerializedName("k")
+    private List<String> keys;
+}
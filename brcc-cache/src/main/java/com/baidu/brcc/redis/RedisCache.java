@@ -26,19 +26,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import com.baidu.brcc.Cache;
+import com.baidu.brcc.CacheBatch;
+import com.baidu.brcc.SoftValue;
+import com.baidu.brcc.codec.CacheCodecs;
 import com.baidu.brcc.utils.gson.GsonUtils;
+import com.google.gson.JsonElement;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -46,6 +56,14 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class RedisCache implements Cache {
 
+    // 嵌入在值中的软过期时间字段
+    static final String SOFT_EXPIRE_FIELD = "_se";
+
+    // 值与期望一致时才删除
+    private static final byte[] EVICT_IF_EQUALS_SCRIPT =
+            ("if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) "
+                    + "else return 0 end").getBytes();
+
     // 键前缀
     @Value("${cache.key.prefix:mapp.rcc.}")
     private String keyPrefix;
@@ -58,9 +76,16 @@ public class RedisCache implements Cache {
     @Value("${rcc.cache.default.expire: 7200}")
     private long expireTime;
 
+    // 过期时间随机增加的比例，避免同时写入的key同时过期
+    @Value("${rcc.cache.expire.jitter: 0.1}")
+    private double expireJitter;
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private CacheCodecs cacheCodecs;
+
     @Override
     public boolean cacheEnable() {
         return cacheEnable;
@@ -113,7 +138,7 @@ public class RedisCache implements Cache {
                 return null;
             }
             return values.stream().filter(Objects :: nonNull)
-                    .map((byte[] value) -> GsonUtils.toObject(value, type))
+                    .map((byte[] value) -> cacheCodecs.decode(value, type))
                     .collect(Collectors.toList());
 
         });
@@ -131,7 +156,7 @@ public class RedisCache implements Cache {
             if (value == null) {
                 return null;
             }
-            return GsonUtils.toObject(value, type);
+            return cacheCodecs.decode(value, type);
         });
     }
 
@@ -163,11 +188,72 @@ public class RedisCache implements Cache {
             return Boolean.FALSE;
         }
         String keyString = keyPrefix.concat(key);
-        final long liveTime = (customerExpire != null) ? customerExpire : expireTime;
+        final long liveTime = jitter((customerExpire != null) ? customerExpire : expireTime);
+        return redisTemplate.execute(
+                (RedisConnection connection) -> {
+                    byte[] keyb = keyString.getBytes();
+                    byte[] valueb = cacheCodecs.encode(value);
+                    if (liveTime > 0) {
+                        connection.setEx(keyb, liveTime, valueb);
+                    } else {
+                        connection.set(keyb, valueb);
+                    }
+                    return Boolean.TRUE;
+                });
+    }
+
+    @Override
+    public void addInvalidationListener(Consumer<String> listener) {
+        // 没有本地状态，无需回调
+    }
+
+    @Override
+    public Boolean putBytes(String key, byte[] value, Long customerExpire) throws DataAccessException {
+        if (isBlank(key) || value == null) {
+            return Boolean.FALSE;
+        }
+        String keyString = keyPrefix.concat(key);
+        final long liveTime = jitter((customerExpire != null) ? customerExpire : expireTime);
+        return redisTemplate.execute(
+                (RedisConnection connection) -> {
+                    byte[] keyb = keyString.getBytes();
+                    if (liveTime > 0) {
+                        connection.setEx(keyb, liveTime, value);
+                    } else {
+                        connection.set(keyb, value);
+                    }
+                    return Boolean.TRUE;
+                });
+    }
+
+    @Override
+    public byte[] getBytes(String key) throws DataAccessException {
+        if (isBlank(key)) {
+            return null;
+        }
+        String keyString = keyPrefix.concat(key);
+        return redisTemplate.execute((RedisConnection connection) -> connection.get(keyString.getBytes()));
+    }
+
+    @Override
+    public Boolean putSoft(String key, Object value, long softExpire, long hardExpire) throws DataAccessException {
+        if (isBlank(key) || value == null) {
+            return Boolean.FALSE;
+        }
+        String keyString = keyPrefix.concat(key);
+        long softTime = jitter(softExpire);
+        long liveTime = softTime + Math.max(hardExpire - softExpire, 0L);
+        // 软过期时间嵌入在json字段中，不经过cacheCodecs
+        JsonElement tree = GsonUtils.toJsonElement(GsonUtils.toJsonString(value));
+        // 只有对象能嵌入软过期时间，旧版本反序列化时会忽略该字段
+        if (tree.isJsonObject()) {
+            tree.getAsJsonObject().addProperty(SOFT_EXPIRE_FIELD,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(softTime));
+        }
         return redisTemplate.execute(
                 (RedisConnection connection) -> {
                     byte[] keyb = keyString.getBytes();
-                    byte[] valueb = GsonUtils.toJsonBytes(value);
+                    byte[] valueb = GsonUtils.toJsonBytes(tree);
                     if (liveTime > 0) {
                         connection.setEx(keyb, liveTime, valueb);
                     } else {
@@ -177,6 +263,61 @@ public class RedisCache implements Cache {
                 });
     }
 
+    @Override
+    public <T> SoftValue<T> getSoft(String key, Class<T> type) throws DataAccessException {
+        if (isBlank(key)) {
+            return null;
+        }
+        String keyString = keyPrefix.concat(key);
+        return redisTemplate.execute((RedisConnection connection) -> {
+            byte[] keyb = keyString.getBytes();
+            byte[] value = connection.get(keyb);
+            if (value == null || value.length == 0) {
+                return null;
+            }
+            JsonElement tree = GsonUtils.toJsonElement(new String(value));
+            long softExpireAt = 0L;
+            if (tree.isJsonObject()) {
+                JsonElement softExpire = tree.getAsJsonObject().remove(SOFT_EXPIRE_FIELD);
+                if (softExpire != null && softExpire.isJsonPrimitive()) {
+                    softExpireAt = softExpire.getAsLong();
+                }
+            }
+            T t = GsonUtils.toObject(tree, type);
+            return t == null ? null : new SoftValue<>(t, softExpireAt);
+        });
+    }
+
+    @Override
+    public Boolean putIfAbsent(String key, Object value, long expireMillis) throws DataAccessException {
+        if (isBlank(key) || expireMillis <= 0) {
+            return Boolean.FALSE;
+        }
+        String keyString = keyPrefix.concat(key);
+        return redisTemplate.execute(
+                (RedisConnection connection) -> {
+                    byte[] keyb = keyString.getBytes();
+                    byte[] valueb = cacheCodecs.encode(value);
+                    return connection.set(keyb, valueb, Expiration.milliseconds(expireMillis),
+                            SetOption.SET_IF_ABSENT);
+                });
+    }
+
+    @Override
+    public Boolean evictIfEquals(String key, Object value) throws DataAccessException {
+        if (isBlank(key)) {
+            return Boolean.FALSE;
+        }
+        String keyString = keyPrefix.concat(key);
+        Long deleted = redisTemplate.execute(
+                (RedisConnection connection) -> {
+                    byte[] keyb = keyString.getBytes();
+                    byte[] valueb = cacheCodecs.encode(value);
+                    return connection.eval(EVICT_IF_EQUALS_SCRIPT, ReturnType.INTEGER, 1, keyb, valueb);
+                });
+        return deleted != null && deleted > 0;
+    }
+
     @Override
     public Boolean hset(String key, String field, Object value) throws DataAccessException {
         if (isBlank(key) || isBlank(field)) {
@@ -187,7 +328,7 @@ public class RedisCache implements Cache {
                 (RedisConnection connection) -> {
                     byte[] keyb = keyString.getBytes();
                     byte[] fieldb = field.getBytes();
-                    byte[] valueb = GsonUtils.toJsonBytes(value);
+                    byte[] valueb = cacheCodecs.encode(value);
                     return connection.hSet(keyb, fieldb, valueb);
                 });
 
@@ -201,16 +342,8 @@ public class RedisCache implements Cache {
         String keyString = keyPrefix.concat(key);
         return redisTemplate.execute(
                 (RedisConnection connection) -> {
-                    Map<byte[], byte[]> kvalues = new HashMap<>();
-                    for (Map.Entry<String, Object> entry : kvs.entrySet()) {
-                        String filed = entry.getKey();
-                        if (filed == null) {
-                            continue;
-                        }
-                        kvalues.put(filed.getBytes(), GsonUtils.toJsonBytes(entry.getValue()));
-                    }
                     byte[] keyb = keyString.getBytes();
-                    connection.hMSet(keyb, kvalues);
+                    connection.hMSet(keyb, toHashBytes(kvs));
                     return Boolean.TRUE;
                 });
     }
@@ -226,7 +359,7 @@ public class RedisCache implements Cache {
                     byte[] keyb = keyString.getBytes();
                     byte[] fieldb = field.getBytes();
                     byte[] valueb = connection.hGet(keyb, fieldb);
-                    return GsonUtils.toObject(valueb, type);
+                    return cacheCodecs.decode(valueb, type);
                 });
     }
 
@@ -262,7 +395,7 @@ public class RedisCache implements Cache {
                     Map<String, T> map = new HashMap<>();
                     for (int j = 0; j < fields.size(); j++) {
                         String kj = fields.get(j);
-                        T vj = GsonUtils.toObject(valuebs.get(j), type);
+                        T vj = cacheCodecs.decode(valuebs.get(j), type);
                         map.put(kj, vj);
                     }
                     return map;
@@ -285,7 +418,7 @@ public class RedisCache implements Cache {
                     Map<String, T> map = new HashMap<>();
                     for (Map.Entry<byte[], byte[]> entry : valuebs.entrySet()) {
                         String hk = new String(entry.getKey());
-                        T hv = GsonUtils.toObject(entry.getValue(), type);
+                        T hv = cacheCodecs.decode(entry.getValue(), type);
                         map.put(hk, hv);
                     }
                     return map;
@@ -374,4 +507,83 @@ public class RedisCache implements Cache {
                     return connection.exists(keyb);
                 });
     }
+
+    @Override
+    public Long publish(String channel, Object message) throws DataAccessException {
+        if (isBlank(channel) || message == null) {
+            return 0L;
+        }
+        return redisTemplate.execute(
+                (RedisConnection connection) -> {
+                    byte[] channelb = channel.getBytes();
+                    byte[] messageb = GsonUtils.toJsonBytes(message);
+                    return connection.publish(channelb, messageb);
+                });
+    }
+
+    @Override
+    public Boolean executeBatch(CacheBatch batch, boolean atomic) throws DataAccessException {
+        if (batch == null || batch.isEmpty()) {
+            return Boolean.FALSE;
+        }
+        // pipeline中包裹MULTI/EXEC，原子执行的同时仍只有一次往返
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            if (atomic) {
+                connection.multi();
+            }
+            for (CacheBatch.Op op : batch.getOps()) {
+                byte[] keyb = keyPrefix.concat(op.getKey()).getBytes();
+                switch (op.getType()) {
+                    case EVICT:
+                        connection.del(keyb);
+                        break;
+                    case HDEL:
+                        byte[][] fieldsb = new byte[op.getFields().size()][];
+                        int i = 0;
+                        for (String f : op.getFields()) {
+                            fieldsb[i++] = f.getBytes();
+                        }
+                        connection.hDel(keyb, fieldsb);
+                        break;
+                    case HMSET:
+                        connection.hMSet(keyb, toHashBytes(op.getValues()));
+                        break;
+                    case RENAME:
+                        connection.rename(keyb, keyPrefix.concat(op.getFields().get(0)).getBytes());
+                        break;
+                    case EXPIRE:
+                        connection.expire(keyb, op.getExpire());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (atomic) {
+                connection.exec();
+            }
+            return null;
+        });
+        return Boolean.TRUE;
+    }
+
+    // 过期时间增加[0, expire * expireJitter]的随机值
+    private long jitter(long expire) {
+        if (expire <= 0 || expireJitter <= 0) {
+            return expire;
+        }
+        long bound = (long) (expire * expireJitter);
+        return bound <= 0 ? expire : expire + ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private Map<byte[], byte[]> toHashBytes(Map<String, ?> kvs) {
+        Map<byte[], byte[]> kvalues = new HashMap<>();
+        for (Map.Entry<String, ?> entry : kvs.entrySet()) {
+            String filed = entry.getKey();
+            if (filed == null) {
+                continue;
+            }
+            kvalues.put(filed.getBytes(), cacheCodecs.encode(entry.getValue()));
+        }
+        return kvalues;
+    }
 }
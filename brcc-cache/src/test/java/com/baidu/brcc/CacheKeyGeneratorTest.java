@@ -76,6 +76,13 @@ public class CacheKeyGeneratorTest {
         Assert.assertEquals("string.versionid.1", result);
     }
 
+    @Test
+    public void testGetSwapKey() throws Exception {
+        String result = CacheKeyGenerator.getSwapKey("hash.item.versionId.1");
+        Assert.assertTrue(result.startsWith("swap.hash.item.versionId.1."));
+        Assert.assertNotEquals(result, CacheKeyGenerator.getSwapKey("hash.item.versionId.1"));
+    }
+
     @Test
     public void testGetEnvironmentProjectIdKey() throws Exception {
         String result = CacheKeyGenerator.getEnvironmentProjectIdKey(Long.valueOf(1));
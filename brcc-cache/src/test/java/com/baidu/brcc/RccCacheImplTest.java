@@ -19,21 +19,30 @@
 package com.baidu.brcc;
 
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.Environment;
@@ -43,6 +52,7 @@ import com.baidu.brcc.domain.Version;
 import com.baidu.brcc.domain.vo.ApiEnvironmentVo;
 import com.baidu.brcc.domain.vo.ApiItemVo;
 import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.RccCache;
 
 public class RccCacheImplTest {
     @Mock
@@ -78,6 +88,14 @@ public class RccCacheImplTest {
         RccReflectionUtils.setFieldValue(cache, "expireTime", 7200L);
 
         RccReflectionUtils.setFieldValue(rccCacheImpl, "retryTimes", 0);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "negativeEnable", true);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "negativeExpire", 60L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "projectExpire", 7200L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "apiTokenExpire", 7200L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "userExpire", 7200L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "versionExpire", 7200L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "staleExpire", 3600L);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "leaseExpire", 10000L);
         envVo = new ApiEnvironmentVo();
         envVo.setEnvironmentId(1L);
         envVo.setProjectId(1L);
@@ -193,6 +211,9 @@ public class RccCacheImplTest {
         when(cache.evict(anyString())).thenReturn(Long.valueOf(1));
 
         rccCacheImpl.evictConfigItem(Long.valueOf(1));
+
+        verify(cache).evict(Arrays.asList("hash.item.versionId.1", "hash.miss.item.versionId.1",
+                "string.itemsnapshot.versionid.1"));
     }
 
     @Test
@@ -203,6 +224,15 @@ public class RccCacheImplTest {
         rccCacheImpl.evictVersionById(Arrays.<Long>asList(Long.valueOf(1)));
     }
 
+    @Test
+    public void testPublishVersionChange() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "versionChannel", "mapp.newrcc.version.change");
+
+        rccCacheImpl.publishVersionChange(apiVersionVo);
+        verify(cache).publish("mapp.newrcc.version.change", apiVersionVo);
+    }
+
     @Test
     public void testDeleteProjectCascade() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
@@ -221,6 +251,28 @@ public class RccCacheImplTest {
         rccCacheImpl.deleteEnvironmentCascade(environment, Arrays.asList(Long.valueOf(1)));
     }
 
+    @Test
+    public void testDeleteEnvironmentCascadeInOneBatch() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.executeBatch(any(), eq(true))).thenReturn(Boolean.TRUE);
+        Environment env = new Environment();
+        env.setId(2L);
+        env.setProjectId(1L);
+        env.setName("env");
+
+        rccCacheImpl.deleteEnvironmentCascade(env, Arrays.asList(3L));
+
+        ArgumentCaptor<CacheBatch> captor = ArgumentCaptor.forClass(CacheBatch.class);
+        verify(cache).executeBatch(captor.capture(), eq(true));
+        Assert.assertEquals(Arrays.asList(
+                CacheKeyGenerator.getEnvironmentProjectIdKey(1L),
+                CacheKeyGenerator.getVersionEnvironmentIdKey(2L),
+                CacheKeyGenerator.getItemVersionIdKey(3L),
+                CacheKeyGenerator.getItemSnapshotKey(3L),
+                CacheKeyGenerator.getVersionIdKey(3L)), captor.getValue().getKeys());
+        verify(cache, never()).hdel(anyString(), anyString());
+    }
+
     @Test
     public void testDeleteVersionCascade() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
@@ -250,7 +302,7 @@ public class RccCacheImplTest {
     @Test
     public void testGetProject() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.get(anyString(), any())).thenReturn(project);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(project, 0L));
 
         Project result = rccCacheImpl.getProject("name");
         Assert.assertEquals(project, result);
@@ -259,7 +311,7 @@ public class RccCacheImplTest {
     @Test
     public void testGetApiToken() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.get(anyString(), any())).thenReturn(apiToken);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(apiToken, 0L));
 
         ApiToken result = rccCacheImpl.getApiToken("token");
         Assert.assertEquals(apiToken, result);
@@ -268,7 +320,7 @@ public class RccCacheImplTest {
     @Test
     public void testGetUserByToken() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.get(anyString(), any())).thenReturn(user);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(user, 0L));
 
         User result = rccCacheImpl.getUserByToken("token");
         Assert.assertEquals(user, result);
@@ -277,7 +329,7 @@ public class RccCacheImplTest {
     @Test
     public void testGetUserByName() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.get(anyString(), any())).thenReturn(user);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(user, 0L));
 
         User result = rccCacheImpl.getUserByName("name");
         Assert.assertEquals(user, result);
@@ -326,7 +378,7 @@ public class RccCacheImplTest {
     @Test
     public void testGetVersionById() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.get(anyString(), any())).thenReturn(apiVersionVo);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(apiVersionVo, 0L));
 
         ApiVersionVo result = rccCacheImpl.getVersionById(Long.valueOf(1));
         Assert.assertEquals(apiVersionVo, result);
@@ -366,25 +418,28 @@ public class RccCacheImplTest {
     @Test
     public void testLoadProject() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        when(cache.putSoft(anyString(), any(), anyLong(), anyLong())).thenReturn(Boolean.TRUE);
 
         rccCacheImpl.loadProject(project);
+        verify(cache, times(1)).putSoft(anyString(), eq(project), eq(7200L), eq(10800L));
     }
 
     @Test
     public void testLoadUser() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        when(cache.putSoft(anyString(), any(), anyLong(), anyLong())).thenReturn(Boolean.TRUE);
 
         rccCacheImpl.loadUser(user);
+        verify(cache, times(2)).putSoft(anyString(), eq(user), eq(7200L), eq(10800L));
     }
 
     @Test
     public void testLoadApiToken() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        when(cache.putSoft(anyString(), any(), anyLong(), anyLong())).thenReturn(Boolean.TRUE);
 
         rccCacheImpl.loadApiToken(apiToken);
+        verify(cache, times(1)).putSoft(anyString(), eq(apiToken), eq(7200L), eq(10800L));
     }
 
     @Test
@@ -415,9 +470,10 @@ public class RccCacheImplTest {
     @Test
     public void testLoadVersionForId() throws Exception {
         when(cache.cacheEnable()).thenReturn(true);
-        when(cache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        when(cache.putSoft(anyString(), any(), anyLong(), anyLong())).thenReturn(Boolean.TRUE);
 
         rccCacheImpl.loadVersionForId(apiVersionVo);
+        verify(cache, times(1)).putSoft(anyString(), eq(apiVersionVo), eq(7200L), eq(10800L));
     }
 
     @Test
@@ -445,4 +501,219 @@ public class RccCacheImplTest {
 
         rccCacheImpl.loadItems(Long.valueOf(1), Arrays.<ApiItemVo>asList(new ApiItemVo()), true);
     }
+
+    @Test
+    public void testLoadItemsClearSwapsHash() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.executeBatch(any(), eq(true))).thenReturn(Boolean.TRUE);
+        ApiItemVo item = new ApiItemVo();
+        item.setKey("key");
+
+        rccCacheImpl.loadItems(1L, Arrays.asList(item), true);
+
+        ArgumentCaptor<CacheBatch> captor = ArgumentCaptor.forClass(CacheBatch.class);
+        verify(cache).executeBatch(captor.capture(), eq(true));
+        List<CacheBatch.Op> ops = captor.getValue().getOps();
+        Assert.assertEquals(3, ops.size());
+        // 新数据写入临时key后覆盖目标key，目标key不会被删除
+        Assert.assertEquals(CacheBatch.OpType.HMSET, ops.get(0).getType());
+        Assert.assertTrue(ops.get(0).getKey().startsWith(CacheKeyGenerator.SWAP_KEY_PREFIX));
+        Assert.assertEquals(item, ops.get(0).getValues().get("key"));
+        Assert.assertEquals(CacheBatch.OpType.RENAME, ops.get(1).getType());
+        Assert.assertEquals(ops.get(0).getKey(), ops.get(1).getKey());
+        Assert.assertEquals(Arrays.asList(CacheKeyGenerator.getItemVersionIdKey(1L)), ops.get(1).getFields());
+        // 配置项快照在同一事务中删除
+        Assert.assertEquals(CacheBatch.OpType.EVICT, ops.get(2).getType());
+        Assert.assertEquals(CacheKeyGenerator.getItemSnapshotKey(1L), ops.get(2).getKey());
+        verify(cache, never()).evict(any(List.class));
+    }
+
+    @Test
+    public void testLoadItemsClearWithEmptyItems() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.executeBatch(any(), eq(true))).thenReturn(Boolean.TRUE);
+
+        rccCacheImpl.loadItems(1L, null, true);
+
+        ArgumentCaptor<CacheBatch> captor = ArgumentCaptor.forClass(CacheBatch.class);
+        verify(cache).executeBatch(captor.capture(), eq(true));
+        List<CacheBatch.Op> ops = captor.getValue().getOps();
+        Assert.assertEquals(2, ops.size());
+        Assert.assertEquals(CacheBatch.OpType.EVICT, ops.get(0).getType());
+        Assert.assertEquals(CacheKeyGenerator.getItemVersionIdKey(1L), ops.get(0).getKey());
+        Assert.assertEquals(CacheKeyGenerator.getItemSnapshotKey(1L), ops.get(1).getKey());
+    }
+
+    @Test
+    public void testItemSnapshot() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "itemSnapshotExpire", 86400L);
+        byte[] snapshot = "snapshot".getBytes();
+        when(cache.getBytes("string.itemsnapshot.versionid.1")).thenReturn(snapshot);
+
+        rccCacheImpl.loadItemSnapshot(1L, snapshot);
+
+        verify(cache).putBytes("string.itemsnapshot.versionid.1", snapshot, 86400L);
+        Assert.assertSame(snapshot, rccCacheImpl.getItemSnapshot(1L));
+        Assert.assertNull(rccCacheImpl.getItemSnapshot(0L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testItemSnapshotListener() throws Exception {
+        List<Long> versionIds = new ArrayList<>();
+        rccCacheImpl.addItemSnapshotListener(versionIds::add);
+        ArgumentCaptor<Consumer<String>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(cache).addInvalidationListener(captor.capture());
+
+        captor.getValue().accept("string.itemsnapshot.versionid.1");
+        captor.getValue().accept("hash.item.versionId.1");
+        captor.getValue().accept(null);
+
+        Assert.assertEquals(Arrays.asList(1L, null), versionIds);
+    }
+
+    @Test
+    public void testTryLoadLease() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.putIfAbsent("string.loadlease.item.1.1", "owner", 10000L)).thenReturn(Boolean.TRUE);
+        when(cache.putIfAbsent("string.loadlease.item.1.2", "owner", 10000L)).thenReturn(Boolean.FALSE);
+
+        Assert.assertTrue(rccCacheImpl.tryLoadLease("item.1.1", "owner", 10000L));
+        Assert.assertFalse(rccCacheImpl.tryLoadLease("item.1.2", "owner", 10000L));
+    }
+
+    @Test
+    public void testTryLoadLeaseWhenCacheUnavailable() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.putIfAbsent(anyString(), any(), eq(10000L))).thenThrow(new RuntimeException("down"));
+
+        Assert.assertTrue(rccCacheImpl.tryLoadLease("item.1.1", "owner", 10000L));
+
+        when(cache.cacheEnable()).thenReturn(false);
+        Assert.assertTrue(rccCacheImpl.tryLoadLease("item.1.1", "owner", 10000L));
+    }
+
+    @Test
+    public void testReleaseLoadLease() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+
+        rccCacheImpl.releaseLoadLease("item.1.1", "owner");
+
+        verify(cache).evictIfEquals("string.loadlease.item.1.1", "owner");
+    }
+
+    @Test
+    public void testStaleValueTriggersRefresh() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(project, 1L));
+        when(cache.putIfAbsent(anyString(), any(), anyLong())).thenReturn(Boolean.TRUE);
+        Project fresh = new Project();
+        fresh.setName("name");
+        rccCacheImpl.registerRefresher(RccCache.Family.PROJECT, name -> fresh);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "refreshExecutor", syncExecutor());
+
+        // 软过期后仍返回旧值，同时回源刷新
+        Assert.assertEquals(project, rccCacheImpl.getProject("name"));
+        verify(cache).putSoft(anyString(), eq(fresh), eq(7200L), eq(10800L));
+        verify(cache).evictIfEquals(eq("string.loadlease.refresh.string.projectname.name"), any());
+    }
+
+    @Test
+    public void testStaleValueRefreshSkippedWithoutLease() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(apiToken, 1L));
+        when(cache.putIfAbsent(anyString(), any(), anyLong())).thenReturn(Boolean.FALSE);
+        rccCacheImpl.registerRefresher(RccCache.Family.API_TOKEN, token -> apiToken);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "refreshExecutor", syncExecutor());
+
+        Assert.assertEquals(apiToken, rccCacheImpl.getApiToken("token"));
+        verify(cache, never()).putSoft(anyString(), any(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testStaleValueEvictedWhenDeleted() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(apiVersionVo, 1L));
+        when(cache.putIfAbsent(anyString(), any(), anyLong())).thenReturn(Boolean.TRUE);
+        rccCacheImpl.registerRefresher(RccCache.Family.VERSION_ID, id -> null);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "refreshExecutor", syncExecutor());
+
+        Assert.assertEquals(apiVersionVo, rccCacheImpl.getVersionById(1L));
+        verify(cache).evict(eq(Arrays.asList("string.versionid.1")));
+    }
+
+    @Test
+    public void testFreshValueNotRefreshed() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.getSoft(anyString(), any())).thenReturn(new SoftValue<>(user, Long.MAX_VALUE));
+        rccCacheImpl.registerRefresher(RccCache.Family.USER_NAME, name -> user);
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "refreshExecutor", syncExecutor());
+
+        Assert.assertEquals(user, rccCacheImpl.getUserByName("user"));
+        verify(cache, never()).putIfAbsent(anyString(), any(), anyLong());
+    }
+
+    @Test
+    public void testApiTokenMissing() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.get("string.miss.apitoken.bad", Boolean.class)).thenReturn(Boolean.TRUE);
+        when(cache.get("string.miss.apitoken.token", Boolean.class)).thenReturn(null);
+
+        Assert.assertTrue(rccCacheImpl.isApiTokenMissing("bad"));
+        Assert.assertFalse(rccCacheImpl.isApiTokenMissing("token"));
+
+        rccCacheImpl.loadApiTokenMissing("bad");
+        verify(cache).put("string.miss.apitoken.bad", Boolean.TRUE, 60L);
+    }
+
+    @Test
+    public void testItemMissing() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        Map<String, Boolean> missing = new HashMap<>();
+        missing.put("typo", Boolean.TRUE);
+        when(cache.hgetall("hash.miss.item.versionId.1", Boolean.class)).thenReturn(missing);
+
+        Assert.assertTrue(rccCacheImpl.isItemMissing(1L, "typo"));
+        Assert.assertFalse(rccCacheImpl.isItemMissing(1L, "key"));
+    }
+
+    @Test
+    public void testLoadItemMissing() throws Exception {
+        when(cache.cacheEnable()).thenReturn(true);
+        when(cache.executeBatch(any(), eq(false))).thenReturn(Boolean.TRUE);
+
+        rccCacheImpl.loadItemMissing(1L, Arrays.asList("typo"));
+
+        ArgumentCaptor<CacheBatch> captor = ArgumentCaptor.forClass(CacheBatch.class);
+        verify(cache).executeBatch(captor.capture(), eq(false));
+        List<CacheBatch.Op> ops = captor.getValue().getOps();
+        Assert.assertEquals(2, ops.size());
+        Assert.assertEquals(CacheBatch.OpType.HMSET, ops.get(0).getType());
+        Assert.assertEquals("hash.miss.item.versionId.1", ops.get(0).getKey());
+        Assert.assertTrue(ops.get(0).getValues().containsKey("typo"));
+        Assert.assertEquals(CacheBatch.OpType.EXPIRE, ops.get(1).getType());
+        Assert.assertEquals(60L, ops.get(1).getExpire());
+    }
+
+    @Test
+    public void testNegativeCacheDisabled() throws Exception {
+        RccReflectionUtils.setFieldValue(rccCacheImpl, "negativeEnable", false);
+        when(cache.cacheEnable()).thenReturn(true);
+
+        Assert.assertFalse(rccCacheImpl.isVersionMissing(1L, "version"));
+        rccCacheImpl.loadVersionMissing(1L, "version");
+
+        verify(cache, never()).hgetall(anyString(), any());
+        verify(cache, never()).executeBatch(any(), eq(false));
+    }
+
+    private ThreadPoolTaskExecutor syncExecutor() {
+        return new ThreadPoolTaskExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        };
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.baidu.brcc.RccReflectionUtils;
+import com.baidu.brcc.codec.BinaryCacheCodec;
+import com.baidu.brcc.codec.CacheCodec;
+import com.baidu.brcc.codec.GsonCacheCodec;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+
+/**
+ * 配置项缓存编解码基准：对比json、二进制及二进制压缩对一个版本全部配置项的编码、解码耗时及大小
+ * 运行方式：执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    // 版本下配置项个数
+    @Param({"100", "1000"})
+    private int itemCount;
+
+    @Param({"gson", "binary", "binary-deflate"})
+    private String codecName;
+
+    private CacheCodec codec;
+
+    private List<ApiItemVo> items;
+
+    private List<byte[]> encoded;
+
+    @Setup
+    public void setUp() {
+        if (GsonCacheCodec.NAME.equals(codecName)) {
+            codec = new GsonCacheCodec();
+        } else {
+            BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+            // 仅压缩约1KB的json配置块
+            RccReflectionUtils.setFieldValue(binaryCodec, "compressThreshold",
+                    codecName.endsWith("deflate") ? 256 : 0);
+            codec = binaryCodec;
+        }
+        Random random = new Random(itemCount);
+        items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ApiItemVo item = new ApiItemVo();
+            item.setKey("app.module" + (i % 20) + ".config.key" + i);
+            item.setValue(random.nextInt(10) == 0 ? largeValue(random) : "value-" + random.nextInt(100000));
+            items.add(item);
+        }
+        encoded = new ArrayList<>(itemCount);
+        long size = 0;
+        for (ApiItemVo item : items) {
+            byte[] bytes = codec.encode(item);
+            encoded.add(bytes);
+            size += bytes.length;
+        }
+        System.out.printf("%nitemCount=%d codec=%s size=%d bytes%n", itemCount, codecName, size);
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        for (ApiItemVo item : items) {
+            blackhole.consume(codec.encode(item));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (byte[] bytes : encoded) {
+            blackhole.consume(codec.decode(bytes, ApiItemVo.class));
+        }
+    }
+
+    // 模拟json配置块，约1KB
+    private String largeValue(Random random) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 24; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"field").append(i).append("\":\"")
+                    .append(Long.toHexString(random.nextLong()))
+                    .append("\"");
+        }
+        return sb.append('}').toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
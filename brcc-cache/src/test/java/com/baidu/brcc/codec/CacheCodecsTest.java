@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.codec;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.brcc.RccReflectionUtils;
+import com.baidu.brcc.domain.Project;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+
+public class CacheCodecsTest {
+
+    BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+
+    ApiItemVo item = null;
+
+    @Before
+    public void setUp() {
+        item = new ApiItemVo();
+        item.setKey("key");
+        item.setValue("值");
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        byte[] bytes = binaryCodec.encode(item);
+
+        Assert.assertEquals(BinaryCacheCodec.VERSION_PLAIN, bytes[0]);
+        Assert.assertEquals(BinaryCacheCodec.TYPE_ITEM, bytes[1]);
+        Assert.assertTrue(binaryCodec.canDecode(bytes));
+        Assert.assertEquals(item, binaryCodec.decode(bytes, ApiItemVo.class));
+
+        ApiItemVo empty = new ApiItemVo();
+        empty.setKey("empty");
+        Assert.assertEquals(empty, binaryCodec.decode(binaryCodec.encode(empty), ApiItemVo.class));
+        Assert.assertNull(binaryCodec.decode(bytes, Project.class));
+    }
+
+    @Test
+    public void testBinaryCompress() throws Exception {
+        RccReflectionUtils.setFieldValue(binaryCodec, "compressThreshold", 64);
+        char[] chars = new char[4096];
+        Arrays.fill(chars, 'a');
+        item.setValue(new String(chars));
+
+        byte[] bytes = binaryCodec.encode(item);
+
+        Assert.assertEquals(BinaryCacheCodec.VERSION_DEFLATE, bytes[0]);
+        Assert.assertTrue(bytes.length < 256);
+        Assert.assertEquals(item, binaryCodec.decode(bytes, ApiItemVo.class));
+        // 未超过阈值不压缩
+        item.setValue("value");
+        Assert.assertEquals(BinaryCacheCodec.VERSION_PLAIN, binaryCodec.encode(item)[0]);
+    }
+
+    @Test
+    public void testBinaryFallbackToJson() throws Exception {
+        Project project = new Project();
+        project.setName("name");
+
+        byte[] bytes = binaryCodec.encode(project);
+
+        Assert.assertEquals('{', bytes[0]);
+        Assert.assertFalse(binaryCodec.canDecode(bytes));
+    }
+
+    @Test
+    public void testDecodeByVersion() throws Exception {
+        CacheCodecs codecs = cacheCodecs(GsonCacheCodec.NAME);
+        item.setValue("value");
+        byte[] json = "{\"key\":\"key\",\"value\":\"value\"}".getBytes();
+
+        Assert.assertEquals(item, codecs.decode(json, ApiItemVo.class));
+        Assert.assertEquals(item, codecs.decode(binaryCodec.encode(item), ApiItemVo.class));
+        Assert.assertEquals("value", codecs.decode(" \"value\"".getBytes(), String.class));
+        Assert.assertNull(codecs.decode(new byte[] {8, 1}, ApiItemVo.class));
+        Assert.assertNull(codecs.decode(new byte[0], ApiItemVo.class));
+        Assert.assertNull(codecs.decode(null, ApiItemVo.class));
+    }
+
+    @Test
+    public void testEncodeByConfig() throws Exception {
+        Assert.assertEquals('{', cacheCodecs(GsonCacheCodec.NAME).encode(item)[0]);
+        Assert.assertEquals(BinaryCacheCodec.VERSION_PLAIN, cacheCodecs(BinaryCacheCodec.NAME).encode(item)[0]);
+        // 未知编码回退为json
+        Assert.assertEquals('{', cacheCodecs("unknown").encode(item)[0]);
+        // 配置值前后的空白不影响选择
+        Assert.assertEquals(BinaryCacheCodec.VERSION_PLAIN, cacheCodecs(" binary ").encode(item)[0]);
+    }
+
+    private CacheCodecs cacheCodecs(String name) {
+        CacheCodecs cacheCodecs = new CacheCodecs();
+        RccReflectionUtils.setFieldValue(cacheCodecs, "codecName", name);
+        RccReflectionUtils.setFieldValue(cacheCodecs, "codecs", Arrays.asList(new GsonCacheCodec(), binaryCodec));
+        cacheCodecs.init();
+        return cacheCodecs;
+    }
+}
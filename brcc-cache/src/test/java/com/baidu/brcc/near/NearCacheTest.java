@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.near;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baidu.brcc.CacheBatch;
+import com.baidu.brcc.RccReflectionUtils;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.redis.RedisCache;
+
+public class NearCacheTest {
+    @Mock
+    RedisCache redisCache;
+    @InjectMocks
+    NearCache nearCache;
+
+    ApiItemVo apiItemVo = null;
+
+    ThreadPoolTaskExecutor publisher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        RccReflectionUtils.setFieldValue(nearCache, "localEnable", true);
+        RccReflectionUtils.setFieldValue(nearCache, "maxSize", 100L);
+        RccReflectionUtils.setFieldValue(nearCache, "expireTime", 30L);
+        RccReflectionUtils.setFieldValue(nearCache, "channel", "mapp.rcc.near.invalidate");
+        RccReflectionUtils.setFieldValue(nearCache, "publishQueue", 10000);
+        nearCache.init();
+        publisher = (ThreadPoolTaskExecutor) ReflectionTestUtils.getField(nearCache, "publisher");
+        // 在写入线程上发布，便于断言
+        ReflectionTestUtils.setField(nearCache, "publisher", new ThreadPoolTaskExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        });
+
+        apiItemVo = new ApiItemVo();
+        apiItemVo.setKey("key");
+        apiItemVo.setValue("value");
+    }
+
+    @Test
+    public void testHgetallServedFromLocal() throws Exception {
+        Map<String, ApiItemVo> map = new HashMap<>();
+        map.put("key", apiItemVo);
+        when(redisCache.hgetall(anyString(), eq(ApiItemVo.class))).thenReturn(map);
+
+        Map<String, ApiItemVo> first = nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+        Map<String, ApiItemVo> second = nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+
+        Assert.assertEquals(apiItemVo, first.get("key"));
+        Assert.assertSame(first, second);
+        verify(redisCache, times(1)).hgetall(anyString(), eq(ApiItemVo.class));
+    }
+
+    @Test
+    public void testHgetAndHmgetFromCachedHash() throws Exception {
+        Map<String, ApiItemVo> map = new HashMap<>();
+        map.put("key", apiItemVo);
+        when(redisCache.hgetall(anyString(), eq(ApiItemVo.class))).thenReturn(map);
+        nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+
+        ApiItemVo result = nearCache.hget("hash.item.versionId.1", "key", ApiItemVo.class);
+        Map<String, ApiItemVo> results =
+                nearCache.hmget("hash.item.versionId.1", Arrays.asList("key", "none"), ApiItemVo.class);
+
+        Assert.assertEquals(apiItemVo, result);
+        Assert.assertEquals(apiItemVo, results.get("key"));
+        Assert.assertNull(results.get("none"));
+        verify(redisCache, times(0)).hget(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void testEmptyHashNotCached() throws Exception {
+        when(redisCache.hgetall(anyString(), eq(ApiItemVo.class))).thenReturn(new HashMap<>(0));
+
+        nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+        nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+
+        verify(redisCache, times(2)).hgetall(anyString(), eq(ApiItemVo.class));
+        Assert.assertEquals(0L, nearCache.size());
+    }
+
+    @Test
+    public void testWriteInvalidatesLocal() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a", "b");
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+
+        Assert.assertEquals("a", nearCache.get("string.versionid.1", String.class));
+        Assert.assertEquals("a", nearCache.get("string.versionid.1", String.class));
+        nearCache.put("string.versionid.1", "b");
+        Assert.assertEquals("b", nearCache.get("string.versionid.1", String.class));
+    }
+
+    @Test
+    public void testEvictInvalidatesLocal() throws Exception {
+        Map<String, ApiItemVo> map = new HashMap<>();
+        map.put("key", apiItemVo);
+        when(redisCache.hgetall(anyString(), eq(ApiItemVo.class))).thenReturn(map);
+        when(redisCache.evict(any(String[].class))).thenReturn(1L);
+
+        nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+        nearCache.evict("hash.item.versionId.1");
+        nearCache.hgetall("hash.item.versionId.1", ApiItemVo.class);
+
+        verify(redisCache, times(2)).hgetall(anyString(), eq(ApiItemVo.class));
+    }
+
+    @Test
+    public void testFillSkippedWhenInvalidatedDuringLoad() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenAnswer(invocation -> {
+            // 模拟读取redis期间其他线程失效了该key
+            nearCache.invalidate("string.versionid.1");
+            return "a";
+        });
+
+        Assert.assertEquals("a", nearCache.get("string.versionid.1", String.class));
+        Assert.assertEquals(0L, nearCache.size());
+    }
+
+    @Test
+    public void testLocalDisabled() throws Exception {
+        RccReflectionUtils.setFieldValue(nearCache, "localEnable", false);
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a");
+
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.get("string.versionid.1", String.class);
+
+        verify(redisCache, times(2)).get(anyString(), eq(String.class));
+    }
+
+    @Test
+    public void testWritePublishesInvalidation() throws Exception {
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+
+        nearCache.put("string.versionid.1", "a");
+        nearCache.put("string.versionid.2", "b");
+
+        ArgumentCaptor<NearCacheMessage> captor = ArgumentCaptor.forClass(NearCacheMessage.class);
+        verify(redisCache, times(2)).publish(eq("mapp.rcc.near.invalidate"), captor.capture());
+        NearCacheMessage first = captor.getAllValues().get(0);
+        NearCacheMessage second = captor.getAllValues().get(1);
+        Assert.assertEquals(Arrays.asList("string.versionid.1"), first.getKeys());
+        Assert.assertEquals(first.getNode(), second.getNode());
+        Assert.assertEquals(first.getSeq() + 1, second.getSeq());
+    }
+
+    @Test
+    public void testPublishFailureNotThrown() throws Exception {
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        doThrow(new RedisConnectionFailureException("down")).when(redisCache).publish(anyString(), any());
+
+        Assert.assertTrue(nearCache.put("string.versionid.1", "a"));
+    }
+
+    @Test
+    public void testRemoteInvalidation() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a", "b");
+
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.onInvalidation(message("node-1", 1L, "string.versionid.1"));
+
+        Assert.assertEquals("b", nearCache.get("string.versionid.1", String.class));
+    }
+
+    @Test
+    public void testOwnMessageIgnored() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a");
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        nearCache.put("string.versionid.2", "b");
+        ArgumentCaptor<NearCacheMessage> captor = ArgumentCaptor.forClass(NearCacheMessage.class);
+        verify(redisCache).publish(anyString(), captor.capture());
+
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.onInvalidation(message(captor.getValue().getNode(), 2L, "string.versionid.1"));
+
+        Assert.assertEquals(1L, nearCache.size());
+    }
+
+    @Test
+    public void testSeqGapFlushesAll() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a");
+
+        nearCache.onInvalidation(message("node-1", 1L, "string.versionid.9"));
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.get("string.versionid.2", String.class);
+        nearCache.onInvalidation(message("node-1", 2L, "string.versionid.9"));
+        Assert.assertEquals(2L, nearCache.size());
+
+        // 丢失了序列号3
+        nearCache.onInvalidation(message("node-1", 4L, "string.versionid.9"));
+        Assert.assertEquals(0L, nearCache.size());
+    }
+
+    @Test
+    public void testStaleSeqOnlyInvalidatesKeys() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a");
+
+        nearCache.onInvalidation(message("node-1", 2L, "string.versionid.9"));
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.get("string.versionid.2", String.class);
+
+        // 迟到的旧消息不视为缺口
+        nearCache.onInvalidation(message("node-1", 1L, "string.versionid.1"));
+        Assert.assertEquals(1L, nearCache.size());
+        nearCache.onInvalidation(message("node-1", 3L, "string.versionid.9"));
+        Assert.assertEquals(1L, nearCache.size());
+    }
+
+    @After
+    public void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testConcurrentWritesPublishInSeqOrder() throws Exception {
+        ReflectionTestUtils.setField(nearCache, "publisher", publisher);
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        List<Long> published = Collections.synchronizedList(new ArrayList<>());
+        when(redisCache.publish(anyString(), any())).thenAnswer(invocation -> {
+            published.add(((NearCacheMessage) invocation.getArgument(1)).getSeq());
+            Thread.yield();
+            return 1L;
+        });
+
+        int threads = 8;
+        int writes = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < writes; i++) {
+                    nearCache.put("string.versionid." + thread + "." + i, "a");
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        // 停止时发布完已入队的消息
+        nearCache.destroy();
+
+        Assert.assertEquals(threads * writes, published.size());
+        for (int i = 0; i < published.size(); i++) {
+            Assert.assertEquals(i + 1L, published.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testSlowPublishDoesNotBlockWriters() throws Exception {
+        ReflectionTestUtils.setField(nearCache, "publisher", publisher);
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> published = Collections.synchronizedList(new ArrayList<>());
+        when(redisCache.publish(anyString(), any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            published.add(((NearCacheMessage) invocation.getArgument(1)).getSeq());
+            return 1L;
+        });
+
+        // redis发布阻塞时写入仍立即返回
+        long begin = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(nearCache.put("string.versionid." + i, "a"));
+        }
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin) < 5);
+        Assert.assertTrue(published.isEmpty());
+
+        release.countDown();
+        nearCache.destroy();
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), published);
+    }
+
+    @Test
+    public void testPublishQueueFullDropsMessage() throws Exception {
+        ReflectionTestUtils.setField(nearCache, "publisher", new ThreadPoolTaskExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                throw new TaskRejectedException("full");
+            }
+        });
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+
+        Assert.assertTrue(nearCache.put("string.versionid.1", "a"));
+        verify(redisCache, times(0)).publish(anyString(), any());
+        Assert.assertEquals(1L, ((Long) ReflectionTestUtils.getField(nearCache, "publishSeq")).longValue());
+    }
+
+    @Test
+    public void testExecuteBatchInvalidatesKeys() throws Exception {
+        when(redisCache.get(anyString(), eq(String.class))).thenReturn("a", "b");
+        when(redisCache.executeBatch(any(), eq(true))).thenReturn(Boolean.TRUE);
+
+        nearCache.get("string.versionid.1", String.class);
+        nearCache.executeBatch(new CacheBatch().evict("string.versionid.1"), true);
+
+        Assert.assertEquals("b", nearCache.get("string.versionid.1", String.class));
+        ArgumentCaptor<NearCacheMessage> captor = ArgumentCaptor.forClass(NearCacheMessage.class);
+        verify(redisCache).publish(anyString(), captor.capture());
+        Assert.assertEquals(Arrays.asList("string.versionid.1"), captor.getValue().getKeys());
+    }
+
+    @Test
+    public void testInvalidationListener() throws Exception {
+        List<String> keys = new ArrayList<>();
+        nearCache.addInvalidationListener(keys::add);
+        nearCache.addInvalidationListener(key -> {
+            throw new IllegalStateException("listener");
+        });
+        when(redisCache.put(anyString(), any())).thenReturn(Boolean.TRUE);
+
+        nearCache.put("string.versionid.1", "a");
+        nearCache.onInvalidation(message("node-1", 1L, "string.versionid.2"));
+        nearCache.onInvalidation(message("node-1", 2L));
+
+        Assert.assertEquals(Arrays.asList("string.versionid.1", "string.versionid.2", null), keys);
+    }
+
+    private NearCacheMessage message(String node, long seq, String... keys) {
+        NearCacheMessage message = new NearCacheMessage();
+        message.setNode(node);
+        message.setSeq(seq);
+        message.setKeys(new ArrayList<>(Arrays.asList(keys)));
+        return message;
+    }
+}
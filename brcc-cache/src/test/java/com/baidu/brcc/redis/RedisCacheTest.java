@@ -19,6 +19,12 @@
 package com.baidu.brcc.redis;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
@@ -30,15 +36,28 @@ import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.slf4j.Logger;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 
+import com.baidu.brcc.CacheBatch;
 import com.baidu.brcc.RccReflectionUtils;
+import com.baidu.brcc.SoftValue;
+import com.baidu.brcc.codec.BinaryCacheCodec;
+import com.baidu.brcc.codec.CacheCodecs;
+import com.baidu.brcc.codec.GsonCacheCodec;
+import com.baidu.brcc.domain.Project;
+import com.baidu.brcc.domain.vo.ApiItemVo;
 
 public class RedisCacheTest {
     @Mock
@@ -57,6 +76,7 @@ public class RedisCacheTest {
         RccReflectionUtils.setFieldValue(redisCache, "keyPrefix", "mapp.newrcc.");
         RccReflectionUtils.setFieldValue(redisCache, "cacheEnable", true);
         RccReflectionUtils.setFieldValue(redisCache, "expireTime", 7200L);
+        RccReflectionUtils.setFieldValue(redisCache, "cacheCodecs", cacheCodecs(GsonCacheCodec.NAME));
     }
 
     @Test
@@ -222,4 +242,190 @@ public class RedisCacheTest {
         Boolean result = redisCache.exists("key");
         Assert.assertEquals(Boolean.TRUE, result);
     }
+
+    @Test
+    public void testPublish() throws Exception {
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> 1L
+        );
+        Long result = redisCache.publish("channel", "message");
+        Assert.assertEquals(Long.valueOf(1L), result);
+        Assert.assertEquals(Long.valueOf(0L), redisCache.publish("", "message"));
+    }
+
+    @Test
+    public void testExecuteBatch() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    callback.doInRedis(connection);
+                    return null;
+                }
+        );
+        Map<String, Object> kvs = new HashMap<>();
+        kvs.put("field", "value");
+        CacheBatch batch = new CacheBatch()
+                .hdel("hash", "name")
+                .evict("key")
+                .hmset("key", kvs)
+                .rename("key", "live")
+                .expire("live", 60L);
+
+        Assert.assertTrue(redisCache.executeBatch(batch, true));
+
+        InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).multi();
+        inOrder.verify(connection).hDel(any(byte[].class), any(byte[].class));
+        inOrder.verify(connection).del(any(byte[].class));
+        inOrder.verify(connection).hMSet(any(byte[].class), any());
+        inOrder.verify(connection).rename("mapp.newrcc.key".getBytes(), "mapp.newrcc.live".getBytes());
+        inOrder.verify(connection).expire("mapp.newrcc.live".getBytes(), 60L);
+        inOrder.verify(connection).exec();
+        Assert.assertEquals(Arrays.asList("hash", "key", "live"), batch.getKeys());
+    }
+
+    @Test
+    public void testExecuteBatchPipelined() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    callback.doInRedis(connection);
+                    return null;
+                }
+        );
+
+        Assert.assertTrue(redisCache.executeBatch(new CacheBatch().evict("a", "b"), false));
+        Assert.assertFalse(redisCache.executeBatch(new CacheBatch(), false));
+
+        verify(connection, never()).multi();
+        verify(connection, never()).exec();
+        verify(redisTemplate).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    public void testPutIfAbsent() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.set(any(byte[].class), any(byte[].class), any(Expiration.class), any(SetOption.class)))
+                .thenReturn(Boolean.TRUE);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    return callback.doInRedis(connection);
+                }
+        );
+
+        Assert.assertTrue(redisCache.putIfAbsent("lease", "owner", 1000L));
+        Assert.assertFalse(redisCache.putIfAbsent("lease", "owner", 0L));
+
+        verify(connection).set(eq("mapp.newrcc.lease".getBytes()), eq("owner".getBytes()),
+                argThat(expiration -> expiration.getExpirationTimeInMilliseconds() == 1000L),
+                eq(SetOption.SET_IF_ABSENT));
+    }
+
+    @Test
+    public void testEvictIfEquals() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.eval(any(byte[].class), eq(ReturnType.INTEGER), eq(1), any(byte[].class)))
+                .thenReturn(1L);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    return callback.doInRedis(connection);
+                }
+        );
+
+        Assert.assertTrue(redisCache.evictIfEquals("lease", "owner"));
+        verify(connection).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(1), eq("mapp.newrcc.lease".getBytes()),
+                eq("owner".getBytes()));
+    }
+
+    @Test
+    public void testPutSoftAndGetSoft() throws Exception {
+        RccReflectionUtils.setFieldValue(redisCache, "expireJitter", 0.1D);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    return callback.doInRedis(connection);
+                }
+        );
+        Project project = new Project();
+        project.setId(1L);
+        project.setName("name");
+
+        long before = System.currentTimeMillis();
+        Assert.assertTrue(redisCache.putSoft("key", project, 100L, 160L));
+
+        ArgumentCaptor<Long> liveTime = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<byte[]> value = ArgumentCaptor.forClass(byte[].class);
+        verify(connection).setEx(eq("mapp.newrcc.key".getBytes()), liveTime.capture(), value.capture());
+        // 软过期时间随机增加最多10%，硬过期时间在其基础上延长60秒
+        Assert.assertTrue(liveTime.getValue() >= 150L && liveTime.getValue() <= 170L);
+        Assert.assertTrue(new String(value.getValue()).contains("\"_se\""));
+
+        when(connection.get(any(byte[].class))).thenReturn(value.getValue());
+        SoftValue<Project> result = redisCache.getSoft("key", Project.class);
+        Assert.assertEquals(Long.valueOf(1L), result.getValue().getId());
+        Assert.assertEquals("name", result.getValue().getName());
+        Assert.assertTrue(result.getSoftExpireAt() >= before + 90000L);
+        Assert.assertTrue(result.getSoftExpireAt() <= System.currentTimeMillis() + 110000L);
+        Assert.assertFalse(result.isStale());
+    }
+
+    @Test
+    public void testGetSoftWithoutSoftExpire() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.get(any(byte[].class))).thenReturn("{\"name\":\"name\"}".getBytes());
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    return callback.doInRedis(connection);
+                }
+        );
+
+        // 旧版本写入的值没有软过期时间，视为未过期
+        SoftValue<Project> result = redisCache.getSoft("key", Project.class);
+        Assert.assertEquals("name", result.getValue().getName());
+        Assert.assertEquals(0L, result.getSoftExpireAt());
+        Assert.assertFalse(result.isStale());
+    }
+
+    @Test
+    public void testHgetallWithMixedCodec() throws Exception {
+        RccReflectionUtils.setFieldValue(redisCache, "cacheCodecs", cacheCodecs(BinaryCacheCodec.NAME));
+        ApiItemVo item = new ApiItemVo();
+        item.setKey("key");
+        item.setValue("value");
+        Map<byte[], byte[]> hash = new HashMap<>();
+        hash.put("binary".getBytes(), new BinaryCacheCodec().encode(item));
+        hash.put("json".getBytes(), "{\"key\":\"json\",\"value\":\"v\"}".getBytes());
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.hGetAll(any(byte[].class))).thenReturn(hash);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> {
+                    RedisCallback<?> callback = invocation.getArgument(0);
+                    return callback.doInRedis(connection);
+                }
+        );
+
+        // 升级过程中同一个hash内新旧格式共存
+        Map<String, ApiItemVo> result = redisCache.hgetall("key", ApiItemVo.class);
+        Assert.assertEquals(item, result.get("binary"));
+        Assert.assertEquals("json", result.get("json").getKey());
+
+        redisCache.hset("key", "field", item);
+        verify(connection).hSet(any(byte[].class), eq("field".getBytes()),
+                argThat(bytes -> bytes[0] == BinaryCacheCodec.VERSION_PLAIN));
+    }
+
+    private CacheCodecs cacheCodecs(String name) {
+        CacheCodecs cacheCodecs = new CacheCodecs();
+        RccReflectionUtils.setFieldValue(cacheCodecs, "codecName", name);
+        RccReflectionUtils.setFieldValue(cacheCodecs, "codecs",
+                Arrays.asList(new GsonCacheCodec(), new BinaryCacheCodec()));
+        cacheCodecs.init();
+        return cacheCodecs;
+    }
 }
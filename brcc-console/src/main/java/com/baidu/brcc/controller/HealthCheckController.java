@@ -18,18 +18,45 @@
  */
 package com.baidu.brcc.controller;
 
+import static com.baidu.brcc.common.ErrorStatusMsg.SERVER_NOT_READY_MSG;
+import static com.baidu.brcc.common.ErrorStatusMsg.SERVER_NOT_READY_STATUS;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.CacheWarmUpVo;
+import com.baidu.brcc.service.CacheWarmUpService;
 
 /**
  * 服务存活检测探测
  */
 @RestController
 public class HealthCheckController {
+
+    @Autowired
+    private CacheWarmUpService cacheWarmUpService;
+
+    /**
+     * 缓存预热完成前返回503，负载均衡据此暂不转发流量
+     */
     @GetMapping("check")
-    public R check() {
+    public R check(HttpServletResponse response) {
+        if (!cacheWarmUpService.isReady()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return R.error(SERVER_NOT_READY_STATUS, SERVER_NOT_READY_MSG);
+        }
         return R.ok();
     }
+
+    /**
+     * 缓存预热进度
+     */
+    @GetMapping("check/warmup")
+    public R<CacheWarmUpVo> warmUp() {
+        return R.ok(cacheWarmUpService.getProgress());
+    }
 }
@@ -98,6 +98,7 @@ import com.baidu.brcc.service.EnvironmentUserService;
 import com.baidu.brcc.service.ProjectUserService;
 import com.baidu.brcc.service.RccCache;
 import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionWatchService;
 
 /**
  * 管理端版本相关接口
@@ -127,6 +128,9 @@ public class VersionController {
     @Autowired
     private ConfigItemService configItemService;
 
+    @Autowired
+    private VersionWatchService versionWatchService;
+
     /**
      * 新增或修改版本
      *
@@ -395,14 +399,19 @@ public class VersionController {
         }
         Version update = new Version();
         update.setId(versionId);
-        update.setCheckSum(UUID.randomUUID().toString());
+        String checkSum = UUID.randomUUID().toString();
+        update.setCheckSum(checkSum);
         update.setCheckSumDate(new Date());
         update.setUpdateTime(new Date());
         int cnt = versionService.updateByPrimaryKeySelective(update);
+        // 预先记录本次推送时配置项的摘要，用于增量获取
+        configItemService.saveItemDigest(version.getProjectId(), versionId);
 
         rccCache.evictVersion(version.getEnvironmentId());
         // 失效id->version的缓存
         rccCache.evictVersionById(Arrays.asList(versionId));
+        // 唤醒监听该版本的长轮询请求
+        versionWatchService.notifyChange(versionId);
         return R.ok(cnt);
     }
 
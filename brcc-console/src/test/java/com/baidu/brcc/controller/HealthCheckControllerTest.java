@@ -18,19 +18,61 @@
  */
 package com.baidu.brcc.controller;
 
+import static org.mockito.Mockito.when;
+
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.CacheWarmUpVo;
+import com.baidu.brcc.service.CacheWarmUpService;
 
 public class HealthCheckControllerTest {
     private static final int OK = 0;
 
-    HealthCheckController healthCheckController = new HealthCheckController();
+    @Mock
+    CacheWarmUpService cacheWarmUpService;
+    @InjectMocks
+    HealthCheckController healthCheckController;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
 
     @Test
     public void testCheck() throws Exception {
-        R result = healthCheckController.check();
+        when(cacheWarmUpService.isReady()).thenReturn(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        R result = healthCheckController.check(response);
+        Assert.assertEquals(OK, result.getStatus());
+        Assert.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void testCheckNotReady() throws Exception {
+        when(cacheWarmUpService.isReady()).thenReturn(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        R result = healthCheckController.check(response);
+        Assert.assertNotEquals(OK, result.getStatus());
+        Assert.assertEquals(503, response.getStatus());
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        CacheWarmUpVo vo = new CacheWarmUpVo();
+        vo.setStatus("RUNNING");
+        when(cacheWarmUpService.getProgress()).thenReturn(vo);
+
+        R<CacheWarmUpVo> result = healthCheckController.warmUp();
         Assert.assertEquals(OK, result.getStatus());
+        Assert.assertEquals("RUNNING", result.getData().getStatus());
     }
 }
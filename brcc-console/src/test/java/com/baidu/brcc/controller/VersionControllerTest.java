@@ -34,6 +34,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyVararg;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -68,6 +69,7 @@ import com.baidu.brcc.service.EnvironmentUserService;
 import com.baidu.brcc.service.ProjectUserService;
 import com.baidu.brcc.service.RccCache;
 import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionWatchService;
 
 public class VersionControllerTest {
     private static final Long ID = 1L;
@@ -88,6 +90,8 @@ public class VersionControllerTest {
     RccCache rccCache;
     @Mock
     ConfigItemService configItemService;
+    @Mock
+    VersionWatchService versionWatchService;
     @InjectMocks
     VersionController versionController;
 
@@ -200,6 +204,7 @@ public class VersionControllerTest {
         when(environmentUserService.checkAuth(ID, ID, ID, user)).thenReturn(true);
         result = versionController.pushChange(ID, user);
         Assert.assertEquals(OK, result.getStatus());
+        verify(versionWatchService).notifyChange(ID);
     }
 
     @Test
@@ -257,4 +257,16 @@ public class ErrorStatusMsg {
     // 配置项不存在
     public static final Integer CONFIG_ITEM_NOT_EXISTS_STATUS = 100215;
     public static final String CONFIG_ITEM_NOT_EXISTS_MSG = "配置项不存在";
+
+    // 监听的版本不能为空
+    public static final Integer WATCH_VERSION_EMPTY_STATUS = 100216;
+    public static final String WATCH_VERSION_EMPTY_MSG = "监听的版本不能为空";
+
+    // 服务预热中
+    public static final Integer SERVER_NOT_READY_STATUS = 100217;
+    public static final String SERVER_NOT_READY_MSG = "服务预热中，暂不可用";
+
+    // 推送连接数已达上限
+    public static final Integer STREAM_LIMIT_EXCEEDED_STATUS = 100218;
+    public static final String STREAM_LIMIT_EXCEEDED_MSG = "推送连接数已达上限";
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+
+/**
+ * 开放接口二进制编码，客户端通过 Accept: application/x-brcc-binary 协商，仅支持配置项、增量及版本监听的返回值
+ *
+ * 编码格式（大端序）：
+ * <pre>
+ * byte   格式版本，当前为1
+ * int    status
+ * string msg
+ * byte   数据类型：0 无数据，1 配置项列表，2 配置项增量，3 版本列表
+ * ...    数据
+ *
+ * string         int长度 + UTF-8字节，null时长度为-1
+ * 配置项列表      int个数（null时为-1），每项依次为 string key、string value
+ * 配置项增量      string checkSum、boolean full、配置项列表、int删除个数 + string key
+ * 版本列表        int个数（null时为-1），每项依次为 long projectId、long environmentId、long versionId、
+ *                string versionName、string checkSum，long为null时写入-1
+ * </pre>
+ */
+public class BinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_BRCC_BINARY = MediaType.valueOf("application/x-brcc-binary");
+
+    public static final byte FORMAT_VERSION = 1;
+
+    public static final byte TYPE_NONE = 0;
+    public static final byte TYPE_ITEMS = 1;
+    public static final byte TYPE_ITEM_DELTA = 2;
+    public static final byte TYPE_VERSIONS = 3;
+
+    private static final byte TYPE_UNSUPPORTED = -1;
+
+    public BinaryHttpMessageConverter() {
+        super(APPLICATION_BRCC_BINARY);
+    }
+
+    /**
+     * 请求的Accept是否接受二进制格式
+     * @param accept Accept请求头
+     * @return
+     */
+    public static boolean acceptBinary(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return false;
+        }
+        try {
+            for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+                if (mediaType.getQualityValue() > 0 && APPLICATION_BRCC_BINARY.equalsTypeAndSubtype(mediaType)) {
+                    return true;
+                }
+            }
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * json及二进制共用同一地址，ETag按返回的格式加后缀，避免以一种格式的ETag命中另一种格式的缓存
+     * @param tag 内容的ETag
+     * @param accept Accept请求头
+     * @return
+     */
+    public static String etag(String tag, String accept) {
+        return tag + (acceptBinary(accept) ? "-binary" : "-json");
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return R.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        return dataType(type != null ? type : clazz) != TYPE_UNSUPPORTED;
+    }
+
+    @Override
+    protected void writeInternal(Object o, Type type, HttpOutputMessage outputMessage) throws IOException {
+        R<?> r = (R<?>) o;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(r.getStatus());
+        writeString(out, r.getMsg());
+        Object data = r.getData();
+        byte dataType = data == null ? TYPE_NONE : dataType(type);
+        out.writeByte(dataType);
+        switch (dataType) {
+            case TYPE_ITEMS:
+                writeItems(out, cast(data));
+                break;
+            case TYPE_ITEM_DELTA:
+                writeItemDelta(out, (ApiItemDeltaVo) data);
+                break;
+            case TYPE_VERSIONS:
+                writeVersions(out, cast(data));
+                break;
+            default:
+                break;
+        }
+        out.flush();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("binary request body is not supported.", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("binary request body is not supported.", inputMessage);
+    }
+
+    // 根据返回值声明类型确定数据类型，不支持的类型交由json处理
+    private byte dataType(Type type) {
+        ResolvableType r = ResolvableType.forType(type);
+        if (r.resolve() != R.class) {
+            return TYPE_UNSUPPORTED;
+        }
+        ResolvableType data = r.getGeneric(0);
+        Class<?> dataClass = data.resolve();
+        if (dataClass == ApiItemDeltaVo.class) {
+            return TYPE_ITEM_DELTA;
+        }
+        if (dataClass == List.class) {
+            Class<?> elementClass = data.getGeneric(0).resolve();
+            if (elementClass == ApiItemVo.class) {
+                return TYPE_ITEMS;
+            }
+            if (elementClass == ApiVersionVo.class) {
+                return TYPE_VERSIONS;
+            }
+        }
+        return TYPE_UNSUPPORTED;
+    }
+
+    private void writeItems(DataOutputStream out, List<ApiItemVo> items) throws IOException {
+        if (items == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(items.size());
+        for (ApiItemVo item : items) {
+            writeString(out, item.getKey());
+            writeString(out, item.getValue());
+        }
+    }
+
+    private void writeItemDelta(DataOutputStream out, ApiItemDeltaVo delta) throws IOException {
+        writeString(out, delta.getCheckSum());
+        out.writeBoolean(delta.isFull());
+        writeItems(out, delta.getItems());
+        List<String> deleted = delta.getDeleted();
+        if (deleted == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(deleted.size());
+        for (String key : deleted) {
+            writeString(out, key);
+        }
+    }
+
+    private void writeVersions(DataOutputStream out, List<ApiVersionVo> versions) throws IOException {
+        if (versions == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(versions.size());
+        for (ApiVersionVo version : versions) {
+            writeLong(out, version.getProjectId());
+            writeLong(out, version.getEnvironmentId());
+            writeLong(out, version.getVersionId());
+            writeString(out, version.getVersionName());
+            writeString(out, version.getCheckSum());
+        }
+    }
+
+    private void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeLong(value == null ? -1L : value);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(Object data) {
+        return (List<T>) data;
+    }
+}
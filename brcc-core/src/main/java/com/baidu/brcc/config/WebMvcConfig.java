@@ -26,6 +26,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplicat
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -53,6 +54,12 @@ public class WebMvcConfig implements WebMvcConfigurer {
         resolvers.add(new LoginUserHandlerMethodArgumentResolver());
     }
 
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // 追加在json之后，仅在客户端显式Accept时生效
+        converters.add(new BinaryHttpMessageConverter());
+    }
+
     @Bean
     public FilterRegistrationBean crossDomainFilter() {
         FilterRegistrationBean cross = new FilterRegistrationBean();
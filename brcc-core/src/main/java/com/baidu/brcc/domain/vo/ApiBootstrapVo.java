@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.domain.vo;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * 客户端启动加载，一次返回登录认证、环境、版本及全部配置项
+ */
+@Data
+public class ApiBootstrapVo {
+
+    // 工程登录认证
+    private ApiAuthVo auth;
+
+    // 环境ID
+    private Long environmentId;
+
+    // 版本
+    private ApiVersionVo version;
+
+    // 版本下的全部配置项
+    private List<ApiItemVo> items;
+
+}
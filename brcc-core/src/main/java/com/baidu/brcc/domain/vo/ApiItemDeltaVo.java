@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.domain.vo;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class ApiItemDeltaVo {
+
+    // 当前版本checkSum
+    private String checkSum;
+
+    // 应用增量后配置项的内容戳，作为下次获取增量的起点
+    private String stamp;
+
+    // 增量的起始内容戳，全量时为空
+    private String sinceStamp;
+
+    // 是否为全量数据，起始内容戳对应的摘要不存在时返回全量
+    private boolean full;
+
+    // 新增及修改的配置项，全量时为所有配置项
+    private List<ApiItemVo> items;
+
+    // 删除的配置KEY
+    private List<String> deleted;
+}
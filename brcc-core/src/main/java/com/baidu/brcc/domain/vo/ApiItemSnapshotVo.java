@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.domain.vo;
+
+import lombok.Data;
+
+/**
+ * 版本全部配置项的响应快照，按checkSum生成，生成后不再修改
+ */
+@Data
+public class ApiItemSnapshotVo {
+
+    // 生成快照时版本的checkSum
+    private String checkSum;
+
+    // 快照中配置项的内容戳，作为ETag
+    private String stamp;
+
+    // 响应体是否已gzip压缩
+    private boolean gzip;
+
+    // 序列化后的json响应体
+    private byte[] body;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.domain.vo;
+
+import lombok.Data;
+
+@Data
+public class CacheWarmUpVo {
+
+    // 预热状态，WAITING/RUNNING/DONE/FAILED/DISABLED
+    private String status;
+
+    // 是否可以接收流量
+    private boolean ready;
+
+    // 已处理的工程数
+    private long projects;
+
+    // 加载的环境数
+    private long environments;
+
+    // 加载的版本数
+    private long versions;
+
+    // 加载的配置项数
+    private long items;
+
+    // 缓存中已存在而跳过的hash数
+    private long skipped;
+
+    // 预热失败的工程数
+    private long failed;
+
+    // 开始时间，毫秒时间戳
+    private long startTime;
+
+    // 耗时，单位毫秒，进行中时为已耗时
+    private long cost;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service;
+
+import java.util.function.Supplier;
+
+public interface CacheLoadService {
+
+    /**
+     * 缓存未命中时合并回源：同一key在本节点只有一个线程回源，其余线程复用其结果；
+     * 开启租约时集群内只有抢到租约的节点回源，其他节点轮询缓存等待加载完成
+     *
+     * @param key    合并回源的key
+     * @param cached 读取缓存，返回空值表示尚未加载
+     * @param loader 回源加载并回填缓存
+     *
+     * @return 缓存或回源的结果
+     */
+    <T> T load(String key, Supplier<T> cached, Supplier<T> loader);
+
+    /**
+     * 本节点正在回源的key数量
+     */
+    int loadingCount();
+}
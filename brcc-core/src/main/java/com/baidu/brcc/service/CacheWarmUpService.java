@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service;
+
+import com.baidu.brcc.domain.vo.CacheWarmUpVo;
+
+public interface CacheWarmUpService {
+
+    /**
+     * 从数据库分页读取所有工程，将环境、版本及配置项批量加载到缓存，缓存中已存在的hash跳过
+     */
+    void warmUp();
+
+    /**
+     * 预热完成、失败、未开启或超时后返回true
+     */
+    boolean isReady();
+
+    /**
+     * 预热进度及耗时
+     */
+    CacheWarmUpVo getProgress();
+}
@@ -26,7 +26,9 @@ import com.baidu.brcc.domain.ConfigItem;
 import com.baidu.brcc.domain.ConfigItemExample;
 import com.baidu.brcc.domain.User;
 import com.baidu.brcc.domain.base.Pagination;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
 import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.domain.vo.BatchConfigItemReq;
 import com.baidu.brcc.domain.vo.ConfigItemVo;
 import com.baidu.brcc.service.base.GenericService;
@@ -62,6 +64,10 @@ public interface ConfigItemService extends GenericService<ConfigItem, Long, Conf
 
     List<ApiItemVo> getItemsByVersionIdAndNamesInCache(Long projectId, Long versionId, List<String> names);
 
+    ApiItemDeltaVo getDeltaByVersionInCache(ApiVersionVo versionVo, String sinceStamp);
+
+    void saveItemDigest(Long projectId, Long versionId);
+
     Pagination<ConfigItemVo> pagination(Integer offset, Integer pageSize, Long productId, Long projectId, String key,
                                         String val, User user);
 }
@@ -19,6 +19,9 @@
 package com.baidu.brcc.service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.baidu.brcc.domain.ApiToken;
 import com.baidu.brcc.domain.Environment;
@@ -34,6 +37,11 @@ import com.baidu.brcc.domain.vo.ApiVersionVo;
  */
 public interface RccCache {
 
+    // 软过期后返回旧值并异步刷新的缓存类别
+    enum Family {
+        PROJECT, API_TOKEN, USER_NAME, USER_TOKEN, VERSION_ID
+    }
+
     boolean cacheEnable();
 
     // 判断环境hkey是否存在
@@ -136,4 +144,49 @@ public interface RccCache {
     // 加载配置
     void loadItems(Long versionId, List<ApiItemVo> itemVos, boolean clear);
 
+    // 广播版本变更
+    void publishVersionChange(ApiVersionVo versionVo);
+
+    // 读取版本在指定内容戳下的配置项摘要
+    Map<String, String> getItemDigest(Long versionId, String stamp);
+
+    // 加载版本在指定内容戳下的配置项摘要
+    void loadItemDigest(Long versionId, String stamp, Map<String, String> digest);
+
+    // 读取版本全部配置项的序列化快照
+    byte[] getItemSnapshot(Long versionId);
+
+    // 加载版本全部配置项的序列化快照，配置项变更时随配置项缓存一起删除
+    void loadItemSnapshot(Long versionId, byte[] snapshot);
+
+    // 注册配置项快照失效回调，本节点或其他节点删除快照时以versionId回调，无法确定版本时回调null
+    void addItemSnapshotListener(Consumer<Long> listener);
+
+    // 判断api token是否已确认不存在
+    boolean isApiTokenMissing(String token);
+
+    // 记录不存在的api token，短时间内不再回源
+    void loadApiTokenMissing(String token);
+
+    // 判断环境下的版本是否已确认不存在
+    boolean isVersionMissing(Long environmentId, String name);
+
+    // 记录环境下不存在的版本，短时间内不再回源
+    void loadVersionMissing(Long environmentId, String name);
+
+    // 判断版本下的配置项是否已确认不存在
+    boolean isItemMissing(Long versionId, String name);
+
+    // 记录版本下不存在的配置项，短时间内不再回源
+    void loadItemMissing(Long versionId, List<String> names);
+
+    // 注册缓存类别软过期后的回源加载器，参数为工程名称、token、用户名或版本ID，返回null时删除缓存
+    void registerRefresher(Family family, Function<String, ?> loader);
+
+    // 抢占回源加载租约，缓存不可用时视为抢占成功
+    boolean tryLoadLease(String name, String owner, long expireMillis);
+
+    // 释放回源加载租约，仅持有者可释放
+    void releaseLoadLease(String name, String owner);
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+
+public interface VersionWatchService {
+
+    /**
+     * 监听版本变更，任一版本的checkSum与客户端不一致时返回，超时返回空列表
+     *
+     * @param projectId 工程ID
+     * @param versions  监听的版本及客户端当前的checkSum
+     * @param timeout   最长等待时间，单位毫秒
+     *
+     * @return 发生变更的版本
+     */
+    DeferredResult<R<List<ApiVersionVo>>> watch(Long projectId, List<ApiVersionVo> versions, Long timeout);
+
+    /**
+     * 版本发生变更，唤醒本节点及其他节点上的监听
+     *
+     * @param versionId 版本ID
+     */
+    void notifyChange(Long versionId);
+
+    /**
+     * 唤醒本节点上监听该版本的请求
+     *
+     * @param versionVo 变更后的版本
+     */
+    void onChange(ApiVersionVo versionVo);
+
+    /**
+     * 注册版本变更回调，本节点及其他节点的版本变更均会回调
+     *
+     * @param listener 回调，参数为变更后的版本
+     */
+    void addChangeListener(Consumer<ApiVersionVo> listener);
+
+    /**
+     * 本节点挂起的监听数
+     */
+    int watchingCount();
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.baidu.brcc.service.CacheLoadService;
+import com.baidu.brcc.service.RccCache;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class CacheLoadServiceImpl implements CacheLoadService {
+
+    // 是否通过redis租约保证集群内只有一个节点回源
+    @Value("${rcc.cache.load.lease.enable:true}")
+    private boolean leaseEnable;
+
+    // 租约过期时间，回源节点异常退出时租约自动释放，单位毫秒
+    @Value("${rcc.cache.load.lease.expire:10000}")
+    private long leaseExpire;
+
+    // 未抢到租约时等待其他节点回源的最长时间，超时后自行回源，单位毫秒
+    @Value("${rcc.cache.load.wait.timeout:3000}")
+    private long waitTimeout;
+
+    // 等待期间轮询缓存的间隔，单位毫秒
+    @Value("${rcc.cache.load.wait.interval:50}")
+    private long waitInterval;
+
+    @Autowired
+    private RccCache rccCache;
+
+    // 本节点正在回源的请求
+    private final ConcurrentMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T load(String key, Supplier<T> cached, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inflight = loading.putIfAbsent(key, future);
+        if (inflight != null) {
+            return (T) join(inflight);
+        }
+        try {
+            T value = loadInCluster(key, cached, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    @Override
+    public int loadingCount() {
+        return loading.size();
+    }
+
+    private <T> T loadInCluster(String key, Supplier<T> cached, Supplier<T> loader) {
+        // 上一个回源线程可能刚刚完成
+        T value = cached.get();
+        if (!isEmpty(value)) {
+            return value;
+        }
+        if (!leaseEnable) {
+            return loader.get();
+        }
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeout;
+        while (true) {
+            if (rccCache.tryLoadLease(key, owner, leaseExpire)) {
+                try {
+                    return loader.get();
+                } finally {
+                    rccCache.releaseLoadLease(key, owner);
+                }
+            }
+            // 其他节点正在回源，等待其回填缓存
+            if (System.currentTimeMillis() >= deadline || !sleep()) {
+                log.warn("wait cache load key[{}] timeout, load by self", key);
+                return loader.get();
+            }
+            value = cached.get();
+            if (!isEmpty(value)) {
+                return value;
+            }
+        }
+    }
+
+    private boolean sleep() {
+        try {
+            Thread.sleep(waitInterval);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    private boolean isEmpty(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        return false;
+    }
+}
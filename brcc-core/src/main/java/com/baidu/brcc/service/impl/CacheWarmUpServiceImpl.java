@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import com.baidu.brcc.domain.ConfigItem;
+import com.baidu.brcc.domain.Environment;
+import com.baidu.brcc.domain.Project;
+import com.baidu.brcc.domain.ProjectExample;
+import com.baidu.brcc.domain.Version;
+import com.baidu.brcc.domain.em.Deleted;
+import com.baidu.brcc.domain.meta.MetaProject;
+import com.baidu.brcc.domain.vo.ApiEnvironmentVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.domain.vo.CacheWarmUpVo;
+import com.baidu.brcc.service.CacheWarmUpService;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.EnvironmentService;
+import com.baidu.brcc.service.ProjectService;
+import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class CacheWarmUpServiceImpl implements CacheWarmUpService {
+
+    static final String WAITING = "WAITING";
+    static final String RUNNING = "RUNNING";
+    static final String DONE = "DONE";
+    static final String FAILED = "FAILED";
+    static final String DISABLED = "DISABLED";
+
+    // 启动时是否预热缓存
+    @Value("${rcc.cache.warmup.enable:true}")
+    private boolean enable;
+
+    // 同时预热的工程数
+    @Value("${rcc.cache.warmup.parallelism:4}")
+    private int parallelism;
+
+    // 每页读取的工程数
+    @Value("${rcc.cache.warmup.page-size:200}")
+    private int pageSize;
+
+    // 预热超过该时间后不再阻挡流量，单位秒
+    @Value("${rcc.cache.warmup.timeout:300}")
+    private long timeout;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private EnvironmentService environmentService;
+
+    @Autowired
+    private VersionService versionService;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
+    @Autowired
+    private RccCache rccCache;
+
+    private volatile String status = WAITING;
+
+    private volatile long startTime;
+
+    private volatile long endTime;
+
+    private final AtomicLong projects = new AtomicLong();
+
+    private final AtomicLong environments = new AtomicLong();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private final AtomicLong items = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * 服务启动完成后在后台预热，预热期间健康检查返回未就绪
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enable || !rccCache.cacheEnable()) {
+            status = DISABLED;
+            log.info("cache warm up disabled");
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void warmUp() {
+        startTime = System.currentTimeMillis();
+        status = RUNNING;
+        log.info("cache warm up start, parallelism[{}] page size[{}]", parallelism, pageSize);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("cache-warm-up-");
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        // 队列满时由读取线程执行，避免一次读入过多工程
+        executor.setQueueCapacity(parallelism);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        try {
+            Long lastId = 0L;
+            while (true) {
+                // 按ID翻页，避免offset过大时的深分页
+                List<Project> page = projectService.selectByExample(ProjectExample.newBuilder()
+                                .orderByClause(MetaProject.COLUMN_NAME_ID)
+                                .limit(pageSize)
+                                .build()
+                                .createCriteria()
+                                .andDeletedEqualTo(Deleted.OK.getValue())
+                                .andIdGreaterThan(lastId)
+                                .toExample(),
+                        MetaProject.COLUMN_NAME_ID
+                );
+                if (CollectionUtils.isEmpty(page)) {
+                    break;
+                }
+                List<Future<?>> futures = new ArrayList<>(page.size());
+                for (Project project : page) {
+                    Long projectId = project.getId();
+                    futures.add(executor.submit(() -> warmUpProject(projectId)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                lastId = page.get(page.size() - 1).getId();
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            status = DONE;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            status = FAILED;
+            log.warn("cache warm up interrupted");
+        } catch (Exception ex) {
+            status = FAILED;
+            log.error("cache warm up fail.", ex);
+        } finally {
+            endTime = System.currentTimeMillis();
+            executor.shutdown();
+            log.info("cache warm up {}, {}", status, getProgress());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        String current = status;
+        if (DONE.equals(current) || FAILED.equals(current) || DISABLED.equals(current)) {
+            return true;
+        }
+        // 超时后放行，未预热的数据由请求按需回源
+        return RUNNING.equals(current)
+                && System.currentTimeMillis() - startTime > TimeUnit.SECONDS.toMillis(timeout);
+    }
+
+    @Override
+    public CacheWarmUpVo getProgress() {
+        CacheWarmUpVo vo = new CacheWarmUpVo();
+        vo.setStatus(status);
+        vo.setReady(isReady());
+        vo.setProjects(projects.get());
+        vo.setEnvironments(environments.get());
+        vo.setVersions(versions.get());
+        vo.setItems(items.get());
+        vo.setSkipped(skipped.get());
+        vo.setFailed(failed.get());
+        vo.setStartTime(startTime);
+        if (startTime > 0) {
+            vo.setCost((RUNNING.equals(status) ? System.currentTimeMillis() : endTime) - startTime);
+        }
+        return vo;
+    }
+
+    // 预热单个工程，失败时记录并继续其他工程
+    private void warmUpProject(Long projectId) {
+        try {
+            List<Environment> environmentList = environmentService.selectByProjectId(projectId);
+            if (!CollectionUtils.isEmpty(environmentList)) {
+                if (rccCache.existsEnvironmentHKey(projectId)) {
+                    skipped.incrementAndGet();
+                } else {
+                    List<ApiEnvironmentVo> environmentVos = new ArrayList<>(environmentList.size());
+                    for (Environment environment : environmentList) {
+                        environmentVos.add(new ApiEnvironmentVo().copyFrom(environment));
+                    }
+                    rccCache.loadEnvironments(projectId, environmentVos);
+                    environments.addAndGet(environmentVos.size());
+                }
+                for (Environment environment : environmentList) {
+                    warmUpEnvironment(projectId, environment.getId());
+                }
+            }
+            projects.incrementAndGet();
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            log.warn("cache warm up project[{}] fail.", projectId, ex);
+        }
+    }
+
+    private void warmUpEnvironment(Long projectId, Long environmentId) {
+        List<Version> versionList = versionService.selectByProjectIdAndEnvironment(projectId, environmentId);
+        if (CollectionUtils.isEmpty(versionList)) {
+            return;
+        }
+        List<ApiVersionVo> versionVos = new ArrayList<>(versionList.size());
+        for (Version version : versionList) {
+            versionVos.add(new ApiVersionVo().copyFrom(version));
+        }
+        if (rccCache.existsVersionHKey(environmentId)) {
+            skipped.incrementAndGet();
+        } else {
+            rccCache.loadVersions(environmentId, versionVos);
+            versions.addAndGet(versionVos.size());
+        }
+        for (ApiVersionVo versionVo : versionVos) {
+            if (rccCache.getVersionById(versionVo.getVersionId()) == null) {
+                rccCache.loadVersionForId(versionVo);
+            }
+            warmUpVersion(projectId, versionVo.getVersionId());
+        }
+    }
+
+    private void warmUpVersion(Long projectId, Long versionId) {
+        if (rccCache.existsItemHKey(versionId)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        List<ConfigItem> itemList = configItemService.selectByProjectIdAndVersionId(projectId, versionId);
+        if (CollectionUtils.isEmpty(itemList)) {
+            return;
+        }
+        List<ApiItemVo> itemVos = new ArrayList<>(itemList.size());
+        for (ConfigItem item : itemList) {
+            itemVos.add(new ApiItemVo().copyFrom(item));
+        }
+        rccCache.loadItems(versionId, itemVos, true);
+        items.addAndGet(itemVos.size());
+    }
+}
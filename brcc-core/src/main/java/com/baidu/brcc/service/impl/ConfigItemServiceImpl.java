@@ -25,6 +25,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.trim;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,10 +69,13 @@ import com.baidu.brcc.domain.meta.MetaProductUser;
 import com.baidu.brcc.domain.meta.MetaProject;
 import com.baidu.brcc.domain.meta.MetaProjectUser;
 import com.baidu.brcc.domain.meta.MetaVersion;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
 import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.domain.vo.BatchConfigItemReq;
 import com.baidu.brcc.domain.vo.ConfigItemVo;
 import com.baidu.brcc.domain.vo.ItemReq;
+import com.baidu.brcc.service.CacheLoadService;
 import com.baidu.brcc.service.ConfigChangeLogService;
 import com.baidu.brcc.service.ConfigGroupService;
 import com.baidu.brcc.service.ConfigItemService;
@@ -84,6 +88,7 @@ import com.baidu.brcc.service.ProjectUserService;
 import com.baidu.brcc.service.RccCache;
 import com.baidu.brcc.service.VersionService;
 import com.baidu.brcc.service.base.GenericServiceImpl;
+import com.baidu.brcc.utils.ItemDigestUtils;
 import com.baidu.brcc.utils.collections.CollectionUtils;
 import com.baidu.brcc.utils.time.DateTimeUtils;
 
@@ -94,6 +99,9 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
     @Autowired
     private ConfigItemMapper configItemMapper;
 
+    @Autowired
+    private CacheLoadService cacheLoadService;
+
     @Autowired
     private ConfigChangeLogService configChangeLogService;
 
@@ -395,21 +403,17 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
         if (itemVo == null) {
             // 缓存可用且配置项的HKEY不存在，加载所有版本
             if (rccCache.cacheEnable() && !rccCache.existsItemHKey(versionId)) {
-                List<ConfigItem> items = selectByProjectIdAndVersionId(
-                        projectId,
-                        versionId);
-                if (!org.springframework.util.CollectionUtils.isEmpty(items)) {
-                    List<ApiItemVo> itemsVos = new ArrayList<>(items.size());
-                    for (ConfigItem item : items) {
-                        ApiItemVo v = new ApiItemVo().copyFrom(item);
-                        itemsVos.add(v);
-                        if (StringUtils.equals(item.getName(), key)) {
-                            itemVo = v;
-                        }
+                List<ApiItemVo> itemsVos = loadAllByVersionId(projectId, versionId);
+                for (ApiItemVo v : itemsVos) {
+                    if (StringUtils.equals(v.getKey(), key)) {
+                        itemVo = v;
+                        break;
                     }
-                    rccCache.loadItems(versionId, itemsVos, true);
                 }
-            } else {
+                if (itemVo == null) {
+                    rccCache.loadItemMissing(versionId, Arrays.asList(key));
+                }
+            } else if (!rccCache.isItemMissing(versionId, key)) {
                 ConfigItem item = selectByProjectIdAndVersionIdAndName(
                         projectId,
                         versionId,
@@ -418,6 +422,8 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
                     itemVo = new ApiItemVo().copyFrom(item);
                     // 为了数据一致性，此处不重新加载缓存
                     // rccCache.loadItem(versionId, itemVo);
+                } else {
+                    rccCache.loadItemMissing(versionId, Arrays.asList(key));
                 }
             }
         }
@@ -428,19 +434,92 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
     public List<ApiItemVo> getAllByVersionIdInCache(Long projectId, Long versionId) {
         List<ApiItemVo> itemsVos = rccCache.getItems(versionId);
         if (org.springframework.util.CollectionUtils.isEmpty(itemsVos)) {
-            List<ConfigItem> items = selectByProjectIdAndVersionId(projectId, versionId);
-            if (!org.springframework.util.CollectionUtils.isEmpty(items)) {
-                itemsVos = new ArrayList<>(items.size());
-                for (ConfigItem item : items) {
-                    ApiItemVo vo = new ApiItemVo().copyFrom(item);
-                    itemsVos.add(vo);
-                }
-                rccCache.loadItems(versionId, itemsVos, true);
-            }
+            itemsVos = loadAllByVersionId(projectId, versionId);
         }
         return itemsVos;
     }
 
+    // 合并同一版本的并发回源，只有一个请求查询数据库并回填缓存
+    private List<ApiItemVo> loadAllByVersionId(Long projectId, Long versionId) {
+        return cacheLoadService.load(
+                "item." + projectId + "." + versionId,
+                () -> rccCache.getItems(versionId),
+                () -> {
+                    List<ConfigItem> items = selectByProjectIdAndVersionId(projectId, versionId);
+                    if (org.springframework.util.CollectionUtils.isEmpty(items)) {
+                        return new ArrayList<>(0);
+                    }
+                    List<ApiItemVo> itemsVos = new ArrayList<>(items.size());
+                    for (ConfigItem item : items) {
+                        itemsVos.add(new ApiItemVo().copyFrom(item));
+                    }
+                    rccCache.loadItems(versionId, itemsVos, true);
+                    return itemsVos;
+                });
+    }
+
+    @Override
+    public ApiItemDeltaVo getDeltaByVersionInCache(ApiVersionVo versionVo, String sinceStamp) {
+        Long versionId = versionVo.getVersionId();
+        List<ApiItemVo> itemVos = getAllByVersionIdInCache(versionVo.getProjectId(), versionId);
+        if (itemVos == null) {
+            itemVos = new ArrayList<>(0);
+        }
+        // 配置项修改不会改变checkSum，增量起点以配置项内容戳标识，同一内容戳的摘要不会变化
+        Map<String, String> current = ItemDigestUtils.digest(itemVos);
+        String stamp = ItemDigestUtils.stamp(current);
+        ApiItemDeltaVo delta = new ApiItemDeltaVo();
+        delta.setCheckSum(versionVo.getCheckSum());
+        delta.setStamp(stamp);
+        delta.setDeleted(new ArrayList<>(0));
+
+        // 补齐当前内容戳的摘要，供后续增量比对
+        if (rccCache.getItemDigest(versionId, stamp) == null) {
+            rccCache.loadItemDigest(versionId, stamp, current);
+        }
+
+        // 无法确认客户端持有的内容时返回全量
+        Map<String, String> since = StringUtils.isBlank(sinceStamp)
+                ? null : rccCache.getItemDigest(versionId, sinceStamp);
+        if (since == null) {
+            delta.setFull(true);
+            delta.setItems(itemVos);
+            return delta;
+        }
+
+        delta.setSinceStamp(sinceStamp);
+        List<ApiItemVo> changed = new ArrayList<>();
+        for (ApiItemVo itemVo : itemVos) {
+            String digest = current.get(itemVo.getKey());
+            if (digest != null && !digest.equals(since.get(itemVo.getKey()))) {
+                changed.add(itemVo);
+            }
+        }
+        for (String key : since.keySet()) {
+            if (!current.containsKey(key)) {
+                delta.getDeleted().add(key);
+            }
+        }
+        delta.setItems(changed);
+        return delta;
+    }
+
+    @Override
+    public void saveItemDigest(Long projectId, Long versionId) {
+        if (!rccCache.cacheEnable()) {
+            return;
+        }
+        List<ConfigItem> items = selectByProjectIdAndVersionId(projectId, versionId);
+        List<ApiItemVo> itemVos = new ArrayList<>();
+        if (items != null) {
+            for (ConfigItem item : items) {
+                itemVos.add(new ApiItemVo().copyFrom(item));
+            }
+        }
+        Map<String, String> digest = ItemDigestUtils.digest(itemVos);
+        rccCache.loadItemDigest(versionId, ItemDigestUtils.stamp(digest), digest);
+    }
+
     @Override
     public List<ApiItemVo> getItemsByVersionIdAndNamesInCache(Long projectId, Long versionId, List<String> names) {
         List<ApiItemVo> result = null;
@@ -453,26 +532,29 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
             // 缓存可用且配置项的HKEY不存在，加载所有版本
             if (rccCache.cacheEnable() && !rccCache.existsItemHKey(versionId)) {
                 result = new ArrayList<>();
-                List<ConfigItem> items = selectByProjectIdAndVersionId(
-                        projectId,
-                        versionId);
-                if (!org.springframework.util.CollectionUtils.isEmpty(items)) {
-                    List<ApiItemVo> itemsVos = new ArrayList<>(items.size());
-                    for (ConfigItem item : items) {
-                        ApiItemVo vo = new ApiItemVo().copyFrom(item);
-                        itemsVos.add(vo);
-
-                        if (org.springframework.util.CollectionUtils.isEmpty(names) || names.contains(item.getName())) {
-                            result.add(vo);
-                        }
+                for (ApiItemVo vo : loadAllByVersionId(projectId, versionId)) {
+                    if (org.springframework.util.CollectionUtils.isEmpty(names) || names.contains(vo.getKey())) {
+                        result.add(vo);
                     }
-                    rccCache.loadItems(versionId, itemsVos, true);
                 }
             } else {
+                // 跳过已确认不存在的配置项
+                List<String> queryNames = names;
+                if (!org.springframework.util.CollectionUtils.isEmpty(names)) {
+                    queryNames = new ArrayList<>(names.size());
+                    for (String name : names) {
+                        if (!rccCache.isItemMissing(versionId, name)) {
+                            queryNames.add(name);
+                        }
+                    }
+                    if (queryNames.isEmpty()) {
+                        return result;
+                    }
+                }
                 List<ConfigItem> items = selectByProjectIdAndVersionIdAndNames(
                         projectId,
                         versionId,
-                        names
+                        queryNames
                 );
                 if (!org.springframework.util.CollectionUtils.isEmpty(items)) {
                     result = new ArrayList<>(items.size());
@@ -482,6 +564,21 @@ public class ConfigItemServiceImpl extends GenericServiceImpl<ConfigItem, Long,
                     }
                     // rccCache.loadItems(versionId, result, CollectionUtils.isEmpty(names));
                 }
+                if (!org.springframework.util.CollectionUtils.isEmpty(names)) {
+                    Set<String> found = new HashSet<>();
+                    if (result != null) {
+                        for (ApiItemVo vo : result) {
+                            found.add(vo.getKey());
+                        }
+                    }
+                    List<String> missing = new ArrayList<>();
+                    for (String name : queryNames) {
+                        if (!found.contains(name)) {
+                            missing.add(name);
+                        }
+                    }
+                    rccCache.loadItemMissing(versionId, missing);
+                }
             }
         }
         return result;
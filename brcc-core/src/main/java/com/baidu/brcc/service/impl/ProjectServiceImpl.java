@@ -22,6 +22,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -78,6 +80,12 @@ public class ProjectServiceImpl extends GenericServiceImpl<Project, Long, Projec
     @Autowired
     private RccCache rccCache;
 
+    @PostConstruct
+    public void init() {
+        // 缓存软过期后异步回源刷新
+        rccCache.registerRefresher(RccCache.Family.PROJECT, this::selectByName);
+    }
+
     @Override
     public BaseMapper<Project, Long, ProjectExample> getMapper() {
         return projectMapper;
@@ -18,6 +18,8 @@
  */
 package com.baidu.brcc.service.impl;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -35,6 +37,13 @@ public class UserCacheImpl implements UserCache {
     @Autowired
     private RccCache rccCache;
 
+    @PostConstruct
+    public void init() {
+        // 缓存软过期后异步回源刷新
+        rccCache.registerRefresher(RccCache.Family.USER_NAME, userService::selectUserByName);
+        rccCache.registerRefresher(RccCache.Family.USER_TOKEN, userService::selectUserByToken);
+    }
+
     @Override
     public User getUserByToken(String token) {
         User user = rccCache.getUserByToken(token);
@@ -43,6 +43,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
@@ -71,6 +73,7 @@ import com.baidu.brcc.domain.meta.MetaProject;
 import com.baidu.brcc.domain.meta.MetaVersion;
 import com.baidu.brcc.domain.vo.ApiVersionVo;
 import com.baidu.brcc.domain.vo.VersionNodeVo;
+import com.baidu.brcc.service.CacheLoadService;
 import com.baidu.brcc.service.ConfigGroupService;
 import com.baidu.brcc.service.ConfigItemService;
 import com.baidu.brcc.service.EnvironmentService;
@@ -113,6 +116,18 @@ public class VersionServiceImpl extends GenericServiceImpl<Version, Long, Versio
     @Autowired
     private RccCache rccCache;
 
+    @Autowired
+    private CacheLoadService cacheLoadService;
+
+    @PostConstruct
+    public void init() {
+        // 缓存软过期后异步回源刷新
+        rccCache.registerRefresher(RccCache.Family.VERSION_ID, id -> {
+            Version v = selectByPrimaryKey(Long.valueOf(id));
+            return v == null ? null : new ApiVersionVo().copyFrom(v);
+        });
+    }
+
     @Override
     public BaseMapper<Version, Long, VersionExample> getMapper() {
         return versionMapper;
@@ -540,22 +555,16 @@ public class VersionServiceImpl extends GenericServiceImpl<Version, Long, Versio
         if (versionVo == null) {
             // 缓存可用且版本的HKEY不存在，加载所有版本
             if (rccCache.cacheEnable() && !rccCache.existsVersionHKey(environmentId)) {
-                List<Version> versions = selectByProjectIdAndEnvironment(
-                        projectId,
-                        environmentId
-                );
-                if (!CollectionUtils.isEmpty(versions)) {
-                    List<ApiVersionVo> versionVos = new ArrayList<>(versions.size());
-                    for (Version version : versions) {
-                        ApiVersionVo vo = new ApiVersionVo().copyFrom(version);
-                        versionVos.add(vo);
-                        if (StringUtils.equals(name, version.getName())) {
-                            versionVo = vo;
-                        }
+                for (ApiVersionVo vo : loadAllByEnvironmentId(projectId, environmentId)) {
+                    if (StringUtils.equals(name, vo.getVersionName())) {
+                        versionVo = vo;
+                        break;
                     }
-                    rccCache.loadVersions(environmentId, versionVos);
                 }
-            } else {
+                if (versionVo == null) {
+                    rccCache.loadVersionMissing(environmentId, name);
+                }
+            } else if (!rccCache.isVersionMissing(environmentId, name)) {
                 Version version = selectByProjectIdAndEnvironmentIdAndName(
                         projectId,
                         environmentId,
@@ -564,6 +573,8 @@ public class VersionServiceImpl extends GenericServiceImpl<Version, Long, Versio
                     versionVo = new ApiVersionVo().copyFrom(version);
                     // 为了数据一致性，此处不能重载缓存
                     // rccCache.loadVersion(versionVo);
+                } else {
+                    rccCache.loadVersionMissing(environmentId, name);
                 }
             }
         }
@@ -574,24 +585,30 @@ public class VersionServiceImpl extends GenericServiceImpl<Version, Long, Versio
     public List<ApiVersionVo> getAllByEnvironmentIdInCache(Long projectId, Long environmentId) {
         List<ApiVersionVo> versionVos = rccCache.getVersions(environmentId);
         if (CollectionUtils.isEmpty(versionVos)) {
-            List<Version> versions = selectByProjectIdAndEnvironment(
-                    projectId,
-                    environmentId
-            );
-            if (!CollectionUtils.isEmpty(versions)) {
-                versionVos = new ArrayList<>(versions.size());
-                for (Version version : versions) {
-                    ApiVersionVo vo = new ApiVersionVo();
-                    vo.setProjectId(version.getProjectId());
-                    vo.setEnvironmentId(version.getEnvironmentId());
-                    vo.setVersionId(version.getId());
-                    vo.setVersionName(version.getName());
-                    vo.setCheckSum(version.getCheckSum());
-                    versionVos.add(vo);
-                }
-                rccCache.loadVersions(environmentId, versionVos);
-            }
+            versionVos = loadAllByEnvironmentId(projectId, environmentId);
         }
         return versionVos;
     }
+
+    // 合并同一环境的并发回源，只有一个请求查询数据库并回填缓存
+    private List<ApiVersionVo> loadAllByEnvironmentId(Long projectId, Long environmentId) {
+        return cacheLoadService.load(
+                "version." + projectId + "." + environmentId,
+                () -> rccCache.getVersions(environmentId),
+                () -> {
+                    List<Version> versions = selectByProjectIdAndEnvironment(
+                            projectId,
+                            environmentId
+                    );
+                    if (CollectionUtils.isEmpty(versions)) {
+                        return new ArrayList<>(0);
+                    }
+                    List<ApiVersionVo> versionVos = new ArrayList<>(versions.size());
+                    for (Version version : versions) {
+                        versionVos.add(new ApiVersionVo().copyFrom(version));
+                    }
+                    rccCache.loadVersions(environmentId, versionVos);
+                    return versionVos;
+                });
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
+import com.baidu.brcc.service.VersionWatchService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+public class VersionWatchServiceImpl implements VersionWatchService {
+
+    // 默认等待时间，单位毫秒
+    @Value("${rcc.watch.timeout.default: 30000}")
+    private long defaultTimeout;
+
+    // 最长等待时间，单位毫秒
+    @Value("${rcc.watch.timeout.max: 60000}")
+    private long maxTimeout;
+
+    @Autowired
+    private VersionService versionService;
+
+    @Autowired
+    private RccCache rccCache;
+
+    // 版本ID -> 监听该版本的请求
+    private final ConcurrentMap<Long, Set<Watcher>> watchers = new ConcurrentHashMap<>();
+
+    // 挂起的监听数
+    private final AtomicInteger watching = new AtomicInteger();
+
+    // 版本变更回调
+    private final List<Consumer<ApiVersionVo>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public DeferredResult<R<List<ApiVersionVo>>> watch(Long projectId, List<ApiVersionVo> versions, Long timeout) {
+        long wait = (timeout == null || timeout <= 0) ? defaultTimeout : Math.min(timeout, maxTimeout);
+        DeferredResult<R<List<ApiVersionVo>>> result = new DeferredResult<>(wait, R.ok(new ArrayList<>(0)));
+
+        Map<Long, String> checkSums = new HashMap<>();
+        if (!CollectionUtils.isEmpty(versions)) {
+            for (ApiVersionVo version : versions) {
+                if (version != null && version.getVersionId() != null && version.getVersionId() > 0) {
+                    checkSums.put(version.getVersionId(), version.getCheckSum());
+                }
+            }
+        }
+        if (checkSums.isEmpty()) {
+            result.setResult(R.ok(new ArrayList<>(0)));
+            return result;
+        }
+
+        // 先注册再比对，避免比对与注册之间的变更丢失
+        Watcher watcher = new Watcher(projectId, checkSums, result);
+        register(watcher);
+        result.onCompletion(() -> unregister(watcher));
+
+        List<ApiVersionVo> changed = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : checkSums.entrySet()) {
+            ApiVersionVo current = versionService.getByEnvironmentByIdInCache(entry.getKey());
+            if (watcher.isChanged(current)) {
+                changed.add(current);
+            }
+        }
+        if (!changed.isEmpty()) {
+            result.setResult(R.ok(changed));
+        }
+        return result;
+    }
+
+    @Override
+    public void notifyChange(Long versionId) {
+        if (versionId == null || versionId <= 0) {
+            return;
+        }
+        ApiVersionVo versionVo = versionService.getByEnvironmentByIdInCache(versionId);
+        if (versionVo == null) {
+            return;
+        }
+        onChange(versionVo);
+        // 通知其他节点
+        rccCache.publishVersionChange(versionVo);
+    }
+
+    @Override
+    public void onChange(ApiVersionVo versionVo) {
+        if (versionVo == null || versionVo.getVersionId() == null) {
+            return;
+        }
+        for (Consumer<ApiVersionVo> listener : listeners) {
+            try {
+                listener.accept(versionVo);
+            } catch (Exception ex) {
+                log.warn("version[{}] change listener fail.", versionVo.getVersionId(), ex);
+            }
+        }
+        Set<Watcher> set = watchers.get(versionVo.getVersionId());
+        if (set == null) {
+            return;
+        }
+        int cnt = 0;
+        for (Watcher watcher : set) {
+            if (watcher.isChanged(versionVo)
+                    && watcher.result.setResult(R.ok(Collections.singletonList(versionVo)))) {
+                cnt++;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("version[{}] changed, checkSum[{}] notify[{}]", versionVo.getVersionId(),
+                    versionVo.getCheckSum(), cnt);
+        }
+    }
+
+    @Override
+    public void addChangeListener(Consumer<ApiVersionVo> listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public int watchingCount() {
+        return watching.get();
+    }
+
+    private void register(Watcher watcher) {
+        for (Long versionId : watcher.checkSums.keySet()) {
+            watchers.compute(versionId, (k, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(watcher);
+                return set;
+            });
+        }
+        watching.incrementAndGet();
+    }
+
+    private void unregister(Watcher watcher) {
+        for (Long versionId : watcher.checkSums.keySet()) {
+            watchers.computeIfPresent(versionId, (k, set) -> {
+                set.remove(watcher);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        watching.decrementAndGet();
+    }
+
+    private static class Watcher {
+        private final Long projectId;
+        private final Map<Long, String> checkSums;
+        private final DeferredResult<R<List<ApiVersionVo>>> result;
+
+        Watcher(Long projectId, Map<Long, String> checkSums, DeferredResult<R<List<ApiVersionVo>>> result) {
+            this.projectId = projectId;
+            this.checkSums = checkSums;
+            this.result = result;
+        }
+
+        // 只关注本工程下的版本，已删除的版本不通知
+        boolean isChanged(ApiVersionVo current) {
+            if (current == null || !Objects.equals(projectId, current.getProjectId())
+                    || !checkSums.containsKey(current.getVersionId())) {
+                return false;
+            }
+            return !Objects.equals(checkSums.get(current.getVersionId()), current.getCheckSum());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.util.DigestUtils;
+
+import com.baidu.brcc.domain.vo.ApiItemVo;
+
+/**
+ * 配置项摘要及内容戳
+ *
+ * 内容戳只由配置项的key和value决定，与checkSum无关，配置项任意修改都会改变内容戳，
+ * 可作为增量起点及ETag。计算方式：按key排序，依次写入 key + '\0' + md5(value) + '\n'，再取md5，
+ * SDK按同样方式计算本地配置项的内容戳。
+ */
+public class ItemDigestUtils {
+
+    private ItemDigestUtils() {
+    }
+
+    /**
+     * 配置项摘要，与SDK一致忽略value为null的配置项
+     * @param itemVos 配置项
+     * @return key -> md5(value)
+     */
+    public static Map<String, String> digest(List<ApiItemVo> itemVos) {
+        Map<String, String> digest = new HashMap<>();
+        if (itemVos == null) {
+            return digest;
+        }
+        for (ApiItemVo itemVo : itemVos) {
+            if (itemVo.getKey() != null && itemVo.getValue() != null) {
+                digest.put(itemVo.getKey(), digest(itemVo.getValue()));
+            }
+        }
+        return digest;
+    }
+
+    public static String digest(String value) {
+        if (value == null) {
+            return "";
+        }
+        return DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 由配置项摘要计算内容戳
+     * @param digest key -> md5(value)
+     * @return md5
+     */
+    public static String stamp(Map<String, String> digest) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(digest).entrySet()) {
+            sb.append(entry.getKey()).append('\0').append(entry.getValue()).append('\n');
+        }
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String stamp(List<ApiItemVo> itemVos) {
+        return stamp(digest(itemVos));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.config;
+
+import static com.baidu.brcc.config.BinaryHttpMessageConverter.APPLICATION_BRCC_BINARY;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.baidu.brcc.domain.base.R;
+import com.baidu.brcc.domain.vo.ApiEnvironmentVo;
+import com.baidu.brcc.domain.vo.ApiItemDeltaVo;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.ApiVersionVo;
+
+public class BinaryHttpMessageConverterTest {
+    BinaryHttpMessageConverter converter = new BinaryHttpMessageConverter();
+
+    Type itemsType = ResolvableType.forClassWithGenerics(R.class,
+            ResolvableType.forClassWithGenerics(List.class, ApiItemVo.class)).getType();
+
+    @Test
+    public void testCanWrite() {
+        Type deltaType = ResolvableType.forClassWithGenerics(R.class, ApiItemDeltaVo.class).getType();
+        Type versionsType = ResolvableType.forClassWithGenerics(R.class,
+                ResolvableType.forClassWithGenerics(List.class, ApiVersionVo.class)).getType();
+        Type envType = ResolvableType.forClassWithGenerics(R.class, ApiEnvironmentVo.class).getType();
+
+        Assert.assertTrue(converter.canWrite(itemsType, R.class, APPLICATION_BRCC_BINARY));
+        Assert.assertTrue(converter.canWrite(deltaType, R.class, APPLICATION_BRCC_BINARY));
+        Assert.assertTrue(converter.canWrite(versionsType, R.class, APPLICATION_BRCC_BINARY));
+        Assert.assertFalse(converter.canWrite(envType, R.class, APPLICATION_BRCC_BINARY));
+        Assert.assertFalse(converter.canWrite(R.class, R.class, APPLICATION_BRCC_BINARY));
+        Assert.assertFalse(converter.canWrite(itemsType, R.class, MediaType.APPLICATION_JSON));
+        Assert.assertFalse(converter.canRead(itemsType, null, APPLICATION_BRCC_BINARY));
+    }
+
+    @Test
+    public void testAcceptBinaryAndETag() {
+        Assert.assertTrue(BinaryHttpMessageConverter.acceptBinary("application/x-brcc-binary, application/json;q=0.5"));
+        Assert.assertFalse(BinaryHttpMessageConverter.acceptBinary("application/x-brcc-binary;q=0"));
+        Assert.assertFalse(BinaryHttpMessageConverter.acceptBinary("application/json"));
+        Assert.assertFalse(BinaryHttpMessageConverter.acceptBinary("not a media type"));
+        Assert.assertFalse(BinaryHttpMessageConverter.acceptBinary(null));
+
+        Assert.assertEquals("tag-binary", BinaryHttpMessageConverter.etag("tag", "application/x-brcc-binary"));
+        Assert.assertEquals("tag-json", BinaryHttpMessageConverter.etag("tag", null));
+    }
+
+    @Test
+    public void testWriteItems() throws Exception {
+        ApiItemVo item = new ApiItemVo();
+        item.setKey("key");
+        item.setValue("值");
+        ApiItemVo empty = new ApiItemVo();
+        empty.setKey("empty");
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(R.ok(Arrays.asList(item, empty)), itemsType, APPLICATION_BRCC_BINARY, message);
+
+        Assert.assertEquals(APPLICATION_BRCC_BINARY, message.getHeaders().getContentType());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBodyAsBytes()));
+        Assert.assertEquals(BinaryHttpMessageConverter.FORMAT_VERSION, in.readByte());
+        Assert.assertEquals(0, in.readInt());
+        Assert.assertEquals("success", readString(in));
+        Assert.assertEquals(BinaryHttpMessageConverter.TYPE_ITEMS, in.readByte());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals("key", readString(in));
+        Assert.assertEquals("值", readString(in));
+        Assert.assertEquals("empty", readString(in));
+        Assert.assertNull(readString(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testWriteDeltaAndError() throws Exception {
+        Type deltaType = ResolvableType.forClassWithGenerics(R.class, ApiItemDeltaVo.class).getType();
+        ApiItemDeltaVo delta = new ApiItemDeltaVo();
+        delta.setCheckSum("new");
+        delta.setItems(Collections.emptyList());
+        delta.setDeleted(Collections.singletonList("gone"));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(R.ok(delta), deltaType, APPLICATION_BRCC_BINARY, message);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBodyAsBytes()));
+        in.readByte();
+        in.readInt();
+        readString(in);
+        Assert.assertEquals(BinaryHttpMessageConverter.TYPE_ITEM_DELTA, in.readByte());
+        Assert.assertEquals("new", readString(in));
+        Assert.assertFalse(in.readBoolean());
+        Assert.assertEquals(0, in.readInt());
+        Assert.assertEquals(1, in.readInt());
+        Assert.assertEquals("gone", readString(in));
+
+        message = new MockHttpOutputMessage();
+        converter.write(R.error(100, "error"), deltaType, APPLICATION_BRCC_BINARY, message);
+
+        in = new DataInputStream(new ByteArrayInputStream(message.getBodyAsBytes()));
+        in.readByte();
+        Assert.assertEquals(100, in.readInt());
+        Assert.assertEquals("error", readString(in));
+        Assert.assertEquals(BinaryHttpMessageConverter.TYPE_NONE, in.readByte());
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baidu.brcc.service.RccCache;
+
+public class CacheLoadServiceImplTest {
+    @Mock
+    RccCache rccCache;
+    @InjectMocks
+    CacheLoadServiceImpl cacheLoadService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(cacheLoadService, "leaseEnable", true);
+        ReflectionTestUtils.setField(cacheLoadService, "leaseExpire", 10000L);
+        ReflectionTestUtils.setField(cacheLoadService, "waitTimeout", 200L);
+        ReflectionTestUtils.setField(cacheLoadService, "waitInterval", 10L);
+    }
+
+    @Test
+    public void testConcurrentLoadCoalesced() throws Exception {
+        when(rccCache.tryLoadLease(anyString(), anyString(), anyLong())).thenReturn(true);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> items = Arrays.asList("a", "b");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cacheLoadService.load("item.1.1", () -> null, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return items;
+            })));
+            loading.await(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(() -> cacheLoadService.load("item.1.1", () -> null, () -> {
+                    loads.incrementAndGet();
+                    return items;
+                })));
+            }
+            // 等待其余请求挂到正在进行的回源上
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<List<String>> future : futures) {
+                Assert.assertSame(items, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(0, cacheLoadService.loadingCount());
+        verify(rccCache).releaseLoadLease(eq("item.1.1"), anyString());
+    }
+
+    @Test
+    public void testLoadFailureSharedAndNotCached() throws Exception {
+        when(rccCache.tryLoadLease(anyString(), anyString(), anyLong())).thenReturn(true);
+        try {
+            cacheLoadService.load("item.1.1", () -> null, () -> {
+                throw new IllegalStateException("db down");
+            });
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("db down", ex.getMessage());
+        }
+        verify(rccCache).releaseLoadLease(eq("item.1.1"), anyString());
+
+        Assert.assertEquals("v", cacheLoadService.load("item.1.1", () -> null, () -> "v"));
+    }
+
+    @Test
+    public void testCachedBeforeLoad() throws Exception {
+        Assert.assertEquals("v", cacheLoadService.load("item.1.1", () -> "v", () -> "db"));
+        verify(rccCache, never()).tryLoadLease(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    public void testWaitOtherNodeLoad() throws Exception {
+        when(rccCache.tryLoadLease(anyString(), anyString(), anyLong())).thenReturn(false);
+        AtomicInteger reads = new AtomicInteger();
+
+        String result = cacheLoadService.load("item.1.1", () -> reads.incrementAndGet() > 2 ? "cached" : null,
+                () -> "db");
+
+        Assert.assertEquals("cached", result);
+        verify(rccCache, never()).releaseLoadLease(anyString(), anyString());
+    }
+
+    @Test
+    public void testWaitTimeoutLoadBySelf() throws Exception {
+        when(rccCache.tryLoadLease(anyString(), anyString(), anyLong())).thenReturn(false);
+
+        Assert.assertEquals("db", cacheLoadService.load("item.1.1", () -> null, () -> "db"));
+    }
+
+    @Test
+    public void testLeaseReleasedByOtherNode() throws Exception {
+        when(rccCache.tryLoadLease(anyString(), anyString(), anyLong())).thenReturn(false, true);
+
+        Assert.assertEquals("db", cacheLoadService.load("item.1.1", () -> null, () -> "db"));
+        verify(rccCache).releaseLoadLease(eq("item.1.1"), anyString());
+    }
+
+    @Test
+    public void testLeaseDisabled() throws Exception {
+        ReflectionTestUtils.setField(cacheLoadService, "leaseEnable", false);
+
+        Assert.assertEquals("db", cacheLoadService.load("item.1.1", () -> null, () -> "db"));
+        verify(rccCache, never()).tryLoadLease(anyString(), anyString(), anyLong());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
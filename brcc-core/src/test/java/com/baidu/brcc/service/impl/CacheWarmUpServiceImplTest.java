@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.service.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baidu.brcc.domain.ConfigItem;
+import com.baidu.brcc.domain.Environment;
+import com.baidu.brcc.domain.Project;
+import com.baidu.brcc.domain.ProjectExample;
+import com.baidu.brcc.domain.Version;
+import com.baidu.brcc.domain.vo.ApiItemVo;
+import com.baidu.brcc.domain.vo.CacheWarmUpVo;
+import com.baidu.brcc.service.ConfigItemService;
+import com.baidu.brcc.service.EnvironmentService;
+import com.baidu.brcc.service.ProjectService;
+import com.baidu.brcc.service.RccCache;
+import com.baidu.brcc.service.VersionService;
+
+public class CacheWarmUpServiceImplTest {
+    @Mock
+    ProjectService projectService;
+    @Mock
+    EnvironmentService environmentService;
+    @Mock
+    VersionService versionService;
+    @Mock
+    ConfigItemService configItemService;
+    @Mock
+    RccCache rccCache;
+    @InjectMocks
+    CacheWarmUpServiceImpl cacheWarmUpService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(cacheWarmUpService, "enable", true);
+        ReflectionTestUtils.setField(cacheWarmUpService, "parallelism", 2);
+        ReflectionTestUtils.setField(cacheWarmUpService, "pageSize", 2);
+        ReflectionTestUtils.setField(cacheWarmUpService, "timeout", 300L);
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        when(projectService.selectByExample(any(ProjectExample.class), any()))
+                .thenReturn(Arrays.asList(project(1L), project(2L)), Collections.singletonList(project(3L)));
+        when(environmentService.selectByProjectId(anyLong())).thenAnswer(invocation -> {
+            Long projectId = invocation.getArgument(0);
+            return Collections.singletonList(environment(projectId, projectId * 10));
+        });
+        when(versionService.selectByProjectIdAndEnvironment(anyLong(), anyLong())).thenAnswer(invocation -> {
+            Long projectId = invocation.getArgument(0);
+            Long environmentId = invocation.getArgument(1);
+            return Collections.singletonList(version(projectId, environmentId, environmentId * 10));
+        });
+        when(configItemService.selectByProjectIdAndVersionId(anyLong(), anyLong())).thenAnswer(invocation -> {
+            Long versionId = invocation.getArgument(1);
+            return Arrays.asList(item(versionId, "a"), item(versionId, "b"));
+        });
+        // 工程3的配置项已在缓存中
+        when(rccCache.existsItemHKey(300L)).thenReturn(true);
+
+        Assert.assertFalse(cacheWarmUpService.isReady());
+        cacheWarmUpService.warmUp();
+
+        CacheWarmUpVo progress = cacheWarmUpService.getProgress();
+        Assert.assertEquals("DONE", progress.getStatus());
+        Assert.assertTrue(progress.isReady());
+        Assert.assertEquals(3L, progress.getProjects());
+        Assert.assertEquals(3L, progress.getEnvironments());
+        Assert.assertEquals(3L, progress.getVersions());
+        Assert.assertEquals(4L, progress.getItems());
+        Assert.assertEquals(1L, progress.getSkipped());
+        Assert.assertEquals(0L, progress.getFailed());
+
+        ArgumentCaptor<List<ApiItemVo>> captor = ArgumentCaptor.forClass(List.class);
+        verify(rccCache).loadItems(eq(100L), captor.capture(), eq(true));
+        Assert.assertEquals(2, captor.getValue().size());
+        verify(rccCache, never()).loadItems(eq(300L), anyList(), eq(true));
+        verify(rccCache).loadEnvironments(eq(1L), anyList());
+        verify(rccCache).loadVersions(eq(10L), anyList());
+    }
+
+    @Test
+    public void testProjectFailureDoesNotStopWarmUp() throws Exception {
+        when(projectService.selectByExample(any(ProjectExample.class), any()))
+                .thenReturn(Collections.singletonList(project(1L)));
+        when(environmentService.selectByProjectId(1L)).thenThrow(new IllegalStateException("db down"));
+
+        cacheWarmUpService.warmUp();
+
+        CacheWarmUpVo progress = cacheWarmUpService.getProgress();
+        Assert.assertEquals("DONE", progress.getStatus());
+        Assert.assertEquals(1L, progress.getFailed());
+        Assert.assertTrue(cacheWarmUpService.isReady());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ReflectionTestUtils.setField(cacheWarmUpService, "enable", false);
+
+        cacheWarmUpService.onApplicationReady();
+
+        Assert.assertEquals("DISABLED", cacheWarmUpService.getProgress().getStatus());
+        Assert.assertTrue(cacheWarmUpService.isReady());
+    }
+
+    @Test
+    public void testReadyAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(cacheWarmUpService, "status", "RUNNING");
+        ReflectionTestUtils.setField(cacheWarmUpService, "startTime", System.currentTimeMillis());
+        Assert.assertFalse(cacheWarmUpService.isReady());
+
+        ReflectionTestUtils.setField(cacheWarmUpService, "startTime", System.currentTimeMillis() - 301000L);
+        Assert.assertTrue(cacheWarmUpService.isReady());
+    }
+
+    private Project project(Long id) {
+        Project project = new Project();
+        project.setId(id);
+        return project;
+    }
+
+    private Environment environment(Long projectId, Long id) {
+        Environment environment = new Environment();
+        environment.setId(id);
+        environment.setProjectId(projectId);
+        environment.setName("env" + id);
+        return environment;
+    }
+
+    private Version version(Long projectId, Long environmentId, Long id) {
+        Version version = new Version();
+        version.setId(id);
+        version.setProjectId(projectId);
+        version.setEnvironmentId(environmentId);
+        version.setName("version" + id);
+        return version;
+    }
+
+    private ConfigItem item(Long versionId, String name) {
+        ConfigItem item = new ConfigItem();
+        item.setVersionId(versionId);
+        item.setName(name);
+        item.setVal(name);
+        return item;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.baidu.brcc.domain.vo.ApiItemVo;
+
+public class ItemDigestUtilsTest {
+
+    @Test
+    public void testStamp() throws Exception {
+        String stamp = ItemDigestUtils.stamp(Arrays.asList(item("c", "3"), item("a", "1"), item("b", "2")));
+        // 与SDK ConfigSnapshot.getStamp的计算结果一致
+        Assert.assertEquals("062694a9e62d5f1f8afa5fbe14b0eb68", stamp);
+        Assert.assertEquals(stamp,
+                ItemDigestUtils.stamp(Arrays.asList(item("a", "1"), item("b", "2"), item("c", "3"), item("d", null))));
+        Assert.assertNotEquals(stamp, ItemDigestUtils.stamp(Arrays.asList(item("a", "1"), item("b", "2"))));
+    }
+
+    @Test
+    public void testDigestSkipsNullValue() throws Exception {
+        Assert.assertEquals(1, ItemDigestUtils.digest(Arrays.asList(item("a", ""), item("b", null))).size());
+        Assert.assertTrue(ItemDigestUtils.digest((List<ApiItemVo>) null).isEmpty());
+    }
+
+    private ApiItemVo item(String key, String value) {
+        ApiItemVo itemVo = new ApiItemVo();
+        itemVo.setKey(key);
+        itemVo.setValue(value);
+        return itemVo;
+    }
+}
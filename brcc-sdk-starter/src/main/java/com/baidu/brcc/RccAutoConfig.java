@@ -37,6 +37,7 @@ import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.util.CollectionUtils;
 
 import com.baidu.brcc.spring.ConfigCenterPropertyPlaceholderConfigurer;
+import com.baidu.brcc.utils.HttpClientOptions;
 
 @Configuration
 @AutoConfigureBefore(PropertyPlaceholderAutoConfiguration.class)
@@ -67,6 +68,13 @@ public class RccAutoConfig implements ApplicationContextAware {
                 ConfigCenterPropertyPlaceholderConfigurer();
 
         configCenterPropertyPlaceholderConfigurer.setCallbackInteval(rccProperties.getCallbackInteval());
+        configCenterPropertyPlaceholderConfigurer.setWatchMode(rccProperties.isWatchMode());
+        configCenterPropertyPlaceholderConfigurer.setBinaryMode(rccProperties.isBinaryMode());
+        configCenterPropertyPlaceholderConfigurer.setStreamMode(rccProperties.isStreamMode());
+        configCenterPropertyPlaceholderConfigurer.setHttpClientOptions(httpClientOptions(rccProperties));
+        configCenterPropertyPlaceholderConfigurer.setSnapshotEnable(rccProperties.isSnapshotEnable());
+        configCenterPropertyPlaceholderConfigurer.setSnapshotDir(rccProperties.getSnapshotDir());
+        configCenterPropertyPlaceholderConfigurer.setValueRefreshEnable(rccProperties.isValueRefreshEnable());
         configCenterPropertyPlaceholderConfigurer.setProjectName(rccProperties.getProjectName());
         configCenterPropertyPlaceholderConfigurer.setEnvName(rccProperties.getEnvName());
         configCenterPropertyPlaceholderConfigurer.setLogProperties(rccProperties.isLogProperties());
@@ -104,4 +112,14 @@ public class RccAutoConfig implements ApplicationContextAware {
         configCenterPropertyPlaceholderConfigurer.setEnvironment(environment);
         return configCenterPropertyPlaceholderConfigurer;
     }
+
+    private HttpClientOptions httpClientOptions(RccProperties rccProperties) {
+        HttpClientOptions options = new HttpClientOptions();
+        options.setMaxIdleConnections(rccProperties.getHttpMaxIdleConnections());
+        options.setKeepAlive(rccProperties.getHttpKeepAlive());
+        options.setMaxRequests(rccProperties.getHttpMaxRequests());
+        options.setMaxRequestsPerHost(rccProperties.getHttpMaxRequestsPerHost());
+        options.setHttp2PriorKnowledge(rccProperties.isHttp2PriorKnowledge());
+        return options;
+    }
 }
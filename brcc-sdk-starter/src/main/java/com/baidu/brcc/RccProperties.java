@@ -24,6 +24,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.env.Environment;
 import org.springframework.util.StringUtils;
 
+import com.baidu.brcc.utils.SnapshotFile;
+
 @ConfigurationProperties(prefix = "rcc")
 public class RccProperties {
     private static final String ENABLE_UPDATE_CALLBACK = "rcc.enableUpdateCallback";
@@ -31,6 +33,17 @@ public class RccProperties {
     private static final String CONNECTION_TIMEOUT = "rcc.connectionTimeout";
     private static final String READ_TIMEOUT = "rcc.readTimeout";
     private static final String CALLBACK_INTERVAL = "rcc.callbackInterval";
+    private static final String WATCH_MODE = "rcc.watchMode";
+    private static final String BINARY_MODE = "rcc.binaryMode";
+    private static final String STREAM_MODE = "rcc.streamMode";
+    private static final String HTTP_MAX_IDLE_CONNECTIONS = "rcc.httpMaxIdleConnections";
+    private static final String HTTP_KEEP_ALIVE = "rcc.httpKeepAlive";
+    private static final String HTTP_MAX_REQUESTS = "rcc.httpMaxRequests";
+    private static final String HTTP_MAX_REQUESTS_PER_HOST = "rcc.httpMaxRequestsPerHost";
+    private static final String HTTP2_PRIOR_KNOWLEDGE = "rcc.http2PriorKnowledge";
+    private static final String SNAPSHOT_ENABLE = "rcc.snapshotEnable";
+    private static final String SNAPSHOT_DIR = "rcc.snapshotDir";
+    private static final String VALUE_REFRESH_ENABLE = "rcc.valueRefreshEnable";
     private static final String SERVER_URL = "rcc.ccServerUrl";
     private static final String USER = "rcc.ccUser";
     private static final String PASSWORD = "rcc.ccPassword";
@@ -100,6 +113,61 @@ public class RccProperties {
             this.callbackInteval = callbackInterval;
         }
 
+        Boolean watchMode = getValueFromEnv(WATCH_MODE, Boolean.class);
+        if (watchMode != null) {
+            this.watchMode = watchMode;
+        }
+
+        Boolean binaryMode = getValueFromEnv(BINARY_MODE, Boolean.class);
+        if (binaryMode != null) {
+            this.binaryMode = binaryMode;
+        }
+
+        Boolean streamMode = getValueFromEnv(STREAM_MODE, Boolean.class);
+        if (streamMode != null) {
+            this.streamMode = streamMode;
+        }
+
+        Integer httpMaxIdleConnections = getValueFromEnv(HTTP_MAX_IDLE_CONNECTIONS, Integer.class);
+        if (httpMaxIdleConnections != null) {
+            this.httpMaxIdleConnections = httpMaxIdleConnections;
+        }
+
+        Long httpKeepAlive = getValueFromEnv(HTTP_KEEP_ALIVE, Long.class);
+        if (httpKeepAlive != null) {
+            this.httpKeepAlive = httpKeepAlive;
+        }
+
+        Integer httpMaxRequests = getValueFromEnv(HTTP_MAX_REQUESTS, Integer.class);
+        if (httpMaxRequests != null) {
+            this.httpMaxRequests = httpMaxRequests;
+        }
+
+        Integer httpMaxRequestsPerHost = getValueFromEnv(HTTP_MAX_REQUESTS_PER_HOST, Integer.class);
+        if (httpMaxRequestsPerHost != null) {
+            this.httpMaxRequestsPerHost = httpMaxRequestsPerHost;
+        }
+
+        Boolean http2PriorKnowledge = getValueFromEnv(HTTP2_PRIOR_KNOWLEDGE, Boolean.class);
+        if (http2PriorKnowledge != null) {
+            this.http2PriorKnowledge = http2PriorKnowledge;
+        }
+
+        Boolean snapshotEnable = getValueFromEnv(SNAPSHOT_ENABLE, Boolean.class);
+        if (snapshotEnable != null) {
+            this.snapshotEnable = snapshotEnable;
+        }
+
+        String snapshotDir = getValueFromEnv(SNAPSHOT_DIR, String.class);
+        if (StringUtils.hasText(snapshotDir)) {
+            this.snapshotDir = snapshotDir;
+        }
+
+        Boolean valueRefreshEnable = getValueFromEnv(VALUE_REFRESH_ENABLE, Boolean.class);
+        if (valueRefreshEnable != null) {
+            this.valueRefreshEnable = valueRefreshEnable;
+        }
+
         this.ccServerUrl = getValueFromEnv(SERVER_URL, String.class);
 
         this.ccUser = getValueFromEnv(USER, String.class);
@@ -160,6 +228,67 @@ public class RccProperties {
      */
     private long callbackInteval = 2000;
 
+    /**
+     * if true, listen changes by long-poll watch instead of checking at interval.
+     * fall back to interval checking when server does not support watch.
+     */
+    private boolean watchMode = false;
+
+    /**
+     * if true, ask server for the binary wire format instead of json.
+     * fall back to json when server does not support it.
+     */
+    private boolean binaryMode = false;
+
+    /**
+     * if true, receive changes pushed by server-sent events, takes precedence over watch mode.
+     * fall back to watch mode or interval checking when server does not support it.
+     */
+    private boolean streamMode = false;
+
+    /**
+     * max idle connections kept in the pool of the http client shared per server.
+     */
+    private int httpMaxIdleConnections = 5;
+
+    /**
+     * keep alive of idle pooled connections, in milliseconds.
+     */
+    private long httpKeepAlive = 300000L;
+
+    /**
+     * max concurrent asynchronous requests of the shared http client.
+     */
+    private int httpMaxRequests = 64;
+
+    /**
+     * max concurrent asynchronous requests per server host of the shared http client.
+     */
+    private int httpMaxRequestsPerHost = 5;
+
+    /**
+     * if true, speak cleartext HTTP/2 (h2c) without upgrade, server must have HTTP/2 enabled.
+     * only applies to http server url.
+     */
+    private boolean http2PriorKnowledge = false;
+
+    /**
+     * if true, start from the local snapshot of last loaded items and revalidate it against server in background.
+     * startup then neither waits for nor fails with the server once a snapshot was saved.
+     */
+    private boolean snapshotEnable = false;
+
+    /**
+     * directory of local snapshots.
+     */
+    private String snapshotDir = SnapshotFile.DEFAULT_DIR;
+
+    /**
+     * if true, update @Value fields and setters in place when the items they refer to changed.
+     * requires enableUpdateCallback.
+     */
+    private boolean valueRefreshEnable = false;
+
     /**
      * Configuration center server URI.
      */
@@ -272,6 +401,94 @@ public class RccProperties {
         this.callbackInteval = callbackInteval;
     }
 
+    public boolean isWatchMode() {
+        return watchMode;
+    }
+
+    public void setWatchMode(boolean watchMode) {
+        this.watchMode = watchMode;
+    }
+
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    public void setBinaryMode(boolean binaryMode) {
+        this.binaryMode = binaryMode;
+    }
+
+    public boolean isStreamMode() {
+        return streamMode;
+    }
+
+    public void setStreamMode(boolean streamMode) {
+        this.streamMode = streamMode;
+    }
+
+    public int getHttpMaxIdleConnections() {
+        return httpMaxIdleConnections;
+    }
+
+    public void setHttpMaxIdleConnections(int httpMaxIdleConnections) {
+        this.httpMaxIdleConnections = httpMaxIdleConnections;
+    }
+
+    public long getHttpKeepAlive() {
+        return httpKeepAlive;
+    }
+
+    public void setHttpKeepAlive(long httpKeepAlive) {
+        this.httpKeepAlive = httpKeepAlive;
+    }
+
+    public int getHttpMaxRequests() {
+        return httpMaxRequests;
+    }
+
+    public void setHttpMaxRequests(int httpMaxRequests) {
+        this.httpMaxRequests = httpMaxRequests;
+    }
+
+    public int getHttpMaxRequestsPerHost() {
+        return httpMaxRequestsPerHost;
+    }
+
+    public void setHttpMaxRequestsPerHost(int httpMaxRequestsPerHost) {
+        this.httpMaxRequestsPerHost = httpMaxRequestsPerHost;
+    }
+
+    public boolean isHttp2PriorKnowledge() {
+        return http2PriorKnowledge;
+    }
+
+    public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+    }
+
+    public boolean isSnapshotEnable() {
+        return snapshotEnable;
+    }
+
+    public void setSnapshotEnable(boolean snapshotEnable) {
+        this.snapshotEnable = snapshotEnable;
+    }
+
+    public String getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public void setSnapshotDir(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    public boolean isValueRefreshEnable() {
+        return valueRefreshEnable;
+    }
+
+    public void setValueRefreshEnable(boolean valueRefreshEnable) {
+        this.valueRefreshEnable = valueRefreshEnable;
+    }
+
     public String getCcServerUrl() {
         return ccServerUrl;
     }
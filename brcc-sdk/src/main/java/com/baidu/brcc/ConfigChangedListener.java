@@ -18,10 +18,7 @@
  */
 package com.baidu.brcc;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,13 +27,19 @@ import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.baidu.brcc.exception.RccException;
+import com.baidu.brcc.exception.RccHttpException;
 import com.baidu.brcc.model.ChangedConfigItem;
+import com.baidu.brcc.model.ItemDeltaVo;
+import com.baidu.brcc.model.ItemVo;
+import com.baidu.brcc.model.StreamEventVo;
 import com.baidu.brcc.model.VersionVo;
 
 /**
@@ -59,6 +62,39 @@ public class ConfigChangedListener implements Runnable {
      * listener thread executor instance.
      */
     private ExecutorService es;
+    /**
+     * if false means server does not support watch, fall back to interval polling.
+     */
+    private boolean watchSupported = true;
+    /**
+     * if false means server does not support item delta, fall back to loading all items.
+     */
+    private boolean deltaSupported = true;
+    /**
+     * if false means server does not support stream, fall back to watch or interval polling.
+     */
+    private boolean streamSupported = true;
+    /**
+     * id of the last stream event handled, used to resume the stream after reconnect.
+     */
+    private String lastEventId;
+    /**
+     * continuous stream failures, used to back off reconnecting. reset once a pushed version is applied.
+     */
+    private int streamFailures;
+    /**
+     * time in milliseconds until which server refused the stream, fall back to watch or interval polling meanwhile.
+     */
+    private long streamPausedUntil;
+
+    /**
+     * first delay in milliseconds to reconnect a broken stream, doubled on each failure.
+     */
+    private static final long STREAM_MIN_BACKOFF = 1000L;
+    /**
+     * max delay in milliseconds to reconnect a broken stream.
+     */
+    private static final long STREAM_MAX_BACKOFF = 60000L;
 
     /**
      * get stop status.
@@ -92,15 +128,12 @@ public class ConfigChangedListener implements Runnable {
     public synchronized void close() {
         if (es != null) {
             stop = true;
+            configLoader.closeStream();
             es.shutdown();
             es = null;
         }
     }
 
-    /**
-     * old configuration items to check.
-     */
-    private Properties properties;
     /**
      * {@link ConfigLoader} instance.
      */
@@ -109,15 +142,30 @@ public class ConfigChangedListener implements Runnable {
     /**
      * default constructor.
      *
-     * @param properties   all loaded properties
-     * @param configLoader {@link ConfigLoader} instance.
+     * @param configLoader {@link ConfigLoader} instance, whose {@link RccConfig} holds the items to check.
      */
-    public ConfigChangedListener(Properties properties, ConfigLoader configLoader) {
+    public ConfigChangedListener(ConfigLoader configLoader) {
         super();
-        this.properties = properties;
         this.configLoader = configLoader;
     }
 
+    /**
+     * constructor of earlier versions, current items are now held by the {@link RccConfig} of the loader.
+     *
+     * @param properties   all loaded properties, published to the loader only if it has no items yet
+     * @param configLoader {@link ConfigLoader} instance.
+     *
+     * @deprecated use {@link #ConfigChangedListener(ConfigLoader)}
+     */
+    @Deprecated
+    public ConfigChangedListener(Properties properties, ConfigLoader configLoader) {
+        this(configLoader);
+        RccConfig config = configLoader.getConfig();
+        if (config.getSnapshot().getVersion() == 0 && properties != null) {
+            config.update(configLoader.getLastCheckSum(), properties);
+        }
+    }
+
     /**
      * create a new {@link ChangedConfigItem} instance.
      *
@@ -136,61 +184,109 @@ public class ConfigChangedListener implements Runnable {
     }
 
     /**
-     * get changed item list compare with current.
+     * load items changed since current items, load delta from server if supported.
      *
-     * @return changed item list
+     * @return all items after the change, null if load failed
      */
-    private List<ChangedConfigItem> checkChangedItems() {
-
-        Map<String, String> configItems = null;
+    private Map<String, String> loadChangedItems() {
+        if (!deltaSupported) {
+            return loadItems();
+        }
+        ItemDeltaVo delta = null;
         try {
-            configItems = configLoader.getFromCC();
+            delta = configLoader.getDeltaFromCC(configLoader.getConfig().getSnapshot().getStamp());
+        } catch (RccHttpException ex) {
+            if (ex.getCode() == 404 || ex.getCode() == 405) {
+                LOGGER.warn("Configuration center server does not support item delta, fall back to load all.");
+                deltaSupported = false;
+                return loadItems();
+            }
+            LOGGER.warn("load delta from cc fail.");
+            return null;
         } catch (Exception ex) {
-            LOGGER.warn("load from cc fail.");
+            LOGGER.warn("load delta from cc fail.");
             // 调用异常
-            return new ArrayList<>(0);
+            return null;
         }
 
-        if (configItems == null) {
-            return Collections.emptyList();
-        }
+        return applyDelta(delta);
+    }
 
-        Map copied = new HashMap(properties);
+    /**
+     * apply item delta to a copy of current items.
+     *
+     * @param delta item delta, or all items if full
+     *
+     * @return all items after the change
+     */
+    private Map<String, String> applyDelta(ItemDeltaVo delta) {
+        return applyDelta(configLoader.getConfig().getSnapshot(), delta);
+    }
 
-        // find different from old
-        Iterator<Entry<Object, Object>> iterator = copied.entrySet().iterator();
-        List<ChangedConfigItem> changedConfigItems = new LinkedList<ChangedConfigItem>();
-        while (iterator.hasNext()) {
-            Entry<Object, Object> entry = iterator.next();
-            String key = entry.getKey().toString();
-            String oldValue = entry.getValue().toString();
-            String newValue = configItems.get(key);
-            if (newValue == null) {
-                changedConfigItems.add(newChangedConfigItem(key, oldValue, null));
-                // remove deleted
-                properties.remove(key);
-            } else {
-                if (!oldValue.equals(newValue)) {
-                    changedConfigItems.add(newChangedConfigItem(key, oldValue, newValue));
-
-                    // update value
-                    properties.put(key, newValue);
+    /**
+     * apply item delta to a copy of the given items.
+     *
+     * @param current items the delta is based on
+     * @param delta   item delta, or all items if full
+     *
+     * @return all items after the change
+     */
+    static Map<String, String> applyDelta(ConfigSnapshot current, ItemDeltaVo delta) {
+        Map<String, String> items = delta.isFull()
+                ? new HashMap<>() : new HashMap<>(current.getItems());
+        if (delta.getItems() != null) {
+            for (ItemVo itemVo : delta.getItems()) {
+                if (itemVo.getKey() != null && itemVo.getValue() != null) {
+                    items.put(itemVo.getKey(), itemVo.getValue());
                 }
             }
-
-            configItems.remove(key);
         }
+        if (!delta.isFull() && delta.getDeleted() != null) {
+            for (String key : delta.getDeleted()) {
+                if (key != null) {
+                    items.remove(key);
+                }
+            }
+        }
+        return items;
+    }
 
-        // add new added
-        Iterator<Entry<String, String>> newAdded = configItems.entrySet().iterator();
-        while (newAdded.hasNext()) {
-            Entry<String, String> entry = newAdded.next();
-            changedConfigItems.add(newChangedConfigItem(entry.getKey(), null, entry.getValue()));
-
-            // add new value
-            properties.put(entry.getKey(), entry.getValue());
+    /**
+     * load all items.
+     *
+     * @return all items, null if load failed
+     */
+    private Map<String, String> loadItems() {
+        try {
+            return configLoader.getFromCC();
+        } catch (Exception ex) {
+            LOGGER.warn("load from cc fail.");
+            // 调用异常
+            return null;
         }
+    }
 
+    /**
+     * get changed item list between current and new items.
+     *
+     * @param current current items
+     * @param items   new items
+     *
+     * @return changed item list
+     */
+    private List<ChangedConfigItem> diff(Map<String, String> current, Map<String, String> items) {
+        List<ChangedConfigItem> changedConfigItems = new LinkedList<ChangedConfigItem>();
+        for (Entry<String, String> entry : current.entrySet()) {
+            String newValue = items.get(entry.getKey());
+            if (!entry.getValue().equals(newValue)) {
+                changedConfigItems.add(newChangedConfigItem(entry.getKey(), entry.getValue(), newValue));
+            }
+        }
+        for (Entry<String, String> entry : items.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                changedConfigItems.add(newChangedConfigItem(entry.getKey(), null, entry.getValue()));
+            }
+        }
         return changedConfigItems;
     }
 
@@ -199,14 +295,29 @@ public class ConfigChangedListener implements Runnable {
      */
     public void run() {
         while (!stop) {
+            if (isStreaming()) {
+                try {
+                    stream();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            boolean watching = isWatching();
             try {
-                Thread.sleep(configLoader.getCallbackInteval());
+                if (!watching) {
+                    Thread.sleep(configLoader.getCallbackInteval());
+                }
 
                 // check version tag. tag should not be null
                 String versionTag = configLoader.getLastCheckSum();
                 if (StringUtils.isBlank(versionTag)) {
                     LOGGER.warn("Found local version tag is null, it could be a error "
                             + "from configuration center server. ");
+                    if (watching) {
+                        Thread.sleep(configLoader.getCallbackInteval());
+                    }
                     continue;
                 } else {
                     if (LOGGER.isDebugEnabled()) {
@@ -215,19 +326,195 @@ public class ConfigChangedListener implements Runnable {
                 }
 
                 // check tag
-                VersionVo isLastTag = configLoader.getVersion();
+                VersionVo isLastTag;
+                if (watching) {
+                    isLastTag = configLoader.watchVersion(versionTag);
+                    if (isLastTag == null) {
+                        // no change before server timeout
+                        continue;
+                    }
+                } else {
+                    isLastTag = configLoader.getVersion();
+                }
 
-                if (!StringUtils.equals(isLastTag == null ? "" : isLastTag.getCheckSum(), versionTag)) {
-                    List<ChangedConfigItem> changedItems = checkChangedItems();
-                    configLoader.doCallback(changedItems);
+                String lastTag = isLastTag == null ? "" : isLastTag.getCheckSum();
+                if (!StringUtils.equals(lastTag, versionTag)) {
+                    Map<String, String> items = loadChangedItems();
+                    if (items != null) {
+                        onChanged(lastTag, items);
+                    }
+                }
+            } catch (RccHttpException e) {
+                if (watching && (e.getCode() == 404 || e.getCode() == 405)) {
+                    LOGGER.warn("Configuration center server does not support watch, "
+                            + "fall back to check at interval.");
+                    watchSupported = false;
+                } else {
+                    onError(e, watching);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             } catch (Exception e) {
-                LOGGER.warn(
-                        "Change verify callback failed will retry at next interval. error message:" + e.getMessage(),
-                        e);
+                onError(e, watching);
+            }
+        }
+
+    }
+
+    /**
+     * receive changes pushed by server until the stream is closed, then back off if it failed.
+     */
+    private void stream() throws InterruptedException {
+        try {
+            configLoader.streamVersion(lastEventId, new ConfigLoader.StreamHandler() {
+                @Override
+                public void onVersion(String eventId, StreamEventVo event) {
+                    if (!applyVersion(event)) {
+                        // reconnect from last handled event, server will send this change again
+                        throw new RccException("apply version " + event.getVersion().getCheckSum() + " fail.");
+                    }
+                    lastEventId = eventId;
+                    // an opened stream may still be closed by an error event, so only a version proves it works
+                    streamFailures = 0;
+                }
+            });
+            // server closed the stream on its timeout, reconnect at once
+            return;
+        } catch (RccHttpException e) {
+            if (e.getCode() == 404 || e.getCode() == 405) {
+                LOGGER.warn("Configuration center server does not support stream, fall back to "
+                        + (configLoader.isWatchMode() ? "watch." : "check at interval."));
+                streamSupported = false;
+                return;
             }
+            if (e.getCode() == 503) {
+                // server has too many streams, keep getting changes the other way until backoff elapses
+                long backoff = nextStreamBackoff();
+                LOGGER.warn("Config stream refused by server, fall back to "
+                        + (configLoader.isWatchMode() ? "watch" : "check at interval") + " for " + backoff + "ms.");
+                streamPausedUntil = System.currentTimeMillis() + backoff;
+                return;
+            }
+            onStreamError(e);
+        } catch (Exception e) {
+            onStreamError(e);
+        }
+    }
+
+    /**
+     * apply a version pushed by server.
+     *
+     * @return false if the items could not be loaded
+     */
+    private boolean applyVersion(StreamEventVo event) {
+        String versionTag = configLoader.getLastCheckSum();
+        String lastTag = event.getVersion().getCheckSum();
+        if (StringUtils.isBlank(lastTag) || StringUtils.equals(lastTag, versionTag)) {
+            return true;
+        }
+        Map<String, String> items;
+        if (isApplicable(configLoader.getConfig().getSnapshot(), event.getDelta())) {
+            items = applyDelta(event.getDelta());
+        } else if (StringUtils.isBlank(versionTag)) {
+            items = loadItems();
+        } else {
+            items = loadChangedItems();
+        }
+        if (items == null) {
+            return false;
+        }
+        return onChanged(lastTag, items);
+    }
+
+    /**
+     * check if a pushed delta can be applied to the given items. a delta is computed from the items the server
+     * last pushed, which may differ from current items if they were loaded some other way.
+     *
+     * @param current current items
+     * @param delta   pushed delta, may be null
+     *
+     * @return true if the delta is full or based on the same content as current items
+     */
+    static boolean isApplicable(ConfigSnapshot current, ItemDeltaVo delta) {
+        if (delta == null) {
+            return false;
+        }
+        return delta.isFull() || StringUtils.equals(delta.getSinceStamp(), current.getStamp());
+    }
+
+    /**
+     * publish new items as a whole, remember the applied version, keep the local snapshot up to date and
+     * notify callbacks. an empty item set replaces current items only if server confirms the version.
+     *
+     * @return false if the items were not applied, the change is loaded again next time
+     */
+    private boolean onChanged(String lastTag, Map<String, String> items) {
+        RccConfig config = configLoader.getConfig();
+        Map<String, String> current = config.getSnapshot().getItems();
+        if (items.isEmpty() && !current.isEmpty() && !isConfirmed(lastTag, items)) {
+            LOGGER.warn("Loaded no items for checksum " + lastTag + " which is not confirmed by server, keep "
+                    + current.size() + " current items.");
+            return false;
+        }
+        List<ChangedConfigItem> changedItems = diff(current, items);
+        config.update(lastTag, items);
+        configLoader.setLastCheckSum(lastTag);
+        configLoader.saveSnapshot(lastTag, items);
+        configLoader.doCallback(changedItems);
+        return true;
+    }
+
+    private boolean isConfirmed(String lastTag, Map<String, String> items) {
+        try {
+            return configLoader.confirmItems(lastTag, items);
+        } catch (Exception ex) {
+            LOGGER.warn("confirm version from cc fail.");
+            return false;
         }
+    }
+
+    private void onStreamError(Exception e) throws InterruptedException {
+        if (stop) {
+            return;
+        }
+        long backoff = nextStreamBackoff();
+        LOGGER.warn("Config stream broken, reconnect in " + backoff + "ms. error message:" + e.getMessage());
+        Thread.sleep(backoff);
+    }
+
+    /**
+     * count a stream failure and get the delay before next connect.
+     *
+     * @return delay in milliseconds, doubled on each continuous failure
+     */
+    private long nextStreamBackoff() {
+        long backoff = Math.min(STREAM_MAX_BACKOFF, STREAM_MIN_BACKOFF << Math.min(streamFailures, 16));
+        streamFailures++;
+        // spread reconnects of all clients after a server restart
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
 
+    private boolean isStreaming() {
+        return streamSupported && configLoader.isStreamMode() && System.currentTimeMillis() >= streamPausedUntil;
+    }
+
+    private boolean isWatching() {
+        return watchSupported && configLoader.isWatchMode();
+    }
+
+    private void onError(Exception e, boolean watching) {
+        LOGGER.warn(
+                "Change verify callback failed will retry at next interval. error message:" + e.getMessage(),
+                e);
+        if (watching) {
+            // avoid busy retry when server is unavailable
+            try {
+                Thread.sleep(configLoader.getCallbackInteval());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
 }
@@ -20,12 +20,14 @@ package com.baidu.brcc;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -33,24 +35,59 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
 import com.baidu.brcc.exception.RccException;
+import com.baidu.brcc.exception.RccHttpException;
 import com.baidu.brcc.model.AuthVo;
+import com.baidu.brcc.model.BootstrapVo;
 import com.baidu.brcc.model.ChangedConfigItem;
 import com.baidu.brcc.model.EnvVo;
+import com.baidu.brcc.model.ItemDeltaVo;
 import com.baidu.brcc.model.ItemVo;
 import com.baidu.brcc.model.R;
 import com.baidu.brcc.model.RList;
+import com.baidu.brcc.model.StreamEventVo;
 import com.baidu.brcc.model.VersionVo;
+import com.baidu.brcc.utils.BinaryDecoder;
+import com.baidu.brcc.utils.HttpClientOptions;
 import com.baidu.brcc.utils.OkHttpClientUtils;
+import com.baidu.brcc.utils.SnapshotFile;
 import com.baidu.brcc.utils.gson.GsonUtils;
 
+import okhttp3.Call;
+
 public class ConfigLoader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigLoader.class);
 
     private static final String AUTH_API = "/api/auth";
+    private static final String BOOTSTRAP_API = "/api/bootstrap";
     private static final String ENV_API = "/api/environment/{0}";
     private static final String VERSION_API = "/api/version/{0}";
     private static final String ITEM_API = "/api/item";
+    private static final String WATCH_API = "/api/watch";
+    private static final String ITEM_DELTA_API = "/api/itemDelta";
+    private static final String STREAM_API = "/api/stream";
+    private static final String STREAM_EVENT_VERSION = "version";
+    private static final String STREAM_EVENT_ERROR = "error";
+
+    /**
+     * max time in milliseconds a watch request is held by server.
+     */
+    private static final long WATCH_TIMEOUT = 30000L;
+
+    /**
+     * max time in milliseconds without any data on a stream, server sends heartbeats far more often.
+     */
+    private static final long STREAM_IDLE_TIMEOUT = 60000L;
+
+    private static final OkHttpClientUtils.ResponseReader<RList<VersionVo>> VERSIONS_READER =
+            (body, binary) -> binary ? BinaryDecoder.readVersions(body.byteStream())
+                    : GsonUtils.toRList(body.string(), VersionVo.class);
+    private static final OkHttpClientUtils.ResponseReader<R<Map<String, String>>> ITEMS_READER =
+            (body, binary) -> binary ? BinaryDecoder.readItems(body.byteStream(), new HashMap<>())
+                    : toItemMap(GsonUtils.toRList(body.string(), ItemVo.class));
+    private static final OkHttpClientUtils.ResponseReader<R<ItemDeltaVo>> DELTA_READER =
+            (body, binary) -> binary ? BinaryDecoder.readItemDelta(body.byteStream())
+                    : GsonUtils.toRObject(body.string(), ItemDeltaVo.class);
 
     private String ccServerUrl;
     private String apiPassword;
@@ -59,20 +96,56 @@ public class ConfigLoader {
     private String ccVersionName;
     private boolean enableUpdateCallback;
     private long callbackInteval;
+    private long readTimeOut;
+    private boolean watchMode;
+    private boolean binaryMode;
+    private boolean streamMode;
 
     private Properties rccProperties;
-    private String currentToken;
-    private Long envId;
-    private Long versionId;
+    private volatile String currentToken;
+    private volatile Long envId;
+    private volatile Long versionId;
     private String lastCheckSum;
     private OkHttpClientUtils okHttpClientUtils;
+    private OkHttpClientUtils watchHttpClientUtils;
+    private OkHttpClientUtils streamHttpClientUtils;
+    private volatile Call streamCall;
+    private SnapshotFile snapshotFile;
+    /**
+     * if false means server does not support bootstrap, login and load step by step.
+     */
+    private boolean bootstrapSupported = true;
+    /**
+     * items loaded by bootstrap, handed out by the next {@link #getFromCC()} only.
+     */
+    private volatile Map<String, String> bootstrapItems;
 
     private Collection<ConfigItemChangedCallable> changedCallable;
+    private final RccConfig config = new RccConfig();
     private ConfigChangedListener configChangedListener;
 
     public ConfigLoader(String ccServerUrl, String apiPassword, String projectName, String envName,
                         String ccVersionName, boolean enableUpdateCallback, long connectionTimeOut,
                         long readTimeOut, long callbackInteval) throws IOException {
+        this(ccServerUrl, apiPassword, projectName, envName, ccVersionName, enableUpdateCallback, connectionTimeOut,
+                readTimeOut, callbackInteval, new HttpClientOptions());
+    }
+
+    /**
+     * create a loader whose http client is shared with every other loader of the same server, tuned by options.
+     */
+    public ConfigLoader(String ccServerUrl, String apiPassword, String projectName, String envName,
+                        String ccVersionName, boolean enableUpdateCallback, long connectionTimeOut,
+                        long readTimeOut, long callbackInteval, HttpClientOptions options) throws IOException {
+        this(ccServerUrl, apiPassword, projectName, envName, ccVersionName, enableUpdateCallback, readTimeOut,
+                callbackInteval, OkHttpClientUtils.shared(ccServerUrl, readTimeOut, connectionTimeOut, options));
+
+        init();
+    }
+
+    private ConfigLoader(String ccServerUrl, String apiPassword, String projectName, String envName,
+                         String ccVersionName, boolean enableUpdateCallback, long readTimeOut,
+                         long callbackInteval, OkHttpClientUtils okHttpClientUtils) {
         this.ccServerUrl = ccServerUrl;
         this.apiPassword = apiPassword;
         this.projectName = projectName;
@@ -80,13 +153,64 @@ public class ConfigLoader {
         this.ccVersionName = ccVersionName;
         this.enableUpdateCallback = enableUpdateCallback;
         this.callbackInteval = callbackInteval;
+        this.readTimeOut = readTimeOut;
+        this.okHttpClientUtils = okHttpClientUtils;
+    }
 
-        okHttpClientUtils = new OkHttpClientUtils(readTimeOut, connectionTimeOut);
+    /**
+     * create a loader without blocking the calling thread. login, environment and version are loaded on the
+     * okhttp dispatcher, so loaders of several projects or versions created this way start concurrently.
+     *
+     * @return future of the initialized loader
+     */
+    public static CompletableFuture<ConfigLoader> createAsync(String ccServerUrl, String apiPassword,
+                                                              String projectName, String envName,
+                                                              String ccVersionName, boolean enableUpdateCallback,
+                                                              long connectionTimeOut, long readTimeOut,
+                                                              long callbackInteval) {
+        return createAsync(ccServerUrl, apiPassword, projectName, envName, ccVersionName, enableUpdateCallback,
+                connectionTimeOut, readTimeOut, callbackInteval, new HttpClientOptions());
+    }
 
-        init();
+    /**
+     * create a loader without blocking the calling thread, sharing the http client of the server tuned by options.
+     *
+     * @return future of the initialized loader
+     */
+    public static CompletableFuture<ConfigLoader> createAsync(String ccServerUrl, String apiPassword,
+                                                              String projectName, String envName,
+                                                              String ccVersionName, boolean enableUpdateCallback,
+                                                              long connectionTimeOut, long readTimeOut,
+                                                              long callbackInteval, HttpClientOptions options) {
+        ConfigLoader loader = new ConfigLoader(ccServerUrl, apiPassword, projectName, envName, ccVersionName,
+                enableUpdateCallback, readTimeOut, callbackInteval,
+                OkHttpClientUtils.shared(ccServerUrl, readTimeOut, connectionTimeOut, options));
+        return loader.getVersionAsync().thenApply(version -> {
+            loader.lastCheckSum = version.getCheckSum();
+            return loader;
+        });
+    }
+
+    /**
+     * create a loader that does not talk to server until its first request, e.g. to start from a local snapshot.
+     *
+     * @return loader not yet logged in
+     */
+    public static ConfigLoader createLazily(String ccServerUrl, String apiPassword, String projectName,
+                                            String envName, String ccVersionName, boolean enableUpdateCallback,
+                                            long connectionTimeOut, long readTimeOut, long callbackInteval,
+                                            HttpClientOptions options) {
+        return new ConfigLoader(ccServerUrl, apiPassword, projectName, envName, ccVersionName,
+                enableUpdateCallback, readTimeOut, callbackInteval,
+                OkHttpClientUtils.shared(ccServerUrl, readTimeOut, connectionTimeOut, options));
     }
 
     private void init() throws IOException {
+        // 一次请求完成登录及加载
+        if (bootstrap()) {
+            return;
+        }
+
         // 登录
         login();
 
@@ -98,22 +222,66 @@ public class ConfigLoader {
         lastCheckSum = version.getCheckSum();
     }
 
+    /**
+     * login and load environment, version and all items of the version in one request.
+     *
+     * @return false if server does not support bootstrap
+     */
+    public boolean bootstrap() throws IOException {
+        if (!bootstrapSupported) {
+            return false;
+        }
+        R<BootstrapVo> result;
+        try {
+            result = okHttpClientUtils.postJson(ccServerUrl.concat(BOOTSTRAP_API), BootstrapVo.class,
+                    bootstrapBody(), null, null);
+        } catch (RccHttpException ex) {
+            if (ex.getCode() == 404 || ex.getCode() == 405) {
+                LOGGER.info("Configuration center server does not support bootstrap, load step by step.");
+                bootstrapSupported = false;
+                return false;
+            }
+            throw ex;
+        }
+        checkResult(result, "bootstrap rcc fail.");
+        BootstrapVo vo = result.getData();
+        currentToken = vo.getAuth().getToken();
+        envId = vo.getEnvironmentId();
+        versionId = vo.getVersion().getVersionId();
+        lastCheckSum = vo.getVersion().getCheckSum();
+        bootstrapItems = toMap(vo.getItems());
+        return true;
+    }
+
+    private String bootstrapBody() {
+        Map<String, String> body = new HashMap<>();
+        body.put("projectName", projectName);
+        body.put("apiPassword", apiPassword);
+        body.put("environmentName", envName);
+        body.put("versionName", ccVersionName);
+        return GsonUtils.toJsonString(body);
+    }
+
     // 登录
     public String login() throws IOException {
-        String authUrl = ccServerUrl.concat(AUTH_API);
+        return onLogin(okHttpClientUtils.postJson(ccServerUrl.concat(AUTH_API), AuthVo.class, authBody(), null,
+                null));
+    }
+
+    public CompletableFuture<String> loginAsync() {
+        return okHttpClientUtils.postJsonAsync(ccServerUrl.concat(AUTH_API), AuthVo.class, authBody(), null, null)
+                .thenApply(this::onLogin);
+    }
+
+    private String authBody() {
         Map<String, String> body = new HashMap<>();
         body.put("projectName", projectName);
         body.put("apiPassword", apiPassword);
-        R<AuthVo> vo = okHttpClientUtils.postJson(authUrl, AuthVo.class, GsonUtils.toJsonString(body), null, null);
-        if (vo == null || vo.getData() == null || vo.getStatus() != 0) {
-            String msg = null;
-            if (vo == null) {
-                msg = "get rcc token fail.";
-            } else {
-                msg = vo.getMsg();
-            }
-            throw new RccException(msg);
-        }
+        return GsonUtils.toJsonString(body);
+    }
+
+    private String onLogin(R<AuthVo> vo) {
+        checkResult(vo, "get rcc token fail.");
         this.currentToken = vo.getData().getToken();
         return this.currentToken;
     }
@@ -123,19 +291,21 @@ public class ConfigLoader {
         if (StringUtils.isBlank(currentToken)) {
             login();
         }
-        String envUrl = ccServerUrl.concat(MessageFormat.format(ENV_API, envName));
-        Map<String, Object> param = new HashMap<>();
-        param.put("token", currentToken);
-        R<EnvVo> result = okHttpClientUtils.get(envUrl, EnvVo.class, param, null);
-        if (result == null || result.getData() == null || result.getStatus() != 0) {
-            String msg = null;
-            if (result == null) {
-                msg = "get rcc env by name fail.";
-            } else {
-                msg = result.getMsg();
-            }
-            throw new RccException(msg);
-        }
+        return onEnv(okHttpClientUtils.get(envUrl(), EnvVo.class, tokenParam(), null));
+    }
+
+    public CompletableFuture<Long> getEnvAsync() {
+        return tokenAsync()
+                .thenCompose(token -> okHttpClientUtils.getAsync(envUrl(), EnvVo.class, tokenParam(), null))
+                .thenApply(this::onEnv);
+    }
+
+    private String envUrl() {
+        return ccServerUrl.concat(MessageFormat.format(ENV_API, envName));
+    }
+
+    private Long onEnv(R<EnvVo> result) {
+        checkResult(result, "get rcc env by name fail.");
         envId = result.getData().getEnvironmentId();
         return envId;
     }
@@ -148,45 +318,461 @@ public class ConfigLoader {
         if (envId == null) {
             getEnv();
         }
-        String versionUrl = ccServerUrl.concat(MessageFormat.format(VERSION_API, ccVersionName));
-        Map<String, Object> param = new HashMap<>();
-        param.put("token", currentToken);
+        return onVersion(okHttpClientUtils.get(versionUrl(), VersionVo.class, versionParam(), null));
+    }
+
+    public CompletableFuture<VersionVo> getVersionAsync() {
+        return envAsync()
+                .thenCompose(env -> okHttpClientUtils.getAsync(versionUrl(), VersionVo.class, versionParam(), null))
+                .thenApply(this::onVersion);
+    }
+
+    private String versionUrl() {
+        return ccServerUrl.concat(MessageFormat.format(VERSION_API, ccVersionName));
+    }
+
+    private Map<String, Object> versionParam() {
+        Map<String, Object> param = tokenParam();
         param.put("environmentId", envId);
-        R<VersionVo> result = okHttpClientUtils.get(versionUrl, VersionVo.class, param, null);
-        if (result == null || result.getData() == null || result.getStatus() != 0) {
+        return param;
+    }
+
+    private VersionVo onVersion(R<VersionVo> result) {
+        checkResult(result, "get rcc version by name fail.");
+        versionId = result.getData().getVersionId();
+        return result.getData();
+    }
+
+    /**
+     * hold a long-poll request until checksum of current version differs from the given one.
+     *
+     * @param checkSum checksum known by client
+     *
+     * @return changed version, or null if no change before server timeout
+     */
+    public VersionVo watchVersion(String checkSum) throws IOException {
+        if (StringUtils.isBlank(currentToken)) {
+            login();
+        }
+        if (versionId == null) {
+            getVersion();
+        }
+        String watchUrl = ccServerUrl.concat(WATCH_API);
+        RList<VersionVo> result;
+        if (binaryMode) {
+            result = watchClient().postJsonBinary(watchUrl, watchBody(checkSum), tokenParam(), null, VERSIONS_READER);
+        } else {
+            result = watchClient().postJsonList(watchUrl, VersionVo.class, watchBody(checkSum), tokenParam(), null);
+        }
+        return onWatch(result);
+    }
+
+    /**
+     * asynchronous {@link #watchVersion(String)}. the request is held on an okhttp dispatcher thread, keep the
+     * number of concurrent watches within the dispatcher limits.
+     */
+    public CompletableFuture<VersionVo> watchVersionAsync(String checkSum) {
+        return versionIdAsync().thenCompose(id -> {
+            String watchUrl = ccServerUrl.concat(WATCH_API);
+            if (binaryMode) {
+                return watchClient().postJsonBinaryAsync(watchUrl, watchBody(checkSum), tokenParam(), null,
+                        VERSIONS_READER);
+            }
+            return watchClient().postJsonListAsync(watchUrl, VersionVo.class, watchBody(checkSum), tokenParam(),
+                    null);
+        }).thenApply(this::onWatch);
+    }
+
+    private OkHttpClientUtils watchClient() {
+        if (watchHttpClientUtils == null) {
+            // read time out must cover the time server holds the request
+            watchHttpClientUtils = okHttpClientUtils.withReadTimeout(WATCH_TIMEOUT + readTimeOut);
+        }
+        return watchHttpClientUtils;
+    }
+
+    private String watchBody(String checkSum) {
+        VersionVo watched = new VersionVo();
+        watched.setVersionId(versionId);
+        watched.setCheckSum(checkSum);
+        List<VersionVo> versions = new ArrayList<>(1);
+        versions.add(watched);
+        Map<String, Object> body = new HashMap<>();
+        body.put("versions", versions);
+        body.put("timeout", WATCH_TIMEOUT);
+        return GsonUtils.toJsonString(body);
+    }
+
+    private VersionVo onWatch(RList<VersionVo> result) {
+        if (result == null || result.getStatus() != 0) {
             String msg = null;
             if (result == null) {
-                msg = "get rcc version by name fail.";
+                msg = "watch rcc version fail.";
             } else {
                 msg = result.getMsg();
             }
             throw new RccException(msg);
         }
-        versionId = result.getData().getVersionId();
-        return result.getData();
+        if (!CollectionUtils.isEmpty(result.getData())) {
+            for (VersionVo vo : result.getData()) {
+                if (versionId.equals(vo.getVersionId())) {
+                    return vo;
+                }
+            }
+        }
+        return null;
     }
 
-    public Map<String, String> getFromCC() throws IOException {
+    /**
+     * receive changes of current version pushed by server-sent events, blocks until the server closes
+     * the stream or {@link #closeStream()} is called.
+     *
+     * @param lastEventId id of the last event handled, the server only sends changes after it.
+     *                    if null the server sends the current version at once.
+     * @param handler     handler of the changed versions, throw to close the stream
+     */
+    public void streamVersion(String lastEventId, StreamHandler handler) throws IOException {
         if (StringUtils.isBlank(currentToken)) {
             login();
         }
-        String itemUrl = ccServerUrl.concat(ITEM_API);
+        if (versionId == null) {
+            getVersion();
+        }
+        if (streamHttpClientUtils == null) {
+            streamHttpClientUtils = okHttpClientUtils.withReadTimeout(STREAM_IDLE_TIMEOUT + readTimeOut);
+        }
+        String streamUrl = ccServerUrl.concat(STREAM_API);
         Map<String, Object> param = new HashMap<>();
         param.put("token", currentToken);
+        param.put("versionIds", versionId);
+        param.put("delta", true);
+        Call call = streamHttpClientUtils.newEventStreamCall(streamUrl, param, null, lastEventId);
+        streamCall = call;
+        try {
+            streamHttpClientUtils.readEventStream(call, new OkHttpClientUtils.EventHandler() {
+                @Override
+                public void onOpen() {
+                    handler.onOpen();
+                }
+
+                @Override
+                public void onEvent(String id, String event, String data) throws IOException {
+                    if (STREAM_EVENT_ERROR.equals(event)) {
+                        R<Object> r = GsonUtils.toRObject(data, Object.class);
+                        throw new RccException(r == null ? "stream rcc version fail." : r.getMsg());
+                    }
+                    if (!STREAM_EVENT_VERSION.equals(event)) {
+                        return;
+                    }
+                    StreamEventVo vo = GsonUtils.toObject(data, StreamEventVo.class);
+                    if (vo != null && vo.getVersion() != null && versionId.equals(vo.getVersion().getVersionId())) {
+                        handler.onVersion(id, vo);
+                    }
+                }
+            });
+        } catch (RccHttpException ex) {
+            if (ex.getCode() == 401) {
+                // token expired, login again on next connect
+                currentToken = null;
+            }
+            throw ex;
+        } finally {
+            streamCall = null;
+        }
+    }
+
+    /**
+     * close the stream opened by {@link #streamVersion(String, StreamHandler)}, if any.
+     */
+    public void closeStream() {
+        Call call = streamCall;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    public Map<String, String> getFromCC() throws IOException {
+        Map<String, String> items = bootstrapItems;
+        if (items != null) {
+            bootstrapItems = null;
+            return items;
+        }
+        if (StringUtils.isBlank(currentToken)) {
+            login();
+        }
+        String itemUrl = ccServerUrl.concat(ITEM_API);
+        if (binaryMode) {
+            return onItems(okHttpClientUtils.getBinary(itemUrl, itemParam(), null, ITEMS_READER));
+        }
+        return onItemList(okHttpClientUtils.getList(itemUrl, ItemVo.class, itemParam(), null));
+    }
+
+    public CompletableFuture<Map<String, String>> getFromCCAsync() {
+        return tokenAsync().thenCompose(token -> {
+            String itemUrl = ccServerUrl.concat(ITEM_API);
+            if (binaryMode) {
+                return okHttpClientUtils.getBinaryAsync(itemUrl, itemParam(), null, ITEMS_READER)
+                        .thenApply(ConfigLoader::onItems);
+            }
+            return okHttpClientUtils.getListAsync(itemUrl, ItemVo.class, itemParam(), null)
+                    .thenApply(ConfigLoader::onItemList);
+        });
+    }
+
+    private Map<String, Object> itemParam() {
+        Map<String, Object> param = tokenParam();
         param.put("versionId", versionId);
-        RList<ItemVo> r = okHttpClientUtils.getList(itemUrl, ItemVo.class, param, null);
+        return param;
+    }
+
+    // the result is remembered for ETag revalidation, hand out a copy
+    private static Map<String, String> onItems(R<Map<String, String>> r) {
+        checkResult(r, "get rcc items fail.");
+        return new HashMap<>(r.getData());
+    }
+
+    private static Map<String, String> onItemList(RList<ItemVo> r) {
+        checkResult(r, "get rcc items fail.");
+        return toMap(r.getData());
+    }
+
+    private static Map<String, String> toMap(List<ItemVo> items) {
         Map<String, String> map = new HashMap<>();
-        if (!CollectionUtils.isEmpty(r.getData())) {
-            for (ItemVo itemVo : r.getData()) {
+        if (!CollectionUtils.isEmpty(items)) {
+            for (ItemVo itemVo : items) {
                 map.put(itemVo.getKey(), itemVo.getValue());
             }
         }
         return map;
     }
 
+    private static R<Map<String, String>> toItemMap(RList<ItemVo> list) {
+        R<Map<String, String>> r = new R<>();
+        if (list == null) {
+            return r;
+        }
+        r.setStatus(list.getStatus());
+        r.setMsg(list.getMsg());
+        if (list.getData() != null) {
+            Map<String, String> map = new HashMap<>();
+            for (ItemVo itemVo : list.getData()) {
+                map.put(itemVo.getKey(), itemVo.getValue());
+            }
+            r.setData(map);
+        }
+        return r;
+    }
+
+    /**
+     * load items from the local snapshot and revalidate them against server in background. if there is no
+     * usable snapshot, load items from server and save them as the snapshot.
+     *
+     * @return items of the snapshot, or of server if there is no snapshot
+     */
+    public Map<String, String> getFromSnapshotOrCC() throws IOException {
+        Map<String, String> items = loadSnapshot();
+        if (items != null) {
+            revalidateSnapshotAsync();
+            return items;
+        }
+        init();
+        items = getFromCC();
+        saveSnapshot(lastCheckSum, items);
+        return items;
+    }
+
+    /**
+     * load items from the local snapshot, the checksum of the snapshot becomes the last checksum.
+     *
+     * @return items of the snapshot, or null if snapshot is disabled, absent or unreadable
+     */
+    public Map<String, String> loadSnapshot() {
+        if (snapshotFile == null) {
+            return null;
+        }
+        try {
+            SnapshotFile.Snapshot snapshot = snapshotFile.read();
+            if (snapshot == null || StringUtils.isBlank(snapshot.getCheckSum())) {
+                return null;
+            }
+            lastCheckSum = snapshot.getCheckSum();
+            LOGGER.info("Loaded {} items of checksum {} from snapshot {}", snapshot.getItems().size(),
+                    lastCheckSum, snapshotFile.getPath());
+            return snapshot.getItems();
+        } catch (IOException ex) {
+            LOGGER.warn("Load snapshot " + snapshotFile.getPath() + " fail, load from cc instead.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * replace the local snapshot, failures are logged only.
+     *
+     * @param checkSum checksum of the items
+     * @param items    all items of the version
+     */
+    public void saveSnapshot(String checkSum, Map<?, ?> items) {
+        if (snapshotFile == null || StringUtils.isBlank(checkSum) || items == null) {
+            return;
+        }
+        try {
+            snapshotFile.write(checkSum, items);
+        } catch (IOException ex) {
+            LOGGER.warn("Save snapshot " + snapshotFile.getPath() + " fail.", ex);
+        }
+    }
+
+    /**
+     * compare the snapshot loaded by {@link #loadSnapshot()} with server, and save the items of server as the
+     * snapshot if they differ. the last checksum is kept, so the changes are still delivered by update
+     * callbacks once listening starts.
+     *
+     * @return future completed with true if the snapshot was stale
+     */
+    public CompletableFuture<Boolean> revalidateSnapshotAsync() {
+        String checkSum = lastCheckSum;
+        return getVersionAsync().thenCompose(version -> {
+            if (StringUtils.equals(version.getCheckSum(), checkSum)) {
+                return CompletableFuture.completedFuture(Boolean.FALSE);
+            }
+            return getFromCCAsync()
+                    .thenCompose(items -> confirmItemsAsync(version.getCheckSum(), items))
+                    .thenApply(items -> onRevalidated(version.getCheckSum(), items));
+        }).whenComplete((stale, ex) -> {
+            if (ex != null) {
+                LOGGER.warn("Revalidate snapshot fail, keep running on it. error message:" + ex.getMessage());
+            }
+        });
+    }
+
+    private Boolean onRevalidated(String checkSum, Map<String, String> items) {
+        if (items == null) {
+            LOGGER.warn("Snapshot {} is stale but server returned no items for checksum {}, keep it.",
+                    snapshotFile.getPath(), checkSum);
+            return Boolean.TRUE;
+        }
+        saveSnapshot(checkSum, items);
+        if (enableUpdateCallback) {
+            LOGGER.info("Snapshot {} is stale, changes will be applied by update callback.",
+                    snapshotFile.getPath());
+        } else {
+            LOGGER.warn("Snapshot {} is stale and update callback is disabled, changes apply after "
+                    + "restart.", snapshotFile.getPath());
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * check an empty item set against server before it replaces any items. an empty set read in the middle of a
+     * change must not wipe out a good snapshot, so it is kept only if the version still has the same checksum.
+     *
+     * @param checkSum checksum of the version the items were loaded for
+     * @param items    loaded items
+     *
+     * @return true if the items are not empty or server confirms the checksum
+     */
+    public boolean confirmItems(String checkSum, Map<String, String> items) throws IOException {
+        return !items.isEmpty() || StringUtils.equals(getVersion().getCheckSum(), checkSum);
+    }
+
+    private CompletableFuture<Map<String, String>> confirmItemsAsync(String checkSum, Map<String, String> items) {
+        if (!items.isEmpty()) {
+            return CompletableFuture.completedFuture(items);
+        }
+        return getVersionAsync().thenApply(version -> StringUtils.equals(version.getCheckSum(), checkSum)
+                ? items : null);
+    }
+
+    /**
+     * get items changed since the given content stamp.
+     *
+     * @param sinceStamp content stamp of items held by client, see {@link ConfigSnapshot#getStamp()}
+     *
+     * @return changed items, or all items if server can not compute delta from the stamp
+     */
+    public ItemDeltaVo getDeltaFromCC(String sinceStamp) throws IOException {
+        if (StringUtils.isBlank(currentToken)) {
+            login();
+        }
+        String deltaUrl = ccServerUrl.concat(ITEM_DELTA_API);
+        R<ItemDeltaVo> result;
+        if (binaryMode) {
+            result = okHttpClientUtils.getBinary(deltaUrl, deltaParam(sinceStamp), null, DELTA_READER);
+        } else {
+            result = okHttpClientUtils.get(deltaUrl, ItemDeltaVo.class, deltaParam(sinceStamp), null);
+        }
+        return onDelta(result);
+    }
+
+    public CompletableFuture<ItemDeltaVo> getDeltaFromCCAsync(String sinceStamp) {
+        return tokenAsync().thenCompose(token -> {
+            String deltaUrl = ccServerUrl.concat(ITEM_DELTA_API);
+            if (binaryMode) {
+                return okHttpClientUtils.getBinaryAsync(deltaUrl, deltaParam(sinceStamp), null, DELTA_READER);
+            }
+            return okHttpClientUtils.getAsync(deltaUrl, ItemDeltaVo.class, deltaParam(sinceStamp), null);
+        }).thenApply(this::onDelta);
+    }
+
+    private Map<String, Object> deltaParam(String sinceStamp) {
+        Map<String, Object> param = itemParam();
+        param.put("sinceStamp", sinceStamp);
+        return param;
+    }
+
+    private ItemDeltaVo onDelta(R<ItemDeltaVo> result) {
+        checkResult(result, "get rcc item delta fail.");
+        return result.getData();
+    }
+
+    private Map<String, Object> tokenParam() {
+        Map<String, Object> param = new HashMap<>();
+        param.put("token", currentToken);
+        return param;
+    }
+
+    private CompletableFuture<String> tokenAsync() {
+        if (StringUtils.isBlank(currentToken)) {
+            return loginAsync();
+        }
+        return CompletableFuture.completedFuture(currentToken);
+    }
+
+    private CompletableFuture<Long> envAsync() {
+        return tokenAsync().thenCompose(token -> envId == null
+                ? getEnvAsync()
+                : CompletableFuture.completedFuture(envId));
+    }
+
+    private CompletableFuture<Long> versionIdAsync() {
+        return tokenAsync().thenCompose(token -> versionId == null
+                ? getVersionAsync().thenApply(VersionVo::getVersionId)
+                : CompletableFuture.completedFuture(versionId));
+    }
+
+    private static void checkResult(R<?> result, String failMsg) {
+        if (result == null || result.getData() == null || result.getStatus() != 0) {
+            String msg = null;
+            if (result == null) {
+                msg = failMsg;
+            } else {
+                msg = result.getMsg();
+            }
+            throw new RccException(msg);
+        }
+    }
+
+    /**
+     * start listening changes of the items, which are applied to {@link #getConfig()}.
+     *
+     * @param props loaded items, used only if none were published to {@link #getConfig()} yet
+     */
     public synchronized void startListening(Properties props) {
+        if (config.getSnapshot().getVersion() == 0 && props != null) {
+            config.update(lastCheckSum, props);
+        }
         if (configChangedListener == null) {
-            configChangedListener = new ConfigChangedListener(props, this);
+            configChangedListener = new ConfigChangedListener(this);
         }
 
         if (configChangedListener.isStop()) {
@@ -293,11 +879,71 @@ public class ConfigLoader {
         return callbackInteval;
     }
 
+    public boolean isWatchMode() {
+        return watchMode;
+    }
+
+    public void setWatchMode(boolean watchMode) {
+        this.watchMode = watchMode;
+    }
+
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    public void setBinaryMode(boolean binaryMode) {
+        this.binaryMode = binaryMode;
+    }
+
     public void setChangedCallable(Collection<ConfigItemChangedCallable> changedCallable) {
         this.changedCallable = changedCallable;
     }
 
+    public boolean isStreamMode() {
+        return streamMode;
+    }
+
+    public void setStreamMode(boolean streamMode) {
+        this.streamMode = streamMode;
+    }
+
+    /**
+     * get items loaded from server, kept up to date while listening.
+     *
+     * @return config of this loader
+     */
+    public RccConfig getConfig() {
+        return config;
+    }
+
+    public SnapshotFile getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(SnapshotFile snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
     public void destory() {
 
     }
+
+    /**
+     * handle versions pushed by server-sent events.
+     */
+    public interface StreamHandler {
+        /**
+         * called once the server accepted the stream.
+         */
+        default void onOpen() {
+        }
+
+        /**
+         * called for each changed version.
+         *
+         * @param eventId id of the event, pass it to {@link #streamVersion(String, StreamHandler)} to resume
+         * @param event   changed version and the item delta since last event
+         */
+        void onVersion(String eventId, StreamEventVo event) throws IOException;
+    }
 }
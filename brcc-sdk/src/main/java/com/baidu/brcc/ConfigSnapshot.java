@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okio.ByteString;
+
+/**
+ * Immutable items of a version as loaded at one moment.
+ *
+ * @since 1.0.0.0
+ */
+public final class ConfigSnapshot {
+
+    /**
+     * snapshot before anything is loaded.
+     */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(0L, null, Collections.emptyMap());
+
+    /**
+     * sequence of the snapshot in its {@link RccConfig}, increased by one on each update.
+     */
+    private final long version;
+
+    /**
+     * checksum of the version the items belong to.
+     */
+    private final String checkSum;
+
+    private final Map<String, String> items;
+
+    /**
+     * content stamp of the items, computed on first use.
+     */
+    private volatile String stamp;
+
+    private ConfigSnapshot(long version, String checkSum, Map<String, String> items) {
+        this.version = version;
+        this.checkSum = checkSum;
+        this.items = items;
+    }
+
+    /**
+     * create the snapshot following this one, entries with null key or value are skipped.
+     *
+     * @param checkSum checksum of the items
+     * @param items    all items
+     *
+     * @return new snapshot
+     */
+    ConfigSnapshot next(String checkSum, Map<?, ?> items) {
+        Map<String, String> copy = new HashMap<>(Math.max(16, (int) (items.size() / 0.75f) + 1));
+        for (Map.Entry<?, ?> entry : items.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                copy.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+        }
+        return new ConfigSnapshot(version + 1, checkSum, Collections.unmodifiableMap(copy));
+    }
+
+    public String get(String key) {
+        return items.get(key);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getCheckSum() {
+        return checkSum;
+    }
+
+    /**
+     * get the content stamp of the items, which changes with any item even if the checksum does not.
+     * it is the md5 hex of {@code key + '\0' + md5hex(value) + '\n'} of all items sorted by key, the same as
+     * the server computes, so the server can send only the items changed since it.
+     *
+     * @return content stamp
+     */
+    public String getStamp() {
+        String result = stamp;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> entry : new TreeMap<>(items).entrySet()) {
+                sb.append(entry.getKey()).append('\0')
+                        .append(ByteString.encodeUtf8(entry.getValue()).md5().hex()).append('\n');
+            }
+            result = ByteString.encodeUtf8(sb.toString()).md5().hex();
+            stamp = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return unmodifiable items
+     */
+    public Map<String, String> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration items loaded from configuration center server.
+ * <p>
+ * Items are held in an immutable {@link ConfigSnapshot} that is replaced as a whole on change, so reads take
+ * no lock and items read from one snapshot always belong to the same version.
+ *
+ * @since 1.0.0.0
+ */
+public class RccConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RccConfig.class);
+
+    private static final Function<String, Integer> INT_PARSER = value -> Integer.valueOf(value.trim());
+    private static final Function<String, Long> LONG_PARSER = value -> Long.valueOf(value.trim());
+    private static final Function<String, Boolean> BOOLEAN_PARSER = RccConfig::parseBoolean;
+    private static final Function<String, Duration> DURATION_PARSER = RccConfig::parseDuration;
+    private static final Function<String, List<String>> LIST_PARSER = RccConfig::parseList;
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("^([+-]?\\d+)(ns|us|ms|s|m|h|d)?$");
+
+    private final AtomicReference<ConfigSnapshot> snapshot = new AtomicReference<>(ConfigSnapshot.EMPTY);
+
+    /**
+     * get current snapshot, read several items from it to get them of the same version.
+     *
+     * @return current snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * replace all items.
+     *
+     * @param checkSum checksum of the items
+     * @param items    all items, entries with null key or value are skipped
+     *
+     * @return the new snapshot
+     */
+    public synchronized ConfigSnapshot update(String checkSum, Map<?, ?> items) {
+        ConfigSnapshot next = snapshot.get().next(checkSum, items);
+        snapshot.set(next);
+        return next;
+    }
+
+    public String getString(String key) {
+        return snapshot.get().get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return value of the key, or defaultValue if absent or not an int
+     */
+    public int getInt(String key, int defaultValue) {
+        return parse(key, getString(key), INT_PARSER, defaultValue);
+    }
+
+    /**
+     * @return value of the key, or defaultValue if absent or not a long
+     */
+    public long getLong(String key, long defaultValue) {
+        return parse(key, getString(key), LONG_PARSER, defaultValue);
+    }
+
+    /**
+     * @return value of the key, or defaultValue if absent or neither true nor false
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return parse(key, getString(key), BOOLEAN_PARSER, defaultValue);
+    }
+
+    /**
+     * create a handle of the key that parses the value once and again only after the value changed. keep the
+     * handle, e.g. in a field, and call {@link RccValue#get()} on hot paths instead of reading and parsing.
+     *
+     * @param key          item key
+     * @param parser       parser of the value, may throw to fall back to defaultValue
+     * @param defaultValue value if the key is absent or the value can not be parsed
+     *
+     * @return handle of the key
+     */
+    public <T> RccValue<T> value(String key, Function<String, T> parser, T defaultValue) {
+        return new RccValue<>(this, key, parser, defaultValue);
+    }
+
+    public RccValue<String> stringValue(String key, String defaultValue) {
+        return value(key, Function.identity(), defaultValue);
+    }
+
+    public RccValue<Integer> intValue(String key, int defaultValue) {
+        return value(key, INT_PARSER, defaultValue);
+    }
+
+    public RccValue<Long> longValue(String key, long defaultValue) {
+        return value(key, LONG_PARSER, defaultValue);
+    }
+
+    public RccValue<Boolean> booleanValue(String key, boolean defaultValue) {
+        return value(key, BOOLEAN_PARSER, defaultValue);
+    }
+
+    /**
+     * handle of a duration such as 500, 500ms, 10s, 5m, 2h, 1d or PT10S, plain numbers are milliseconds.
+     */
+    public RccValue<Duration> durationValue(String key, Duration defaultValue) {
+        return value(key, DURATION_PARSER, defaultValue);
+    }
+
+    /**
+     * handle of a comma separated list, elements are trimmed and empty ones skipped. the list is unmodifiable.
+     */
+    public RccValue<List<String>> listValue(String key, List<String> defaultValue) {
+        return value(key, LIST_PARSER, defaultValue);
+    }
+
+    static <T> T parse(String key, String value, Function<String, T> parser, T defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            T parsed = parser.apply(value);
+            return parsed == null ? defaultValue : parsed;
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Config item {} value {} is invalid, use default {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Boolean parseBoolean(String value) {
+        String trimmed = value.trim();
+        if ("true".equalsIgnoreCase(trimmed)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equalsIgnoreCase(trimmed)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("not a boolean: " + value);
+    }
+
+    private static Duration parseDuration(String value) {
+        String trimmed = value.trim();
+        Matcher matcher = DURATION_PATTERN.matcher(trimmed.toLowerCase());
+        if (!matcher.matches()) {
+            return Duration.parse(trimmed);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2);
+        if (unit == null || "ms".equals(unit)) {
+            return Duration.ofMillis(amount);
+        }
+        switch (unit) {
+            case "ns":
+                return Duration.ofNanos(amount);
+            case "us":
+                return Duration.of(amount, ChronoUnit.MICROS);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            default:
+                return Duration.ofDays(amount);
+        }
+    }
+
+    private static List<String> parseList(String value) {
+        List<String> list = new ArrayList<>();
+        for (String element : value.split(",")) {
+            String trimmed = element.trim();
+            if (!trimmed.isEmpty()) {
+                list.add(trimmed);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Handle of an item parsed into T. The parsed value is cached with the snapshot version it was read from, a
+ * read of an unchanged snapshot costs one volatile read, and the value is parsed again only if the raw value
+ * of the key changed.
+ *
+ * @param <T> type of the parsed value
+ *
+ * @since 1.0.0.0
+ */
+public class RccValue<T> {
+
+    private final RccConfig config;
+    private final String key;
+    private final Function<String, T> parser;
+    private final T defaultValue;
+
+    private volatile Parsed<T> parsed;
+
+    RccValue(RccConfig config, String key, Function<String, T> parser, T defaultValue) {
+        this.config = config;
+        this.key = key;
+        this.parser = parser;
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * get the parsed value of current snapshot.
+     *
+     * @return parsed value, or default value if the key is absent or the value can not be parsed
+     */
+    public T get() {
+        ConfigSnapshot snapshot = config.getSnapshot();
+        Parsed<T> current = parsed;
+        if (current != null && current.version == snapshot.getVersion()) {
+            return current.value;
+        }
+        String raw = snapshot.get(key);
+        T value;
+        if (current != null && Objects.equals(current.raw, raw)) {
+            // other keys changed
+            value = current.value;
+        } else {
+            value = RccConfig.parse(key, raw, parser, defaultValue);
+        }
+        // racing readers of the same snapshot compute the same value, the last write wins harmlessly
+        parsed = new Parsed<>(snapshot.getVersion(), raw, value);
+        return value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    private static class Parsed<T> {
+        private final long version;
+        private final String raw;
+        private final T value;
+
+        Parsed(long version, String raw, T value) {
+            this.version = version;
+            this.raw = raw;
+            this.value = value;
+        }
+    }
+}
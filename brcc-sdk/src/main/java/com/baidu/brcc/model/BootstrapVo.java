@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.model;
+
+import java.util.List;
+
+public class BootstrapVo {
+
+    // 工程登录认证
+    private AuthVo auth;
+
+    // 环境ID
+    private Long environmentId;
+
+    // 版本
+    private VersionVo version;
+
+    // 版本下的全部配置项
+    private List<ItemVo> items;
+
+    public AuthVo getAuth() {
+        return auth;
+    }
+
+    public void setAuth(AuthVo auth) {
+        this.auth = auth;
+    }
+
+    public Long getEnvironmentId() {
+        return environmentId;
+    }
+
+    public void setEnvironmentId(Long environmentId) {
+        this.environmentId = environmentId;
+    }
+
+    public VersionVo getVersion() {
+        return version;
+    }
+
+    public void setVersion(VersionVo version) {
+        this.version = version;
+    }
+
+    public List<ItemVo> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ItemVo> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.model;
+
+import java.util.List;
+
+public class ItemDeltaVo {
+
+    // 当前版本checkSum
+    private String checkSum;
+
+    // 应用增量后配置项的内容戳
+    private String stamp;
+
+    // 增量的起始内容戳，全量时为空
+    private String sinceStamp;
+
+    // 是否为全量数据
+    private boolean full;
+
+    // 新增及修改的配置项，全量时为所有配置项
+    private List<ItemVo> items;
+
+    // 删除的配置key
+    private List<String> deleted;
+
+    public String getCheckSum() {
+        return checkSum;
+    }
+
+    public void setCheckSum(String checkSum) {
+        this.checkSum = checkSum;
+    }
+
+    public String getStamp() {
+        return stamp;
+    }
+
+    public void setStamp(String stamp) {
+        this.stamp = stamp;
+    }
+
+    public String getSinceStamp() {
+        return sinceStamp;
+    }
+
+    public void setSinceStamp(String sinceStamp) {
+        this.sinceStamp = sinceStamp;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<ItemVo> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ItemVo> items) {
+        this.items = items;
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<String> deleted) {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.model;
+
+public class StreamEventVo {
+
+    // 变更后的版本
+    private VersionVo version;
+
+    // 自上次推送以来的配置项增量，未要求增量时为空
+    private ItemDeltaVo delta;
+
+    public VersionVo getVersion() {
+        return version;
+    }
+
+    public void setVersion(VersionVo version) {
+        this.version = version;
+    }
+
+    public ItemDeltaVo getDelta() {
+        return delta;
+    }
+
+    public void setDelta(ItemDeltaVo delta) {
+        this.delta = delta;
+    }
+}
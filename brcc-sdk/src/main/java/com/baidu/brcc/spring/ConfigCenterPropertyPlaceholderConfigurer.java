@@ -20,9 +20,11 @@ package com.baidu.brcc.spring;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -42,7 +44,6 @@ import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MutablePropertySources;
-import org.springframework.core.env.PropertiesPropertySource;
 import org.springframework.core.env.PropertySource;
 import org.springframework.core.env.PropertySourcesPropertyResolver;
 import org.springframework.util.ReflectionUtils;
@@ -51,7 +52,10 @@ import org.springframework.util.SystemPropertyUtils;
 
 import com.baidu.brcc.ConfigItemChangedCallable;
 import com.baidu.brcc.ConfigLoader;
+import com.baidu.brcc.RccConfig;
 import com.baidu.brcc.exception.RccException;
+import com.baidu.brcc.utils.HttpClientOptions;
+import com.baidu.brcc.utils.SnapshotFile;
 
 /**
  * A extend utility class for spring property configuration resolve from configuration center server.<br>
@@ -76,6 +80,11 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
      */
     public static final String RCC_PROPERTIES_PROPERTY_SOURCE_NAME = "rccProperties";
 
+    /**
+     * bean name of the {@link RccConfig} holding loaded items
+     */
+    public static final String RCC_CONFIG_BEAN_NAME = "rccConfig";
+
     /**
      * local cached props load from configuration center
      */
@@ -102,6 +111,44 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
      */
     private long callbackInteval = 2000;
 
+    /**
+     * if true, listen changes by long-poll watch instead of checking at interval.
+     */
+    private boolean watchMode = false;
+
+    /**
+     * if true, ask server for the binary wire format instead of json.
+     */
+    private boolean binaryMode = false;
+
+    /**
+     * if true, receive changes pushed by server-sent events.
+     */
+    private boolean streamMode = false;
+
+    /**
+     * connection pool, dispatcher and protocol options of the http client shared per server.
+     */
+    private HttpClientOptions httpClientOptions = new HttpClientOptions();
+
+    /**
+     * if true, start from the local snapshot of last loaded items and revalidate it in background.
+     */
+    private boolean snapshotEnable = false;
+
+    /**
+     * directory of local snapshots.
+     */
+    private String snapshotDir = SnapshotFile.DEFAULT_DIR;
+
+    /**
+     * if true, update {@link org.springframework.beans.factory.annotation.Value} fields and setters in place on
+     * change, requires update callback enabled.
+     */
+    private boolean valueRefreshEnable = false;
+
+    private ValueRefreshPostProcessor valueRefreshPostProcessor;
+
     /**
      * Configuration center server URI.
      */
@@ -189,6 +236,69 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
         this.callbackInteval = callbackInteval;
     }
 
+    /**
+     * set watch mode
+     *
+     * @param watchMode the watchMode to set
+     */
+    public void setWatchMode(boolean watchMode) {
+        this.watchMode = watchMode;
+    }
+
+    /**
+     * set binary mode
+     *
+     * @param binaryMode the binaryMode to set
+     */
+    public void setBinaryMode(boolean binaryMode) {
+        this.binaryMode = binaryMode;
+    }
+
+    /**
+     * set stream mode
+     *
+     * @param streamMode the streamMode to set
+     */
+    public void setStreamMode(boolean streamMode) {
+        this.streamMode = streamMode;
+    }
+
+    /**
+     * set http client options
+     *
+     * @param httpClientOptions the httpClientOptions to set
+     */
+    public void setHttpClientOptions(HttpClientOptions httpClientOptions) {
+        this.httpClientOptions = httpClientOptions;
+    }
+
+    /**
+     * set snapshot enable
+     *
+     * @param snapshotEnable the snapshotEnable to set
+     */
+    public void setSnapshotEnable(boolean snapshotEnable) {
+        this.snapshotEnable = snapshotEnable;
+    }
+
+    /**
+     * set snapshot directory
+     *
+     * @param snapshotDir the snapshotDir to set
+     */
+    public void setSnapshotDir(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * set value refresh enable
+     *
+     * @param valueRefreshEnable the valueRefreshEnable to set
+     */
+    public void setValueRefreshEnable(boolean valueRefreshEnable) {
+        this.valueRefreshEnable = valueRefreshEnable;
+    }
+
     /**
      * set server url
      *
@@ -265,15 +375,19 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
     protected void doProcessProperties(ConfigurableListableBeanFactory beanFactoryToProcess,
                                        final StringValueResolver valueResolver) {
 
-        Properties ccProperty = new Properties();
         try {
-            ccProperty.putAll(loadPropertiesFromCC(cachedProps));
+            loadPropertiesFromCC(cachedProps);
         } catch (IOException ex) {
             throw new RccException("load rcc fail");
         }
+        RccConfig rccConfig = configLoader.getConfig();
+        if (!beanFactoryToProcess.containsBean(RCC_CONFIG_BEAN_NAME)) {
+            beanFactoryToProcess.registerSingleton(RCC_CONFIG_BEAN_NAME, rccConfig);
+        }
 
+        // 读取当前快照，配置变更后无需重建
         PropertySource rccPropertySource =
-                new PropertiesPropertySource(RCC_PROPERTIES_PROPERTY_SOURCE_NAME, ccProperty);
+                new RccConfigPropertySource(RCC_PROPERTIES_PROPERTY_SOURCE_NAME, rccConfig);
         MutablePropertySources rccPropertySources = new MutablePropertySources();
         rccPropertySources.addFirst(rccPropertySource);
 
@@ -330,6 +444,13 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
             }
         };
         super.doProcessProperties(beanFactoryToProcess, delegateStringResolver);
+
+        if (enableUpdateCallback && valueRefreshEnable && valueRefreshPostProcessor == null) {
+            // 记录@Value成员依赖的配置项，变更时原地更新
+            valueRefreshPostProcessor = new ValueRefreshPostProcessor(beanFactoryToProcess, placeholderPrefix,
+                    placeholderSuffix, valueSeparator);
+            beanFactoryToProcess.addBeanPostProcessor(valueRefreshPostProcessor);
+        }
     }
 
     /**
@@ -372,22 +493,46 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
 
     private Map<String, String> loadFromCC() throws IOException {
         checkValid();
+        if (snapshotEnable) {
+            return configLoader.getFromSnapshotOrCC();
+        }
         return configLoader.getFromCC();
     }
 
     private void checkValid() throws IOException {
         if (configLoader == null) {
-            configLoader = new ConfigLoader(
-                    ccServerUrl,
-                    ccPassword,
-                    projectName,
-                    envName,
-                    ccVersionName,
-                    enableUpdateCallback,
-                    connectionTimeout,
-                    readTimeout,
-                    callbackInteval
-            );
+            if (snapshotEnable) {
+                // 从本地快照启动，此处不访问服务端
+                configLoader = ConfigLoader.createLazily(
+                        ccServerUrl,
+                        ccPassword,
+                        projectName,
+                        envName,
+                        ccVersionName,
+                        enableUpdateCallback,
+                        connectionTimeout,
+                        readTimeout,
+                        callbackInteval,
+                        httpClientOptions
+                );
+                configLoader.setSnapshotFile(SnapshotFile.of(snapshotDir, projectName, envName, ccVersionName));
+            } else {
+                configLoader = new ConfigLoader(
+                        ccServerUrl,
+                        ccPassword,
+                        projectName,
+                        envName,
+                        ccVersionName,
+                        enableUpdateCallback,
+                        connectionTimeout,
+                        readTimeout,
+                        callbackInteval,
+                        httpClientOptions
+                );
+            }
+            configLoader.setWatchMode(watchMode);
+            configLoader.setBinaryMode(binaryMode);
+            configLoader.setStreamMode(streamMode);
         }
 
     }
@@ -403,6 +548,7 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
         Properties rccProperties = new Properties();
         // do merge
         if (configItems != null) {
+            configLoader.getConfig().update(configLoader.getLastCheckSum(), configItems);
             // set to cached config
             ccLoadedProps = new Properties();
             ccLoadedProps.putAll(configItems);
@@ -451,8 +597,16 @@ public class ConfigCenterPropertyPlaceholderConfigurer extends PropertySourcesPl
                 Map<String, ConfigItemChangedCallable> map =
                         applicationContext.getBeansOfType(ConfigItemChangedCallable.class);
 
-                if (map != null && !map.isEmpty()) {
-                    configLoader.setChangedCallable(map.values());
+                List<ConfigItemChangedCallable> callables = new ArrayList<>();
+                // 先更新@Value成员，回调中即可读到新值
+                if (valueRefreshPostProcessor != null) {
+                    callables.add(valueRefreshPostProcessor);
+                }
+                if (map != null) {
+                    callables.addAll(map.values());
+                }
+                if (!callables.isEmpty()) {
+                    configLoader.setChangedCallable(callables);
                 }
                 configLoader.startListening(ccLoadedProps);
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.spring;
+
+import org.springframework.core.env.EnumerablePropertySource;
+
+import com.baidu.brcc.RccConfig;
+
+/**
+ * Property source reading the current snapshot of a {@link RccConfig}, changes are visible without locking.
+ */
+public class RccConfigPropertySource extends EnumerablePropertySource<RccConfig> {
+
+    public RccConfigPropertySource(String name, RccConfig source) {
+        super(name, source);
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return source.getSnapshot().getItems().keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return source.getString(name);
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return source.getString(name) != null;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.spring;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanExpressionContext;
+import org.springframework.beans.factory.config.BeanExpressionResolver;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.PropertyPlaceholderHelper;
+import org.springframework.util.ReflectionUtils;
+
+import com.baidu.brcc.ConfigItemChangedCallable;
+import com.baidu.brcc.model.ChangedConfigItem;
+
+/**
+ * Update {@link Value} annotated fields and setters in place when the items they refer to changed.
+ * <p>
+ * Members are found once per class while beans are created, and a {@link MethodHandle} setting each of them is
+ * prepared then. On change only the members depending on the changed keys are resolved again and set, no bean
+ * is refreshed and no class is scanned. Fields read by other threads should be volatile to see updates at once.
+ * <p>
+ * Only singletons are tracked, beans of other scopes are created again and again and read items when created.
+ * Beans are held weakly and their members are dropped once they are collected.
+ */
+public class ValueRefreshPostProcessor implements BeanPostProcessor, ConfigItemChangedCallable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValueRefreshPostProcessor.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final ConfigurableListableBeanFactory beanFactory;
+
+    private final PropertyPlaceholderHelper placeholderHelper;
+
+    /**
+     * {@link Value} members of each bean class.
+     */
+    private final Map<Class<?>, List<ValueMember>> members = new ConcurrentHashMap<>();
+
+    /**
+     * members of created beans by the keys they depend on.
+     */
+    private final Map<String, List<Target>> targets = new ConcurrentHashMap<>();
+
+    /**
+     * references of collected beans, their members are dropped when the next bean is registered.
+     */
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    public ValueRefreshPostProcessor(ConfigurableListableBeanFactory beanFactory, String placeholderPrefix,
+                                     String placeholderSuffix, String valueSeparator) {
+        this.beanFactory = beanFactory;
+        this.placeholderHelper =
+                new PropertyPlaceholderHelper(placeholderPrefix, placeholderSuffix, valueSeparator, true);
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        // the raw bean, before it may be wrapped by a proxy
+        List<ValueMember> valueMembers = members.computeIfAbsent(bean.getClass(), this::findMembers);
+        if (valueMembers.isEmpty() || !isSingleton(beanName)) {
+            return bean;
+        }
+        pruneCollected();
+        BeanRef beanRef = new BeanRef(bean, collected);
+        for (ValueMember member : valueMembers) {
+            Target target = new Target(beanRef, beanName, member);
+            beanRef.targets.add(target);
+            for (String key : member.keys) {
+                targets.compute(key, (k, list) -> {
+                    if (list == null) {
+                        list = new CopyOnWriteArrayList<>();
+                    }
+                    list.add(target);
+                    return list;
+                });
+            }
+        }
+        return bean;
+    }
+
+    // beans registered without a definition, e.g. by registerSingleton, are singletons
+    private boolean isSingleton(String beanName) {
+        return beanName == null || !beanFactory.containsBeanDefinition(beanName)
+                || beanFactory.getBeanDefinition(beanName).isSingleton();
+    }
+
+    private void pruneCollected() {
+        Reference<?> ref;
+        while ((ref = collected.poll()) != null) {
+            for (Target target : ((BeanRef) ref).targets) {
+                remove(target);
+            }
+        }
+    }
+
+    private void remove(Target target) {
+        for (String key : target.member.keys) {
+            targets.computeIfPresent(key, (k, list) -> {
+                list.remove(target);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    @Override
+    public void changed(List<ChangedConfigItem> items) {
+        Set<Target> changed = new LinkedHashSet<>();
+        for (ChangedConfigItem item : items) {
+            List<Target> list = targets.get(item.getKey());
+            if (list != null) {
+                changed.addAll(list);
+            }
+        }
+        for (Target target : changed) {
+            Object bean = target.beanRef.get();
+            if (bean == null) {
+                remove(target);
+                continue;
+            }
+            try {
+                Object value = resolve(target.member);
+                target.member.setter.invokeExact(bean, value);
+                if (LOGGER.isInfoEnabled()) {
+                    LOGGER.info("Refreshed {} of bean {}", target.member.name, target.beanName);
+                }
+            } catch (Throwable ex) {
+                LOGGER.warn("Refresh " + target.member.name + " of bean " + target.beanName + " fail.", ex);
+            }
+        }
+    }
+
+    private Object resolve(ValueMember member) {
+        Object value = beanFactory.resolveEmbeddedValue(member.expression);
+        BeanExpressionResolver expressionResolver = beanFactory.getBeanExpressionResolver();
+        if (expressionResolver != null && value != null) {
+            value = expressionResolver.evaluate((String) value, new BeanExpressionContext(beanFactory, null));
+        }
+        if (member.field != null) {
+            return beanFactory.getTypeConverter().convertIfNecessary(value, member.field.getType(), member.field);
+        }
+        return beanFactory.getTypeConverter().convertIfNecessary(value, member.parameter.getParameterType(),
+                member.parameter);
+    }
+
+    private List<ValueMember> findMembers(Class<?> beanClass) {
+        List<ValueMember> found = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        ReflectionUtils.doWithFields(beanClass, field -> {
+            Value value = AnnotationUtils.getAnnotation(field, Value.class);
+            if (value == null || Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                return;
+            }
+            Set<String> keys = keys(value.value());
+            if (keys.isEmpty()) {
+                return;
+            }
+            ReflectionUtils.makeAccessible(field);
+            try {
+                MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                found.add(new ValueMember(field.toString(), value.value(), keys, setter, field, null));
+            } catch (IllegalAccessException ex) {
+                LOGGER.warn("Field " + field + " can not be refreshed.", ex);
+            }
+        });
+        ReflectionUtils.doWithMethods(beanClass, method -> {
+            Value value = AnnotationUtils.findAnnotation(method, Value.class);
+            if (value == null || Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1
+                    || method.isBridge()) {
+                return;
+            }
+            Set<String> keys = keys(value.value());
+            if (keys.isEmpty()) {
+                return;
+            }
+            ReflectionUtils.makeAccessible(method);
+            try {
+                MethodHandle setter = lookup.unreflect(method).asType(SETTER_TYPE);
+                found.add(new ValueMember(method.toString(), value.value(), keys, setter, null,
+                        new MethodParameter(method, 0)));
+            } catch (IllegalAccessException ex) {
+                LOGGER.warn("Method " + method + " can not be refreshed.", ex);
+            }
+        });
+        return found.isEmpty() ? Collections.emptyList() : found;
+    }
+
+    // all placeholder names in the expression, including the ones in default values
+    private Set<String> keys(String expression) {
+        Set<String> keys = new LinkedHashSet<>();
+        placeholderHelper.replacePlaceholders(expression, name -> {
+            keys.add(name);
+            return null;
+        });
+        return keys;
+    }
+
+    private static class ValueMember {
+        private final String name;
+        private final String expression;
+        private final Set<String> keys;
+        private final MethodHandle setter;
+        private final Field field;
+        private final MethodParameter parameter;
+
+        ValueMember(String name, String expression, Set<String> keys, MethodHandle setter, Field field,
+                    MethodParameter parameter) {
+            this.name = name;
+            this.expression = expression;
+            this.keys = keys;
+            this.setter = setter;
+            this.field = field;
+            this.parameter = parameter;
+        }
+    }
+
+    private static class BeanRef extends WeakReference<Object> {
+        private final List<Target> targets = new ArrayList<>();
+
+        BeanRef(Object bean, ReferenceQueue<Object> queue) {
+            super(bean, queue);
+        }
+    }
+
+    private static class Target {
+        private final BeanRef beanRef;
+        private final String beanName;
+        private final ValueMember member;
+
+        Target(BeanRef beanRef, String beanName, ValueMember member) {
+            this.beanRef = beanRef;
+            this.beanName = beanName;
+            this.member = member;
+        }
+    }
+}
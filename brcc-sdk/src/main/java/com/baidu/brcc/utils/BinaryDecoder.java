@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.baidu.brcc.model.ItemDeltaVo;
+import com.baidu.brcc.model.ItemVo;
+import com.baidu.brcc.model.R;
+import com.baidu.brcc.model.RList;
+import com.baidu.brcc.model.VersionVo;
+
+/**
+ * Streaming decoder of the binary wire format (application/x-brcc-binary) written by the server.
+ * <p>
+ * Layout, big-endian: format version byte, int status, string msg, data type byte, then data.
+ * Strings are an int byte length (-1 for null) followed by UTF-8 bytes.
+ */
+public final class BinaryDecoder {
+
+    public static final String CONTENT_TYPE = "application/x-brcc-binary";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte TYPE_NONE = 0;
+    private static final byte TYPE_ITEMS = 1;
+    private static final byte TYPE_ITEM_DELTA = 2;
+    private static final byte TYPE_VERSIONS = 3;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private BinaryDecoder() {
+    }
+
+    /**
+     * decode an item list response, putting each item straight into target without intermediate objects.
+     * items with null key or value are skipped, so target may be a {@link java.util.Properties}.
+     *
+     * @param in     response body
+     * @param target map receiving the items
+     *
+     * @return response whose data is target, or null data if server returned no items
+     */
+    public static <M extends Map<? super String, ? super String>> R<M> readItems(InputStream in, M target)
+            throws IOException {
+        DataInputStream data = open(in);
+        R<M> r = readHeader(data);
+        if (readType(data, TYPE_ITEMS) == TYPE_ITEMS) {
+            if (readItems(data, target) >= 0) {
+                r.setData(target);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * decode an item delta response.
+     *
+     * @param in response body
+     *
+     * @return decoded response
+     */
+    public static R<ItemDeltaVo> readItemDelta(InputStream in) throws IOException {
+        DataInputStream data = open(in);
+        R<ItemDeltaVo> r = readHeader(data);
+        if (readType(data, TYPE_ITEM_DELTA) == TYPE_ITEM_DELTA) {
+            ItemDeltaVo delta = new ItemDeltaVo();
+            delta.setCheckSum(readString(data));
+            delta.setFull(data.readBoolean());
+            int size = data.readInt();
+            if (size >= 0) {
+                List<ItemVo> items = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    ItemVo item = new ItemVo();
+                    item.setKey(readString(data));
+                    item.setValue(readString(data));
+                    items.add(item);
+                }
+                delta.setItems(items);
+            }
+            size = data.readInt();
+            if (size >= 0) {
+                List<String> deleted = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    deleted.add(readString(data));
+                }
+                delta.setDeleted(deleted);
+            }
+            r.setData(delta);
+        }
+        return r;
+    }
+
+    /**
+     * decode a version list response.
+     *
+     * @param in response body
+     *
+     * @return decoded response
+     */
+    public static RList<VersionVo> readVersions(InputStream in) throws IOException {
+        DataInputStream data = open(in);
+        RList<VersionVo> r = new RList<>();
+        readHeader(data, r);
+        if (readType(data, TYPE_VERSIONS) == TYPE_VERSIONS) {
+            int size = data.readInt();
+            if (size >= 0) {
+                List<VersionVo> versions = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    VersionVo version = new VersionVo();
+                    version.setProjectId(readLong(data));
+                    version.setEnvironmentId(readLong(data));
+                    version.setVersionId(readLong(data));
+                    version.setVersionName(readString(data));
+                    version.setCheckSum(readString(data));
+                    versions.add(version);
+                }
+                r.setData(versions);
+            }
+        }
+        return r;
+    }
+
+    private static DataInputStream open(InputStream in) {
+        return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    }
+
+    private static <T> R<T> readHeader(DataInputStream data) throws IOException {
+        R<T> r = new R<>();
+        readHeader(data, r);
+        return r;
+    }
+
+    private static void readHeader(DataInputStream data, R<?> r) throws IOException {
+        byte version = data.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary format version " + version);
+        }
+        r.setStatus(data.readInt());
+        r.setMsg(readString(data));
+    }
+
+    private static byte readType(DataInputStream data, byte expected) throws IOException {
+        byte type = data.readByte();
+        if (type != TYPE_NONE && type != expected) {
+            throw new IOException("Unexpected binary data type " + type + ", expected " + expected);
+        }
+        return type;
+    }
+
+    private static int readItems(DataInputStream data, Map<? super String, ? super String> target)
+            throws IOException {
+        int size = data.readInt();
+        for (int i = 0; i < size; i++) {
+            String key = readString(data);
+            String value = readString(data);
+            if (key != null && value != null) {
+                target.put(key, value);
+            }
+        }
+        return size;
+    }
+
+    private static Long readLong(DataInputStream data) throws IOException {
+        long value = data.readLong();
+        return value < 0 ? null : value;
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
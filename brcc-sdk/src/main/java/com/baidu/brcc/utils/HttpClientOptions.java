@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.util.Objects;
+
+/**
+ * Tuning of the http client shared by all loaders of the same configuration center server.
+ *
+ * @since 1.0.0.0
+ */
+public class HttpClientOptions {
+
+    /**
+     * max idle connections kept in the pool.
+     */
+    private int maxIdleConnections = 5;
+
+    /**
+     * time in milliseconds an idle connection is kept alive in the pool.
+     */
+    private long keepAlive = 300000L;
+
+    /**
+     * max concurrent asynchronous requests.
+     */
+    private int maxRequests = 64;
+
+    /**
+     * max concurrent asynchronous requests to one host.
+     */
+    private int maxRequestsPerHost = 5;
+
+    /**
+     * if true, speak HTTP/2 without upgrade (h2c) to http servers, all requests of the JVM then share one
+     * connection. the server must support it, https servers negotiate HTTP/2 by themselves.
+     */
+    private boolean http2PriorKnowledge = false;
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public boolean isHttp2PriorKnowledge() {
+        return http2PriorKnowledge;
+    }
+
+    public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        HttpClientOptions that = (HttpClientOptions) o;
+        return maxIdleConnections == that.maxIdleConnections
+                && keepAlive == that.keepAlive
+                && maxRequests == that.maxRequests
+                && maxRequestsPerHost == that.maxRequestsPerHost
+                && http2PriorKnowledge == that.http2PriorKnowledge;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxIdleConnections, keepAlive, maxRequests, maxRequestsPerHost, http2PriorKnowledge);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientOptions{maxIdleConnections=" + maxIdleConnections + ", keepAlive=" + keepAlive
+                + ", maxRequests=" + maxRequests + ", maxRequestsPerHost=" + maxRequestsPerHost
+                + ", http2PriorKnowledge=" + http2PriorKnowledge + "}";
+    }
+}
@@ -19,31 +19,62 @@
 package com.baidu.brcc.utils;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.baidu.brcc.exception.RccHttpException;
 import com.baidu.brcc.model.R;
 import com.baidu.brcc.model.RList;
 import com.baidu.brcc.utils.gson.GsonUtils;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 @Service
 public class OkHttpClientUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(OkHttpClientUtils.class);
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ACCEPT = "Accept";
+    private static final String ACCEPT_BINARY = BinaryDecoder.CONTENT_TYPE + ", application/json;q=0.5";
+    private static final String EVENT_STREAM = "text/event-stream";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final int NOT_MODIFIED = 304;
     public static final MediaType JSON
             = MediaType.get("application/json; charset=utf-8");
+    /**
+     * clients shared by all loaders in the JVM, one per server.
+     */
+    private static final ConcurrentMap<String, SharedClient> SHARED_CLIENTS = new ConcurrentHashMap<>();
     private OkHttpClient okHttpClient = null;
+    /**
+     * last ETag and parsed result of each GET url, used to send If-None-Match.
+     */
+    private final ConcurrentMap<String, Tagged> etags = new ConcurrentHashMap<>();
+    /**
+     * parsed api urls, the set of urls used by a loader is small and fixed.
+     */
+    private final ConcurrentMap<String, HttpUrl> baseUrls = new ConcurrentHashMap<>();
 
     public OkHttpClientUtils(long readTimeOut, long connectionTimeOut) {
         okHttpClient = new okhttp3.OkHttpClient
@@ -53,32 +84,88 @@ public class OkHttpClientUtils {
                 .build();
     }
 
+    private OkHttpClientUtils(OkHttpClient okHttpClient) {
+        this.okHttpClient = okHttpClient;
+    }
+
+    /**
+     * create an instance on the client shared by all callers of the same server in the JVM, connection pool
+     * and dispatcher are shared, time outs are of this instance only. the options of the first caller
+     * create the shared client, later callers with different options get the existing client.
+     *
+     * @param serverUrl         configuration center server url
+     * @param readTimeOut       read time out in milliseconds
+     * @param connectionTimeOut connect time out in milliseconds
+     * @param options           pool, dispatcher and protocol options
+     *
+     * @return new {@link OkHttpClientUtils} instance
+     */
+    public static OkHttpClientUtils shared(String serverUrl, long readTimeOut, long connectionTimeOut,
+                                           HttpClientOptions options) {
+        HttpUrl httpUrl = HttpUrl.parse(serverUrl);
+        String key = httpUrl == null ? serverUrl : httpUrl.scheme() + "://" + httpUrl.host() + ":" + httpUrl.port();
+        HttpClientOptions opts = options == null ? new HttpClientOptions() : options;
+        SharedClient shared = SHARED_CLIENTS.computeIfAbsent(key,
+                k -> new SharedClient(newClient(httpUrl, opts), opts));
+        if (!shared.options.equals(opts)) {
+            LOGGER.warn("Http client of {} already created with {}, ignore {}", key, shared.options, opts);
+        }
+        return new OkHttpClientUtils(shared.client.newBuilder()
+                .readTimeout(readTimeOut, TimeUnit.MILLISECONDS)
+                .connectTimeout(connectionTimeOut, TimeUnit.MILLISECONDS)
+                .build());
+    }
+
+    private static OkHttpClient newClient(HttpUrl httpUrl, HttpClientOptions options) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(options.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(options.getMaxRequestsPerHost());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(options.getMaxIdleConnections(), options.getKeepAlive(),
+                        TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher);
+        if (options.isHttp2PriorKnowledge()) {
+            if (httpUrl != null && !httpUrl.isHttps()) {
+                builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+            } else {
+                LOGGER.warn("HTTP/2 prior knowledge only applies to http servers, ignored for {}", httpUrl);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * create a new instance with specified read time out, sharing connection pool with this one.
+     *
+     * @param readTimeOut read time out in milliseconds
+     *
+     * @return new {@link OkHttpClientUtils} instance
+     */
+    public OkHttpClientUtils withReadTimeout(long readTimeOut) {
+        return new OkHttpClientUtils(okHttpClient.newBuilder()
+                .readTimeout(readTimeOut, TimeUnit.MILLISECONDS)
+                .build());
+    }
+
     public <T> R<T> get(
             String url,
             Class<T> type,
             Map<String, Object> param,
             Map<String, String> header
     ) throws IOException {
-        Request.Builder builder = new Request.Builder().url(addParam(url, param));
-        if (header != null && !header.isEmpty()) {
-            for (Map.Entry<String, String> entry : header.entrySet()) {
-                String key = entry.getKey();
-                if (key == null) {
-                    continue;
-                }
-                String value = entry.getValue();
-                builder.addHeader(key, value);
-            }
-        }
-        Request request = builder.build();
-        try (Response response = okHttpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-            ResponseBody body = response.body();
-            String result = body.string();
-            return GsonUtils.toRObject(result, type);
-        }
+        return execute(tagged(url, param, header, false, (body, binary) -> GsonUtils.toRObject(body.string(), type)));
+    }
+
+    /**
+     * asynchronous {@link #get(String, Class, Map, Map)}, completes on an okhttp dispatcher thread.
+     */
+    public <T> CompletableFuture<R<T>> getAsync(
+            String url,
+            Class<T> type,
+            Map<String, Object> param,
+            Map<String, String> header
+    ) {
+        return enqueue(tagged(url, param, header, false, (body, binary) -> GsonUtils.toRObject(body.string(), type)));
     }
 
     public <T> RList<T> getList(
@@ -87,26 +174,19 @@ public class OkHttpClientUtils {
             Map<String, Object> param,
             Map<String, String> header
     ) throws IOException {
-        Request.Builder builder = new Request.Builder().url(addParam(url, param));
-        if (header != null && !header.isEmpty()) {
-            for (Map.Entry<String, String> entry : header.entrySet()) {
-                String key = entry.getKey();
-                if (key == null) {
-                    continue;
-                }
-                String value = entry.getValue();
-                builder.addHeader(key, value);
-            }
-        }
-        Request request = builder.build();
-        try (Response response = okHttpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-            ResponseBody body = response.body();
-            String result = body.string();
-            return GsonUtils.toRList(result, type);
-        }
+        return execute(tagged(url, param, header, false, (body, binary) -> GsonUtils.toRList(body.string(), type)));
+    }
+
+    /**
+     * asynchronous {@link #getList(String, Class, Map, Map)}, completes on an okhttp dispatcher thread.
+     */
+    public <T> CompletableFuture<RList<T>> getListAsync(
+            String url,
+            Class<T> type,
+            Map<String, Object> param,
+            Map<String, String> header
+    ) {
+        return enqueue(tagged(url, param, header, false, (body, binary) -> GsonUtils.toRList(body.string(), type)));
     }
 
     public <T> R<T> postJson(String url,
@@ -114,32 +194,293 @@ public class OkHttpClientUtils {
                              String body,
                              Map<String, Object> param,
                              Map<String, String> header) throws IOException {
+        return execute(post(url, body, param, header, false,
+                (responseBody, binary) -> GsonUtils.toRObject(responseBody.string(), type)));
+    }
+
+    /**
+     * asynchronous {@link #postJson(String, Class, String, Map, Map)}, completes on an okhttp dispatcher thread.
+     */
+    public <T> CompletableFuture<R<T>> postJsonAsync(String url,
+                                                     Class<T> type,
+                                                     String body,
+                                                     Map<String, Object> param,
+                                                     Map<String, String> header) {
+        return enqueue(post(url, body, param, header, false,
+                (responseBody, binary) -> GsonUtils.toRObject(responseBody.string(), type)));
+    }
+
+    public <T> RList<T> postJsonList(String url,
+                                     Class<T> type,
+                                     String body,
+                                     Map<String, Object> param,
+                                     Map<String, String> header) throws IOException {
+        return execute(post(url, body, param, header, false,
+                (responseBody, binary) -> GsonUtils.toRList(responseBody.string(), type)));
+    }
+
+    /**
+     * asynchronous {@link #postJsonList(String, Class, String, Map, Map)}, completes on an okhttp dispatcher thread.
+     */
+    public <T> CompletableFuture<RList<T>> postJsonListAsync(String url,
+                                                             Class<T> type,
+                                                             String body,
+                                                             Map<String, Object> param,
+                                                             Map<String, String> header) {
+        return enqueue(post(url, body, param, header, false,
+                (responseBody, binary) -> GsonUtils.toRList(responseBody.string(), type)));
+    }
+
+    /**
+     * get with binary wire format preferred. server without binary support for the url answers json instead,
+     * the reader is told which one it got.
+     */
+    public <T extends R<?>> T getBinary(
+            String url,
+            Map<String, Object> param,
+            Map<String, String> header,
+            ResponseReader<T> reader
+    ) throws IOException {
+        return execute(tagged(url, param, header, true, reader));
+    }
+
+    /**
+     * asynchronous {@link #getBinary(String, Map, Map, ResponseReader)}, completes on an okhttp dispatcher thread.
+     */
+    public <T extends R<?>> CompletableFuture<T> getBinaryAsync(
+            String url,
+            Map<String, Object> param,
+            Map<String, String> header,
+            ResponseReader<T> reader
+    ) {
+        return enqueue(tagged(url, param, header, true, reader));
+    }
+
+    /**
+     * post json with binary wire format preferred, see {@link #getBinary(String, Map, Map, ResponseReader)}.
+     */
+    public <T extends R<?>> T postJsonBinary(String url,
+                                             String body,
+                                             Map<String, Object> param,
+                                             Map<String, String> header,
+                                             ResponseReader<T> reader) throws IOException {
+        return execute(post(url, body, param, header, true, reader));
+    }
+
+    /**
+     * asynchronous {@link #postJsonBinary(String, String, Map, Map, ResponseReader)},
+     * see {@link #enqueue(Exchange)}.
+     */
+    public <T extends R<?>> CompletableFuture<T> postJsonBinaryAsync(String url,
+                                                                     String body,
+                                                                     Map<String, Object> param,
+                                                                     Map<String, String> header,
+                                                                     ResponseReader<T> reader) {
+        return enqueue(post(url, body, param, header, true, reader));
+    }
+
+    /**
+     * build a get exchange revalidated by the last ETag of the same url.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends R<?>> Exchange<T> tagged(String url,
+                                                Map<String, Object> param,
+                                                Map<String, String> header,
+                                                boolean binary,
+                                                ResponseReader<T> reader) {
+        HttpUrl httpUrl = addParam(url, param);
+        Request.Builder builder = new Request.Builder().url(httpUrl);
+        addHeaders(builder, header);
+        String tagKey = httpUrl.toString();
+        if (binary) {
+            builder.header(ACCEPT, ACCEPT_BINARY);
+            // keep apart from json results of the same url
+            tagKey = ACCEPT_BINARY + tagKey;
+        }
+        Tagged tagged = etags.get(tagKey);
+        if (tagged != null) {
+            builder.header(IF_NONE_MATCH, tagged.etag);
+        }
+        String key = tagKey;
+        return new Exchange<>(builder.build(), response -> {
+            if (response.code() == NOT_MODIFIED && tagged != null) {
+                return (T) tagged.result;
+            }
+            T r = read(response, reader);
+            remember(key, response.header(ETAG), r);
+            return r;
+        });
+    }
+
+    private <T> Exchange<T> post(String url,
+                                 String body,
+                                 Map<String, Object> param,
+                                 Map<String, String> header,
+                                 boolean binary,
+                                 ResponseReader<T> reader) {
         Request.Builder builder = new Request.Builder().url(addParam(url, param));
-        if (header != null && !header.isEmpty()) {
-            for (Map.Entry<String, String> entry : header.entrySet()) {
-                String key = entry.getKey();
-                if (key == null) {
-                    continue;
+        addHeaders(builder, header);
+        if (binary) {
+            builder.header(ACCEPT, ACCEPT_BINARY);
+        }
+        Request request = builder.post(RequestBody.create(JSON, body)).build();
+        return new Exchange<>(request, response -> read(response, reader));
+    }
+
+    private <T> T execute(Exchange<T> exchange) throws IOException {
+        try (Response response = okHttpClient.newCall(exchange.request).execute()) {
+            return exchange.handler.handle(response);
+        }
+    }
+
+    /**
+     * run the exchange on the okhttp dispatcher instead of the calling thread. the returned future completes
+     * on a dispatcher thread, keep work chained on it short. cancelling the future cancels the call.
+     * calls queue when the dispatcher limits are reached, so long-held requests such as watch should be
+     * kept within them.
+     */
+    private <T> CompletableFuture<T> enqueue(Exchange<T> exchange) {
+        Call call = okHttpClient.newCall(exchange.request);
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                call.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    future.complete(exchange.handler.handle(r));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
                 }
-                String value = entry.getValue();
-                builder.addHeader(key, value);
             }
+        });
+        return future;
+    }
+
+    /**
+     * create a call of a server-sent events stream, cancel the call to close the stream.
+     *
+     * @param lastEventId sent as Last-Event-ID so the server resumes after it, may be null
+     */
+    public Call newEventStreamCall(String url,
+                                   Map<String, Object> param,
+                                   Map<String, String> header,
+                                   String lastEventId) {
+        Request.Builder builder = new Request.Builder().url(addParam(url, param));
+        addHeaders(builder, header);
+        builder.header(ACCEPT, EVENT_STREAM);
+        if (lastEventId != null && !lastEventId.isEmpty()) {
+            builder.header(LAST_EVENT_ID, lastEventId);
         }
+        return okHttpClient.newCall(builder.build());
+    }
 
-        RequestBody bodyx = RequestBody.create(JSON, body);
-        Request request = builder.post(bodyx).build();
-        try (Response response = okHttpClient.newCall(request).execute()) {
+    /**
+     * execute a server-sent events call and hand each event to the handler, returns when the server closes
+     * the stream. comments are skipped, the read time out bounds the time between two heartbeats.
+     */
+    public void readEventStream(Call call, EventHandler handler) throws IOException {
+        try (Response response = call.execute()) {
             if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
+                throw new RccHttpException(response.code(), "Unexpected code " + response);
+            }
+            handler.onOpen();
+            readEvents(response.body().source(), handler);
+        }
+    }
+
+    /**
+     * parse server-sent events from the source until it is exhausted, events with data are handed to the
+     * handler. a blank line dispatches an event, comment lines and unknown fields are skipped.
+     */
+    static void readEvents(BufferedSource source, EventHandler handler) throws IOException {
+        String id = null;
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                // blank line dispatches the event, the id is kept for following events
+                if (data.length() > 0) {
+                    handler.onEvent(id, event == null ? "message" : event, data.toString());
+                }
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int idx = line.indexOf(':');
+            String field = idx < 0 ? line : line.substring(0, idx);
+            String value = idx < 0 ? "" : line.substring(idx + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if ("data".equals(field)) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(value);
+            } else if ("event".equals(field)) {
+                event = value;
+            } else if ("id".equals(field)) {
+                id = value;
+            }
+        }
+    }
+
+    private <T> T read(Response response, ResponseReader<T> reader) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new RccHttpException(response.code(), "Unexpected code " + response);
+        }
+        ResponseBody body = response.body();
+        MediaType contentType = body.contentType();
+        boolean binary = contentType != null
+                && BinaryDecoder.CONTENT_TYPE.equals(contentType.type() + "/" + contentType.subtype());
+        return reader.read(body, binary);
+    }
+
+    /**
+     * remember ETag of a successful result, forget it otherwise.
+     */
+    private void remember(String tagKey, String etag, R<?> result) {
+        if (etag == null || etag.isEmpty() || result == null || result.getStatus() != 0) {
+            etags.remove(tagKey);
+        } else {
+            etags.put(tagKey, new Tagged(etag, result));
+        }
+    }
+
+    /**
+     * add custom headers to the request. Accept-Encoding is left to okhttp, which then asks for gzip
+     * and decompresses the response transparently; setting it here would disable that.
+     */
+    private void addHeaders(Request.Builder builder, Map<String, String> header) {
+        if (header == null || header.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : header.entrySet()) {
+            String key = entry.getKey();
+            if (key == null || ACCEPT_ENCODING.equalsIgnoreCase(key)) {
+                continue;
             }
-            ResponseBody responseBody = response.body();
-            String result = responseBody.string();
-            return GsonUtils.toRObject(result, type);
+            String value = entry.getValue();
+            builder.addHeader(key, value);
         }
     }
 
     private HttpUrl addParam(String url, Map<String, Object> param) {
-        HttpUrl httpUrl = HttpUrl.parse(url);
+        HttpUrl httpUrl = baseUrls.computeIfAbsent(url, HttpUrl::parse);
         if (param == null || param.isEmpty()) {
             return httpUrl;
         }
@@ -155,4 +496,68 @@ public class OkHttpClientUtils {
         }
         return builder.build();
     }
+
+    /**
+     * read a response body in either binary or json format.
+     */
+    public interface ResponseReader<T> {
+        T read(ResponseBody body, boolean binary) throws IOException;
+    }
+
+    /**
+     * receive events of a server-sent events stream.
+     */
+    public interface EventHandler {
+        /**
+         * called once the server accepted the stream, before any event.
+         */
+        default void onOpen() {
+        }
+
+        /**
+         * called for each event with data, throw to close the stream.
+         *
+         * @param id    id of the event, or the last id seen on the stream
+         * @param event event name, "message" if not given
+         * @param data  event data
+         */
+        void onEvent(String id, String event, String data) throws IOException;
+    }
+
+    /**
+     * a request and the handler of its response.
+     */
+    private static class Exchange<T> {
+        private final Request request;
+        private final ResponseHandler<T> handler;
+
+        Exchange(Request request, ResponseHandler<T> handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+
+    private interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    private static class SharedClient {
+        private final OkHttpClient client;
+        private final HttpClientOptions options;
+
+        SharedClient(OkHttpClient client, HttpClientOptions options) {
+            this.client = client;
+            this.options = options;
+        }
+    }
+
+    private static class Tagged {
+        private final String etag;
+        private final Object result;
+
+        Tagged(String etag, Object result) {
+            this.etag = etag;
+            this.result = result;
+        }
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local snapshot of the last good items of a version, so that a loader can start without the server.
+ * <p>
+ * Layout, big-endian: int magic, format version byte, string checksum, int item count, then key and value
+ * strings of each item, finally int CRC32 of all previous bytes. Strings are an int byte length (-1 for null)
+ * followed by UTF-8 bytes. The file is replaced by an atomic rename, readers never see a partial write.
+ *
+ * @since 1.0.0.0
+ */
+public class SnapshotFile {
+
+    private static final int MAGIC = 0x52434353;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * files larger than this are memory-mapped instead of read onto the heap.
+     */
+    private static final long MAP_THRESHOLD = 1024 * 1024L;
+
+    private static final String SUFFIX = ".snapshot";
+
+    /**
+     * default snapshot directory.
+     */
+    public static final String DEFAULT_DIR = System.getProperty("user.home") + "/.brcc/snapshot";
+
+    private final Path path;
+
+    public SnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * snapshot file of a version under dir, named by project, environment and version.
+     *
+     * @param dir         snapshot directory
+     * @param projectName project name
+     * @param envName     environment name
+     * @param versionName version name
+     *
+     * @return snapshot file of the version
+     */
+    public static SnapshotFile of(String dir, String projectName, String envName, String versionName) {
+        String name = safeName(projectName) + "+" + safeName(envName) + "+" + safeName(versionName) + SUFFIX;
+        return new SnapshotFile(Paths.get(dir, name));
+    }
+
+    private static String safeName(String name) {
+        return String.valueOf(name).replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * read the snapshot.
+     *
+     * @return snapshot, or null if there is none
+     *
+     * @throws IOException if the file is unreadable or corrupted
+     */
+    public Snapshot read() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+            }
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        try {
+            return decode(buffer);
+        } catch (RuntimeException ex) {
+            throw new IOException("corrupted snapshot " + path, ex);
+        }
+    }
+
+    /**
+     * replace the snapshot, entries with null key or value are skipped.
+     *
+     * @param checkSum checksum of the version the items belong to
+     * @param items    all items of the version
+     */
+    public synchronized void write(String checkSum, Map<?, ?> items) throws IOException {
+        byte[] bytes = encode(checkSum, items);
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] encode(String checkSum, Map<?, ?> items) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        writeString(out, checkSum);
+        Map<String, String> copy = new HashMap<>();
+        for (Map.Entry<?, ?> entry : items.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                copy.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+        }
+        out.writeInt(copy.size());
+        for (Map.Entry<String, String> entry : copy.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Snapshot decode(ByteBuffer buffer) throws IOException {
+        int end = buffer.limit() - 4;
+        if (end < 0 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a snapshot");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(end);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("snapshot checksum mismatch");
+        }
+        buffer.position(4);
+        buffer.limit(end);
+        byte formatVersion = buffer.get();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("unsupported snapshot format " + formatVersion);
+        }
+        String checkSum = readString(buffer);
+        int count = buffer.getInt();
+        Map<String, String> items = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+        for (int i = 0; i < count; i++) {
+            items.put(readString(buffer), readString(buffer));
+        }
+        return new Snapshot(checkSum, items);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * items of a version and its checksum.
+     */
+    public static class Snapshot {
+        private final String checkSum;
+        private final Map<String, String> items;
+
+        public Snapshot(String checkSum, Map<String, String> items) {
+            this.checkSum = checkSum;
+            this.items = items;
+        }
+
+        public String getCheckSum() {
+            return checkSum;
+        }
+
+        public Map<String, String> getItems() {
+            return items;
+        }
+    }
+}
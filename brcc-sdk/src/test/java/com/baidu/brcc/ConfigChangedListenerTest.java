@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.baidu.brcc.model.ItemDeltaVo;
+import com.baidu.brcc.model.ItemVo;
+import com.baidu.brcc.utils.HttpClientOptions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ConfigChangedListenerTest {
+
+    static final String LIMIT_EXCEEDED = "event:error\ndata:{\"status\":100,\"msg\":\"too many streams\"}\n\n";
+
+    HttpServer server;
+
+    AtomicInteger logins = new AtomicInteger();
+
+    AtomicInteger streams = new AtomicInteger();
+
+    // 依次返回的推送响应（状态码, 响应体），只剩一个时重复返回
+    ConcurrentLinkedQueue<Object[]> streamResponses = new ConcurrentLinkedQueue<>();
+
+    ConfigLoader loader;
+
+    ConfigChangedListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/auth", ex -> {
+            logins.incrementAndGet();
+            respond(ex, 200, "{\"status\":0,\"data\":{\"token\":\"token\"}}");
+        });
+        server.createContext("/api/environment/", ex -> respond(ex, 200,
+                "{\"status\":0,\"data\":{\"environmentId\":1}}"));
+        server.createContext("/api/version/", ex -> respond(ex, 200,
+                "{\"status\":0,\"data\":{\"versionId\":1,\"checkSum\":\"c1\"}}"));
+        server.createContext("/api/stream", ex -> {
+            streams.incrementAndGet();
+            Object[] response = streamResponses.size() > 1 ? streamResponses.poll() : streamResponses.peek();
+            respond(ex, (Integer) response[0], (String) response[1]);
+        });
+        server.start();
+        loader = ConfigLoader.createLazily("http://127.0.0.1:" + server.getAddress().getPort(), "pwd", "project",
+                "env", "version", true, 1000L, 1000L, 1000L, new HttpClientOptions());
+        loader.setLastCheckSum("c1");
+        loader.setStreamMode(true);
+        listener = new ConfigChangedListener(loader);
+        ReflectionTestUtils.setField(listener, "stop", false);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testStreamLimitFallsBack() throws Exception {
+        streamResponses.add(new Object[] {503, LIMIT_EXCEEDED});
+
+        for (int i = 1; i <= 3; i++) {
+            long start = System.currentTimeMillis();
+            stream();
+            // 不在连接上等待退避，期间回退到长轮询或定时检查，退避时间随连续失败增长
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000L);
+            Assert.assertEquals(i, streamFailures());
+            Assert.assertFalse(isStreaming());
+            Assert.assertTrue(pausedUntil() - System.currentTimeMillis() > (1000L << (i - 1)) / 2 - 100L);
+        }
+        Assert.assertEquals(3, streams.get());
+    }
+
+    @Test
+    public void testErrorEventKeepsBackoff() throws Exception {
+        // 旧版本服务端以200响应后推送error事件，连接已建立不代表推送可用
+        streamResponses.add(new Object[] {200, LIMIT_EXCEEDED});
+        ReflectionTestUtils.setField(listener, "streamFailures", 1);
+
+        stream();
+
+        Assert.assertEquals(2, streamFailures());
+    }
+
+    @Test
+    public void testVersionResetsBackoff() throws Exception {
+        streamResponses.add(new Object[] {200, "id:1:c1\nevent:version\n"
+                + "data:{\"version\":{\"versionId\":1,\"checkSum\":\"c1\"}}\n\n"});
+        ReflectionTestUtils.setField(listener, "streamFailures", 3);
+
+        stream();
+
+        Assert.assertEquals(0, streamFailures());
+        Assert.assertEquals("1:c1", ReflectionTestUtils.getField(listener, "lastEventId"));
+        Assert.assertTrue(isStreaming());
+    }
+
+    @Test
+    public void testUnauthorizedLoginAgain() throws Exception {
+        streamResponses.add(new Object[] {401, "event:error\ndata:{\"status\":100,\"msg\":\"token\"}\n\n"});
+        streamResponses.add(new Object[] {200, ""});
+
+        stream();
+        Assert.assertEquals(1, logins.get());
+        Assert.assertEquals(1, streamFailures());
+
+        stream();
+        Assert.assertEquals(2, logins.get());
+        Assert.assertEquals(2, streams.get());
+    }
+
+    @Test
+    public void testApplyDelta() throws Exception {
+        ConfigSnapshot current = snapshot("a", "1", "b", "2", "c", "3");
+        ItemDeltaVo delta = new ItemDeltaVo();
+        delta.setItems(Arrays.asList(item("b", "20"), item("d", "4"), item("e", null)));
+        delta.setDeleted(Arrays.asList("c", "x", null));
+
+        Map<String, String> items = ConfigChangedListener.applyDelta(current, delta);
+
+        Assert.assertEquals(map("a", "1", "b", "20", "d", "4"), items);
+        // 原快照不受影响
+        Assert.assertEquals("3", current.get("c"));
+    }
+
+    @Test
+    public void testApplyFullDelta() throws Exception {
+        ItemDeltaVo delta = new ItemDeltaVo();
+        delta.setFull(true);
+        delta.setItems(Arrays.asList(item("b", "2")));
+        delta.setDeleted(Arrays.asList("b"));
+
+        Map<String, String> items = ConfigChangedListener.applyDelta(snapshot("a", "1"), delta);
+
+        Assert.assertEquals(map("b", "2"), items);
+    }
+
+    @Test
+    public void testIsApplicable() throws Exception {
+        ConfigSnapshot current = snapshot("a", "1");
+        ItemDeltaVo delta = new ItemDeltaVo();
+        Assert.assertFalse(ConfigChangedListener.isApplicable(current, null));
+        Assert.assertFalse(ConfigChangedListener.isApplicable(current, delta));
+
+        delta.setSinceStamp(snapshot("a", "2").getStamp());
+        Assert.assertFalse(ConfigChangedListener.isApplicable(current, delta));
+
+        delta.setSinceStamp(current.getStamp());
+        Assert.assertTrue(ConfigChangedListener.isApplicable(current, delta));
+
+        delta.setSinceStamp(null);
+        delta.setFull(true);
+        Assert.assertTrue(ConfigChangedListener.isApplicable(current, delta));
+    }
+
+    @Test
+    public void testStampMatchesServer() throws Exception {
+        // 与服务端ItemDigestUtils.stamp对同样配置项的计算结果一致
+        Assert.assertEquals("062694a9e62d5f1f8afa5fbe14b0eb68", snapshot("c", "3", "a", "1", "b", "2").getStamp());
+        Assert.assertEquals(snapshot("a", "1").getStamp(), snapshot("a", "1").getStamp());
+        Assert.assertNotEquals(snapshot("a", "1").getStamp(), snapshot("a", "2").getStamp());
+    }
+
+    static ConfigSnapshot snapshot(String... kvs) {
+        return ConfigSnapshot.EMPTY.next("c1", map(kvs));
+    }
+
+    static Map<String, String> map(String... kvs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            map.put(kvs[i], kvs[i + 1]);
+        }
+        return map;
+    }
+
+    private void stream() {
+        ReflectionTestUtils.invokeMethod(listener, "stream");
+    }
+
+    private int streamFailures() {
+        return (Integer) ReflectionTestUtils.getField(listener, "streamFailures");
+    }
+
+    private long pausedUntil() {
+        return (Long) ReflectionTestUtils.getField(listener, "streamPausedUntil");
+    }
+
+    private boolean isStreaming() {
+        return ReflectionTestUtils.invokeMethod(listener, "isStreaming");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type",
+                exchange.getRequestURI().getPath().startsWith("/api/stream") ? "text/event-stream"
+                        : "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private ItemVo item(String key, String value) {
+        ItemVo itemVo = new ItemVo();
+        itemVo.setKey(key);
+        itemVo.setValue(value);
+        return itemVo;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.baidu.brcc.exception.RccException;
+import com.baidu.brcc.utils.HttpClientOptions;
+import com.baidu.brcc.utils.SnapshotFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ConfigLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    HttpServer server;
+
+    // 依次返回的版本checkSum，只剩一个时重复返回
+    ConcurrentLinkedQueue<String> checkSums = new ConcurrentLinkedQueue<>();
+
+    volatile String itemsBody;
+
+    ConfigLoader loader;
+
+    SnapshotFile snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/auth", ex -> respond(ex, "{\"status\":0,\"data\":{\"token\":\"token\"}}"));
+        server.createContext("/api/environment/", ex -> respond(ex,
+                "{\"status\":0,\"data\":{\"environmentId\":1}}"));
+        server.createContext("/api/version/", ex -> {
+            String checkSum = checkSums.size() > 1 ? checkSums.poll() : checkSums.peek();
+            respond(ex, "{\"status\":0,\"data\":{\"versionId\":1,\"checkSum\":\"" + checkSum + "\"}}");
+        });
+        server.createContext("/api/item", ex -> respond(ex, itemsBody));
+        server.start();
+        loader = ConfigLoader.createLazily("http://127.0.0.1:" + server.getAddress().getPort(), "pwd", "project",
+                "env", "version", true, 1000L, 1000L, 1000L, new HttpClientOptions());
+        snapshotFile = new SnapshotFile(folder.getRoot().toPath().resolve("test.snapshot"));
+        loader.setSnapshotFile(snapshotFile);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGetFromCCError() throws Exception {
+        itemsBody = "{\"status\":100,\"msg\":\"token expired\"}";
+        try {
+            loader.getFromCC();
+            Assert.fail();
+        } catch (RccException ex) {
+            Assert.assertEquals("token expired", ex.getMessage());
+        }
+        try {
+            loader.getFromCCAsync().join();
+            Assert.fail();
+        } catch (CompletionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RccException);
+        }
+    }
+
+    @Test
+    public void testRevalidateSavesItems() throws Exception {
+        snapshotFile.write("old", Collections.singletonMap("a", "1"));
+        checkSums.add("new");
+        itemsBody = "{\"status\":0,\"data\":[{\"key\":\"a\",\"value\":\"2\"}]}";
+        Assert.assertEquals("1", loader.loadSnapshot().get("a"));
+
+        Assert.assertTrue(loader.revalidateSnapshotAsync().get(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals("new", snapshotFile.read().getCheckSum());
+        Assert.assertEquals("2", snapshotFile.read().getItems().get("a"));
+    }
+
+    @Test
+    public void testRevalidateKeepsSnapshotOnError() throws Exception {
+        snapshotFile.write("old", Collections.singletonMap("a", "1"));
+        checkSums.add("new");
+        itemsBody = "{\"status\":100,\"msg\":\"error\"}";
+        loader.loadSnapshot();
+
+        try {
+            loader.revalidateSnapshotAsync().get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (Exception ex) {
+            Assert.assertTrue(ex.getCause() instanceof RccException);
+        }
+
+        Assert.assertEquals("old", snapshotFile.read().getCheckSum());
+        Assert.assertEquals("1", snapshotFile.read().getItems().get("a"));
+    }
+
+    @Test
+    public void testRevalidateKeepsSnapshotOnUnconfirmedEmpty() throws Exception {
+        snapshotFile.write("old", Collections.singletonMap("a", "1"));
+        // 读取配置项期间版本再次变更
+        checkSums.add("new");
+        checkSums.add("newer");
+        itemsBody = "{\"status\":0,\"data\":[]}";
+        loader.loadSnapshot();
+
+        Assert.assertTrue(loader.revalidateSnapshotAsync().get(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals("old", snapshotFile.read().getCheckSum());
+        Assert.assertEquals("1", snapshotFile.read().getItems().get("a"));
+    }
+
+    @Test
+    public void testRevalidateSavesConfirmedEmpty() throws Exception {
+        snapshotFile.write("old", Collections.singletonMap("a", "1"));
+        checkSums.add("new");
+        itemsBody = "{\"status\":0,\"data\":[]}";
+        loader.loadSnapshot();
+
+        Assert.assertTrue(loader.revalidateSnapshotAsync().get(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals("new", snapshotFile.read().getCheckSum());
+        Assert.assertTrue(snapshotFile.read().getItems().isEmpty());
+    }
+
+    @Test
+    public void testConfirmItems() throws Exception {
+        checkSums.add("new");
+        Map<String, String> items = new HashMap<>();
+
+        Assert.assertTrue(loader.confirmItems("new", items));
+        Assert.assertFalse(loader.confirmItems("old", items));
+        items.put("a", "1");
+        Assert.assertTrue(loader.confirmItems("old", items));
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
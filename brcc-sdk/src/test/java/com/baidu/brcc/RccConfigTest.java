@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RccConfigTest {
+
+    RccConfig config = new RccConfig();
+
+    @Test
+    public void testEmpty() throws Exception {
+        ConfigSnapshot snapshot = config.getSnapshot();
+
+        Assert.assertSame(ConfigSnapshot.EMPTY, snapshot);
+        Assert.assertEquals(0L, snapshot.getVersion());
+        Assert.assertNull(snapshot.getCheckSum());
+        Assert.assertTrue(snapshot.getItems().isEmpty());
+        Assert.assertNull(config.getString("a"));
+    }
+
+    @Test
+    public void testUpdateReplacesAll() throws Exception {
+        Map<String, String> items = new HashMap<>();
+        items.put("a", "1");
+        items.put("b", "2");
+        items.put("c", null);
+        ConfigSnapshot first = config.update("v1", items);
+
+        Assert.assertSame(first, config.getSnapshot());
+        Assert.assertEquals(1L, first.getVersion());
+        Assert.assertEquals("v1", first.getCheckSum());
+        Assert.assertEquals(2, first.getItems().size());
+        Assert.assertFalse(first.getItems().containsKey("c"));
+
+        // 快照复制了配置项，修改原map不影响
+        items.put("a", "changed");
+        Assert.assertEquals("1", config.getString("a"));
+
+        Properties props = new Properties();
+        props.put("b", "20");
+        props.put("d", 4);
+        ConfigSnapshot second = config.update("v2", props);
+
+        Assert.assertEquals(2L, second.getVersion());
+        Assert.assertNull(config.getString("a"));
+        Assert.assertEquals("20", config.getString("b"));
+        Assert.assertEquals("4", config.getString("d"));
+        // 旧快照保持不变，同一快照中读取的配置项属于同一版本
+        Assert.assertEquals("1", first.get("a"));
+        Assert.assertEquals("2", first.get("b"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testItemsUnmodifiable() throws Exception {
+        config.update("v1", map("a", "1")).getItems().put("b", "2");
+    }
+
+    @Test
+    public void testStamp() throws Exception {
+        ConfigSnapshot first = config.update("v1", map("a", "1", "b", "2"));
+        ConfigSnapshot same = config.update("v2", map("b", "2", "a", "1"));
+        ConfigSnapshot edited = config.update("v2", map("a", "1", "b", "3"));
+
+        // 与服务端ItemDigestUtils.stamp的计算结果一致
+        Assert.assertEquals(32, first.getStamp().length());
+        Assert.assertEquals(first.getStamp(), same.getStamp());
+        // checkSum不变时内容戳仍随配置项变化
+        Assert.assertNotEquals(same.getStamp(), edited.getStamp());
+        Assert.assertEquals("062694a9e62d5f1f8afa5fbe14b0eb68",
+                config.update("v3", map("a", "1", "b", "2", "c", "3")).getStamp());
+    }
+
+    @Test
+    public void testTypedGetters() throws Exception {
+        config.update("v1", map("int", " 8 ", "long", "9", "bool", "TRUE", "bad", "x"));
+
+        Assert.assertEquals(8, config.getInt("int", 0));
+        Assert.assertEquals(9L, config.getLong("long", 0L));
+        Assert.assertTrue(config.getBoolean("bool", false));
+        Assert.assertEquals(1, config.getInt("bad", 1));
+        Assert.assertEquals(2L, config.getLong("absent", 2L));
+        Assert.assertTrue(config.getBoolean("bad", true));
+        Assert.assertEquals("d", config.getString("absent", "d"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedListenerConstructor() throws Exception {
+        ConfigLoader loader = ConfigLoader.createLazily("http://127.0.0.1:1", "pwd", "project", "env", "version",
+                true, 1000L, 1000L, 1000L, null);
+        loader.setLastCheckSum("v1");
+        Properties props = new Properties();
+        props.put("a", "1");
+
+        new ConfigChangedListener(props, loader);
+        Assert.assertEquals("v1", loader.getConfig().getSnapshot().getCheckSum());
+        Assert.assertEquals("1", loader.getConfig().getString("a"));
+
+        // 已有配置项时不覆盖
+        props.put("a", "2");
+        new ConfigChangedListener(props, loader);
+        Assert.assertEquals("1", loader.getConfig().getString("a"));
+    }
+
+    static Map<String, String> map(String... kvs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            map.put(kvs[i], kvs[i + 1]);
+        }
+        return map;
+    }
+}
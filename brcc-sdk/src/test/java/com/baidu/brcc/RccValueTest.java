@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc;
+
+import static com.baidu.brcc.RccConfigTest.map;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RccValueTest {
+
+    RccConfig config = new RccConfig();
+
+    AtomicInteger parses = new AtomicInteger();
+
+    RccValue<Integer> counted = config.value("int", value -> {
+        parses.incrementAndGet();
+        return Integer.valueOf(value);
+    }, -1);
+
+    @Test
+    public void testParseOncePerChange() throws Exception {
+        config.update("v1", map("int", "1", "other", "a"));
+
+        Assert.assertEquals(Integer.valueOf(1), counted.get());
+        Assert.assertEquals(Integer.valueOf(1), counted.get());
+        Assert.assertEquals(1, parses.get());
+
+        // 其他配置项变化时不重新解析
+        config.update("v2", map("int", "1", "other", "b"));
+        Assert.assertEquals(Integer.valueOf(1), counted.get());
+        Assert.assertEquals(1, parses.get());
+
+        config.update("v3", map("int", "2", "other", "b"));
+        Assert.assertEquals(Integer.valueOf(2), counted.get());
+        Assert.assertEquals(2, parses.get());
+        Assert.assertEquals("int", counted.getKey());
+    }
+
+    @Test
+    public void testFallbackToDefault() throws Exception {
+        // 配置项不存在
+        Assert.assertEquals(Integer.valueOf(-1), counted.get());
+        Assert.assertEquals(0, parses.get());
+
+        // 解析失败，失败结果同样缓存
+        config.update("v1", map("int", "x"));
+        Assert.assertEquals(Integer.valueOf(-1), counted.get());
+        Assert.assertEquals(Integer.valueOf(-1), counted.get());
+        Assert.assertEquals(1, parses.get());
+
+        config.update("v2", map("int", "3"));
+        Assert.assertEquals(Integer.valueOf(3), counted.get());
+
+        // 配置项删除后回到默认值
+        config.update("v3", map());
+        Assert.assertEquals(Integer.valueOf(-1), counted.get());
+
+        // 解析结果为null时使用默认值
+        config.update("v4", map("int", "4"));
+        Assert.assertEquals("d", config.value("int", value -> (String) null, "d").get());
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        RccValue<Integer> intValue = config.intValue("int", 1);
+        RccValue<Long> longValue = config.longValue("long", 2L);
+        RccValue<Boolean> boolValue = config.booleanValue("bool", false);
+        RccValue<String> stringValue = config.stringValue("string", "s");
+        RccValue<Duration> durationValue = config.durationValue("duration", Duration.ZERO);
+        RccValue<List<String>> listValue = config.listValue("list", Collections.emptyList());
+
+        config.update("v1", map("int", " 10 ", "long", "20", "bool", "yes", "string", "x",
+                "duration", "5m", "list", " a, ,b "));
+
+        Assert.assertEquals(Integer.valueOf(10), intValue.get());
+        Assert.assertEquals(Long.valueOf(20L), longValue.get());
+        // 非true/false时使用默认值
+        Assert.assertEquals(Boolean.FALSE, boolValue.get());
+        Assert.assertEquals("x", stringValue.get());
+        Assert.assertEquals(Duration.ofMinutes(5), durationValue.get());
+        Assert.assertEquals(Arrays.asList("a", "b"), listValue.get());
+    }
+
+    @Test
+    public void testDuration() throws Exception {
+        RccValue<Duration> value = config.durationValue("duration", Duration.ofSeconds(1));
+
+        config.update("v1", map("duration", "500"));
+        Assert.assertEquals(Duration.ofMillis(500), value.get());
+        config.update("v2", map("duration", "PT10S"));
+        Assert.assertEquals(Duration.ofSeconds(10), value.get());
+        config.update("v3", map("duration", "2H"));
+        Assert.assertEquals(Duration.ofHours(2), value.get());
+        config.update("v4", map("duration", "10 parsecs"));
+        Assert.assertEquals(Duration.ofSeconds(1), value.get());
+    }
+}
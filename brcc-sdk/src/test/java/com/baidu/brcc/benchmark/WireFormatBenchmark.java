@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.baidu.brcc.model.ItemVo;
+import com.baidu.brcc.model.R;
+import com.baidu.brcc.model.RList;
+import com.baidu.brcc.utils.BinaryDecoder;
+import com.baidu.brcc.utils.gson.GsonUtils;
+
+/**
+ * Decoding cost of an /api/item response: Gson into {@link RList} then into properties, against
+ * {@link BinaryDecoder} writing straight into properties. Run the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    private int itemCount;
+
+    private String json;
+
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(itemCount);
+        List<ItemVo> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ItemVo item = new ItemVo();
+            item.setKey("app.module" + (i % 20) + ".config.key" + i);
+            item.setValue(random.nextInt(10) == 0 ? largeValue(random) : "value-" + random.nextInt(100000));
+            items.add(item);
+        }
+        json = GsonUtils.toJsonString(R.ok(items));
+        binary = encode(items);
+        System.out.printf("%nitemCount=%d json=%d bytes binary=%d bytes%n",
+                itemCount, json.getBytes(StandardCharsets.UTF_8).length, binary.length);
+    }
+
+    @Benchmark
+    public Properties gson() {
+        RList<ItemVo> r = GsonUtils.toRList(json, ItemVo.class);
+        Map<String, String> map = new HashMap<>();
+        for (ItemVo item : r.getData()) {
+            map.put(item.getKey(), item.getValue());
+        }
+        Properties properties = new Properties();
+        properties.putAll(map);
+        return properties;
+    }
+
+    @Benchmark
+    public Properties binary() throws IOException {
+        Properties properties = new Properties();
+        BinaryDecoder.readItems(new ByteArrayInputStream(binary), properties);
+        return properties;
+    }
+
+    // same layout as the server side converter
+    private byte[] encode(List<ItemVo> items) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(1);
+        out.writeInt(0);
+        writeString(out, "success");
+        out.writeByte(1);
+        out.writeInt(items.size());
+        for (ItemVo item : items) {
+            writeString(out, item.getKey());
+            writeString(out, item.getValue());
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String largeValue(Random random) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 24; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"field").append(i).append("\":\"").append(Long.toHexString(random.nextLong())).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.PropertyPlaceholderHelper;
+
+import com.baidu.brcc.model.ChangedConfigItem;
+
+public class ValueRefreshPostProcessorTest {
+
+    Properties props = new Properties();
+
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+    ValueRefreshPostProcessor processor;
+
+    @Before
+    public void setUp() {
+        PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper("${", "}", ":", false);
+        beanFactory.addEmbeddedValueResolver(value -> helper.replacePlaceholders(value, props::getProperty));
+        processor = new ValueRefreshPostProcessor(beanFactory, "${", "}", ":");
+    }
+
+    @Test
+    public void testRefreshFieldAndSetter() throws Exception {
+        props.put("port", "80");
+        props.put("name", "a");
+        props.put("timeout", "1000");
+        Holder holder = new Holder();
+        processor.postProcessBeforeInitialization(holder, "holder");
+
+        props.put("port", "8080");
+        props.put("timeout", "2000");
+        processor.changed(changed("port", "timeout"));
+
+        Assert.assertEquals(8080, holder.port);
+        Assert.assertEquals(2000L, holder.timeout);
+        // 未变更的配置项不刷新
+        Assert.assertNull(holder.name);
+        Assert.assertEquals(1, holder.setterCalls);
+    }
+
+    @Test
+    public void testRefreshDefault() throws Exception {
+        props.put("name", "a");
+        Holder holder = new Holder();
+        processor.postProcessBeforeInitialization(holder, "holder");
+
+        processor.changed(changed("name"));
+        Assert.assertEquals("a", holder.name);
+
+        // 删除后使用${key:default}中的默认值
+        props.remove("name");
+        processor.changed(changed("name"));
+        Assert.assertEquals("anonymous", holder.name);
+
+        // 默认值中引用的key同样触发刷新
+        props.put("fallback", "f");
+        processor.changed(changed("fallback"));
+        Assert.assertEquals("f", holder.nested);
+        props.put("primary", "p");
+        processor.changed(changed("primary"));
+        Assert.assertEquals("p", holder.nested);
+    }
+
+    @Test
+    public void testRefreshFailureKeepsValue() throws Exception {
+        props.put("port", "80");
+        Holder holder = new Holder();
+        holder.port = 80;
+        processor.postProcessBeforeInitialization(holder, "holder");
+
+        props.put("port", "not a number");
+        processor.changed(changed("port"));
+
+        Assert.assertEquals(80, holder.port);
+    }
+
+    @Test
+    public void testSkipNonSingleton() throws Exception {
+        RootBeanDefinition definition = new RootBeanDefinition(Holder.class);
+        definition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("prototype", definition);
+        beanFactory.registerBeanDefinition("singleton", new RootBeanDefinition(Holder.class));
+        Holder prototype = new Holder();
+        Holder singleton = new Holder();
+
+        processor.postProcessBeforeInitialization(prototype, "prototype");
+        processor.postProcessBeforeInitialization(singleton, "singleton");
+        props.put("port", "81");
+        processor.changed(changed("port"));
+
+        Assert.assertEquals(0, prototype.port);
+        Assert.assertEquals(81, singleton.port);
+        Assert.assertEquals(1, targets().get("port").size());
+    }
+
+    @Test
+    public void testPruneCollectedOnRegistration() throws Exception {
+        processor.postProcessBeforeInitialization(new Holder(), "first");
+        Assert.assertEquals(1, targets().get("port").size());
+
+        Holder second = new Holder();
+        for (int i = 0; i < 50 && targets().containsKey("timeout"); i++) {
+            System.gc();
+            Thread.sleep(10);
+            // 注册其他类的bean时清理已回收的bean，无需等待对应的key变更
+            processor.postProcessBeforeInitialization(new Other(), "other" + i);
+        }
+        Assert.assertFalse(targets().containsKey("port"));
+        Assert.assertFalse(targets().containsKey("timeout"));
+
+        processor.postProcessBeforeInitialization(second, "second");
+        Assert.assertEquals(1, targets().get("port").size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, List<?>> targets() {
+        return (Map<String, List<?>>) ReflectionTestUtils.getField(processor, "targets");
+    }
+
+    private static List<ChangedConfigItem> changed(String... keys) {
+        List<ChangedConfigItem> items = new ArrayList<>();
+        for (String key : keys) {
+            ChangedConfigItem item = new ChangedConfigItem();
+            item.setKey(key);
+            items.add(item);
+        }
+        return items;
+    }
+
+    static class Holder {
+        @Value("${port}")
+        private volatile int port;
+
+        @Value("${name:anonymous}")
+        private volatile String name;
+
+        @Value("${primary:${fallback:none}}")
+        private volatile String nested;
+
+        private volatile long timeout;
+
+        private int setterCalls;
+
+        @Value("${timeout}")
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+            setterCalls++;
+        }
+    }
+
+    static class Other {
+        @Value("${other}")
+        private String other;
+    }
+}
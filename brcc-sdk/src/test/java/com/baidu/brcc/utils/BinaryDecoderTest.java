@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.baidu.brcc.model.ItemDeltaVo;
+import com.baidu.brcc.model.R;
+import com.baidu.brcc.model.RList;
+import com.baidu.brcc.model.VersionVo;
+
+public class BinaryDecoderTest {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    @Test
+    public void testReadItems() throws Exception {
+        header(0, null, 1);
+        out.writeInt(3);
+        writeString("a");
+        writeString("1");
+        writeString("中文");
+        writeString("值");
+        // 空值跳过，目标可以是Properties
+        writeString("b");
+        writeString(null);
+
+        Properties props = new Properties();
+        R<Properties> r = BinaryDecoder.readItems(input(), props);
+
+        Assert.assertEquals(0, r.getStatus());
+        Assert.assertSame(props, r.getData());
+        Assert.assertEquals(2, props.size());
+        Assert.assertEquals("值", props.getProperty("中文"));
+    }
+
+    @Test
+    public void testReadItemsError() throws Exception {
+        header(100, "token expired", 0);
+
+        R<Map<String, String>> r = BinaryDecoder.readItems(input(), new HashMap<>());
+
+        Assert.assertEquals(100, r.getStatus());
+        Assert.assertEquals("token expired", r.getMsg());
+        Assert.assertNull(r.getData());
+    }
+
+    @Test
+    public void testReadItemsNull() throws Exception {
+        header(0, null, 1);
+        out.writeInt(-1);
+
+        Assert.assertNull(BinaryDecoder.readItems(input(), new HashMap<>()).getData());
+    }
+
+    @Test
+    public void testReadItemDelta() throws Exception {
+        header(0, null, 2);
+        writeString("checksum");
+        out.writeBoolean(false);
+        out.writeInt(1);
+        writeString("a");
+        writeString("1");
+        out.writeInt(2);
+        writeString("b");
+        writeString("c");
+
+        ItemDeltaVo delta = BinaryDecoder.readItemDelta(input()).getData();
+
+        Assert.assertEquals("checksum", delta.getCheckSum());
+        Assert.assertFalse(delta.isFull());
+        Assert.assertEquals("1", delta.getItems().get(0).getValue());
+        Assert.assertEquals(Arrays.asList("b", "c"), delta.getDeleted());
+    }
+
+    @Test
+    public void testReadVersions() throws Exception {
+        header(0, null, 3);
+        out.writeInt(1);
+        out.writeLong(1L);
+        out.writeLong(-1L);
+        out.writeLong(3L);
+        writeString("version");
+        writeString("checksum");
+
+        RList<VersionVo> r = BinaryDecoder.readVersions(input());
+
+        VersionVo version = r.getData().get(0);
+        Assert.assertEquals(Long.valueOf(1L), version.getProjectId());
+        Assert.assertNull(version.getEnvironmentId());
+        Assert.assertEquals(Long.valueOf(3L), version.getVersionId());
+        Assert.assertEquals("version", version.getVersionName());
+        Assert.assertEquals("checksum", version.getCheckSum());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws Exception {
+        out.writeByte(2);
+        out.writeInt(0);
+        writeString(null);
+        out.writeByte(1);
+
+        BinaryDecoder.readItems(input(), new HashMap<>());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedType() throws Exception {
+        header(0, null, 3);
+        out.writeInt(0);
+
+        BinaryDecoder.readItems(input(), new HashMap<>());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws Exception {
+        header(0, null, 1);
+        out.writeInt(2);
+        writeString("a");
+        writeString("1");
+
+        BinaryDecoder.readItems(input(), new HashMap<>());
+    }
+
+    private void header(int status, String msg, int type) throws IOException {
+        out.writeByte(1);
+        out.writeInt(status);
+        writeString(msg);
+        out.writeByte(type);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private ByteArrayInputStream input() throws IOException {
+        out.flush();
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import okio.Buffer;
+
+public class OkHttpClientUtilsTest {
+
+    List<String[]> events = new ArrayList<>();
+
+    @Test
+    public void testReadEvents() throws Exception {
+        read("retry:3000\n\n"
+                + ":\n\n"
+                + "id:1:a\nevent:version\ndata:{\"a\":1}\n\n"
+                + ": heartbeat\n\n"
+                + "data: first\ndata:second\n\n");
+
+        Assert.assertEquals(2, events.size());
+        assertEvent(0, "1:a", "version", "{\"a\":1}");
+        // 未指定事件名时为message，事件ID沿用上一个
+        assertEvent(1, "1:a", "message", "first\nsecond");
+    }
+
+    @Test
+    public void testReadEventsCrLf() throws Exception {
+        read("id: 2\r\nevent: version\r\ndata: x\r\n\r\n");
+
+        assertEvent(0, "2", "version", "x");
+    }
+
+    @Test
+    public void testReadEventsIgnoresUnknownAndEmpty() throws Exception {
+        read("event:version\n\n"
+                + "foo:bar\ndata\n\n"
+                + "data:x\nevent");
+
+        // 只有事件名没有数据的不分发；"data"无冒号时值为空；末尾未结束的事件不分发
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testReadEventsStopsOnHandlerError() throws Exception {
+        try {
+            OkHttpClientUtils.readEvents(new Buffer().writeUtf8("data:a\n\ndata:b\n\n"), (id, event, data) -> {
+                events.add(new String[] {id, event, data});
+                throw new IOException("stop");
+            });
+            Assert.fail();
+        } catch (IOException ex) {
+            Assert.assertEquals("stop", ex.getMessage());
+        }
+        Assert.assertEquals(1, events.size());
+    }
+
+    private void read(String text) throws IOException {
+        OkHttpClientUtils.readEvents(new Buffer().writeUtf8(text),
+                (id, event, data) -> events.add(new String[] {id, event, data}));
+    }
+
+    private void assertEvent(int idx, String id, String event, String data) {
+        Assert.assertArrayEquals(new String[] {id, event, data}, events.get(idx));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) Baidu Inc. All rights reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.baidu.brcc.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Path path;
+
+    SnapshotFile snapshotFile;
+
+    @Before
+    public void setUp() {
+        path = folder.getRoot().toPath().resolve("project+env+version.snapshot");
+        snapshotFile = new SnapshotFile(path);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Map<String, Object> items = new HashMap<>();
+        items.put("a", "1");
+        items.put("中文", "值");
+        items.put("empty", "");
+        items.put("skip", null);
+
+        snapshotFile.write("checksum", items);
+        SnapshotFile.Snapshot snapshot = snapshotFile.read();
+
+        Assert.assertEquals("checksum", snapshot.getCheckSum());
+        Assert.assertEquals(3, snapshot.getItems().size());
+        Assert.assertEquals("值", snapshot.getItems().get("中文"));
+        Assert.assertEquals("", snapshot.getItems().get("empty"));
+        Assert.assertFalse(snapshot.getItems().containsKey("skip"));
+    }
+
+    @Test
+    public void testReadAbsent() throws Exception {
+        Assert.assertNull(snapshotFile.read());
+    }
+
+    @Test
+    public void testCrcMismatch() throws Exception {
+        snapshotFile.write("checksum", map("a", "1"));
+        byte[] bytes = Files.readAllBytes(path);
+        // 修改配置项的值，长度不变
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(path, bytes);
+
+        assertCorrupted();
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        snapshotFile.write("checksum", map("a", "1", "b", "2"));
+        byte[] bytes = Files.readAllBytes(path);
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        assertCorrupted();
+
+        Files.write(path, Arrays.copyOf(bytes, 2));
+        assertCorrupted();
+
+        Files.write(path, new byte[0]);
+        assertCorrupted();
+    }
+
+    @Test
+    public void testNotSnapshot() throws Exception {
+        Files.write(path, "{\"a\":\"1\"}".getBytes());
+        assertCorrupted();
+    }
+
+    @Test
+    public void testAtomicReplace() throws Exception {
+        snapshotFile.write("v1", map("a", "1"));
+        snapshotFile.write("v2", map("a", "2", "b", "3"));
+
+        SnapshotFile.Snapshot snapshot = snapshotFile.read();
+        Assert.assertEquals("v2", snapshot.getCheckSum());
+        Assert.assertEquals(map("a", "2", "b", "3"), snapshot.getItems());
+        // 临时文件已移走
+        Assert.assertEquals(1, folder.getRoot().list().length);
+
+        // 写入失败时保留原快照
+        Map<String, Object> broken = new HashMap<>();
+        broken.put("a", new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        try {
+            snapshotFile.write("v3", broken);
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("broken", ex.getMessage());
+        }
+        Assert.assertEquals("v2", snapshotFile.read().getCheckSum());
+        Assert.assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testOf() throws Exception {
+        SnapshotFile file = SnapshotFile.of("/tmp/brcc", "pro/ject", "env", "v 1");
+        Assert.assertEquals("pro_ject+env+v_1.snapshot", file.getPath().getFileName().toString());
+    }
+
+    private void assertCorrupted() {
+        try {
+            snapshotFile.read();
+            Assert.fail();
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    private static Map<String, String> map(String... kvs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            map.put(kvs[i], kvs[i + 1]);
+        }
+        return map;
+    }
+}